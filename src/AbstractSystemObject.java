@@ -1,15 +1,27 @@
+import java.io.IOException;
+
+import enums.LogRecordTypes;
 
 /**
- * Every system object has an ID length of 5 and extends this class.
+ * Every system object extends this class.
+ * An id keeps the type code of the object in its high bits and a sequence
+ * number in its low bits: (typeCode << TYPE_SHIFT) | sequence.
  */
 public abstract class AbstractSystemObject implements Comparable<AbstractSystemObject>
 {
     // Static variables
     public static final int NUMBER_OF_SYSTEM_OBJECTS = 6;
-    public static final int ID_LENGTH = 5;
+    // 3 bits for the type code, 28 bits for the sequence number.
+    public static final int TYPE_SHIFT = 28;
+    public static final int MAX_SEQUENCE = (1 << TYPE_SHIFT) - 1;
+    // Old ids had 5 digits and the leading digit was the type code.
+    public static final int LEGACY_ID_LENGTH = 5;
+    public static final int LEGACY_TYPE_DIVISOR = 10000;
     
     // Data field
     protected int id;
+    // The system the object is registered in, null until it is registered.
+    protected SystemClass systemClass;
 
     // Constructor
     protected AbstractSystemObject() 
@@ -23,6 +35,24 @@ public abstract class AbstractSystemObject implements Comparable<AbstractSystemO
         this.id = id; 
     }
 
+    // Constructor that reads the object from a snapshot.
+    protected AbstractSystemObject(SnapshotInput in) throws IOException
+    {
+        this.id = in.readInt();
+    }
+
+    /**
+     * It writes the fields of the object to a snapshot, in the order the
+     * snapshot constructor reads them. Subclasses write their own fields after
+     * the fields of their superclass.
+     * 
+     * @param out The snapshot.
+     */
+    void writeSnapshot(SnapshotOutput out) throws IOException
+    {
+        out.writeInt(id);
+    }
+
     /**
      * This function returns the value of the id variable.
      * 
@@ -41,6 +71,77 @@ public abstract class AbstractSystemObject implements Comparable<AbstractSystemO
         this.id = id;
     }
     
+    /**
+     * This function sets the system the object is registered in.
+     * 
+     * @param systemClass The system that keeps the object.
+     */
+    void setSystemClass(SystemClass systemClass) {
+        this.systemClass = systemClass;
+    }
+
+    /**
+     * It logs a change of the object, if the object is registered in a system.
+     * 
+     * @param type The type of the change.
+     * @param body Writes the values of the change.
+     */
+    protected void log(LogRecordTypes type, WriteAheadLog.RecordBody body) {
+        if (systemClass != null)
+            systemClass.log(type, id, body);
+    }
+
+    /**
+     * It builds the id of the object with the given type code and sequence number.
+     * 
+     * @param typeCode The code of the system object type.
+     * @param sequence The sequence number of the object in its type, starting from 1.
+     * @return The id of the object.
+     * @throws IllegalStateException if the sequence does not fit in the id.
+     */
+    public static int createId(int typeCode, int sequence)
+    {
+        if (sequence < 0 || sequence > MAX_SEQUENCE)
+            throw new IllegalStateException("Id sequence " + sequence + " is out of range for type " + typeCode);
+        return (typeCode << TYPE_SHIFT) | sequence;
+    }
+
+    /**
+     * It returns the type code kept in the high bits of the id.
+     * 
+     * @param id The id of the object.
+     * @return The type code, 0 if the id has no type.
+     */
+    public static int typeCodeOf(int id)
+    {
+        return id >>> TYPE_SHIFT;
+    }
+
+    /**
+     * It returns the sequence number kept in the low bits of the id.
+     * 
+     * @param id The id of the object.
+     * @return The sequence number.
+     */
+    public static int sequenceOf(int id)
+    {
+        return id & MAX_SEQUENCE;
+    }
+
+    /**
+     * It converts an old 5 digit id to the current id format.
+     * Ids that already carry a type code are returned unchanged.
+     * 
+     * @param id The old or current id.
+     * @return The id in the current format.
+     */
+    public static int fromLegacyId(int id)
+    {
+        if (typeCodeOf(id) != 0 || id < LEGACY_TYPE_DIVISOR || id >= LEGACY_TYPE_DIVISOR * 10)
+            return id;
+        return createId(id / LEGACY_TYPE_DIVISOR, id % LEGACY_TYPE_DIVISOR);
+    }
+
     /**
      * The compareTo function compares the id of the current object to the id of the object passed in
      * as a parameter
@@ -51,7 +152,7 @@ public abstract class AbstractSystemObject implements Comparable<AbstractSystemO
     @Override
     public int compareTo(AbstractSystemObject other) 
     {
-        return Integer.valueOf(id).compareTo(other.id);
+        return Integer.compare(id, other.id);
     }
 
     /**
@@ -1,30 +1,54 @@
+import java.io.IOException;
+
 /**
  * Super class for all users.
  * Includes password, firstName, lastName, email, phone
  * and extend AbstractSystemObject class which keeps the ID.
+ * Names are kept as codes of the shared name dictionary and phones as the
+ * codes of PhoneNumbers, and an email made from the name and the id like the
+ * generated ones is not kept at all but built again when it is asked for.
  */
 public abstract class AbstractUser extends AbstractSystemObject
 {
+    /**
+     * Domain of the emails of the generated users.
+     */
+    public static final String GENERATED_EMAIL_DOMAIN = "@dummy.com";
+
+    private static final NameDictionary NAMES = NameDictionary.shared();
+
     // Data fields
     protected String password;
-    protected String firstName;
-    protected String lastName;
-    protected String email;
-    protected String phone;
+    private int firstName;
+    private int lastName;
+    // Null when it is the generated email of the name and id.
+    private String email;
+    private long phone;
 
     // Constructor
     protected AbstractUser() 
     {
         super();
         password = "";
-        firstName = "";
-        lastName = "";
+        firstName = NAMES.encode("");
+        lastName = NAMES.encode("");
         email = "";
-        phone = "";
+        phone = PhoneNumbers.encode("");
     }
     
     // Constructor with parameters
     protected AbstractUser(int id, String password, String firstName, String lastName, String email, String phone) 
+    {
+        super(id);
+        this.password = password;
+        this.firstName = NAMES.encode(firstName);
+        this.lastName = NAMES.encode(lastName);
+        this.phone = PhoneNumbers.encode(phone);
+        setEmail(email);
+    }
+
+    // Constructor with the codes of the names and phone, the email is null if it is generated.
+    protected AbstractUser(int id, String password, int firstName, int lastName, String email, long phone)
     {
         super(id);
         this.password = password;
@@ -34,6 +58,28 @@ public abstract class AbstractUser extends AbstractSystemObject
         this.phone = phone;
     }
 
+    // Constructor that reads the user from a snapshot.
+    protected AbstractUser(SnapshotInput in) throws IOException
+    {
+        super(in);
+        password = in.readString();
+        firstName = NAMES.encode(in.readString());
+        lastName = NAMES.encode(in.readString());
+        setEmail(in.readString());
+        phone = PhoneNumbers.encode(in.readString());
+    }
+
+    @Override
+    void writeSnapshot(SnapshotOutput out) throws IOException
+    {
+        super.writeSnapshot(out);
+        out.writeString(password);
+        out.writeString(getFirstName());
+        out.writeString(getLastName());
+        out.writeString(getEmail());
+        out.writeString(getPhone());
+    }
+
     // Getter and setters
 
     /**
@@ -60,7 +106,7 @@ public abstract class AbstractUser extends AbstractSystemObject
      * @return The first name of the person.
      */
     protected String getFirstName() {
-        return firstName;
+        return NAMES.decode(firstName);
     }
     
     /**
@@ -69,7 +115,9 @@ public abstract class AbstractUser extends AbstractSystemObject
      * @param firstName The first name of the person.
      */
     protected void setFirstName(String firstName) {
-        this.firstName = firstName;
+        String email = getEmail();
+        this.firstName = NAMES.encode(firstName);
+        setEmail(email);
     }
     
     /**
@@ -78,7 +126,7 @@ public abstract class AbstractUser extends AbstractSystemObject
      * @return The last name of the person.
      */
     protected String getLastName() {
-        return lastName;
+        return NAMES.decode(lastName);
     }
     
     /**
@@ -87,7 +135,9 @@ public abstract class AbstractUser extends AbstractSystemObject
      * @param lastName The last name of the person.
      */
     protected void setLastName(String lastName) {
-        this.lastName = lastName;
+        String email = getEmail();
+        this.lastName = NAMES.encode(lastName);
+        setEmail(email);
     }
     
     /**
@@ -96,7 +146,7 @@ public abstract class AbstractUser extends AbstractSystemObject
      * @return The email address of the user.
      */
     protected String getEmail() {
-        return email;
+        return email != null ? email : generatedEmail(getFirstName(), getLastName(), id);
     }
     
     /**
@@ -105,7 +155,10 @@ public abstract class AbstractUser extends AbstractSystemObject
      * @param email The email address of the user.
      */
     protected void setEmail(String email) {
-        this.email = email;
+        // A user without an id yet gets it later, the email must not change then.
+        boolean generated = id != -1 && email != null
+                            && email.equals(generatedEmail(getFirstName(), getLastName(), id));
+        this.email = generated ? null : email;
     }
     
     /**
@@ -114,7 +167,7 @@ public abstract class AbstractUser extends AbstractSystemObject
      * @return The phone number.
      */
     protected String getPhone() {
-        return phone;
+        return PhoneNumbers.decode(phone);
     }
     
     /**
@@ -123,7 +176,7 @@ public abstract class AbstractUser extends AbstractSystemObject
      * @param phone The phone number to send the message to.
      */
     protected void setPhone(String phone) {
-        this.phone = phone;
+        this.phone = PhoneNumbers.encode(phone);
     }
 
     /**
@@ -135,14 +188,66 @@ public abstract class AbstractUser extends AbstractSystemObject
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
-        sb.append(super.toString() + "\n");
-        sb.append("First Name: ").append(firstName).append("\n");
-        sb.append("Last Name: ").append(lastName).append("\n");
-        sb.append("E-mail: ").append(email).append("\n");
-        sb.append("Phone: ").append(phone).append("\n");
+        sb.append(super.toString()).append("\n");
+        sb.append("First Name: ").append(getFirstName()).append("\n");
+        sb.append("Last Name: ").append(getLastName()).append("\n");
+        sb.append("E-mail: ").append(getEmail()).append("\n");
+        sb.append("Phone: ").append(getPhone()).append("\n");
         return sb.toString();
     }
 
+    /**
+     * @return The name dictionary code of the first name.
+     */
+    int firstNameCode() {
+        return firstName;
+    }
+
+    /**
+     * @return The name dictionary code of the last name.
+     */
+    int lastNameCode() {
+        return lastName;
+    }
+
+    /**
+     * @return The PhoneNumbers code of the phone.
+     */
+    long phoneCode() {
+        return phone;
+    }
+
+    /**
+     * @return The email, or null if it is the generated email of the name and id.
+     */
+    String storedEmail() {
+        return email;
+    }
+
+    /**
+     * It keeps the email the same when the id changes.
+     * 
+     * @param id The new id.
+     */
+    @Override
+    protected void setId(int id) {
+        String email = getEmail();
+        super.setId(id);
+        setEmail(email);
+    }
+
+    /**
+     * It returns the email the generated users get from their name and id.
+     * 
+     * @param firstName The first name.
+     * @param lastName The last name.
+     * @param id The id.
+     * @return The email.
+     */
+    public static String generatedEmail(String firstName, String lastName, int id) {
+        return firstName + lastName + id + GENERATED_EMAIL_DOMAIN;
+    }
+
     // Every user has a menu
     /**
      * This function is used to display the menu for the user to select from.
@@ -0,0 +1,339 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Append-only store for the long texts of the lawsuits, kept out of the heap
+ * in a memory-mapped temporary file.
+ *
+ * A text is stored once as UTF-8 bytes and referred to by a handle that packs
+ * its offset and length into a long, so an object only holds eight bytes per
+ * text and decodes it when it is shown. Texts are looked up by a hash of their
+ * bytes before they are appended, equal texts like the generated case files
+ * share the same bytes.
+ * The file is mapped in fixed size segments and a text never crosses the end
+ * of a segment. Nothing is ever removed, the file is deleted when the program
+ * exits.
+ */
+public class BlobStore
+{
+    /**
+     * The handle of a null text.
+     */
+    public static final long NULL_HANDLE = -1;
+
+    private static final int LENGTH_BITS = 24;
+    private static final int MAX_LENGTH = (1 << LENGTH_BITS) - 1;
+    private static final int SEGMENT_SIZE = 1 << 26;
+    private static final long MAX_OFFSET = 1L << (Long.SIZE - LENGTH_BITS);
+    private static final int INITIAL_TABLE_SIZE = 1 << 12;
+
+    private static BlobStore shared;
+
+    private final FileChannel channel;
+    private MappedByteBuffer[] segments;
+    // End of the appended bytes, written after the bytes so readers see them.
+    private volatile long end;
+
+    // Open addressing table from the hash of the bytes to the handle.
+    private long[] hashes;
+    private long[] handles;
+    private int entries;
+
+    private long requestedBytes;
+
+    /**
+     * BlobStore constructor.
+     *
+     * @param file The file to map, deleted when the store is closed.
+     * @throws IOException if the file cannot be created.
+     */
+    public BlobStore(Path file) throws IOException
+    {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                                        StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+        this.segments = new MappedByteBuffer[0];
+        this.hashes = new long[INITIAL_TABLE_SIZE];
+        this.handles = new long[INITIAL_TABLE_SIZE];
+        Arrays.fill(handles, NULL_HANDLE);
+    }
+
+    /**
+     * It returns the store of the program, created in the temporary directory
+     * when it is first used.
+     *
+     * @return The shared store.
+     */
+    public static synchronized BlobStore shared()
+    {
+        if (shared == null)
+        {
+            try
+            {
+                Path directory = Files.createTempDirectory("law-blobs");
+                directory.toFile().deleteOnExit();
+                shared = new BlobStore(directory.resolve("blobs.dat"));
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException("Cannot create the blob store", e);
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * It stores a text, or finds the same text stored before.
+     *
+     * @param text The text, can be null.
+     * @return The handle of the text.
+     */
+    public long put(String text)
+    {
+        if (text == null)
+            return NULL_HANDLE;
+        return put(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * It stores UTF-8 bytes, or finds the same bytes stored before.
+     *
+     * @param bytes The bytes, not changed later by the caller.
+     * @return The handle of the bytes.
+     * @throws IllegalArgumentException if there are more than 16 MiB of bytes.
+     */
+    public synchronized long put(byte[] bytes)
+    {
+        if (bytes.length > MAX_LENGTH)
+            throw new IllegalArgumentException("Text is longer than " + MAX_LENGTH + " bytes");
+        requestedBytes += bytes.length;
+
+        long hash = hash(bytes);
+        int mask = hashes.length - 1;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (handles[slot] != NULL_HANDLE)
+        {
+            if (hashes[slot] == hash && contentEquals(handles[slot], bytes))
+                return handles[slot];
+            slot = (slot + 1) & mask;
+        }
+
+        long handle = append(bytes);
+        hashes[slot] = hash;
+        handles[slot] = handle;
+        if (++entries * 2 > hashes.length)
+            growTable();
+        return handle;
+    }
+
+    /**
+     * It decodes a stored text.
+     *
+     * @param handle The handle from put.
+     * @return The text, or null for the null handle.
+     */
+    public String get(long handle)
+    {
+        if (handle == NULL_HANDLE)
+            return null;
+        return new String(getBytes(handle), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * It copies the bytes of a stored text.
+     *
+     * @param handle The handle from put, not the null handle.
+     * @return The UTF-8 bytes.
+     */
+    public byte[] getBytes(long handle)
+    {
+        long offset = offsetOf(handle);
+        int length = lengthOf(handle);
+        // Reading the end first makes the bytes and the segments visible.
+        if (offset + length > end)
+            throw new IllegalArgumentException("Invalid blob handle " + handle);
+        byte[] bytes = new byte[length];
+        segments[(int) (offset / SEGMENT_SIZE)].get((int) (offset % SEGMENT_SIZE), bytes);
+        return bytes;
+    }
+
+    /**
+     * It returns a read-only view of the bytes of a stored text, without
+     * copying them.
+     *
+     * @param handle The handle from put.
+     * @return The UTF-8 bytes from position 0 to the limit, or null for the null handle.
+     */
+    public ByteBuffer getBuffer(long handle)
+    {
+        if (handle == NULL_HANDLE)
+            return null;
+        long offset = offsetOf(handle);
+        int length = lengthOf(handle);
+        // Reading the end first makes the bytes and the segments visible.
+        if (offset + length > end)
+            throw new IllegalArgumentException("Invalid blob handle " + handle);
+        return segments[(int) (offset / SEGMENT_SIZE)].slice((int) (offset % SEGMENT_SIZE), length).asReadOnlyBuffer();
+    }
+
+    /**
+     * It writes a stored text like SnapshotOutput.writeString, without
+     * decoding it.
+     *
+     * @param handle The handle of the text.
+     * @param out The output.
+     */
+    public void write(long handle, SnapshotOutput out) throws IOException
+    {
+        if (handle == NULL_HANDLE)
+        {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = getBytes(handle);
+        out.writeInt(bytes.length);
+        out.writeBytes(bytes, 0, bytes.length);
+    }
+
+    /**
+     * It reads a text written by SnapshotOutput.writeString and stores it
+     * without decoding it.
+     *
+     * @param in The input.
+     * @return The handle of the text.
+     */
+    public long read(SnapshotInput in) throws IOException
+    {
+        int length = in.readInt();
+        if (length < 0)
+            return NULL_HANDLE;
+        if (length > MAX_LENGTH)
+            throw new IOException("Invalid text length " + length);
+        byte[] bytes = new byte[length];
+        in.readBytes(bytes, 0, length);
+        return put(bytes);
+    }
+
+    /**
+     * @param handle The handle of a text.
+     * @return The number of UTF-8 bytes of the text, 0 for the null handle.
+     */
+    public static int lengthOf(long handle)
+    {
+        return handle == NULL_HANDLE ? 0 : (int) (handle & MAX_LENGTH);
+    }
+
+    /**
+     * @return The number of bytes in the file, with the padding at the ends of the segments.
+     */
+    public long getStoredBytes()
+    {
+        return end;
+    }
+
+    /**
+     * @return The number of bytes of all the texts that were put, before the
+     *         equal ones were shared.
+     */
+    public synchronized long getRequestedBytes()
+    {
+        return requestedBytes;
+    }
+
+    /**
+     * @return The number of distinct texts.
+     */
+    public synchronized int getTextCount()
+    {
+        return entries;
+    }
+
+    private static long offsetOf(long handle)
+    {
+        return handle >>> LENGTH_BITS;
+    }
+
+    /**
+     * It appends bytes at the end of the file, in a new segment if they do not
+     * fit in the last one.
+     */
+    private long append(byte[] bytes)
+    {
+        long offset = end;
+        long segmentEnd = (offset / SEGMENT_SIZE + 1) * SEGMENT_SIZE;
+        if (offset + bytes.length > segmentEnd)
+            offset = segmentEnd;
+        if (offset + bytes.length > MAX_OFFSET)
+            throw new IllegalStateException("Blob store is full");
+
+        int segment = (int) (offset / SEGMENT_SIZE);
+        if (segment == segments.length)
+            mapSegment(segment);
+        segments[segment].put((int) (offset % SEGMENT_SIZE), bytes);
+        end = offset + bytes.length;
+        return offset << LENGTH_BITS | bytes.length;
+    }
+
+    private void mapSegment(int segment)
+    {
+        try
+        {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE,
+                                                  (long) segment * SEGMENT_SIZE, SEGMENT_SIZE);
+            MappedByteBuffer[] grown = Arrays.copyOf(segments, segment + 1);
+            grown[segment] = buffer;
+            // Readers load the array without the lock, the old one is still valid.
+            segments = grown;
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Cannot map the blob store", e);
+        }
+    }
+
+    private boolean contentEquals(long handle, byte[] bytes)
+    {
+        return lengthOf(handle) == bytes.length && Arrays.equals(getBytes(handle), bytes);
+    }
+
+    private void growTable()
+    {
+        long[] oldHashes = hashes;
+        long[] oldHandles = handles;
+        hashes = new long[oldHashes.length * 2];
+        handles = new long[oldHandles.length * 2];
+        Arrays.fill(handles, NULL_HANDLE);
+        int mask = hashes.length - 1;
+        for (int i = 0; i < oldHashes.length; i++)
+        {
+            if (oldHandles[i] == NULL_HANDLE)
+                continue;
+            int slot = (int) (oldHashes[i] ^ (oldHashes[i] >>> 32)) & mask;
+            while (handles[slot] != NULL_HANDLE)
+                slot = (slot + 1) & mask;
+            hashes[slot] = oldHashes[i];
+            handles[slot] = oldHandles[i];
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the bytes.
+     */
+    private static long hash(byte[] bytes)
+    {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : bytes)
+        {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
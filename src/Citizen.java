@@ -1,21 +1,125 @@
+import java.io.IOException;
 import java.util.Date;
-import java.util.Set;
-import java.util.concurrent.ConcurrentSkipListSet;
 
+import DataStructures.CompactIntSet;
+import DataStructures.ConcurrentCompactIntSet;
 import enums.LawsuitStatus;
 import enums.LawsuitTypes;
+import enums.LogRecordTypes;
 
 public class Citizen extends AbstractUser
 {
-    private Set<Integer> suingLawsuits;
-    private Set<Integer> suedLawsuits;
+    // Null while the lists are kept in a citizen table.
+    private CompactIntSet suingLawsuits;
+    private CompactIntSet suedLawsuits;
+    private CitizenTable table;
+    private int row;
 
     // Parameterized constructor.
     public Citizen(int id, String password, String name, String surname, String email, String phone) {
         super(id, password, name, surname, email, phone);
 
-        suingLawsuits = new ConcurrentSkipListSet<>();
-        suedLawsuits = new ConcurrentSkipListSet<>();
+        suingLawsuits = new ConcurrentCompactIntSet();
+        suedLawsuits = new ConcurrentCompactIntSet();
+    }
+
+    // Constructor of a citizen kept in a citizen table, its lists are in the table.
+    // It has no password, the table keeps only the hash of it.
+    Citizen(CitizenTable table, int row, int id, int firstName, int lastName, String email, long phone) {
+        super(id, null, firstName, lastName, email, phone);
+        useTable(table, row);
+    }
+
+    // Constructor that reads the citizen from a snapshot.
+    protected Citizen(SnapshotInput in) throws IOException {
+        super(in);
+        suingLawsuits = new ConcurrentCompactIntSet();
+        suedLawsuits = new ConcurrentCompactIntSet();
+        in.readIds(suingLawsuits);
+        in.readIds(suedLawsuits);
+    }
+
+    @Override
+    void writeSnapshot(SnapshotOutput out) throws IOException {
+        super.writeSnapshot(out);
+        out.writeIds(getSuingLawsuits());
+        out.writeIds(getSuedLawsuits());
+    }
+
+    /**
+     * It makes the citizen read and change its lawsuit lists in the row of a
+     * citizen table, after the table copied them.
+     * 
+     * @param table The table.
+     * @param row The row of the citizen.
+     */
+    void useTable(CitizenTable table, int row) {
+        this.table = table;
+        this.row = row;
+        suingLawsuits = null;
+        suedLawsuits = null;
+    }
+
+    /**
+     * It returns the ids of the lawsuits the citizen is suing. The set of a
+     * citizen kept in a table is a copy, the set must not be modified.
+     * 
+     * @return The ids in increasing order.
+     */
+    public CompactIntSet getSuingLawsuits() {
+        return table == null ? suingLawsuits : table.suingLawsuits(row);
+    }
+
+    /**
+     * It returns the ids of the lawsuits the citizen is sued in. The set of a
+     * citizen kept in a table is a copy, the set must not be modified.
+     * 
+     * @return The ids in increasing order.
+     */
+    public CompactIntSet getSuedLawsuits() {
+        return table == null ? suedLawsuits : table.suedLawsuits(row);
+    }
+
+    /**
+     * It returns the ids of the lawsuits the citizen is suing, read once
+     * without building a set.
+     * 
+     * @return A new array of the ids in increasing order.
+     */
+    public int[] getSuingLawsuitIds() {
+        return table == null ? suingLawsuits.toArray() : table.suingLawsuitIds(row);
+    }
+
+    /**
+     * It returns the ids of the lawsuits the citizen is sued in, read once
+     * without building a set.
+     * 
+     * @return A new array of the ids in increasing order.
+     */
+    public int[] getSuedLawsuitIds() {
+        return table == null ? suedLawsuits.toArray() : table.suedLawsuitIds(row);
+    }
+
+    /**
+     * It copies the ids of the suing lawsuits after the given id into the page.
+     * 
+     * @param afterId The id to start after, 0 for the first page.
+     * @param page The array to fill.
+     * @return The number of ids, less than the page length only at the end of the list.
+     */
+    private int suingLawsuitsAfter(int afterId, int[] page) {
+        return table == null ? suingLawsuits.valuesAfter(afterId, page) : table.suingLawsuitsAfter(row, afterId, page);
+    }
+
+    /**
+     * It copies the ids of the sued lawsuits after the given id into the page.
+     * 
+     * @param afterId The id to start after, 0 for the first page.
+     * @param page The array to fill.
+     * @return The number of ids, less than the page length only at the end of the list.
+     */
+    private int suedLawsuitsAfter(int afterId, int[] page) {
+        return table == null ? suedLawsuits.valuesAfter(afterId, page) : table.suedLawsuitsAfter(row, afterId, page);
     }
 
     /**
@@ -28,7 +132,7 @@ public class Citizen extends AbstractUser
         System.out.print("\nEnter the ID of the person you are claiming: ");
         int suedCitizen = -1;
         try {
-            suedCitizen = Utils.readIntegerInput();
+            suedCitizen = Utils.readIdInput();
         } catch (Exception e) {
             System.out.println(Utils.INVALID_INPUT);
             return;
@@ -157,18 +261,11 @@ public class Citizen extends AbstractUser
      * @param systemClassRef a reference to the system class
      */
     private void displaySuingLawsuits(SystemClass systemClassRef) {
-        if (suingLawsuits.isEmpty()) {
-            System.out.println("\nYou have no suing lawsuits.");
-            return;
-        }
-        int i = 0;
         System.out.println("\nYour suing lawsuits:");
         System.out.println();
-        for (var lawsuitId : suingLawsuits) {
-            Lawsuit lawsuit = systemClassRef.getLawsuit(lawsuitId);
-            System.out.println((i + 1) + ". Lawsuit\n" + lawsuit);
-            i++;
-        }
+        ListingPager.display(this::suingLawsuitsAfter, systemClassRef.getListingPageSize(), ". Lawsuit\n",
+                             (out, lawsuitId) -> out.lawsuit(systemClassRef.getLawsuit(lawsuitId)),
+                             "You have no suing lawsuits.");
     }
 
     /**
@@ -177,19 +274,11 @@ public class Citizen extends AbstractUser
      * @param systemClassRef a reference to the system class
      */
     private void displaySuedLawsuits(SystemClass systemClassRef) {
-        
-        if (suedLawsuits.isEmpty()) {
-            System.out.println("\nYou have no lawsuits that have been sued.");
-            return;
-        }
         System.out.println("\nLawsuits that you have been sued:");
-        int i = 0;
         System.out.println();
-        for (var lawsuitId : suedLawsuits) {
-            Lawsuit lawsuit = systemClassRef.getLawsuit(lawsuitId);
-            System.out.println((i + 1) + ". Lawsuit\n" + lawsuit);
-            i++;
-        }
+        ListingPager.display(this::suedLawsuitsAfter, systemClassRef.getListingPageSize(), ". Lawsuit\n",
+                             (out, lawsuitId) -> out.lawsuit(systemClassRef.getLawsuit(lawsuitId)),
+                             "You have no lawsuits that have been sued.");
     }
 
     /**
@@ -200,22 +289,24 @@ public class Citizen extends AbstractUser
     private void displayCompletedLawsuits(SystemClass systemClassRef) {
         System.out.println("\nCompleted lawsuits:");
         int i = 0;
-        for (var lawsuitId : suingLawsuits) {
+        ConsoleWriter out = Session.current().writer();
+        for (int lawsuitId : getSuingLawsuitIds()) {
             Lawsuit lawsuit = systemClassRef.getLawsuit(lawsuitId);
             if (lawsuit.getStatus() == LawsuitStatus.SUING_WON || 
                 lawsuit.getStatus() == LawsuitStatus.SUED_WON) {
-                    System.out.println((i + 1)+ ". " + lawsuit);
+                    out.print(i + 1).print(". ").lawsuit(lawsuit).println();
                 i++;
             }
         }
-        for (var lawsuitId : suedLawsuits) {
+        for (int lawsuitId : getSuedLawsuitIds()) {
             Lawsuit lawsuit = systemClassRef.getLawsuit(lawsuitId);
             if (lawsuit.getStatus() == LawsuitStatus.SUING_WON || 
                 lawsuit.getStatus() == LawsuitStatus.SUED_WON) {
-                    System.out.println((i + 1) + ". " + lawsuit);
+                    out.print(i + 1).print(". ").lawsuit(lawsuit).println();
                 i++;
             }
         }
+        out.flush();
         if (i == 0) {
             System.out.println("\nYou have no completed lawsuits.");
         }
@@ -241,7 +332,11 @@ public class Citizen extends AbstractUser
      * @param lawsuitId The id of the lawsuit that is being sued.
      */
     public void addSuingLawsuit(int lawsuitId) {
-        suingLawsuits.add(lawsuitId);
+        if (table == null)
+            suingLawsuits.add(lawsuitId);
+        else
+            table.addSuingLawsuit(row, lawsuitId);
+        log(LogRecordTypes.CITIZEN_SUING_LAWSUIT_ADDED, out -> out.writeInt(lawsuitId));
     }
 
     /**
@@ -250,7 +345,11 @@ public class Citizen extends AbstractUser
      * @param lawsuitId The id of the lawsuit
      */
     public void addSuedLawsuit(int lawsuitId) {
-        suedLawsuits.add(lawsuitId);
+        if (table == null)
+            suedLawsuits.add(lawsuitId);
+        else
+            table.addSuedLawsuit(row, lawsuitId);
+        log(LogRecordTypes.CITIZEN_SUED_LAWSUIT_ADDED, out -> out.writeInt(lawsuitId));
     }
 
     /**
@@ -259,7 +358,8 @@ public class Citizen extends AbstractUser
      * @param systemClassRef is a reference to the system class
      */
     private void addLawyerAsSuedCitizen(SystemClass systemClassRef) {
-        if (!areContinuingLawsuits(systemClassRef)) {
+        int[] suedLawsuitIds = getSuedLawsuitIds();
+        if (!areContinuingLawsuits(systemClassRef, suedLawsuitIds)) {
             System.out.println("There are no sued lawsuits.");
             return;
         }
@@ -267,13 +367,16 @@ public class Citizen extends AbstractUser
         System.out.println("\nSelect the lawsuit you want to add a lawyer to:");
 
         int i = 0, j = 0;
-        for (var lawsuitId : suedLawsuits) {
-            if (systemClassRef.getLawsuit(lawsuitId).getStatus() == LawsuitStatus.HOLD) {
-                System.out.println((j + 1) + ".\n" + systemClassRef.getLawsuit(lawsuitId));
+        ConsoleWriter out = Session.current().writer();
+        for (int lawsuitId : suedLawsuitIds) {
+            Lawsuit lawsuit = systemClassRef.getLawsuit(lawsuitId);
+            if (lawsuit.getStatus() == LawsuitStatus.HOLD) {
+                out.print(j + 1).print(".\n").lawsuit(lawsuit).println();
                 j++;
             }
             i++;
         }
+        out.flush();
 
         System.out.println("Choice: ");
         int choice;
@@ -285,7 +388,7 @@ public class Citizen extends AbstractUser
         }
         int lawsuitId;
         try {
-            lawsuitId = (int)suedLawsuits.toArray()[choice - 1];
+            lawsuitId = suedLawsuitIds[choice - 1];
         } catch (IndexOutOfBoundsException e) {
             System.out.println(Utils.INVALID_CHOICE);
             return;
@@ -303,8 +406,8 @@ public class Citizen extends AbstractUser
         systemClassRef.assignLawyerToLawsuit(suedLawyer, lawsuitId);
     }
 
-    private boolean areContinuingLawsuits(SystemClass systemClassRef) {
-        for (var lawsuitId : suedLawsuits) {
+    private boolean areContinuingLawsuits(SystemClass systemClassRef, int[] suedLawsuitIds) {
+        for (int lawsuitId : suedLawsuitIds) {
             if (systemClassRef.getLawsuit(lawsuitId).getStatus() == LawsuitStatus.HOLD) {
                 return true;
             }
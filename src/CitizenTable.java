@@ -0,0 +1,774 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import DataStructures.CompactIntSet;
+import enums.SystemObjectTypes;
+
+/**
+ * Table of the citizens kept out of the heap in direct buffers.
+ *
+ * Every citizen is a fixed size record of ints: the id, a random salt and
+ * the SHA-256 hash of the salt and the password cut to 16 bytes, the name
+ * dictionary codes of the names, the PhoneNumbers code of the phone, where
+ * its email is kept, and
+ * where its suing and sued lawsuit lists start and how long they are. The
+ * password itself is not kept, and the email is kept as UTF-8 in a block of
+ * the table, so nothing that belongs to one citizen goes into the shared
+ * name dictionary. The lists are kept sorted in blocks of an int arena, a
+ * block whose size is the next power of two of the length of the list. A
+ * full block is given back to a free list of its size and the list moves to
+ * a block twice as large.
+ * A Fenwick tree over the used rows gives the position of a citizen and the
+ * citizen at a position in O(log n).
+ * Citizen objects are only made when a citizen is asked for, like when the
+ * citizen logs in or is shown in a listing. Such a citizen reads and changes
+ * its lawsuit lists in the table, so every object of the same citizen sees
+ * the same lists. The record of a citizen is never removed.
+ */
+public class CitizenTable implements Iterable<Citizen>
+{
+    // Record fields, in ints. The length of a list follows its offset.
+    private static final int ID = 0;
+    private static final int SALT = 1;
+    private static final int PASSWORD_HASH = 3;
+    private static final int FIRST_NAME = 7;
+    private static final int LAST_NAME = 8;
+    private static final int EMAIL = 9;
+    private static final int PHONE = 10;
+    private static final int SUING_OFFSET = 12;
+    private static final int SUED_OFFSET = 14;
+    private static final int RECORD_INTS = 16;
+    private static final int RECORD_BYTES = RECORD_INTS * Integer.BYTES;
+
+    private static final int ROWS_PER_SEGMENT = 1 << 16;
+    private static final int ARENA_SEGMENT_INTS = 1 << 20;
+    private static final int MIN_BLOCK_INTS = 4;
+    private static final int NO_BLOCK = -1;
+    private static final int PASSWORD_HASH_BYTES = 16;
+
+    /**
+     * The email block of a citizen whose email is made from the name and id.
+     */
+    static final int GENERATED_EMAIL = -2;
+
+    private static final NameDictionary NAMES = NameDictionary.shared();
+
+    // The id in the first row.
+    private final int base;
+    private ByteBuffer[] segments;
+    // One past the highest used row, and the number of used rows.
+    private int limit;
+    private int size;
+    // Fenwick tree counting the used rows, 1-based.
+    private int[] usedCounts;
+    private final SecureRandom random;
+
+    private ByteBuffer[] arena;
+    // The next free int of the arena.
+    private long arenaEnd;
+    // First free block of every block size, the next one is in its first int.
+    private final int[] freeBlocks;
+
+    /**
+     * CitizenTable constructor.
+     *
+     * @param base The smallest id that can be stored in the table.
+     */
+    public CitizenTable(int base)
+    {
+        this.base = base;
+        this.segments = new ByteBuffer[0];
+        this.arena = new ByteBuffer[0];
+        this.usedCounts = new int[1];
+        this.random = new SecureRandom();
+        this.freeBlocks = new int[Integer.numberOfTrailingZeros(ARENA_SEGMENT_INTS) + 1];
+        Arrays.fill(freeBlocks, NO_BLOCK);
+    }
+
+    /**
+     * It copies a citizen into its record and makes the citizen use the
+     * lists of the table from then on.
+     *
+     * A citizen made by the table has no password, it keeps the password of
+     * the record it replaces.
+     *
+     * @param citizen The citizen, its id must not be below the base.
+     */
+    public synchronized void put(Citizen citizen)
+    {
+        int row = citizen.getId() - base;
+        if (row < 0)
+            throw new IllegalArgumentException("Id " + citizen.getId() + " is below the table base " + base);
+        // The citizen can already read its lists from this row.
+        int[] suing = citizen.getSuingLawsuitIds();
+        int[] sued = citizen.getSuedLawsuitIds();
+        String password = citizen.getPassword();
+        long salt;
+        byte[] passwordHash;
+        if (password != null)
+        {
+            salt = random.nextLong();
+            passwordHash = hash(salt, password);
+        }
+        else if (contains(citizen.getId()))
+        {
+            salt = getLong(row, SALT);
+            passwordHash = getBytes(row, PASSWORD_HASH, PASSWORD_HASH_BYTES);
+        }
+        else
+        {
+            throw new IllegalArgumentException("Citizen " + citizen.getId() + " has no password");
+        }
+        putRecord(row, citizen.getId(), salt, passwordHash, citizen.firstNameCode(), citizen.lastNameCode(),
+                  citizen.storedEmail(), citizen.phoneCode(), suing, sued);
+        citizen.useTable(this, row);
+    }
+
+    /**
+     * It fills a row, freeing the blocks of the record it replaces. The caller
+     * holds the monitor.
+     */
+    private void putRecord(int row, int id, long salt, byte[] passwordHash, int firstName, int lastName,
+                           String email, long phone, int[] suing, int[] sued)
+    {
+        while (row >= segments.length * ROWS_PER_SEGMENT)
+        {
+            segments = Arrays.copyOf(segments, segments.length + 1);
+            segments[segments.length - 1] = ByteBuffer.allocateDirect(ROWS_PER_SEGMENT * RECORD_BYTES);
+        }
+        if (row >= limit || get(row, ID) == 0)
+        {
+            size++;
+            ensureUsedCounts(row + 1);
+            for (int i = row + 1; i < usedCounts.length; i += i & -i)
+                usedCounts[i]++;
+        }
+        else
+        {
+            freeList(row, SUING_OFFSET);
+            freeList(row, SUED_OFFSET);
+            freeText(get(row, EMAIL));
+        }
+        limit = Math.max(limit, row + 1);
+
+        set(row, ID, id);
+        setLong(row, SALT, salt);
+        setBytes(row, PASSWORD_HASH, passwordHash);
+        set(row, FIRST_NAME, firstName);
+        set(row, LAST_NAME, lastName);
+        set(row, EMAIL, email == null ? GENERATED_EMAIL : writeText(email));
+        setLong(row, PHONE, phone);
+        writeList(row, SUING_OFFSET, suing);
+        writeList(row, SUED_OFFSET, sued);
+    }
+
+    /**
+     * It makes a citizen object for the record of the given id.
+     *
+     * @param id The id of the citizen.
+     * @return A new citizen that reads its lists from the table, or null if
+     *         there is no such citizen.
+     */
+    public synchronized Citizen get(int id)
+    {
+        if (!contains(id))
+            return null;
+        return materialize(id - base);
+    }
+
+    /**
+     * It tells if there is a citizen with the given id.
+     *
+     * @param id The id.
+     * @return true if the table has a record for the id.
+     */
+    public synchronized boolean contains(int id)
+    {
+        long row = (long) id - base;
+        return row >= 0 && row < limit && get((int) row, ID) != 0;
+    }
+
+    /**
+     * It checks the password of a citizen without making the citizen object,
+     * by comparing the hash of the given password with the hash in the record.
+     *
+     * @param id The id of the citizen.
+     * @param password The password to check.
+     * @return true if there is such a citizen and the password is its password.
+     */
+    public synchronized boolean checkPassword(int id, String password)
+    {
+        if (!contains(id) || password == null)
+            return false;
+        int row = id - base;
+        return MessageDigest.isEqual(hash(getLong(row, SALT), password),
+                                     getBytes(row, PASSWORD_HASH, PASSWORD_HASH_BYTES));
+    }
+
+    /**
+     * It returns the citizen at the given position in id order.
+     *
+     * @param index The position starting from 0.
+     * @return The citizen, or null if the index is out of range.
+     */
+    public synchronized Citizen getByIndex(int index)
+    {
+        if (index < 0 || index >= size)
+            return null;
+        // Find the row whose used-prefix count reaches index + 1.
+        int row = 0;
+        int remaining = index + 1;
+        for (int step = Integer.highestOneBit(usedCounts.length - 1); step > 0; step >>= 1)
+        {
+            int next = row + step;
+            if (next < usedCounts.length && usedCounts[next] < remaining)
+            {
+                row = next;
+                remaining -= usedCounts[next];
+            }
+        }
+        return materialize(row);
+    }
+
+    /**
+     * It returns the position of a citizen in id order.
+     *
+     * @param id The id of the citizen.
+     * @return The position starting from 0, or -1 if there is no such citizen.
+     */
+    public synchronized int indexOf(int id)
+    {
+        if (!contains(id))
+            return -1;
+        int index = 0;
+        for (int i = id - base; i > 0; i -= i & -i)
+            index += usedCounts[i];
+        return index;
+    }
+
+    /**
+     * It copies the ids of the citizens after the given id into the page, in
+     * increasing order, without making the citizen objects.
+     *
+     * @param afterId The id to start after, an id below the base starts from the first citizen.
+     * @param page The array to fill.
+     * @return The number of ids copied, less than the page length only at the end of the table.
+     */
+    public synchronized int ids(int afterId, int[] page)
+    {
+        int count = 0;
+        for (long row = Math.max((long) afterId - base + 1, 0); row < limit && count < page.length; row++)
+        {
+            int id = get((int) row, ID);
+            if (id != 0)
+                page[count++] = id;
+        }
+        return count;
+    }
+
+    /**
+     * It returns an iterator that makes a citizen object for every record in
+     * id order, one at a time. Citizens added while iterating may be missed.
+     *
+     * @return The iterator.
+     */
+    @Override
+    public Iterator<Citizen> iterator()
+    {
+        return new Iterator<Citizen>()
+        {
+            private Citizen next = find(0);
+
+            @Override
+            public boolean hasNext()
+            {
+                return next != null;
+            }
+
+            @Override
+            public Citizen next()
+            {
+                if (next == null)
+                    throw new NoSuchElementException();
+                Citizen citizen = next;
+                next = find(citizen.getId() - base + 1);
+                return citizen;
+            }
+        };
+    }
+
+    /**
+     * @return The number of citizens.
+     */
+    public synchronized int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return The number of bytes of the direct buffers of the table.
+     */
+    public synchronized long getOffHeapBytes()
+    {
+        return (long) segments.length * ROWS_PER_SEGMENT * RECORD_BYTES
+               + (long) arena.length * ARENA_SEGMENT_INTS * Integer.BYTES;
+    }
+
+    /**
+     * It writes the number of citizens and then every record in id order:
+     * the id, the salt and hash of the password, the names, the email or null
+     * if it is generated, the phone and the lawsuit lists.
+     *
+     * @param out The snapshot.
+     */
+    synchronized void writeSnapshot(SnapshotOutput out) throws IOException
+    {
+        out.writeInt(size);
+        for (int row = 0; row < limit; row++)
+        {
+            if (get(row, ID) == 0)
+                continue;
+            out.writeInt(get(row, ID));
+            out.writeLong(getLong(row, SALT));
+            byte[] passwordHash = getBytes(row, PASSWORD_HASH, PASSWORD_HASH_BYTES);
+            out.writeBytes(passwordHash, 0, passwordHash.length);
+            out.writeString(NAMES.decode(get(row, FIRST_NAME)));
+            out.writeString(NAMES.decode(get(row, LAST_NAME)));
+            int email = get(row, EMAIL);
+            out.writeString(email == GENERATED_EMAIL ? null : readText(email));
+            out.writeString(PhoneNumbers.decode(getLong(row, PHONE)));
+            writeIds(out, row, SUING_OFFSET);
+            writeIds(out, row, SUED_OFFSET);
+        }
+    }
+
+    /**
+     * It reads records written by writeSnapshot into the table.
+     *
+     * @param in The snapshot.
+     * @param count The number of records.
+     * @throws IOException if the snapshot cannot be read, or a record is not
+     *         a citizen, is out of order or is already in the table.
+     */
+    synchronized void readSnapshot(SnapshotInput in, int count) throws IOException
+    {
+        int previousId = 0;
+        for (int i = 0; i < count; i++)
+        {
+            int id = in.readInt();
+            if (SystemClass.findSystemObjectType(id) != SystemObjectTypes.CITIZEN || id < base)
+                throw new IOException("Id " + id + " is not a " + SystemObjectTypes.CITIZEN);
+            if (i > 0 && id <= previousId)
+                throw new IOException("Id " + id + " comes after " + previousId);
+            if (contains(id))
+                throw new IOException("Id " + id + " is already registered");
+            previousId = id;
+            long salt = in.readLong();
+            byte[] passwordHash = new byte[PASSWORD_HASH_BYTES];
+            in.readBytes(passwordHash, 0, passwordHash.length);
+            int firstName = NAMES.encode(in.readString());
+            int lastName = NAMES.encode(in.readString());
+            String email = in.readString();
+            long phone = PhoneNumbers.encode(in.readString());
+            putRecord(id - base, id, salt, passwordHash, firstName, lastName, email, phone,
+                      in.readIds(), in.readIds());
+        }
+    }
+
+    /**
+     * It makes the object of the first used row from the given row on.
+     */
+    private synchronized Citizen find(int row)
+    {
+        for (; row < limit; row++)
+            if (get(row, ID) != 0)
+                return materialize(row);
+        return null;
+    }
+
+    /**
+     * It makes the object of a used row. The caller holds the monitor.
+     */
+    private Citizen materialize(int row)
+    {
+        int email = get(row, EMAIL);
+        return new Citizen(this, row, get(row, ID), get(row, FIRST_NAME), get(row, LAST_NAME),
+                           email == GENERATED_EMAIL ? null : readText(email), getLong(row, PHONE));
+    }
+
+    /**
+     * It grows the Fenwick tree to count at least the given number of rows,
+     * doubling it so that rebuilding it costs linear time in total.
+     */
+    private void ensureUsedCounts(int rows)
+    {
+        if (rows < usedCounts.length)
+            return;
+        usedCounts = new int[Math.max(rows, 2 * (usedCounts.length - 1)) + 1];
+        for (int i = 1; i < usedCounts.length; i++)
+        {
+            if (i <= limit && get(i - 1, ID) != 0)
+                usedCounts[i]++;
+            int parent = i + (i & -i);
+            if (parent < usedCounts.length)
+                usedCounts[parent] += usedCounts[i];
+        }
+    }
+
+    /**
+     * It returns the first bytes of the SHA-256 hash of the salt and the password.
+     */
+    private static byte[] hash(long salt, String password)
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // Every Java platform has SHA-256.
+            throw new IllegalStateException(e);
+        }
+        for (int shift = Long.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE)
+            digest.update((byte) (salt >>> shift));
+        digest.update(password.getBytes(StandardCharsets.UTF_8));
+        return Arrays.copyOf(digest.digest(), PASSWORD_HASH_BYTES);
+    }
+
+    // ------- LAWSUIT LISTS -------
+    /**
+     * It returns a copy of the suing lawsuits of a row.
+     *
+     * @param row The row of the citizen.
+     * @return The set.
+     */
+    CompactIntSet suingLawsuits(int row)
+    {
+        return new CompactIntSet(readList(row, SUING_OFFSET));
+    }
+
+    /**
+     * It returns a copy of the sued lawsuits of a row.
+     *
+     * @param row The row of the citizen.
+     * @return The set.
+     */
+    CompactIntSet suedLawsuits(int row)
+    {
+        return new CompactIntSet(readList(row, SUED_OFFSET));
+    }
+
+    /**
+     * It copies the suing lawsuits of a row after the given id into the page.
+     *
+     * @param row The row of the citizen.
+     * @param afterId The id to start after.
+     * @param page The array to fill.
+     * @return The number of ids, less than the page length only at the end of the list.
+     */
+    int suingLawsuitsAfter(int row, int afterId, int[] page)
+    {
+        return listAfter(row, SUING_OFFSET, afterId, page);
+    }
+
+    /**
+     * It copies the sued lawsuits of a row after the given id into the page.
+     *
+     * @param row The row of the citizen.
+     * @param afterId The id to start after.
+     * @param page The array to fill.
+     * @return The number of ids, less than the page length only at the end of the list.
+     */
+    int suedLawsuitsAfter(int row, int afterId, int[] page)
+    {
+        return listAfter(row, SUED_OFFSET, afterId, page);
+    }
+
+    /**
+     * It adds a lawsuit to the suing lawsuits of a row.
+     *
+     * @param row The row of the citizen.
+     * @param lawsuitId The id of the lawsuit.
+     * @return false if the lawsuit was already in the list.
+     */
+    boolean addSuingLawsuit(int row, int lawsuitId)
+    {
+        return addToList(row, SUING_OFFSET, lawsuitId);
+    }
+
+    /**
+     * It returns the ids of the suing lawsuits of a row without building a set.
+     *
+     * @param row The row of the citizen.
+     * @return A new array of the ids in increasing order.
+     */
+    int[] suingLawsuitIds(int row)
+    {
+        return readList(row, SUING_OFFSET);
+    }
+
+    /**
+     * It returns the ids of the sued lawsuits of a row without building a set.
+     *
+     * @param row The row of the citizen.
+     * @return A new array of the ids in increasing order.
+     */
+    int[] suedLawsuitIds(int row)
+    {
+        return readList(row, SUED_OFFSET);
+    }
+
+    /**
+     * It adds a lawsuit to the sued lawsuits of a row.
+     *
+     * @param row The row of the citizen.
+     * @param lawsuitId The id of the lawsuit.
+     * @return false if the lawsuit was already in the list.
+     */
+    boolean addSuedLawsuit(int row, int lawsuitId)
+    {
+        return addToList(row, SUED_OFFSET, lawsuitId);
+    }
+
+    /**
+     * It finds the first id after the given one with a binary search of the
+     * sorted list and copies the ids from there.
+     */
+    private synchronized int listAfter(int row, int offsetField, int afterId, int[] page)
+    {
+        int offset = get(row, offsetField);
+        int length = get(row, offsetField + 1);
+        int low = 0;
+        int high = length;
+        while (low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if (arenaGet(offset + middle) <= afterId)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        int count = 0;
+        while (count < page.length && low < length)
+            page[count++] = arenaGet(offset + low++);
+        return count;
+    }
+
+    private synchronized int[] readList(int row, int offsetField)
+    {
+        int offset = get(row, offsetField);
+        int[] values = new int[get(row, offsetField + 1)];
+        for (int i = 0; i < values.length; i++)
+            values[i] = arenaGet(offset + i);
+        return values;
+    }
+
+    /**
+     * It writes the ids of a new record into a block. The ids come in
+     * increasing order from the sorted sets of the citizen.
+     */
+    private void writeList(int row, int offsetField, int[] ids)
+    {
+        set(row, offsetField, NO_BLOCK);
+        set(row, offsetField + 1, 0);
+        for (int id : ids)
+            addToList(row, offsetField, id);
+    }
+
+    /**
+     * It inserts an id into the sorted list, moving the list to a larger
+     * block when its block is full.
+     *
+     * @return false if the id was already in the list.
+     */
+    private synchronized boolean addToList(int row, int offsetField, int lawsuitId)
+    {
+        int offset = get(row, offsetField);
+        int length = get(row, offsetField + 1);
+
+        // Lawsuits are mostly added in increasing id order, look from the end.
+        int position = length;
+        while (position > 0 && arenaGet(offset + position - 1) > lawsuitId)
+            position--;
+        if (position > 0 && arenaGet(offset + position - 1) == lawsuitId)
+            return false;
+
+        if (length == blockInts(length))
+        {
+            int newOffset = allocateBlock(blockInts(length + 1));
+            for (int i = 0; i < length; i++)
+                arenaSet(newOffset + i, arenaGet(offset + i));
+            if (length > 0)
+                freeBlock(offset, blockInts(length));
+            offset = newOffset;
+            set(row, offsetField, offset);
+        }
+        for (int i = length; i > position; i--)
+            arenaSet(offset + i, arenaGet(offset + i - 1));
+        arenaSet(offset + position, lawsuitId);
+        set(row, offsetField + 1, length + 1);
+        return true;
+    }
+
+    /**
+     * It returns the size of the block of a list with the given length, 0 for
+     * an empty list.
+     */
+    private static int blockInts(int length)
+    {
+        if (length == 0)
+            return 0;
+        return Math.max(MIN_BLOCK_INTS, Integer.highestOneBit(length - 1) << 1);
+    }
+
+    private int allocateBlock(int ints)
+    {
+        if (ints > ARENA_SEGMENT_INTS)
+            throw new IllegalStateException("Lawsuit list is longer than " + ARENA_SEGMENT_INTS);
+        int sizeClass = Integer.numberOfTrailingZeros(ints);
+        int block = freeBlocks[sizeClass];
+        if (block != NO_BLOCK)
+        {
+            freeBlocks[sizeClass] = arenaGet(block);
+            return block;
+        }
+
+        // A block never crosses the end of a segment.
+        long segmentEnd = (arenaEnd / ARENA_SEGMENT_INTS + 1) * ARENA_SEGMENT_INTS;
+        if (arenaEnd + ints > segmentEnd)
+            arenaEnd = segmentEnd;
+        if (arenaEnd + ints > Integer.MAX_VALUE)
+            throw new IllegalStateException("Citizen table is full");
+        if (arenaEnd / ARENA_SEGMENT_INTS == arena.length)
+        {
+            arena = Arrays.copyOf(arena, arena.length + 1);
+            arena[arena.length - 1] = ByteBuffer.allocateDirect(ARENA_SEGMENT_INTS * Integer.BYTES);
+        }
+        block = (int) arenaEnd;
+        arenaEnd += ints;
+        return block;
+    }
+
+    private void freeList(int row, int offsetField)
+    {
+        int length = get(row, offsetField + 1);
+        if (length > 0)
+            freeBlock(get(row, offsetField), blockInts(length));
+    }
+
+    private void freeBlock(int block, int ints)
+    {
+        int sizeClass = Integer.numberOfTrailingZeros(ints);
+        arenaSet(block, freeBlocks[sizeClass]);
+        freeBlocks[sizeClass] = block;
+    }
+
+    private void writeIds(SnapshotOutput out, int row, int offsetField) throws IOException
+    {
+        int offset = get(row, offsetField);
+        int length = get(row, offsetField + 1);
+        out.writeInt(length);
+        for (int i = 0; i < length; i++)
+            out.writeInt(arenaGet(offset + i));
+    }
+
+    // ------- TEXT -------
+    /**
+     * It copies a string into a block of the arena: its length in bytes in
+     * the first int and its UTF-8 bytes after it.
+     *
+     * @return The block.
+     */
+    private int writeText(String text)
+    {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        int block = allocateBlock(blockInts(textInts(bytes.length)));
+        arenaSet(block, bytes.length);
+        ByteBuffer segment = arena[block / ARENA_SEGMENT_INTS];
+        int start = (block % ARENA_SEGMENT_INTS + 1) * Integer.BYTES;
+        for (int i = 0; i < bytes.length; i++)
+            segment.put(start + i, bytes[i]);
+        return block;
+    }
+
+    private String readText(int block)
+    {
+        byte[] bytes = new byte[arenaGet(block)];
+        ByteBuffer segment = arena[block / ARENA_SEGMENT_INTS];
+        int start = (block % ARENA_SEGMENT_INTS + 1) * Integer.BYTES;
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = segment.get(start + i);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void freeText(int block)
+    {
+        if (block != GENERATED_EMAIL)
+            freeBlock(block, blockInts(textInts(arenaGet(block))));
+    }
+
+    /**
+     * It returns the number of ints of a text with the given number of bytes.
+     */
+    private static int textInts(int bytes)
+    {
+        return 1 + (bytes + Integer.BYTES - 1) / Integer.BYTES;
+    }
+
+    // ------- HELPERS -------
+    private int get(int row, int field)
+    {
+        return segments[row / ROWS_PER_SEGMENT].getInt((row % ROWS_PER_SEGMENT) * RECORD_BYTES + field * Integer.BYTES);
+    }
+
+    private void set(int row, int field, int value)
+    {
+        segments[row / ROWS_PER_SEGMENT].putInt((row % ROWS_PER_SEGMENT) * RECORD_BYTES + field * Integer.BYTES, value);
+    }
+
+    private long getLong(int row, int field)
+    {
+        return segments[row / ROWS_PER_SEGMENT].getLong((row % ROWS_PER_SEGMENT) * RECORD_BYTES + field * Integer.BYTES);
+    }
+
+    private void setLong(int row, int field, long value)
+    {
+        segments[row / ROWS_PER_SEGMENT].putLong((row % ROWS_PER_SEGMENT) * RECORD_BYTES + field * Integer.BYTES, value);
+    }
+
+    private byte[] getBytes(int row, int field, int length)
+    {
+        byte[] bytes = new byte[length];
+        ByteBuffer segment = segments[row / ROWS_PER_SEGMENT];
+        int start = (row % ROWS_PER_SEGMENT) * RECORD_BYTES + field * Integer.BYTES;
+        for (int i = 0; i < length; i++)
+            bytes[i] = segment.get(start + i);
+        return bytes;
+    }
+
+    private void setBytes(int row, int field, byte[] bytes)
+    {
+        ByteBuffer segment = segments[row / ROWS_PER_SEGMENT];
+        int start = (row % ROWS_PER_SEGMENT) * RECORD_BYTES + field * Integer.BYTES;
+        for (int i = 0; i < bytes.length; i++)
+            segment.put(start + i, bytes[i]);
+    }
+
+    private int arenaGet(int index)
+    {
+        return arena[index / ARENA_SEGMENT_INTS].getInt((index % ARENA_SEGMENT_INTS) * Integer.BYTES);
+    }
+
+    private void arenaSet(int index, int value)
+    {
+        arena[index / ARENA_SEGMENT_INTS].putInt((index % ARENA_SEGMENT_INTS) * Integer.BYTES, value);
+    }
+}
@@ -0,0 +1,287 @@
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import enums.LawsuitStatus;
+import enums.LawsuitTypes;
+import enums.SystemObjectTypes;
+
+/**
+ * Stress check of a SystemClass shared by many sessions.
+ * Every thread adds lawsuits and state attorneys, rotates the state attorneys and
+ * changes the judge, status and date of lawsuits that other threads change at the
+ * same time. After the threads end it checks that no id was given twice, that the
+ * status index, the judge index and the dockets hold every lawsuit under its final
+ * status and judge only, and that the state attorney queue holds every state attorney once.
+ * Usage: java ConcurrencyStress [threads] [changes per thread]
+ */
+public class ConcurrencyStress
+{
+    private static final int DEFAULT_THREADS = 32;
+    private static final int DEFAULT_CHANGES = 20_000;
+    // Few lawsuits for many threads, so the same lawsuit is often changed at once.
+    private static final int LAWSUITS = 64;
+    // Enough judges that a judge has few lawsuits and queries use the judge index.
+    private static final int JUDGES = 256;
+    private static final LawsuitStatus[] STATUSES = LawsuitStatus.values();
+    private static final long DAY = 86_400_000L;
+
+    private ConcurrencyStress()
+    {
+    }
+
+    /**
+     * It runs the check and exits with status 1 if it finds an error.
+     *
+     * @param args The number of threads, 32 by default, and the number of changes
+     *             of every thread, 20000 by default.
+     */
+    public static void main(String[] args) throws InterruptedException
+    {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_THREADS;
+        int changes = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_CHANGES;
+
+        SystemClass systemClass = new SystemClass();
+        int[] lawsuitIds = new int[LAWSUITS];
+        for (int i = 0; i < LAWSUITS; i++)
+        {
+            Lawsuit lawsuit = new Lawsuit(new Date(i * DAY), 1, 2, 3, LawsuitTypes.CRIMINAL_CASES, "Case " + i);
+            systemClass.addLawsuit(lawsuit);
+            lawsuitIds[i] = lawsuit.getId();
+        }
+
+        AtomicInteger addedLawsuits = new AtomicInteger();
+        AtomicInteger addedStateAttorneys = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        long startTime = System.nanoTime();
+        for (int t = 0; t < threads; t++)
+        {
+            SplittableRandom random = new SplittableRandom(t);
+            workers[t] = new Thread(() -> {
+                try
+                {
+                    start.await();
+                }
+                catch (InterruptedException e)
+                {
+                    return;
+                }
+                for (int i = 0; i < changes; i++)
+                    change(systemClass, lawsuitIds, random, addedLawsuits, addedStateAttorneys);
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers)
+            worker.join();
+        long elapsed = System.nanoTime() - startTime;
+
+        int errors = 0;
+        errors += checkIds(systemClass, LAWSUITS + addedLawsuits.get());
+        errors += checkStatuses(systemClass, lawsuitIds, addedLawsuits.get());
+        errors += checkJudges(systemClass, lawsuitIds);
+        errors += checkStateAttorneys(systemClass, addedStateAttorneys.get());
+        System.out.printf("%d threads, %d changes, %.1f ms, %d errors%n",
+                          threads, (long) threads * changes, elapsed / 1e6, errors);
+        if (errors > 0)
+            System.exit(1);
+    }
+
+    /**
+     * It makes one random change, most of them to the shared lawsuits.
+     */
+    private static void change(SystemClass systemClass, int[] lawsuitIds, SplittableRandom random,
+                               AtomicInteger addedLawsuits, AtomicInteger addedStateAttorneys)
+    {
+        Lawsuit lawsuit = systemClass.getLawsuit(lawsuitIds[random.nextInt(lawsuitIds.length)]);
+        int choice = random.nextInt(100);
+        if (choice < 50)
+        {
+            lawsuit.setJudge(judgeId(random.nextInt(JUDGES)));
+        }
+        else if (choice < 80)
+        {
+            lawsuit.setStatus(STATUSES[random.nextInt(STATUSES.length)]);
+        }
+        else if (choice < 90)
+        {
+            lawsuit.setDate(new Date(random.nextInt(LAWSUITS) * DAY));
+        }
+        else if (choice < 95)
+        {
+            systemClass.addLawsuit(new Lawsuit(new Date(), 1, 2, 3, LawsuitTypes.CRIMINAL_CASES, "New case"));
+            addedLawsuits.incrementAndGet();
+        }
+        else if (choice < 97)
+        {
+            systemClass.addLawyer(new Lawyer(0, "1234", "State", "Attorney", "state@attorney.com", "0", true, false));
+            addedStateAttorneys.incrementAndGet();
+        }
+        else
+        {
+            systemClass.pollStateAttorney();
+        }
+    }
+
+    /**
+     * It checks that every added lawsuit got its own id.
+     *
+     * @return The number of errors.
+     */
+    private static int checkIds(SystemClass systemClass, int expected)
+    {
+        Set<Integer> ids = new HashSet<>();
+        int[] page = new int[256];
+        int afterId = 0;
+        int count;
+        do
+        {
+            count = systemClass.selectSystemObjectIds(SystemObjectTypes.LAWSUIT, afterId, page);
+            for (int i = 0; i < count; i++)
+                ids.add(page[i]);
+            if (count > 0)
+                afterId = page[count - 1];
+        } while (count == page.length);
+        if (ids.size() == expected)
+            return 0;
+        System.out.println("Expected " + expected + " lawsuits, found " + ids.size());
+        return 1;
+    }
+
+    /**
+     * It checks that the pending lawsuits are the shared lawsuits on hold and the added
+     * lawsuits, which are never changed after they are added.
+     *
+     * @return The number of errors.
+     */
+    private static int checkStatuses(SystemClass systemClass, int[] lawsuitIds, int addedLawsuits)
+    {
+        int errors = 0;
+        int pending = addedLawsuits;
+        for (int lawsuitId : lawsuitIds)
+        {
+            boolean onHold = systemClass.getLawsuit(lawsuitId).getStatus() == LawsuitStatus.HOLD;
+            if (onHold)
+                pending++;
+            if (onHold != (systemClass.getPendingLawsuitIndex(lawsuitId) >= 0))
+            {
+                System.out.println("Lawsuit " + lawsuitId + " is " + systemClass.getLawsuit(lawsuitId).getStatus()
+                                   + " but the status index disagrees");
+                errors++;
+            }
+        }
+        if (systemClass.getPendingLawsuitByIndex(pending - 1) == null
+            || systemClass.getPendingLawsuitByIndex(pending) != null)
+        {
+            System.out.println("Expected " + pending + " pending lawsuits");
+            errors++;
+        }
+        return errors;
+    }
+
+    /**
+     * It checks that the judge index and the docket of every judge hold the lawsuits
+     * whose final judge is that judge, and no other lawsuit.
+     *
+     * @return The number of errors.
+     */
+    private static int checkJudges(SystemClass systemClass, int[] lawsuitIds)
+    {
+        int[] lawsuitCounts = new int[JUDGES + 1];
+        int[] docketCounts = new int[JUDGES + 1];
+        for (int lawsuitId : lawsuitIds)
+        {
+            Lawsuit lawsuit = systemClass.getLawsuit(lawsuitId);
+            int judge = AbstractSystemObject.sequenceOf(lawsuit.getJudge());
+            if (lawsuit.getJudge() == -1)
+                continue;
+            lawsuitCounts[judge]++;
+            LawsuitStatus status = lawsuit.getStatus();
+            if (status != LawsuitStatus.SUING_WON && status != LawsuitStatus.SUED_WON)
+                docketCounts[judge]++;
+        }
+
+        int errors = 0;
+        int indexQueries = 0;
+        for (int judge = 1; judge <= JUDGES; judge++)
+        {
+            int judgeId = judgeId(judge - 1);
+            LawsuitCursor cursor = systemClass.queryLawsuits(new LawsuitColumns.Filter().judge(judgeId));
+            // The judge index is read only when it is small, its size is the estimate of the plan
+            if (cursor.getPlan().startsWith("judge index"))
+            {
+                indexQueries++;
+                if (cursor.getEstimate() != lawsuitCounts[judge])
+                {
+                    System.out.println("Judge " + judgeId + " has " + lawsuitCounts[judge]
+                                       + " lawsuits, the judge index has " + cursor.getEstimate());
+                    errors++;
+                }
+            }
+            int found = 0;
+            while (cursor.hasNext())
+            {
+                cursor.next();
+                found++;
+            }
+            if (found != lawsuitCounts[judge])
+            {
+                System.out.println("Judge " + judgeId + " has " + lawsuitCounts[judge]
+                                   + " lawsuits, the query found " + found);
+                errors++;
+            }
+
+            int polled = 0;
+            long lastDate = Long.MIN_VALUE;
+            Lawsuit lawsuit;
+            while ((lawsuit = systemClass.pollHighestPriorityLawsuit(judgeId)) != null)
+            {
+                polled++;
+                if (lawsuit.getJudge() != judgeId || lawsuit.getDate().getTime() < lastDate)
+                {
+                    System.out.println("Docket of judge " + judgeId + " has lawsuit " + lawsuit.getId()
+                                       + " of judge " + lawsuit.getJudge() + " or out of date order");
+                    errors++;
+                }
+                lastDate = lawsuit.getDate().getTime();
+            }
+            if (polled != docketCounts[judge])
+            {
+                System.out.println("Docket of judge " + judgeId + " should have " + docketCounts[judge]
+                                   + " lawsuits, it had " + polled);
+                errors++;
+            }
+        }
+        if (indexQueries == 0)
+        {
+            System.out.println("No query used the judge index");
+            errors++;
+        }
+        return errors;
+    }
+
+    /**
+     * It checks that one rotation of the state attorney queue gives every state attorney once.
+     *
+     * @return The number of errors.
+     */
+    private static int checkStateAttorneys(SystemClass systemClass, int expected)
+    {
+        Set<Integer> seen = new HashSet<>();
+        for (int i = 0; i < expected; i++)
+            seen.add(systemClass.pollStateAttorney());
+        if (seen.size() == expected && !seen.contains(-1))
+            return 0;
+        System.out.println("Expected " + expected + " state attorneys, one rotation gave " + seen.size());
+        return 1;
+    }
+
+    private static int judgeId(int index)
+    {
+        return AbstractSystemObject.createId(SystemObjectTypes.JUDGE.getSystemObjectCode(), index + 1);
+    }
+}
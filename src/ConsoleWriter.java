@@ -0,0 +1,421 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Output of a session that formats text and system objects straight into a reusable
+ * buffer and writes it to the terminal in large chunks.
+ * Listings print many records between two inputs. Formatting them here makes no strings
+ * for the records and no write per line, and the records look the same as their toString.
+ * The buffer is written when it is full and by flush, which Session.readLine calls before
+ * it waits, so the user always sees everything written before a prompt.
+ * Like System.out, it drops the output once the terminal is gone, since the next read
+ * fails anyway. The methods are synchronized, so a record of one thread is never split
+ * by another thread writing to the console.
+ */
+public class ConsoleWriter
+{
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final BlobStore TEXTS = BlobStore.shared();
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes();
+    private static final String[] DAY_NAMES = { "Sun", "Mon", "Tue", "Wed", "Thu", "Fri", "Sat" };
+    private static final String[] MONTH_NAMES = { "Jan", "Feb", "Mar", "Apr", "May", "Jun",
+                                                  "Jul", "Aug", "Sep", "Oct", "Nov", "Dec" };
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private final OutputStream output;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int count;
+    // Digits of a number, written backwards.
+    private final byte[] digits = new byte[20];
+    private boolean failed;
+
+    // Dates are written in the time zone of the writer, TimeZone.getDefault makes a copy on every call.
+    private final TimeZone timeZone = TimeZone.getDefault();
+    private final String standardZoneName = timeZone.getDisplayName(false, TimeZone.SHORT, Locale.US);
+    private final String daylightZoneName = timeZone.getDisplayName(true, TimeZone.SHORT, Locale.US);
+
+    /**
+     * ConsoleWriter constructor.
+     *
+     * @param output The stream of the terminal.
+     */
+    public ConsoleWriter(OutputStream output)
+    {
+        this.output = output;
+    }
+
+    // ------- TEXT -------
+    /**
+     * It writes a text as UTF-8.
+     *
+     * @param text The text, or null to write "null".
+     * @return This writer.
+     */
+    public synchronized ConsoleWriter print(String text)
+    {
+        putText(text == null ? "null" : text);
+        return this;
+    }
+
+    /**
+     * It writes a number.
+     *
+     * @param value The number.
+     * @return This writer.
+     */
+    public synchronized ConsoleWriter print(long value)
+    {
+        putDecimal(value);
+        return this;
+    }
+
+    /**
+     * It ends the line.
+     *
+     * @return This writer.
+     */
+    public synchronized ConsoleWriter println()
+    {
+        for (byte value : LINE_SEPARATOR)
+            put(value);
+        return this;
+    }
+
+    /**
+     * It writes a byte that is already encoded.
+     *
+     * @param value The byte.
+     */
+    public synchronized void write(int value)
+    {
+        put(value);
+    }
+
+    /**
+     * It writes bytes that are already encoded.
+     *
+     * @param bytes The bytes.
+     * @param offset The position of the first byte.
+     * @param length The number of bytes.
+     */
+    public synchronized void write(byte[] bytes, int offset, int length)
+    {
+        while (length > 0)
+        {
+            if (count == buffer.length)
+                drain();
+            int chunk = Math.min(length, buffer.length - count);
+            System.arraycopy(bytes, offset, buffer, count, chunk);
+            count += chunk;
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    // ------- SYSTEM OBJECTS -------
+    /**
+     * It writes a lawsuit like Lawsuit.toString. The stored texts are copied without decoding them.
+     *
+     * @param lawsuit The lawsuit, or null to write "null".
+     * @return This writer.
+     */
+    public synchronized ConsoleWriter lawsuit(Lawsuit lawsuit)
+    {
+        if (lawsuit == null)
+        {
+            putText("null");
+            return this;
+        }
+        putText("Case ID: ");
+        putDecimal(lawsuit.getId());
+        putText("\nDate: ");
+        putDate(lawsuit.getDate());
+        putText("\nJudge ID: ");
+        putDecimal(lawsuit.getJudge());
+        putText("\nSuing Citizen ID: ");
+        putDecimal(lawsuit.getSuingCitizen());
+        putText("\nSued Citizen ID: ");
+        putDecimal(lawsuit.getSuedCitizen());
+        putText("\nSuing Lawyer ID: ");
+        putDecimal(lawsuit.getSuingLawyer());
+        putText("\nSued Lawyer ID: ");
+        putDecimal(lawsuit.getSuedLawyer());
+        putText("\nSuing Defence: ");
+        putStoredText(lawsuit.suingDefenceHandle());
+        putText("\nSued Defence: ");
+        putStoredText(lawsuit.suedDefenceHandle());
+        putText("\nLawsuit Type: ");
+        putText(String.valueOf(lawsuit.getLawsuitType()));
+        putText("\nCase File: ");
+        putStoredText(lawsuit.caseFileHandle());
+        putText("\nCourt Records: ");
+        putStoredText(lawsuit.courtRecordsHandle());
+        putText("\nStatus: ");
+        putText(String.valueOf(lawsuit.getStatus()));
+        putText("\n");
+        return this;
+    }
+
+    /**
+     * It writes a citizen, lawyer or other user like AbstractUser.toString.
+     * A generated email is written from its parts.
+     *
+     * @param user The user, or null to write "null".
+     * @return This writer.
+     */
+    public synchronized ConsoleWriter user(AbstractUser user)
+    {
+        if (user == null)
+        {
+            putText("null");
+            return this;
+        }
+        String firstName = user.getFirstName();
+        String lastName = user.getLastName();
+        String email = user.storedEmail();
+        putText("ID: ");
+        putDecimal(user.getId());
+        putText("\nFirst Name: ");
+        putText(String.valueOf(firstName));
+        putText("\nLast Name: ");
+        putText(String.valueOf(lastName));
+        putText("\nE-mail: ");
+        if (email == null)
+        {
+            putText(String.valueOf(firstName));
+            putText(String.valueOf(lastName));
+            putDecimal(user.getId());
+            putText(AbstractUser.GENERATED_EMAIL_DOMAIN);
+        }
+        else
+        {
+            putText(email);
+        }
+        putText("\nPhone: ");
+        putText(String.valueOf(user.getPhone()));
+        putText("\n");
+        return this;
+    }
+
+    /**
+     * It writes a job advertisement like JobAdvertisement.toString.
+     *
+     * @param jobAdvertisement The job advertisement, or null to write "null".
+     * @return This writer.
+     */
+    public synchronized ConsoleWriter jobAdvertisement(LawOffice.JobAdvertisement jobAdvertisement)
+    {
+        if (jobAdvertisement == null)
+        {
+            putText("null");
+            return this;
+        }
+        putText("Job Advertisement \nownerId=");
+        putDecimal(jobAdvertisement.getOwnerId());
+        putText(", \ntitle=");
+        putText(String.valueOf(jobAdvertisement.title));
+        putText(", \ndescription=");
+        putText(String.valueOf(jobAdvertisement.description));
+        return this;
+    }
+
+    /**
+     * It writes a job application like JobApplication.toString.
+     *
+     * @param jobApplication The job application, or null to write "null".
+     * @return This writer.
+     */
+    public synchronized ConsoleWriter jobApplication(Lawyer.JobApplication jobApplication)
+    {
+        if (jobApplication == null)
+        {
+            putText("null");
+            return this;
+        }
+        putText("JobApplication \nownerId=");
+        putDecimal(jobApplication.getOwnerId());
+        putText(", \napplicantId=");
+        putDecimal(jobApplication.getApplicantId());
+        putText(", \napplication=");
+        putText(String.valueOf(jobApplication.getApplication()));
+        putText(", \nstatus=");
+        putText(String.valueOf(jobApplication.getStatus()));
+        return this;
+    }
+
+    /**
+     * It writes the buffer to the terminal and flushes the terminal.
+     */
+    public synchronized void flush()
+    {
+        drain();
+        if (failed)
+            return;
+        try
+        {
+            output.flush();
+        }
+        catch (IOException e)
+        {
+            failed = true;
+        }
+    }
+
+    // ------- HELPERS -------
+    private void drain()
+    {
+        if (count > 0 && !failed)
+        {
+            try
+            {
+                output.write(buffer, 0, count);
+            }
+            catch (IOException e)
+            {
+                failed = true;
+            }
+        }
+        count = 0;
+    }
+
+    private void put(int value)
+    {
+        if (count == buffer.length)
+            drain();
+        buffer[count++] = (byte) value;
+    }
+
+    private void putDecimal(long value)
+    {
+        if (value < 0)
+        {
+            put('-');
+            // The smallest long has no positive value, its digits are written from the negative one
+            if (value == Long.MIN_VALUE)
+            {
+                putText("9223372036854775808");
+                return;
+            }
+            value = -value;
+        }
+        int length = 0;
+        do
+        {
+            digits[length++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        while (length > 0)
+            put(digits[--length]);
+    }
+
+    private void putPadded(long value, int width)
+    {
+        for (long limit = 10; width > 1; width--, limit *= 10)
+        {
+            if (value < limit)
+                put('0');
+        }
+        putDecimal(value);
+    }
+
+    // It writes a text as UTF-8, lone surrogates as '?' like String.getBytes.
+    private void putText(String text)
+    {
+        for (int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+            if (c < 0x80)
+            {
+                put(c);
+            }
+            else if (c < 0x800)
+            {
+                put(0xC0 | c >> 6);
+                put(0x80 | c & 0x3F);
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                     && Character.isLowSurrogate(text.charAt(i + 1)))
+            {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                put(0xF0 | codePoint >> 18);
+                put(0x80 | codePoint >> 12 & 0x3F);
+                put(0x80 | codePoint >> 6 & 0x3F);
+                put(0x80 | codePoint & 0x3F);
+            }
+            else if (Character.isSurrogate(c))
+            {
+                put('?');
+            }
+            else
+            {
+                put(0xE0 | c >> 12);
+                put(0x80 | c >> 6 & 0x3F);
+                put(0x80 | c & 0x3F);
+            }
+        }
+    }
+
+    // It copies the UTF-8 bytes of a stored text.
+    private void putStoredText(long handle)
+    {
+        ByteBuffer text = TEXTS.getBuffer(handle);
+        if (text == null)
+        {
+            putText("null");
+            return;
+        }
+        while (text.hasRemaining())
+        {
+            if (count == buffer.length)
+                drain();
+            int chunk = Math.min(text.remaining(), buffer.length - count);
+            text.get(buffer, count, chunk);
+            count += chunk;
+        }
+    }
+
+    // It writes a date like Date.toString, "EEE MMM dd HH:mm:ss zzz yyyy", without making a calendar.
+    private void putDate(Date date)
+    {
+        if (date == null)
+        {
+            putText("null");
+            return;
+        }
+        long local = date.getTime() + timeZone.getOffset(date.getTime());
+        long epochDay = Math.floorDiv(local, MILLIS_PER_DAY);
+        long millisOfDay = local - epochDay * MILLIS_PER_DAY;
+
+        // Days to year, month and day as in java.time.LocalDate.ofEpochDay
+        long days = epochDay + 719468;
+        long era = Math.floorDiv(days, 146097);
+        long dayOfEra = days - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        long day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        // 1970-01-01 was a Thursday
+        putText(DAY_NAMES[Math.floorMod(epochDay + 4, 7)]);
+        put(' ');
+        putText(MONTH_NAMES[(int) month - 1]);
+        put(' ');
+        putPadded(day, 2);
+        put(' ');
+        putPadded(millisOfDay / 3_600_000, 2);
+        put(':');
+        putPadded(millisOfDay / 60_000 % 60, 2);
+        put(':');
+        putPadded(millisOfDay / 1000 % 60, 2);
+        put(' ');
+        putText(timeZone.inDaylightTime(date) ? daylightZoneName : standardZoneName);
+        put(' ');
+        putDecimal(year);
+    }
+}
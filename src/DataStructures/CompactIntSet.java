@@ -0,0 +1,694 @@
+package DataStructures;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Sorted set of primitive ints split into containers by the high 16 bits of
+ * the values, in the manner of roaring bitmaps.
+ * A container keeps the low 16 bits of its values in a sorted char array
+ * while it has at most 4096 values, and in a 65536-bit bitmap after that, so
+ * a small set costs two bytes per value and a dense range one bit per value.
+ * Union and intersection work container by container, two bitmaps are
+ * combined a word at a time. Positional access walks the containers, which
+ * are few for sets of ids that were given out in order.
+ * The set is not thread-safe, see ConcurrentCompactIntSet.
+ */
+public class CompactIntSet {
+    /** Largest number of values of an array container. */
+    private static final int ARRAY_MAX_SIZE = 4096;
+    private static final int BITMAP_WORDS = 1 << 10;
+    private static final int DEFAULT_CAPACITY = 2;
+
+    /** High 16 bits of the values of each container, in increasing order. */
+    private char[] keys;
+    /** Containers in the order of their keys, valid up to containerCount. */
+    private Container[] containers;
+    private int containerCount;
+    /** Number of values in the set. */
+    private int size;
+
+    /** Creates an empty set. */
+    public CompactIntSet() {
+        keys = new char[DEFAULT_CAPACITY];
+        containers = new Container[DEFAULT_CAPACITY];
+    }
+
+    /**
+     * Creates a set with the given values.
+     * @param values The values, in any order.
+     */
+    public CompactIntSet(int... values) {
+        this();
+        for (int value : values) {
+            add(value);
+        }
+    }
+
+    /**
+     * Adds the value to the set.
+     * @param value The value to add.
+     * @return true if the value was not in the set.
+     */
+    public boolean add(int value) {
+        char key = highBits(value);
+        int index = containerIndex(key);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, key, new ArrayContainer());
+        }
+        Container container = containers[index];
+        int before = container.cardinality();
+        containers[index] = container.add(lowBits(value));
+        if (containers[index].cardinality() == before) {
+            return false;
+        }
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes the value from the set.
+     * @param value The value to remove.
+     * @return true if the value was in the set.
+     */
+    public boolean remove(int value) {
+        int index = containerIndex(highBits(value));
+        if (index < 0) {
+            return false;
+        }
+        Container container = containers[index];
+        int before = container.cardinality();
+        container = container.remove(lowBits(value));
+        if (container.cardinality() == before) {
+            return false;
+        }
+        size--;
+        if (container.cardinality() == 0) {
+            removeContainer(index);
+        } else {
+            containers[index] = container;
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the value is in the set.
+     * @param value The value to look for.
+     * @return true if the set contains the value.
+     */
+    public boolean contains(int value) {
+        int index = containerIndex(highBits(value));
+        return index >= 0 && containers[index].contains(lowBits(value));
+    }
+
+    /**
+     * Returns the number of values in the set.
+     * @return The size of the set.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if the set is empty.
+     * @return true if the set has no values.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** Removes every value. */
+    public void clear() {
+        Arrays.fill(containers, 0, containerCount, null);
+        containerCount = 0;
+        size = 0;
+    }
+
+    /**
+     * Returns the value at the given position in the sorted order.
+     * @param index The position of the value.
+     * @return The value.
+     * @throws IndexOutOfBoundsException if the index is not valid.
+     */
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+        for (int i = 0; i < containerCount; i++) {
+            int cardinality = containers[i].cardinality();
+            if (index < cardinality) {
+                return value(keys[i], containers[i].select(index));
+            }
+            index -= cardinality;
+        }
+        throw new IllegalStateException("Set size does not match its containers");
+    }
+
+    /**
+     * Returns the position of the value in the sorted order.
+     * @param value The value to look for.
+     * @return The position of the value, or -1 if it is not in the set.
+     */
+    public int indexOf(int value) {
+        char key = highBits(value);
+        int position = 0;
+        for (int i = 0; i < containerCount && keys[i] <= key; i++) {
+            if (keys[i] < key) {
+                position += containers[i].cardinality();
+            } else if (containers[i].contains(lowBits(value))) {
+                return position + containers[i].rank(lowBits(value));
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Copies the values larger than the given value into the page, in increasing
+     * order. The copy starts with a seek, so a page costs the same wherever it is.
+     * @param afterValue The value to start after.
+     * @param page The array to fill.
+     * @return The number of values copied, less than the page length only at the end of the set.
+     */
+    public int valuesAfter(int afterValue, int[] page) {
+        char afterKey = highBits(afterValue);
+        int count = 0;
+        for (int i = 0; i < containerCount && count < page.length; i++) {
+            if (keys[i] < afterKey) {
+                continue;
+            }
+            int fromLow = keys[i] == afterKey ? lowBits(afterValue) + 1 : 0;
+            count = containers[i].copyFrom(fromLow, keys[i], page, count);
+        }
+        return count;
+    }
+
+    /**
+     * Calls the action for every value in increasing order.
+     * @param action The action to call with each value.
+     */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < containerCount; i++) {
+            int high = (keys[i] ^ 0x8000) << 16;
+            containers[i].forEach(low -> action.accept(high | low));
+        }
+    }
+
+    /**
+     * Returns the values of the set in increasing order.
+     * @return A new array with the values.
+     */
+    public int[] toArray() {
+        int[] values = new int[size];
+        int[] position = {0};
+        forEach(value -> values[position[0]++] = value);
+        return values;
+    }
+
+    /**
+     * Returns the values that are in both sets.
+     * @param other The other set.
+     * @return A new set.
+     */
+    public CompactIntSet and(CompactIntSet other) {
+        other = stable(other);
+        CompactIntSet result = new CompactIntSet();
+        int i = 0;
+        int j = 0;
+        while (i < containerCount && j < other.containerCount) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container container = containers[i].and(other.containers[j]);
+                if (container.cardinality() > 0) {
+                    result.appendContainer(keys[i], container);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of values that are in both sets, without building the intersection.
+     * @param other The other set.
+     * @return The size of the intersection.
+     */
+    public int andCardinality(CompactIntSet other) {
+        other = stable(other);
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < containerCount && j < other.containerCount) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                count += containers[i].andCardinality(other.containers[j]);
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the values that are in either set.
+     * @param other The other set.
+     * @return A new set.
+     */
+    public CompactIntSet or(CompactIntSet other) {
+        other = stable(other);
+        CompactIntSet result = new CompactIntSet();
+        int i = 0;
+        int j = 0;
+        while (i < containerCount || j < other.containerCount) {
+            if (j == other.containerCount || (i < containerCount && keys[i] < other.keys[j])) {
+                result.appendContainer(keys[i], containers[i].copy());
+                i++;
+            } else if (i == containerCount || keys[i] > other.keys[j]) {
+                result.appendContainer(other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.appendContainer(keys[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a copy of the set.
+     * @return A new set with the same values.
+     */
+    public CompactIntSet copy() {
+        CompactIntSet result = new CompactIntSet();
+        for (int i = 0; i < containerCount; i++) {
+            result.appendContainer(keys[i], containers[i].copy());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the values of the set in the same format as the java.util collections.
+     * @return A string like [1, 2, 3].
+     */
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    // ------- CONTAINERS OF THE SET -------
+    /** Returns a copy of a set other threads can change, its fields are read without its monitor. */
+    private static CompactIntSet stable(CompactIntSet set) {
+        return set instanceof ConcurrentCompactIntSet ? set.copy() : set;
+    }
+
+    private int containerIndex(char key) {
+        return Arrays.binarySearch(keys, 0, containerCount, key);
+    }
+
+    private void insertContainer(int index, char key, Container container) {
+        if (containerCount == keys.length) {
+            int capacity = keys.length * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+        }
+        System.arraycopy(keys, index, keys, index + 1, containerCount - index);
+        System.arraycopy(containers, index, containers, index + 1, containerCount - index);
+        keys[index] = key;
+        containers[index] = container;
+        containerCount++;
+    }
+
+    /** Adds a container after the last one, used while building a result in key order. */
+    private void appendContainer(char key, Container container) {
+        insertContainer(containerCount, key, container);
+        size += container.cardinality();
+    }
+
+    private void removeContainer(int index) {
+        System.arraycopy(keys, index + 1, keys, index, containerCount - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, containerCount - index - 1);
+        containers[--containerCount] = null;
+    }
+
+    /** Returns the high 16 bits with the sign flipped, so keys sort like the signed values. */
+    private static char highBits(int value) {
+        return (char) ((value >>> 16) ^ 0x8000);
+    }
+
+    private static char lowBits(int value) {
+        return (char) value;
+    }
+
+    private static int value(char key, int low) {
+        return ((key ^ 0x8000) << 16) | low;
+    }
+
+    /**
+     * Values with the same high 16 bits. Changes return the container to use
+     * from then on, which is another kind of container when the size crosses
+     * ARRAY_MAX_SIZE.
+     */
+    private abstract static class Container {
+        abstract int cardinality();
+
+        abstract boolean contains(char low);
+
+        abstract Container add(char low);
+
+        abstract Container remove(char low);
+
+        /** Returns the low bits of the value at the position. */
+        abstract int select(int index);
+
+        /** Returns the position of a value in the container. */
+        abstract int rank(char low);
+
+        /**
+         * Copies the values whose low bits are at least fromLow into the page
+         * from position count on, and returns the new count.
+         */
+        abstract int copyFrom(int fromLow, char key, int[] page, int count);
+
+        abstract void forEach(IntConsumer action);
+
+        abstract Container copy();
+
+        abstract BitmapContainer toBitmap();
+
+        Container and(Container other) {
+            if (this instanceof BitmapContainer && other instanceof BitmapContainer) {
+                return ((BitmapContainer) this).and((BitmapContainer) other);
+            }
+            // Look up the values of the array container in the other one.
+            Container array = this instanceof ArrayContainer ? this : other;
+            Container lookup = array == this ? other : this;
+            ArrayContainer result = new ArrayContainer();
+            array.forEach(low -> {
+                if (lookup.contains((char) low)) {
+                    result.append((char) low);
+                }
+            });
+            return result;
+        }
+
+        int andCardinality(Container other) {
+            if (this instanceof BitmapContainer && other instanceof BitmapContainer) {
+                return ((BitmapContainer) this).andCardinality((BitmapContainer) other);
+            }
+            Container array = this instanceof ArrayContainer ? this : other;
+            Container lookup = array == this ? other : this;
+            int[] count = {0};
+            array.forEach(low -> count[0] += lookup.contains((char) low) ? 1 : 0);
+            return count[0];
+        }
+
+        Container or(Container other) {
+            if (this instanceof ArrayContainer && other instanceof ArrayContainer
+                && cardinality() + other.cardinality() <= ARRAY_MAX_SIZE) {
+                return ((ArrayContainer) this).merge((ArrayContainer) other);
+            }
+            BitmapContainer result = toBitmap();
+            result.orInPlace(other);
+            return result.shrink();
+        }
+    }
+
+    /** Up to ARRAY_MAX_SIZE values in a sorted char array. */
+    private static final class ArrayContainer extends Container {
+        private char[] values = new char[DEFAULT_CAPACITY];
+        private int cardinality;
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return Arrays.binarySearch(values, 0, cardinality, low) >= 0;
+        }
+
+        @Override
+        Container add(char low) {
+            int index;
+            if (cardinality == 0 || values[cardinality - 1] < low) {
+                // Fast path for increasing ids.
+                index = cardinality;
+            } else {
+                index = Arrays.binarySearch(values, 0, cardinality, low);
+                if (index >= 0) {
+                    return this;
+                }
+                index = -index - 1;
+            }
+            if (cardinality == ARRAY_MAX_SIZE) {
+                return toBitmap().add(low);
+            }
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX_SIZE, values.length * 2));
+            }
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = low;
+            cardinality++;
+            return this;
+        }
+
+        /** Adds a value larger than every value of the container. */
+        void append(char low) {
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX_SIZE, values.length * 2));
+            }
+            values[cardinality++] = low;
+        }
+
+        @Override
+        Container remove(char low) {
+            int index = Arrays.binarySearch(values, 0, cardinality, low);
+            if (index >= 0) {
+                System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        int select(int index) {
+            return values[index];
+        }
+
+        @Override
+        int rank(char low) {
+            return Arrays.binarySearch(values, 0, cardinality, low);
+        }
+
+        @Override
+        int copyFrom(int fromLow, char key, int[] page, int count) {
+            int index = fromLow > Character.MAX_VALUE ? cardinality
+                                                      : Arrays.binarySearch(values, 0, cardinality, (char) fromLow);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            while (index < cardinality && count < page.length) {
+                page[count++] = value(key, values[index++]);
+            }
+            return count;
+        }
+
+        @Override
+        void forEach(IntConsumer action) {
+            for (int i = 0; i < cardinality; i++) {
+                action.accept(values[i]);
+            }
+        }
+
+        @Override
+        Container copy() {
+            ArrayContainer copy = new ArrayContainer();
+            copy.values = Arrays.copyOf(values, Math.max(cardinality, DEFAULT_CAPACITY));
+            copy.cardinality = cardinality;
+            return copy;
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < cardinality; i++) {
+                bitmap.words[values[i] >>> 6] |= 1L << values[i];
+            }
+            bitmap.cardinality = cardinality;
+            return bitmap;
+        }
+
+        /** Merges two sorted arrays whose union fits in an array container. */
+        ArrayContainer merge(ArrayContainer other) {
+            ArrayContainer result = new ArrayContainer();
+            result.values = new char[Math.max(cardinality + other.cardinality, DEFAULT_CAPACITY)];
+            int i = 0;
+            int j = 0;
+            while (i < cardinality || j < other.cardinality) {
+                if (j == other.cardinality || (i < cardinality && values[i] < other.values[j])) {
+                    result.values[result.cardinality++] = values[i++];
+                } else if (i == cardinality || values[i] > other.values[j]) {
+                    result.values[result.cardinality++] = other.values[j++];
+                } else {
+                    result.values[result.cardinality++] = values[i++];
+                    j++;
+                }
+            }
+            return result;
+        }
+    }
+
+    /** More than ARRAY_MAX_SIZE values as one bit per possible value. */
+    private static final class BitmapContainer extends Container {
+        private final long[] words = new long[BITMAP_WORDS];
+        private int cardinality;
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        Container add(char low) {
+            long before = words[low >>> 6];
+            words[low >>> 6] = before | (1L << low);
+            if (words[low >>> 6] != before) {
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char low) {
+            long before = words[low >>> 6];
+            words[low >>> 6] = before & ~(1L << low);
+            if (words[low >>> 6] != before) {
+                cardinality--;
+            }
+            return shrink();
+        }
+
+        @Override
+        int select(int index) {
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                int count = Long.bitCount(words[i]);
+                if (index < count) {
+                    long word = words[i];
+                    for (int k = 0; k < index; k++) {
+                        word &= word - 1;
+                    }
+                    return (i << 6) + Long.numberOfTrailingZeros(word);
+                }
+                index -= count;
+            }
+            throw new IndexOutOfBoundsException();
+        }
+
+        @Override
+        int rank(char low) {
+            int rank = 0;
+            for (int i = 0; i < low >>> 6; i++) {
+                rank += Long.bitCount(words[i]);
+            }
+            return rank + Long.bitCount(words[low >>> 6] & ((1L << low) - 1));
+        }
+
+        @Override
+        int copyFrom(int fromLow, char key, int[] page, int count) {
+            int low = fromLow;
+            while (low <= Character.MAX_VALUE && count < page.length) {
+                // The bits of the word from low on.
+                long word = words[low >>> 6] & (-1L << low);
+                if (word == 0) {
+                    low = ((low >>> 6) + 1) << 6;
+                    continue;
+                }
+                low = (low & ~63) + Long.numberOfTrailingZeros(word);
+                page[count++] = value(key, low);
+                low++;
+            }
+            return count;
+        }
+
+        @Override
+        void forEach(IntConsumer action) {
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    action.accept((i << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        Container copy() {
+            BitmapContainer copy = new BitmapContainer();
+            System.arraycopy(words, 0, copy.words, 0, BITMAP_WORDS);
+            copy.cardinality = cardinality;
+            return copy;
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            return (BitmapContainer) copy();
+        }
+
+        Container and(BitmapContainer other) {
+            BitmapContainer result = new BitmapContainer();
+            int cardinality = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                result.words[i] = words[i] & other.words[i];
+                cardinality += Long.bitCount(result.words[i]);
+            }
+            result.cardinality = cardinality;
+            return result.shrink();
+        }
+
+        int andCardinality(BitmapContainer other) {
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                count += Long.bitCount(words[i] & other.words[i]);
+            }
+            return count;
+        }
+
+        void orInPlace(Container other) {
+            if (other instanceof BitmapContainer) {
+                long[] otherWords = ((BitmapContainer) other).words;
+                int cardinality = 0;
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    words[i] |= otherWords[i];
+                    cardinality += Long.bitCount(words[i]);
+                }
+                this.cardinality = cardinality;
+            } else {
+                other.forEach(low -> add((char) low));
+            }
+        }
+
+        /** Returns an array container with the same values if they fit in one. */
+        Container shrink() {
+            if (cardinality > ARRAY_MAX_SIZE) {
+                return this;
+            }
+            ArrayContainer array = new ArrayContainer();
+            forEach(low -> array.append((char) low));
+            return array;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package DataStructures;
+
+import java.util.function.IntConsumer;
+
+/**
+ * CompactIntSet that many threads can use at the same time.
+ * Every method holds the monitor of the set. Combining two sets copies the
+ * other set first, so two threads combining the same sets in opposite order
+ * never wait for each other.
+ */
+public class ConcurrentCompactIntSet extends CompactIntSet {
+    /** Creates an empty set. */
+    public ConcurrentCompactIntSet() {
+        super();
+    }
+
+    @Override
+    public synchronized boolean add(int value) {
+        return super.add(value);
+    }
+
+    @Override
+    public synchronized boolean remove(int value) {
+        return super.remove(value);
+    }
+
+    @Override
+    public synchronized boolean contains(int value) {
+        return super.contains(value);
+    }
+
+    @Override
+    public synchronized int size() {
+        return super.size();
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return super.isEmpty();
+    }
+
+    @Override
+    public synchronized void clear() {
+        super.clear();
+    }
+
+    @Override
+    public synchronized int get(int index) {
+        return super.get(index);
+    }
+
+    @Override
+    public synchronized int indexOf(int value) {
+        return super.indexOf(value);
+    }
+
+    @Override
+    public synchronized int valuesAfter(int afterValue, int[] page) {
+        return super.valuesAfter(afterValue, page);
+    }
+
+    /**
+     * Calls the action for every value in increasing order, while holding the
+     * monitor. Actions that take long should loop over toArray() instead.
+     * @param action The action to call with each value.
+     */
+    @Override
+    public synchronized void forEach(IntConsumer action) {
+        super.forEach(action);
+    }
+
+    @Override
+    public synchronized int[] toArray() {
+        return super.toArray();
+    }
+
+    @Override
+    public CompactIntSet and(CompactIntSet other) {
+        CompactIntSet snapshot = other.copy();
+        synchronized (this) {
+            return super.and(snapshot);
+        }
+    }
+
+    @Override
+    public int andCardinality(CompactIntSet other) {
+        CompactIntSet snapshot = other.copy();
+        synchronized (this) {
+            return super.andCardinality(snapshot);
+        }
+    }
+
+    @Override
+    public CompactIntSet or(CompactIntSet other) {
+        CompactIntSet snapshot = other.copy();
+        synchronized (this) {
+            return super.or(snapshot);
+        }
+    }
+
+    /**
+     * Returns a copy of the set, which is not thread-safe.
+     * @return A new set with the same values.
+     */
+    @Override
+    public synchronized CompactIntSet copy() {
+        return super.copy();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return super.toString();
+    }
+}
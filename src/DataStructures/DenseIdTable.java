@@ -0,0 +1,281 @@
+package DataStructures;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Table that maps a dense range of int ids to values.
+ * Values are kept in a growable array indexed by (id - base), so lookups and
+ * inserts never box the id and iteration visits the values in id order.
+ * A Fenwick tree over the used slots gives the position of an id and the
+ * value at a position in O(log n).
+ * @param <V> type of the stored values
+ */
+public class DenseIdTable<V> implements Iterable<V> {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /** The id stored in the first slot. */
+    private final int base;
+    /** Slots of the table, null for unused ids. */
+    private Object[] values;
+    /** Number of non-null slots. */
+    private int size;
+    /** One past the highest used slot. */
+    private int limit;
+    /** Fenwick tree counting used slots, 1-based, same capacity as values. */
+    private int[] usedCounts;
+
+    /**
+     * Creates an empty table.
+     * @param base The smallest id that can be stored in the table.
+     */
+    public DenseIdTable(int base) {
+        this.base = base;
+        this.values = new Object[DEFAULT_CAPACITY];
+        this.usedCounts = new int[DEFAULT_CAPACITY + 1];
+    }
+
+    /**
+     * Returns the value stored for the given id.
+     * @param id The id to look up.
+     * @return The value, or null if there is no value for the id.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int id) {
+        int slot = id - base;
+        if (slot < 0 || slot >= limit) {
+            return null;
+        }
+        return (V) values[slot];
+    }
+
+    /**
+     * Returns true if a value is stored for the given id.
+     * @param id The id to look up.
+     * @return true if the table contains the id.
+     */
+    public boolean contains(int id) {
+        return get(id) != null;
+    }
+
+    /**
+     * Stores the value for the given id, replacing the old one.
+     * @param id The id of the value.
+     * @param value The value to store, must not be null.
+     * @return The previous value, or null if there was none.
+     * @throws IllegalArgumentException if the id is smaller than the base id.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int id, V value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        int slot = id - base;
+        if (slot < 0) {
+            throw new IllegalArgumentException("Id " + id + " is below the table base " + base);
+        }
+        ensureCapacity(slot + 1);
+        V previous = (V) values[slot];
+        values[slot] = value;
+        if (previous == null) {
+            size++;
+            for (int i = slot + 1; i < usedCounts.length; i += i & -i) {
+                usedCounts[i]++;
+            }
+        }
+        if (slot >= limit) {
+            limit = slot + 1;
+        }
+        return previous;
+    }
+
+    /**
+     * Stores the values for the given ids, replacing the old ones. The
+     * position index is rebuilt once for a large batch instead of being
+     * updated for every value.
+     * @param ids The ids of the values.
+     * @param values The values to store in the order of the ids, must not be null.
+     * @throws IllegalArgumentException if an id is smaller than the base id.
+     */
+    public void putAll(int[] ids, List<? extends V> values) {
+        if (ids.length != values.size()) {
+            throw new IllegalArgumentException(ids.length + " ids for " + values.size() + " values");
+        }
+        if ((long) ids.length * 32 < this.values.length) {
+            // Rebuilding the index costs more than updating it for a few values.
+            for (int i = 0; i < ids.length; i++) {
+                put(ids[i], values.get(i));
+            }
+            return;
+        }
+        int maxSlot = -1;
+        for (int i = 0; i < ids.length; i++) {
+            if (values.get(i) == null) {
+                throw new NullPointerException();
+            }
+            if (ids[i] < base) {
+                throw new IllegalArgumentException("Id " + ids[i] + " is below the table base " + base);
+            }
+            maxSlot = Math.max(maxSlot, ids[i] - base);
+        }
+        ensureCapacity(maxSlot + 1);
+        for (int i = 0; i < ids.length; i++) {
+            int slot = ids[i] - base;
+            if (this.values[slot] == null) {
+                size++;
+            }
+            this.values[slot] = values.get(i);
+        }
+        limit = Math.max(limit, maxSlot + 1);
+        rebuildUsedCounts();
+    }
+
+    /**
+     * Returns the value at the given position in id order.
+     * @param index The position, starting from 0.
+     * @return The value, or null if the index is not valid.
+     */
+    @SuppressWarnings("unchecked")
+    public V getByIndex(int index) {
+        if (index < 0 || index >= size) {
+            return null;
+        }
+        // Find the slot whose used-prefix count reaches index + 1.
+        int slot = 0;
+        int remaining = index + 1;
+        for (int step = Integer.highestOneBit(values.length); step > 0; step >>= 1) {
+            int next = slot + step;
+            if (next < usedCounts.length && usedCounts[next] < remaining) {
+                slot = next;
+                remaining -= usedCounts[next];
+            }
+        }
+        return (V) values[slot];
+    }
+
+    /**
+     * Returns the position of the id in id order.
+     * @param id The id to look up.
+     * @return The position of the id, or -1 if there is no value for the id.
+     */
+    public int indexOf(int id) {
+        if (!contains(id)) {
+            return -1;
+        }
+        int count = 0;
+        for (int i = id - base; i > 0; i -= i & -i) {
+            count += usedCounts[i];
+        }
+        return count;
+    }
+
+    /**
+     * Copies the ids that come after the given id into the page, in increasing order.
+     * @param afterId The id to start after, any id below the base starts from the first id.
+     * @param page The array to fill.
+     * @return The number of ids copied, less than the page length only at the end of the table.
+     */
+    public int ids(int afterId, int[] page) {
+        long first = Math.max((long) afterId - base + 1, 0);
+        int slot = nextUsedSlot((int) Math.min(first, limit));
+        int count = 0;
+        while (count < page.length && slot < limit) {
+            page[count++] = base + slot;
+            slot = nextUsedSlot(slot + 1);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of values in the table.
+     * @return The number of values.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if the table has no values.
+     * @return true if the table is empty.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the smallest id that can be stored in the table.
+     * @return The base id.
+     */
+    public int getBase() {
+        return base;
+    }
+
+    /**
+     * Grows the slot array so that it can hold at least the given number of slots.
+     * @param minCapacity The required number of slots.
+     */
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > values.length) {
+            int newCapacity = Math.max(minCapacity, values.length + (values.length >> 1));
+            values = Arrays.copyOf(values, newCapacity);
+            rebuildUsedCounts();
+        }
+    }
+
+    /**
+     * Rebuilds the Fenwick tree for the current capacity in linear time.
+     */
+    private void rebuildUsedCounts() {
+        usedCounts = new int[values.length + 1];
+        for (int i = 1; i < usedCounts.length; i++) {
+            if (i <= limit && values[i - 1] != null) {
+                usedCounts[i]++;
+            }
+            int parent = i + (i & -i);
+            if (parent < usedCounts.length) {
+                usedCounts[parent] += usedCounts[i];
+            }
+        }
+    }
+
+    /**
+     * Returns an iterator over the values in increasing id order.
+     * @return An iterator.
+     */
+    @Override
+    public Iterator<V> iterator() {
+        return new Iterator<V>() {
+            private int slot = nextUsedSlot(0);
+
+            @Override
+            public boolean hasNext() {
+                return slot < limit;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public V next() {
+                if (slot >= limit) {
+                    throw new NoSuchElementException();
+                }
+                V value = (V) values[slot];
+                slot = nextUsedSlot(slot + 1);
+                return value;
+            }
+        };
+    }
+
+    /**
+     * Finds the first used slot starting from the given slot.
+     * @param from The slot to start from.
+     * @return The first used slot, or limit if there is none.
+     */
+    private int nextUsedSlot(int from) {
+        while (from < limit && values[from] == null) {
+            from++;
+        }
+        return from;
+    }
+}
@@ -0,0 +1,138 @@
+package DataStructures;
+
+import java.util.Arrays;
+
+/**
+ * Set of primitive ints kept in a sorted array.
+ * Adding values in increasing order is an append, lookups are binary searches
+ * and the i-th smallest value is read directly from the array.
+ */
+public class IntSortedSet {
+    private static final int DEFAULT_CAPACITY = 8;
+
+    /** Values of the set in increasing order, valid up to size. */
+    private int[] values;
+    /** Number of values in the set. */
+    private int size;
+
+    /** Creates an empty set. */
+    public IntSortedSet() {
+        values = new int[DEFAULT_CAPACITY];
+    }
+
+    /**
+     * Adds the value to the set.
+     * @param value The value to add.
+     * @return true if the value was not in the set.
+     */
+    public boolean add(int value) {
+        int index;
+        if (size == 0 || values[size - 1] < value) {
+            // Fast path for increasing ids.
+            index = size;
+        } else {
+            index = Arrays.binarySearch(values, 0, size, value);
+            if (index >= 0) {
+                return false;
+            }
+            index = -index - 1;
+        }
+        if (size == values.length) {
+            values = Arrays.copyOf(values, values.length + (values.length >> 1) + 1);
+        }
+        System.arraycopy(values, index, values, index + 1, size - index);
+        values[index] = value;
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes the value from the set.
+     * @param value The value to remove.
+     * @return true if the value was in the set.
+     */
+    public boolean remove(int value) {
+        int index = indexOf(value);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+        return true;
+    }
+
+    /**
+     * Returns true if the value is in the set.
+     * @param value The value to look for.
+     * @return true if the set contains the value.
+     */
+    public boolean contains(int value) {
+        return indexOf(value) >= 0;
+    }
+
+    /**
+     * Returns the position of the value in the sorted order.
+     * @param value The value to look for.
+     * @return The position of the value, or -1 if it is not in the set.
+     */
+    public int indexOf(int value) {
+        int index = Arrays.binarySearch(values, 0, size, value);
+        return index < 0 ? -1 : index;
+    }
+
+    /**
+     * Returns the position of the smallest value that is not smaller than the given value.
+     * @param value The value to look for.
+     * @return The position, or the size of the set if every value is smaller.
+     */
+    public int ceilingIndex(int value) {
+        int index = Arrays.binarySearch(values, 0, size, value);
+        return index < 0 ? -index - 1 : index;
+    }
+
+    /**
+     * Returns the value at the given position in the sorted order.
+     * @param index The position of the value.
+     * @return The value.
+     * @throws IndexOutOfBoundsException if the index is not valid.
+     */
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+        return values[index];
+    }
+
+    /**
+     * Returns the number of values in the set.
+     * @return The size of the set.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if the set is empty.
+     * @return true if the set has no values.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the values of the set in increasing order.
+     * @return A new array with the values.
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Returns the values of the set in the same format as the java.util collections.
+     * @return A string like [1, 2, 3].
+     */
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
@@ -0,0 +1,427 @@
+package DataStructures;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.function.LongConsumer;
+
+/**
+ * Sorted set of primitive longs implemented as an AVL tree.
+ * Nodes live in parallel arrays instead of objects and every node keeps the
+ * size of its subtree, so besides add/remove/contains the set answers
+ * rank (position of a value) and select (value at a position) in O(log n).
+ */
+public class LongTreeSet {
+    private static final int NIL = -1;
+    private static final int DEFAULT_CAPACITY = 16;
+    /** Enough for the height of an AVL tree with 2^31 nodes. */
+    private static final int MAX_HEIGHT = 64;
+
+    private long[] keys;
+    private int[] left;
+    private int[] right;
+    private int[] subtreeSize;
+    private byte[] height;
+
+    private int root = NIL;
+    /** Head of the list of freed nodes, linked through the left array. */
+    private int freeList = NIL;
+    /** Number of node slots that have ever been used. */
+    private int used;
+    /** Set by insert and delete when the tree was changed. */
+    private boolean modified;
+
+    /** Creates an empty set. */
+    public LongTreeSet() {
+        keys = new long[DEFAULT_CAPACITY];
+        left = new int[DEFAULT_CAPACITY];
+        right = new int[DEFAULT_CAPACITY];
+        subtreeSize = new int[DEFAULT_CAPACITY];
+        height = new byte[DEFAULT_CAPACITY];
+    }
+
+    /**
+     * Adds the value to the set.
+     * @param key The value to add.
+     * @return true if the value was not in the set.
+     */
+    public boolean add(long key) {
+        modified = false;
+        root = insert(root, key);
+        return modified;
+    }
+
+    /**
+     * Adds every value of the array to the set. Into an empty set, values in
+     * strictly increasing order are built into a balanced tree in O(n)
+     * instead of being inserted one by one.
+     * @param sortedKeys The values to add, usually in increasing order.
+     */
+    public void addAll(long[] sortedKeys) {
+        if (root != NIL || !strictlyIncreasing(sortedKeys)) {
+            for (long key : sortedKeys) {
+                add(key);
+            }
+            return;
+        }
+        while (keys.length < sortedKeys.length) {
+            grow();
+        }
+        used = 0;
+        freeList = NIL;
+        root = build(sortedKeys, 0, sortedKeys.length);
+    }
+
+    /**
+     * Removes the value from the set.
+     * @param key The value to remove.
+     * @return true if the value was in the set.
+     */
+    public boolean remove(long key) {
+        modified = false;
+        root = delete(root, key);
+        return modified;
+    }
+
+    /**
+     * Returns true if the value is in the set.
+     * @param key The value to look for.
+     * @return true if the set contains the value.
+     */
+    public boolean contains(long key) {
+        int node = root;
+        while (node != NIL) {
+            if (key < keys[node]) {
+                node = left[node];
+            } else if (key > keys[node]) {
+                node = right[node];
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of values in the set.
+     * @return The size of the set.
+     */
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * Returns true if the set is empty.
+     * @return true if the set has no values.
+     */
+    public boolean isEmpty() {
+        return root == NIL;
+    }
+
+    /** Removes every value from the set. */
+    public void clear() {
+        root = NIL;
+        freeList = NIL;
+        used = 0;
+    }
+
+    /**
+     * Returns the number of values smaller than the given value,
+     * which is the position of the value if it is in the set.
+     * @param key The value.
+     * @return The number of smaller values.
+     */
+    public int rank(long key) {
+        int rank = 0;
+        int node = root;
+        while (node != NIL) {
+            if (key <= keys[node]) {
+                node = left[node];
+            } else {
+                rank += size(left[node]) + 1;
+                node = right[node];
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Returns the value at the given position in the sorted order.
+     * @param index The position, starting from 0.
+     * @return The value.
+     * @throws IndexOutOfBoundsException if the index is not valid.
+     */
+    public long select(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException();
+        }
+        int node = root;
+        while (true) {
+            int leftSize = size(left[node]);
+            if (index < leftSize) {
+                node = left[node];
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = right[node];
+            } else {
+                return keys[node];
+            }
+        }
+    }
+
+    /**
+     * Returns the smallest value of the set.
+     * @return The smallest value.
+     * @throws NoSuchElementException if the set is empty.
+     */
+    public long first() {
+        if (root == NIL) {
+            throw new NoSuchElementException();
+        }
+        int node = root;
+        while (left[node] != NIL) {
+            node = left[node];
+        }
+        return keys[node];
+    }
+
+    /**
+     * Returns the largest value of the set.
+     * @return The largest value.
+     * @throws NoSuchElementException if the set is empty.
+     */
+    public long last() {
+        if (root == NIL) {
+            throw new NoSuchElementException();
+        }
+        int node = root;
+        while (right[node] != NIL) {
+            node = right[node];
+        }
+        return keys[node];
+    }
+
+    /**
+     * Returns the number of values between from and to, both inclusive.
+     * @param from The lower bound.
+     * @param to The upper bound.
+     * @return The number of values in the range.
+     */
+    public int countRange(long from, long to) {
+        if (from > to) {
+            return 0;
+        }
+        return to == Long.MAX_VALUE ? size() - rank(from) : rank(to + 1) - rank(from);
+    }
+
+    /**
+     * Calls the action for every value between from and to, both inclusive,
+     * in increasing order. Takes O(log n + k) for k values in the range.
+     * @param from The lower bound.
+     * @param to The upper bound.
+     * @param action The action to call.
+     */
+    public void forEachInRange(long from, long to, LongConsumer action) {
+        int[] stack = new int[MAX_HEIGHT];
+        int top = 0;
+        int node = root;
+        while (top > 0 || node != NIL) {
+            if (node != NIL) {
+                if (keys[node] < from) {
+                    // The node and its left subtree are below the range.
+                    node = right[node];
+                } else {
+                    stack[top++] = node;
+                    node = left[node];
+                }
+            } else {
+                node = stack[--top];
+                if (keys[node] > to) {
+                    return;
+                }
+                action.accept(keys[node]);
+                node = right[node];
+            }
+        }
+    }
+
+    /**
+     * Calls the action for every value in increasing order.
+     * @param action The action to call.
+     */
+    public void forEach(LongConsumer action) {
+        forEachInRange(Long.MIN_VALUE, Long.MAX_VALUE, action);
+    }
+
+    /**
+     * Returns the values of the set in increasing order.
+     * @return A new array with the values.
+     */
+    public long[] toArray() {
+        long[] result = new long[size()];
+        int[] index = {0};
+        forEach(key -> result[index[0]++] = key);
+        return result;
+    }
+
+    /**
+     * Returns the values of the set in the same format as the java.util collections.
+     * @return A string like [1, 2, 3].
+     */
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    // ------- TREE OPERATIONS -------
+
+    /** Builds a balanced tree of the keys from..to-1 and returns its root. */
+    private int build(long[] sortedKeys, int from, int to) {
+        if (from == to) {
+            return NIL;
+        }
+        int middle = (from + to) >>> 1;
+        int node = newNode(sortedKeys[middle]);
+        // Assign through locals like insert does.
+        int leftChild = build(sortedKeys, from, middle);
+        int rightChild = build(sortedKeys, middle + 1, to);
+        left[node] = leftChild;
+        right[node] = rightChild;
+        update(node);
+        return node;
+    }
+
+    private static boolean strictlyIncreasing(long[] values) {
+        for (int i = 1; i < values.length; i++) {
+            if (values[i - 1] >= values[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int insert(int node, long key) {
+        if (node == NIL) {
+            modified = true;
+            return newNode(key);
+        }
+        // Assign through a local, newNode may replace the arrays while growing.
+        if (key < keys[node]) {
+            int child = insert(left[node], key);
+            left[node] = child;
+        } else if (key > keys[node]) {
+            int child = insert(right[node], key);
+            right[node] = child;
+        } else {
+            return node;
+        }
+        return modified ? balance(node) : node;
+    }
+
+    private int delete(int node, long key) {
+        if (node == NIL) {
+            return NIL;
+        }
+        if (key < keys[node]) {
+            left[node] = delete(left[node], key);
+        } else if (key > keys[node]) {
+            right[node] = delete(right[node], key);
+        } else {
+            modified = true;
+            if (left[node] == NIL || right[node] == NIL) {
+                int child = left[node] == NIL ? right[node] : left[node];
+                freeNode(node);
+                return child;
+            }
+            // Replace the key with its successor, then delete the successor.
+            int successor = right[node];
+            while (left[successor] != NIL) {
+                successor = left[successor];
+            }
+            keys[node] = keys[successor];
+            right[node] = delete(right[node], keys[successor]);
+        }
+        return modified ? balance(node) : node;
+    }
+
+    private int balance(int node) {
+        update(node);
+        int factor = height(left[node]) - height(right[node]);
+        if (factor > 1) {
+            if (height(left[left[node]]) < height(right[left[node]])) {
+                left[node] = rotateLeft(left[node]);
+            }
+            return rotateRight(node);
+        }
+        if (factor < -1) {
+            if (height(right[right[node]]) < height(left[right[node]])) {
+                right[node] = rotateRight(right[node]);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private int rotateLeft(int node) {
+        int pivot = right[node];
+        right[node] = left[pivot];
+        left[pivot] = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private int rotateRight(int node) {
+        int pivot = left[node];
+        left[node] = right[pivot];
+        right[pivot] = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private void update(int node) {
+        height[node] = (byte) (Math.max(height(left[node]), height(right[node])) + 1);
+        subtreeSize[node] = size(left[node]) + size(right[node]) + 1;
+    }
+
+    private int height(int node) {
+        return node == NIL ? 0 : height[node];
+    }
+
+    private int size(int node) {
+        return node == NIL ? 0 : subtreeSize[node];
+    }
+
+    private int newNode(long key) {
+        int node;
+        if (freeList != NIL) {
+            node = freeList;
+            freeList = left[node];
+        } else {
+            if (used == keys.length) {
+                grow();
+            }
+            node = used++;
+        }
+        keys[node] = key;
+        left[node] = NIL;
+        right[node] = NIL;
+        subtreeSize[node] = 1;
+        height[node] = 1;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        left[node] = freeList;
+        freeList = node;
+    }
+
+    private void grow() {
+        int capacity = keys.length + (keys.length >> 1);
+        keys = Arrays.copyOf(keys, capacity);
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+        subtreeSize = Arrays.copyOf(subtreeSize, capacity);
+        height = Arrays.copyOf(height, capacity);
+    }
+}
@@ -0,0 +1,312 @@
+package DataStructures;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Group of binary min-heaps of int elements ordered by long keys.
+ * Heaps are identified by a dense int id and created on first use.
+ * An element is in at most one heap of the group, so one shared table keeps
+ * the position of every element: moving an element to another heap, changing
+ * its key or removing it takes O(log n) without searching the heap.
+ * Keys and elements are kept in primitive arrays, so no operation allocates
+ * except when an array grows. Elements with equal keys are ordered by value.
+ */
+public class MinHeapGroup {
+    private static final int DEFAULT_CAPACITY = 8;
+    private static final int NONE = -1;
+
+    /** One heap, the keys and elements are parallel arrays. */
+    private static final class Heap {
+        long[] keys = new long[DEFAULT_CAPACITY];
+        int[] elements = new int[DEFAULT_CAPACITY];
+        int size;
+        /** Set while putAll has appended to the heap without heapifying it. */
+        boolean changed;
+    }
+
+    private final DenseIdTable<Heap> heaps;
+    /** The smallest element that can be stored. */
+    private final int elementBase;
+    /** Position of every element in its heap indexed by (element - elementBase), NONE if not in a heap. */
+    private int[] positions;
+    /** Id of the heap of every element, valid where the position is not NONE. */
+    private int[] owners;
+
+    /**
+     * Creates a group without heaps.
+     * @param heapBase The smallest heap id.
+     * @param elementBase The smallest element.
+     */
+    public MinHeapGroup(int heapBase, int elementBase) {
+        this.heaps = new DenseIdTable<>(heapBase);
+        this.elementBase = elementBase;
+        this.positions = new int[DEFAULT_CAPACITY];
+        this.owners = new int[DEFAULT_CAPACITY];
+        Arrays.fill(positions, NONE);
+    }
+
+    /**
+     * Puts the element into the heap with the given key. If the element is
+     * already in the heap its key is changed, if it is in another heap it is
+     * moved.
+     * @param heapId The id of the heap.
+     * @param element The element.
+     * @param key The key of the element, smaller keys come first.
+     * @throws IllegalArgumentException if the heap id or the element is below its base.
+     */
+    public void put(int heapId, int element, long key) {
+        int slot = element - elementBase;
+        if (slot < 0) {
+            throw new IllegalArgumentException("Element " + element + " is below the base " + elementBase);
+        }
+        ensureCapacity(slot + 1);
+        int position = positions[slot];
+        if (position != NONE) {
+            Heap heap = heaps.get(owners[slot]);
+            if (owners[slot] == heapId) {
+                long oldKey = heap.keys[position];
+                heap.keys[position] = key;
+                if (key < oldKey) {
+                    siftUp(heap, position);
+                } else {
+                    siftDown(heap, position);
+                }
+                return;
+            }
+            removeAt(heap, position);
+        }
+        Heap heap = heaps.get(heapId);
+        if (heap == null) {
+            heap = new Heap();
+            heaps.put(heapId, heap);
+        }
+        if (heap.size == heap.keys.length) {
+            int capacity = heap.size + (heap.size >> 1);
+            heap.keys = Arrays.copyOf(heap.keys, capacity);
+            heap.elements = Arrays.copyOf(heap.elements, capacity);
+        }
+        int last = heap.size++;
+        heap.keys[last] = key;
+        heap.elements[last] = element;
+        owners[slot] = heapId;
+        positions[slot] = last;
+        siftUp(heap, last);
+    }
+
+    /**
+     * Puts many elements at once, like calling put for each of them in order.
+     * New elements are appended to their heaps and every changed heap is
+     * heapified once, which takes O(n) instead of O(n log n). Elements that
+     * are already in a heap, or come twice, are put one by one afterwards.
+     * @param heapIds The heap of every element.
+     * @param elements The elements.
+     * @param keys The key of every element.
+     * @param count The number of elements to put from the arrays.
+     * @throws IllegalArgumentException if a heap id or an element is below its base.
+     */
+    public void putAll(int[] heapIds, int[] elements, long[] keys, int count) {
+        List<Heap> changed = new ArrayList<>();
+        int[] later = new int[0];
+        int laterCount = 0;
+        for (int i = 0; i < count; i++) {
+            int slot = elements[i] - elementBase;
+            if (slot < 0) {
+                throw new IllegalArgumentException("Element " + elements[i] + " is below the base " + elementBase);
+            }
+            ensureCapacity(slot + 1);
+            if (positions[slot] != NONE) {
+                if (laterCount == later.length) {
+                    later = Arrays.copyOf(later, Math.max(8, laterCount * 2));
+                }
+                later[laterCount++] = i;
+                continue;
+            }
+            Heap heap = heaps.get(heapIds[i]);
+            if (heap == null) {
+                heap = new Heap();
+                heaps.put(heapIds[i], heap);
+            }
+            if (!heap.changed) {
+                heap.changed = true;
+                changed.add(heap);
+            }
+            if (heap.size == heap.keys.length) {
+                int capacity = heap.size + (heap.size >> 1);
+                heap.keys = Arrays.copyOf(heap.keys, capacity);
+                heap.elements = Arrays.copyOf(heap.elements, capacity);
+            }
+            int last = heap.size++;
+            heap.keys[last] = keys[i];
+            heap.elements[last] = elements[i];
+            owners[slot] = heapIds[i];
+            positions[slot] = last;
+        }
+        for (Heap heap : changed) {
+            for (int position = (heap.size >>> 1) - 1; position >= 0; position--) {
+                siftDown(heap, position);
+            }
+            heap.changed = false;
+        }
+        for (int i = 0; i < laterCount; i++) {
+            put(heapIds[later[i]], elements[later[i]], keys[later[i]]);
+        }
+    }
+
+    /**
+     * Removes the element from its heap.
+     * @param element The element.
+     * @return true if the element was in a heap.
+     */
+    public boolean remove(int element) {
+        int slot = element - elementBase;
+        if (slot < 0 || slot >= positions.length || positions[slot] == NONE) {
+            return false;
+        }
+        removeAt(heaps.get(owners[slot]), positions[slot]);
+        return true;
+    }
+
+    /**
+     * Returns true if the element is in a heap of the group.
+     * @param element The element.
+     * @return true if the element is in a heap.
+     */
+    public boolean contains(int element) {
+        int slot = element - elementBase;
+        return slot >= 0 && slot < positions.length && positions[slot] != NONE;
+    }
+
+    /**
+     * Returns the id of the heap that contains the element.
+     * @param element The element.
+     * @return The heap id, or -1 if the element is not in a heap.
+     */
+    public int heapOf(int element) {
+        return contains(element) ? owners[element - elementBase] : NONE;
+    }
+
+    /**
+     * Returns the element with the smallest key of the heap without removing it.
+     * @param heapId The id of the heap.
+     * @return The element, or -1 if the heap is empty.
+     */
+    public int peek(int heapId) {
+        Heap heap = heaps.get(heapId);
+        return heap == null || heap.size == 0 ? NONE : heap.elements[0];
+    }
+
+    /**
+     * Returns the smallest key of the heap.
+     * @param heapId The id of the heap.
+     * @return The key.
+     * @throws NoSuchElementException if the heap is empty.
+     */
+    public long peekKey(int heapId) {
+        Heap heap = heaps.get(heapId);
+        if (heap == null || heap.size == 0) {
+            throw new NoSuchElementException();
+        }
+        return heap.keys[0];
+    }
+
+    /**
+     * Removes the element with the smallest key from the heap.
+     * @param heapId The id of the heap.
+     * @return The element, or -1 if the heap is empty.
+     */
+    public int poll(int heapId) {
+        Heap heap = heaps.get(heapId);
+        if (heap == null || heap.size == 0) {
+            return NONE;
+        }
+        int element = heap.elements[0];
+        removeAt(heap, 0);
+        return element;
+    }
+
+    /**
+     * Returns the number of elements in the heap.
+     * @param heapId The id of the heap.
+     * @return The size of the heap.
+     */
+    public int size(int heapId) {
+        Heap heap = heaps.get(heapId);
+        return heap == null ? 0 : heap.size;
+    }
+
+    // ------- HEAP OPERATIONS -------
+
+    private void removeAt(Heap heap, int position) {
+        positions[heap.elements[position] - elementBase] = NONE;
+        int last = --heap.size;
+        if (position == last) {
+            return;
+        }
+        heap.keys[position] = heap.keys[last];
+        heap.elements[position] = heap.elements[last];
+        positions[heap.elements[position] - elementBase] = position;
+        if (position > 0 && less(heap, position, (position - 1) >>> 1)) {
+            siftUp(heap, position);
+        } else {
+            siftDown(heap, position);
+        }
+    }
+
+    private void siftUp(Heap heap, int position) {
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!less(heap, position, parent)) {
+                break;
+            }
+            swap(heap, position, parent);
+            position = parent;
+        }
+    }
+
+    private void siftDown(Heap heap, int position) {
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= heap.size) {
+                break;
+            }
+            if (child + 1 < heap.size && less(heap, child + 1, child)) {
+                child++;
+            }
+            if (!less(heap, child, position)) {
+                break;
+            }
+            swap(heap, position, child);
+            position = child;
+        }
+    }
+
+    private boolean less(Heap heap, int i, int j) {
+        long a = heap.keys[i];
+        long b = heap.keys[j];
+        return a < b || (a == b && heap.elements[i] < heap.elements[j]);
+    }
+
+    private void swap(Heap heap, int i, int j) {
+        long key = heap.keys[i];
+        heap.keys[i] = heap.keys[j];
+        heap.keys[j] = key;
+        int element = heap.elements[i];
+        heap.elements[i] = heap.elements[j];
+        heap.elements[j] = element;
+        positions[heap.elements[i] - elementBase] = i;
+        positions[heap.elements[j] - elementBase] = j;
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > positions.length) {
+            int oldCapacity = positions.length;
+            int newCapacity = Math.max(minCapacity, oldCapacity + (oldCapacity >> 1));
+            positions = Arrays.copyOf(positions, newCapacity);
+            owners = Arrays.copyOf(owners, newCapacity);
+            Arrays.fill(positions, oldCapacity, newCapacity, NONE);
+        }
+    }
+}
@@ -1,26 +1,163 @@
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 import enums.SystemObjectTypes;
 
 /**
  * It starts the system and then it asks the user to login
  */
 public class Driver {
+    // Default time the write-ahead log waits to write changes of many sessions together.
+    private static final long DEFAULT_COMMIT_DELAY_MICROS = 2000;
+    // Seed of the random system objects when none is given.
+    private static final long DEFAULT_SEED = 2022;
+
     /**
      * It starts the system and then it asks the user to login.
+     * With "--server port" it serves many terminals over TCP instead of the console.
+     * With "--snapshot file" it keeps the system in the given file instead of
+     * system.snapshot in the root directory, and its changes in file.log.
+     * With "--commit-delay microseconds" it sets how long changes wait to be
+     * written to the log together.
+     * Without a snapshot it creates a random system. "--seed number" gives the
+     * seed of its objects and "--citizens", "--lawyers", "--owners", "--judges",
+     * "--officials" and "--lawsuits" give the number of objects of each type.
+     * With "--import file", which can be given many times, it creates the system
+     * from the users and lawsuits of CSV and JSON lines files instead.
+     * With "--export-lawsuits file" and "--export-users file" it writes every
+     * lawsuit or user to a CSV, JSON lines or binary file and stops.
+     * With "--page-size number" it sets how many items a listing shows at a time.
      */
     public static void main(String[] args) throws Exception 
     {
-        // Start the system
+        Integer port = null;
+        Path snapshotPath = Paths.get(Utils.getPath("system.snapshot"));
+        long commitDelayMicros = DEFAULT_COMMIT_DELAY_MICROS;
+        long seed = DEFAULT_SEED;
+        SystemObjectCreator.Population population = new SystemObjectCreator.Population();
+        List<Path> importPaths = new ArrayList<>();
+        Path lawsuitExportPath = null;
+        Path userExportPath = null;
+        Integer pageSize = null;
+        for (int i = 0; i + 1 < args.length; i += 2)
+        {
+            if ("--server".equals(args[i]))
+                port = Integer.parseInt(args[i + 1]);
+            else if ("--snapshot".equals(args[i]))
+                snapshotPath = Paths.get(args[i + 1]);
+            else if ("--commit-delay".equals(args[i]))
+                commitDelayMicros = Long.parseLong(args[i + 1]);
+            else if ("--seed".equals(args[i]))
+                seed = Long.parseLong(args[i + 1]);
+            else if ("--citizens".equals(args[i]))
+                population.citizens(Integer.parseInt(args[i + 1]));
+            else if ("--lawyers".equals(args[i]))
+                population.lawyers(Integer.parseInt(args[i + 1]));
+            else if ("--owners".equals(args[i]))
+                population.lawOfficeOwners(Integer.parseInt(args[i + 1]));
+            else if ("--judges".equals(args[i]))
+                population.judges(Integer.parseInt(args[i + 1]));
+            else if ("--officials".equals(args[i]))
+                population.governmentOfficials(Integer.parseInt(args[i + 1]));
+            else if ("--lawsuits".equals(args[i]))
+                population.lawsuits(Integer.parseInt(args[i + 1]));
+            else if ("--import".equals(args[i]))
+                importPaths.add(Paths.get(args[i + 1]));
+            else if ("--export-lawsuits".equals(args[i]))
+                lawsuitExportPath = Paths.get(args[i + 1]);
+            else if ("--export-users".equals(args[i]))
+                userExportPath = Paths.get(args[i + 1]);
+            else if ("--page-size".equals(args[i]))
+                pageSize = Integer.parseInt(args[i + 1]);
+        }
+
+        // Start the system from the last snapshot and log, or import or create random system objects
+        long randomSeed = seed;
+        SystemStorage storage = SystemStorage.open(snapshotPath, TimeUnit.MICROSECONDS.toNanos(commitDelayMicros),
+                                                   () -> importPaths.isEmpty() ? createRandomSystem(population, randomSeed)
+                                                                               : importSystem(importPaths));
+        SystemClass systemClassObject = storage.getSystemClass();
+        if (pageSize != null)
+            systemClassObject.setListingPageSize(pageSize);
+
+        // Save the changes when the system stops, also when the server is interrupted
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                storage.close();
+            } catch (IOException e) {
+                System.err.println("Could not save the system: " + e.getMessage());
+            }
+        }));
+
+        if (lawsuitExportPath != null || userExportPath != null)
+        {
+            SystemExporter exporter = new SystemExporter(systemClassObject);
+            if (lawsuitExportPath != null)
+                System.out.println(exporter.exportLawsuits(lawsuitExportPath, new LawsuitColumns.Filter()));
+            if (userExportPath != null)
+                System.out.println(exporter.exportUsers(userExportPath));
+            return;
+        }
+
+        if (port != null)
+        {
+            new SessionServer(systemClassObject, port).start();
+            return;
+        }
+        loginMenu(systemClassObject);
+    }
+
+    /**
+     * It creates a system with random system objects and prints how long it took.
+     * 
+     * @param population The number of objects of each type.
+     * @param seed The seed of the objects.
+     * @return The new system.
+     */
+    private static SystemClass createRandomSystem(SystemObjectCreator.Population population, long seed)
+    {
+        long start = System.nanoTime();
+        SystemClass systemClassObject = new SystemClass();
+        SystemObjectCreator.createSystemObjects(systemClassObject, population, seed);
+        System.out.printf("Created %d system objects with seed %d in %.3f s%n", population.size(), seed,
+                          (System.nanoTime() - start) / 1e9);
+        return systemClassObject;
+    }
+
+    /**
+     * It creates a system from the rows of the files and prints the report of every file.
+     * 
+     * @param importPaths The files, the files of the users before the files of their lawsuits.
+     * @return The new system.
+     */
+    private static SystemClass importSystem(List<Path> importPaths)
+    {
         SystemClass systemClassObject = new SystemClass();
-        
-        // Create random system objects
-        SystemObjectCreator.createCitizens(systemClassObject);
-        SystemObjectCreator.createLawyers(systemClassObject);
-        SystemObjectCreator.createLawOfficeOwners(systemClassObject);
-        SystemObjectCreator.createGovernmentOfficials(systemClassObject);
-        SystemObjectCreator.createJudges(systemClassObject);
-        SystemObjectCreator.createLawsuits(systemClassObject);
+        try
+        {
+            for (SystemImporter.Report report : new SystemImporter(systemClassObject).importFiles(importPaths))
+                System.out.println(report);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        return systemClassObject;
+    }
 
+    /**
+     * It asks the user to login and opens the menu of the user until the user exits.
+     * 
+     * @param systemClassObject The system shared by every session.
+     */
+    public static void loginMenu(SystemClass systemClassObject)
+    {
         while(true)
         {
             System.out.println("\n ---------- Judiciary Informatics System ---------- ");
@@ -53,7 +190,7 @@ public class Driver {
                 System.out.println("\n Enter your ID: ");
                 int id;
                 try {
-                    id = Utils.readIntegerInput();
+                    id = Utils.readIdInput();
                 } catch (Exception e) {
                     System.out.println(Utils.INVALID_INPUT);
                     continue;
@@ -69,7 +206,7 @@ public class Driver {
                     {
                         System.out.println("\n Invalid ID.\n");
                     }
-                    else if (!citizen.getPassword().equals(password))
+                    else if (!systemClassObject.checkPassword(id, password))
                     {
                         System.out.println("\n Invalid password.\n");
                     }
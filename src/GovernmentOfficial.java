@@ -1,6 +1,7 @@
 import enums.LawsuitStatus;
 import enums.LawsuitTypes;
 import enums.SystemObjectTypes;
+import java.io.IOException;
 import java.util.Date;
 
 public class GovernmentOfficial extends Citizen 
@@ -11,6 +12,12 @@ public class GovernmentOfficial extends Citizen
         super(id, password, firstName, lastName, phone, email);
     }
 
+    // Constructor that reads the government official from a snapshot.
+    GovernmentOfficial(SnapshotInput in) throws IOException
+    {
+        super(in);
+    }
+
     /**
      * It reads the input from the user and creates a new lawyer object with the given data
      * 
@@ -190,7 +197,7 @@ public class GovernmentOfficial extends Citizen
         System.out.print("Enter suing citizen ID: ");
         int suingId;
         try {
-            suingId = Utils.readIntegerInput();
+            suingId = Utils.readIdInput();
         } catch (Exception e) {
             System.out.println(Utils.INVALID_INPUT);
             return;
@@ -208,7 +215,7 @@ public class GovernmentOfficial extends Citizen
         System.out.print("Enter sued citizen ID: ");
         int suedId;
         try {
-            suedId = Utils.readIntegerInput();
+            suedId = Utils.readIdInput();
         } catch (Exception e) {
             System.out.println(Utils.INVALID_INPUT);
             return;
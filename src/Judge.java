@@ -1,24 +1,41 @@
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
 
-import SortingAlgorithms.QuickSort;
+import DataStructures.LongTreeSet;
 import enums.LawsuitStatus;
+import enums.LogRecordTypes;
 
 /**
  * Class for Judge User
  */
 public class Judge extends Citizen{
     // Data Fields
-    /** List of lawsuits those are assigned to judge */
-    private List<Integer> assignedLawsuits;
-    /** List of lawsuits those are concluded by judge */
-    private List<Integer> concludedLawsuits;
+    // Both lists are guarded by the judge, clerks assign lawsuits from other sessions.
+    /** Ids of lawsuits those are assigned to judge, in increasing order */
+    private LongTreeSet assignedLawsuits;
+    /** Ids of lawsuits those are concluded by judge, in increasing order */
+    private LongTreeSet concludedLawsuits;
 
     // A constructor.
     public  Judge(int id,String password,String name,String surname, String email,String phone){
         super(id, password, name, surname,  email, phone);
-        assignedLawsuits = new ArrayList<>();
-        concludedLawsuits = new ArrayList<>();
+        assignedLawsuits = new LongTreeSet();
+        concludedLawsuits = new LongTreeSet();
+    }
+
+    // Constructor that reads the judge from a snapshot.
+    Judge(SnapshotInput in) throws IOException {
+        super(in);
+        assignedLawsuits = new LongTreeSet();
+        concludedLawsuits = new LongTreeSet();
+        in.readIds(assignedLawsuits);
+        in.readIds(concludedLawsuits);
+    }
+
+    @Override
+    synchronized void writeSnapshot(SnapshotOutput out) throws IOException {
+        super.writeSnapshot(out);
+        out.writeIds(assignedLawsuits);
+        out.writeIds(concludedLawsuits);
     }
 
     // Methods
@@ -27,15 +44,10 @@ public class Judge extends Citizen{
      * @param systemClassRefReference System object that holds objects by id
      */
     private void showAssignedLawsuits(SystemClass systemClassRefReference) {
-        if (assignedLawsuits.isEmpty()) {
-            System.out.println("There is no assigned lawsuits.");
-            return;
-        }
-        for (int i = 0; i < assignedLawsuits.size(); i++) {
-            System.out.println("\n" + (i + 1) + ". " + 
-                               systemClassRefReference.getSystemObject(assignedLawsuits.get(i)));
-        }
-        System.out.println(assignedLawsuits);
+        ListingPager.display((afterId, page) -> lawsuitsAfter(assignedLawsuits, afterId, page),
+                             systemClassRefReference.getListingPageSize(), ". ",
+                             (out, lawsuitId) -> out.lawsuit(systemClassRefReference.getLawsuit(lawsuitId)).print("\n"),
+                             "There is no assigned lawsuits.");
     }
 
     /**
@@ -43,15 +55,28 @@ public class Judge extends Citizen{
      * @param systemClassRefReference System object that holds objects by id
      */
     private void showConcludedLawsuits(SystemClass systemClassRefReference) {
-        if (concludedLawsuits.isEmpty()) {
-            System.out.println("There is no concluded lawsuits.");
-            return;
-        }
-        for (int i = 0; i < concludedLawsuits.size(); i++) {
-            System.out.println("\n" + (i + 1) + ". " + 
-                               systemClassRefReference.getSystemObject(concludedLawsuits.get(i)));
+        ListingPager.display((afterId, page) -> lawsuitsAfter(concludedLawsuits, afterId, page),
+                             systemClassRefReference.getListingPageSize(), ". ",
+                             (out, lawsuitId) -> out.lawsuit(systemClassRefReference.getLawsuit(lawsuitId)).print("\n"),
+                             "There is no concluded lawsuits.");
+    }
+
+    /**
+     * Copies a page of the ids of one of the lists after the given id. Every page is
+     * copied under the lock and written to the session after it, so a slow terminal
+     * does not keep clerks from changing the lists.
+     * @param lawsuits The assigned or the concluded lawsuits.
+     * @param afterId The last id of the previous page, 0 for the first page.
+     * @param page The array to fill.
+     * @return The number of ids, less than the page length only on the last page.
+     */
+    private synchronized int lawsuitsAfter(LongTreeSet lawsuits, int afterId, int[] page) {
+        int position = lawsuits.rank(afterId + 1L);
+        int count = 0;
+        while (count < page.length && position < lawsuits.size()) {
+            page[count++] = (int) lawsuits.select(position++);
         }
-        System.out.println(concludedLawsuits);
+        return count;
     }
 
     /**
@@ -65,7 +90,7 @@ public class Judge extends Citizen{
             return;
         }
         
-        if (lawsuit.getSuingDefence() == null || lawsuit.getSuedDefence() == null ) {
+        if (!lawsuit.hasSuingDefence() || !lawsuit.hasSuedDefence()) {
             System.out.println("\nLawyers should add defences.");
             return;
         }
@@ -80,10 +105,10 @@ public class Judge extends Citizen{
         Citizen prosecutor = systemClassRefReference.getCitizen(lawsuit.getSuedCitizen());
         Lawyer prosecutorLawyer = systemClassRefReference.getLawyer(lawsuit.getSuedLawyer());
 
-        System.out.println("Defendant: "+ defendant.firstName + " " + defendant.lastName);
-        System.out.println("Defendant's Lawyer: "+ defendantLawyer.firstName + " " + defendantLawyer.lastName);
-        System.out.println("Prosecutor: "+ prosecutor.firstName + " " + prosecutor.lastName);
-        System.out.println("Prosecutor's Lawyer: "+ prosecutorLawyer.firstName + " " + prosecutorLawyer.lastName);
+        System.out.println("Defendant: "+ defendant.getFirstName() + " " + defendant.getLastName());
+        System.out.println("Defendant's Lawyer: "+ defendantLawyer.getFirstName() + " " + defendantLawyer.getLastName());
+        System.out.println("Prosecutor: "+ prosecutor.getFirstName() + " " + prosecutor.getLastName());
+        System.out.println("Prosecutor's Lawyer: "+ prosecutorLawyer.getFirstName() + " " + prosecutorLawyer.getLastName());
 
         System.out.println("\n");
 
@@ -112,11 +137,7 @@ public class Judge extends Citizen{
                     changeStatus(systemClassRefReference, lawsuit);
                     if (lawsuit.getStatus() == LawsuitStatus.SUED_WON || 
                         lawsuit.getStatus() == LawsuitStatus.SUING_WON) {
-                        concludedLawsuits.add(lawsuit.getId());
-                        QuickSort.sort(concludedLawsuits);
-                        assignedLawsuits.removeIf(integer -> integer.equals(lawsuit.getId()));
-                        QuickSort.sort(assignedLawsuits);
-                        systemClassRefReference.pollHighestPriorityLawsuit(this.id);
+                        concludeLawsuit(lawsuit.getId());
                         Lawyer suingLawyer = systemClassRefReference.getLawyer(lawsuit.getSuingLawyer());
                         Lawyer suedLawyer = systemClassRefReference.getLawyer(lawsuit.getSuedLawyer());
                         suingLawyer.concludeLawsuit(lawsuit.getId());
@@ -181,9 +202,19 @@ public class Judge extends Citizen{
      * Assigns given lawsuit to judge
      * @param lawsuit lawsuit
      */
-    public void assignLawsuit(Integer lawsuit) {
+    public synchronized void assignLawsuit(int lawsuit) {
         assignedLawsuits.add(lawsuit);
-        QuickSort.sort(assignedLawsuits);
+        log(LogRecordTypes.JUDGE_LAWSUIT_ASSIGNED, out -> out.writeInt(lawsuit));
+    }
+
+    /**
+     * Moves given lawsuit from the assigned lawsuits to the concluded lawsuits
+     * @param lawsuit lawsuit id
+     */
+    public synchronized void concludeLawsuit(int lawsuit) {
+        concludedLawsuits.add(lawsuit);
+        assignedLawsuits.remove(lawsuit);
+        log(LogRecordTypes.JUDGE_LAWSUIT_CONCLUDED, out -> out.writeInt(lawsuit));
     }
 
     /**
@@ -1,6 +1,9 @@
 import enums.JobApplicationStatus;
+import enums.LogRecordTypes;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class LawOffice
 {
@@ -15,6 +18,24 @@ public class LawOffice
             this.title = title;
             this.description = description;
         }
+
+        // Constructor that reads the job advertisement from a snapshot.
+        JobAdvertisement(SnapshotInput in) throws IOException {
+            this.ownerId = in.readInt();
+            this.title = in.readString();
+            this.description = in.readString();
+        }
+
+        /**
+         * It writes the job advertisement to a snapshot.
+         * 
+         * @param out The snapshot.
+         */
+        void writeSnapshot(SnapshotOutput out) throws IOException {
+            out.writeInt(ownerId);
+            out.writeString(title);
+            out.writeString(description);
+        }
         public int getOwnerId() {
             return ownerId;
         }
@@ -27,10 +48,14 @@ public class LawOffice
 
     private String name;
     private int ownerId;
+    // The system of the owner, changes are logged through it.
+    private volatile SystemClass systemClass;
 
-    private List<Integer> employeeIds = new ArrayList<>();
-    private List<JobAdvertisement> jobAdvertisements = new LinkedList<>();
-    private List<Lawyer.JobApplication> jobApplications = new ArrayList<>();
+    // Lawyers apply from their own sessions while the owner reads the lists,
+    // so iterators work on snapshots. Index based methods are synchronized.
+    private List<Integer> employeeIds = new CopyOnWriteArrayList<>();
+    private List<JobAdvertisement> jobAdvertisements = new CopyOnWriteArrayList<>();
+    private List<Lawyer.JobApplication> jobApplications = new CopyOnWriteArrayList<>();
 
     // A constructor.
     public LawOffice()
@@ -46,6 +71,61 @@ public class LawOffice
         this.ownerId = ownerId;
     }
 
+    // Constructor that reads the office from a snapshot.
+    // Job advertisements and applications are shared, so they are read before the offices.
+    LawOffice(SnapshotInput in, int ownerId) throws IOException
+    {
+        this.ownerId = ownerId;
+        this.name = in.readString();
+        in.readIds(employeeIds);
+        int advertisements = in.readCount();
+        for (int i = 0; i < advertisements; i++)
+            jobAdvertisements.add(in.readShared(JobAdvertisement.class));
+        int applications = in.readCount();
+        for (int i = 0; i < applications; i++)
+            jobApplications.add(in.readShared(Lawyer.JobApplication.class));
+    }
+
+    /**
+     * It writes the office to a snapshot. The owner id is written by the owner.
+     * 
+     * @param out The snapshot.
+     */
+    void writeSnapshot(SnapshotOutput out) throws IOException
+    {
+        out.writeString(name);
+        out.writeIds(employeeIds);
+        List<JobAdvertisement> advertisements = new ArrayList<>(jobAdvertisements);
+        out.writeInt(advertisements.size());
+        for (JobAdvertisement jobAdvertisement : advertisements)
+            out.writeShared(jobAdvertisement);
+        List<Lawyer.JobApplication> applications = new ArrayList<>(jobApplications);
+        out.writeInt(applications.size());
+        for (Lawyer.JobApplication jobApplication : applications)
+            out.writeShared(jobApplication);
+    }
+
+    /**
+     * This function sets the system the owner is registered in.
+     * 
+     * @param systemClass The system that keeps the owner.
+     */
+    void setSystemClass(SystemClass systemClass) {
+        this.systemClass = systemClass;
+    }
+
+    /**
+     * It logs a change of the office with the id of the owner.
+     * 
+     * @param type The type of the change.
+     * @param body Writes the values of the change.
+     */
+    private void log(LogRecordTypes type, WriteAheadLog.RecordBody body) {
+        SystemClass system = systemClass;
+        if (system != null)
+            system.log(type, ownerId, body);
+    }
+
     /**
      * This function returns the name of the person
      * 
@@ -87,9 +167,10 @@ public class LawOffice
      * 
      * @param employeeId The id of the employee to add to the department.
      */
-    public void addEmployee(int employeeId) {
+    public synchronized void addEmployee(int employeeId) {
         if (!employeeIds.contains(employeeId)) {
             employeeIds.add(employeeId);
+            log(LogRecordTypes.OFFICE_EMPLOYEE_ADDED, out -> out.writeInt(employeeId));
         }
     }
 
@@ -99,9 +180,11 @@ public class LawOffice
      * @return
      * @throws IndexOutOfBoundsException
      */
-    public int removeEmployee(int index) throws IndexOutOfBoundsException {
+    public synchronized int removeEmployee(int index) throws IndexOutOfBoundsException {
         if (index >= 0 && index < employeeIds.size()) {
-            return employeeIds.remove(index);
+            int employeeId = employeeIds.remove(index);
+            log(LogRecordTypes.OFFICE_EMPLOYEE_REMOVED, out -> out.writeInt(index));
+            return employeeId;
         } else {
             throw new IndexOutOfBoundsException();
         }
@@ -114,7 +197,7 @@ public class LawOffice
      * @param index The index of the employee to get.
      * @return The employeeIds.get(index) is being returned.
      */
-    public int getEmployee(int index) throws IndexOutOfBoundsException {
+    public synchronized int getEmployee(int index) throws IndexOutOfBoundsException {
         if (index >= 0 && index < employeeIds.size()) {
             return employeeIds.get(index);
         } else {
@@ -153,7 +236,8 @@ public class LawOffice
     }
     
     /**
-     * This function adds a job advertisement to the list of job advertisements
+     * This function adds a job advertisement to the list of job advertisements.
+     * It is logged when it is published to the system.
      * 
      * @param jobAdvertisement The job advertisement to be added to the list of job advertisements.
      */
@@ -167,9 +251,11 @@ public class LawOffice
      * @param index The index of the element to remove.
      * @return The job advertisement that was removed.
      */
-    public LawOffice.JobAdvertisement removeJobAdvertisement(int index)  throws IndexOutOfBoundsException {
+    public synchronized LawOffice.JobAdvertisement removeJobAdvertisement(int index)  throws IndexOutOfBoundsException {
         if (index >= 0 && index < jobAdvertisements.size()) {
-            return jobAdvertisements.remove(index);
+            LawOffice.JobAdvertisement jobAdvertisement = jobAdvertisements.remove(index);
+            log(LogRecordTypes.OFFICE_JOB_ADVERTISEMENT_REMOVED, out -> out.writeInt(index));
+            return jobAdvertisement;
         } else {
             throw new IndexOutOfBoundsException();
         }
@@ -185,12 +271,23 @@ public class LawOffice
     }
 
     /**
-     * This function adds a job application to the list of job applications
+     * This function adds a job application to the list of job applications and to
+     * the applicant, who keeps the same application. It is logged for the applicant
+     * while the office is locked, so the log has the applications in the order of
+     * the list and the index based changes replay on the same applications.
      * 
      * @param jobApplication The job application to add.
+     * @param applicant The lawyer who applied.
      */
-    public void addJobApplication(Lawyer.JobApplication jobApplication) {
+    public synchronized void addJobApplication(Lawyer.JobApplication jobApplication, Lawyer applicant) {
         jobApplications.add(jobApplication);
+        applicant.addJobApplication(jobApplication);
+        SystemClass system = systemClass;
+        if (system != null)
+            system.log(LogRecordTypes.LAWYER_JOB_APPLIED, applicant.getId(), out -> {
+                out.writeInt(ownerId);
+                out.writeString(jobApplication.getApplication());
+            });
     }
 
     /**
@@ -199,7 +296,7 @@ public class LawOffice
      * @param index The index of the job application to return.
      * @return The job application at the specified index.
      */
-    public Lawyer.JobApplication getJobApplication(int index) {
+    public synchronized Lawyer.JobApplication getJobApplication(int index) {
         if (index >= 0 && index < jobApplications.size()) {
             return jobApplications.get(index);
         } else {
@@ -207,15 +304,31 @@ public class LawOffice
         }
     }
 
+    /**
+     * This function sets the status of the job application at the given index.
+     * 
+     * @param index The index of the job application.
+     * @param status The new status.
+     */
+    public synchronized void setJobApplicationStatus(int index, JobApplicationStatus status) {
+        getJobApplication(index).setStatus(status);
+        log(LogRecordTypes.OFFICE_JOB_APPLICATION_STATUS, out -> {
+            out.writeInt(index);
+            out.writeEnum(status);
+        });
+    }
+
     /**
      * This function removes a job application from the list of job applications
      * 
      * @param index The index of the job application to remove.
      * @return The job application that was removed.
      */
-    public Lawyer.JobApplication removeJobApplication(int index)  throws IndexOutOfBoundsException {
+    public synchronized Lawyer.JobApplication removeJobApplication(int index)  throws IndexOutOfBoundsException {
         if (index >= 0 && index < jobApplications.size()) {
-            return jobApplications.remove(index);
+            Lawyer.JobApplication jobApplication = jobApplications.remove(index);
+            log(LogRecordTypes.OFFICE_JOB_APPLICATION_REMOVED, out -> out.writeInt(index));
+            return jobApplication;
         } else {
             throw new IndexOutOfBoundsException();
         }
@@ -249,23 +362,42 @@ public class LawOffice
      */
     public void displayEmployees(SystemClass systemClassRef)
     {
-        for (int i = 0; i < employeeIds.size(); i++) {
-            System.out.println((i + 1) + ". " + systemClassRef.getLawyer(employeeIds.get(i)));
-        }
+        // Employees are numbered in the order they joined, so the number of one is its key.
+        ListingPager.display((afterNumber, page) -> numbersAfter(employeeIds, afterNumber, page),
+                             systemClassRef.getListingPageSize(), ". ",
+                             (out, number) -> out.user(systemClassRef.getLawyer(getEmployee(number - 1))), null);
     }
 
     /**
      * This function displays the job applications that are pending
+     * 
+     * @param systemClassRef This is a reference to the SystemClass object.
      */
-    public void displayJobApplications() {
-        int i = 0;
-        for (var jobApplication : jobApplications) {
+    public void displayJobApplications(SystemClass systemClassRef) {
+        ListingPager.display((afterNumber, page) -> numbersAfter(jobApplications, afterNumber, page),
+                             systemClassRef.getListingPageSize(), ". ", (out, number) -> {
+            Lawyer.JobApplication jobApplication = getJobApplication(number - 1);
             if (jobApplication.getStatus() == JobApplicationStatus.PENDING) {
-                System.out.println((i + 1) + ". " + jobApplication + "\n");
+                out.jobApplication(jobApplication).print("\n");
             } else {
-                System.out.println("Completed job application.");
+                out.print("Completed job application.");
             }
-            i++;
+        }, null);
+    }
+
+    /**
+     * It fills a page with the numbers of the items of a list after the given number.
+     * 
+     * @param list The list.
+     * @param afterNumber The last number of the previous page, 0 for the first page.
+     * @param page The array to fill.
+     * @return The number of numbers, less than the page length only on the last page.
+     */
+    private synchronized int numbersAfter(List<?> list, int afterNumber, int[] page) {
+        int count = Math.max(Math.min(page.length, list.size() - afterNumber), 0);
+        for (int i = 0; i < count; i++) {
+            page[i] = afterNumber + i + 1;
         }
+        return count;
     }
 }
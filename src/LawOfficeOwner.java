@@ -1,5 +1,5 @@
 
-import java.util.Iterator;
+import java.io.IOException;
 
 import enums.JobApplicationStatus;
 
@@ -14,6 +14,24 @@ public class LawOfficeOwner extends Lawyer {
         lawOffice = new LawOffice(lawOfficeName, id);
     }
 
+    // Constructor that reads the owner and the office from a snapshot.
+    LawOfficeOwner(SnapshotInput in) throws IOException {
+        super(in);
+        lawOffice = new LawOffice(in, id);
+    }
+
+    @Override
+    void setSystemClass(SystemClass systemClass) {
+        super.setSystemClass(systemClass);
+        lawOffice.setSystemClass(systemClass);
+    }
+
+    @Override
+    void writeSnapshot(SnapshotOutput out) throws IOException {
+        super.writeSnapshot(out);
+        lawOffice.writeSnapshot(out);
+    }
+
     /**
      * Creates job advertisement and adds it to the system based on user input.
      * @param systemClassRef the system class reference
@@ -116,9 +134,8 @@ public class LawOfficeOwner extends Lawyer {
         }
 
         // Get a lawsuit from the continuingLawsuits set.
-        Iterator<Integer> continuingLawSuitsIter = continuingLawsuits.iterator();
-        int lawsuitId = continuingLawSuitsIter.next();
-        continuingLawSuitsIter.remove();
+        int lawsuitId = continuingLawsuits.get(0);
+        removeLawsuit(lawsuitId);
 
         Lawsuit lawsuit = systemClassRef.getLawsuit(lawsuitId);
 
@@ -131,7 +148,7 @@ public class LawOfficeOwner extends Lawyer {
             lawsuit.setSuedLawyer(employee.id);
         }
 
-        System.out.println("\nLawsuit with ID " + lawsuitId + " assigned to " + employee.firstName + " " + employee.lastName);
+        System.out.println("\nLawsuit with ID " + lawsuitId + " assigned to " + employee.getFirstName() + " " + employee.getLastName());
     }
 
     /**
@@ -155,7 +172,7 @@ public class LawOfficeOwner extends Lawyer {
 
         System.out.println("\nChoose a job application to perform an action.");
         System.out.println("0. Go back");
-        lawOffice.displayJobApplications();
+        lawOffice.displayJobApplications(systemClassRef);
         System.out.print("Choice: ");
 
         int choice;
@@ -193,12 +210,12 @@ public class LawOfficeOwner extends Lawyer {
 
         switch (choice) {
             case 1:
-                acceptJobApplication(systemClassRef, jobApplication);
+                acceptJobApplication(systemClassRef, jobApplicationIndex, jobApplication);
                 lawOffice.removeJobApplication(jobApplicationIndex);
                 System.out.println("\nJob application accepted successfully.\n");
                 break;
             case 2:
-                rejectJobApplication(jobApplication);
+                rejectJobApplication(jobApplicationIndex);
                 lawOffice.removeJobApplication(jobApplicationIndex);
                 System.out.println("\nJob application rejected successfully.\n");
                 break;
@@ -211,24 +228,26 @@ public class LawOfficeOwner extends Lawyer {
     /**
      * Accepts the given job application.
      * @param systemClassRef the system class reference
+     * @param jobApplicationIndex the index of the job application in the office
      * @param jobApplication the job application
      */
-    private void acceptJobApplication(SystemClass systemClassRef, Lawyer.JobApplication jobApplication) {
+    private void acceptJobApplication(SystemClass systemClassRef, int jobApplicationIndex,
+                                      Lawyer.JobApplication jobApplication) {
         int applicantId = jobApplication.getApplicantId();
         Lawyer lawyer = systemClassRef.getLawyer(applicantId);
 
         lawyer.setEmployerId(id);
         lawOffice.addEmployee(applicantId);
 
-        jobApplication.setStatus(JobApplicationStatus.ACCEPTED);
+        lawOffice.setJobApplicationStatus(jobApplicationIndex, JobApplicationStatus.ACCEPTED);
     }
 
     /**
      * Rejects the given job application.
-     * @param jobApplication the job application
+     * @param jobApplicationIndex the index of the job application in the office
      */
-    private void rejectJobApplication(Lawyer.JobApplication jobApplication) {
-        jobApplication.setStatus(JobApplicationStatus.REJECTED);
+    private void rejectJobApplication(int jobApplicationIndex) {
+        lawOffice.setJobApplicationStatus(jobApplicationIndex, JobApplicationStatus.REJECTED);
     }
 
     /**
@@ -1,23 +1,32 @@
+import java.io.IOException;
 import java.util.Date;
 
 import enums.LawsuitTypes;
+import enums.LogRecordTypes;
 import enums.LawsuitStatus;
 
 public class Lawsuit extends AbstractSystemObject
 {
+    private static final BlobStore TEXTS = BlobStore.shared();
+
     private Date date;
     private int judge;
     private int suingCitizen;
     private int suedCitizen;
     private int suingLawyer;
     private int suedLawyer;
-    private String suingDefence;
-    private String suedDefence;
+    // Handles of the texts in the blob store.
+    private long suingDefence;
+    private long suedDefence;
     //Personal Injury Lawsuit, Product Liability Lawsuit, Divorce and Family Law Disputes, Criminal Cases
     private LawsuitTypes lawsuitType;
-    private String caseFile;
-    private String courtRecords;
+    private long caseFile;
+    private long courtRecords;
     private LawsuitStatus status;
+    // The setters are synchronized: the old value is read, the field is written, the indexes
+    // are updated and the change is logged as one step. Two sessions changing the same
+    // lawsuit cannot leave an index entry of a value the lawsuit no longer has, and the log
+    // has the changes of a lawsuit in the order they were made.
 
     // A constructor.
     public Lawsuit(int id, Date date, LawsuitTypes lawsuitType, String caseFile) {
@@ -29,8 +38,10 @@ public class Lawsuit extends AbstractSystemObject
         this.suingLawyer = -1;
         this.suedLawyer = -1;
         this.lawsuitType = lawsuitType;
-        this.caseFile = caseFile;
-        this.courtRecords = null;
+        this.suingDefence = BlobStore.NULL_HANDLE;
+        this.suedDefence = BlobStore.NULL_HANDLE;
+        this.caseFile = TEXTS.put(caseFile);
+        this.courtRecords = BlobStore.NULL_HANDLE;
         this.status = LawsuitStatus.HOLD;
     }
 
@@ -46,8 +57,10 @@ public class Lawsuit extends AbstractSystemObject
         this.suingLawyer = suingLawyer;
         this.suedLawyer = -1;
         this.lawsuitType = lawsuitType;
-        this.caseFile = caseFile;
-        this.courtRecords = null;
+        this.suingDefence = BlobStore.NULL_HANDLE;
+        this.suedDefence = BlobStore.NULL_HANDLE;
+        this.caseFile = TEXTS.put(caseFile);
+        this.courtRecords = BlobStore.NULL_HANDLE;
         this.status = LawsuitStatus.HOLD;
     }
     
@@ -63,33 +76,88 @@ public class Lawsuit extends AbstractSystemObject
         this.suingLawyer = suingLawyer;
         this.suedLawyer = suedLawyer;
         this.lawsuitType = lawsuitType;
-        this.caseFile = caseFile;
-        this.courtRecords = null;
+        this.suingDefence = BlobStore.NULL_HANDLE;
+        this.suedDefence = BlobStore.NULL_HANDLE;
+        this.caseFile = TEXTS.put(caseFile);
+        this.courtRecords = BlobStore.NULL_HANDLE;
         this.status = LawsuitStatus.HOLD;
     }
 
+    // Constructor that reads the lawsuit from a snapshot.
+    Lawsuit(SnapshotInput in) throws IOException {
+        super(in);
+        this.date = in.readDate();
+        this.judge = in.readInt();
+        this.suingCitizen = in.readInt();
+        this.suedCitizen = in.readInt();
+        this.suingLawyer = in.readInt();
+        this.suedLawyer = in.readInt();
+        this.suingDefence = TEXTS.read(in);
+        this.suedDefence = TEXTS.read(in);
+        this.lawsuitType = in.readEnum(LawsuitTypes.values());
+        this.caseFile = TEXTS.read(in);
+        this.courtRecords = TEXTS.read(in);
+        this.status = in.readEnum(LawsuitStatus.values());
+    }
+
+    @Override
+    void writeSnapshot(SnapshotOutput out) throws IOException {
+        super.writeSnapshot(out);
+        out.writeDate(date);
+        out.writeInt(judge);
+        out.writeInt(suingCitizen);
+        out.writeInt(suedCitizen);
+        out.writeInt(suingLawyer);
+        out.writeInt(suedLawyer);
+        TEXTS.write(suingDefence, out);
+        TEXTS.write(suedDefence, out);
+        out.writeEnum(lawsuitType);
+        TEXTS.write(caseFile, out);
+        TEXTS.write(courtRecords, out);
+        out.writeEnum(status);
+    }
+
+    // Handles of the texts in the blob store, so they can be copied without being decoded.
+    long caseFileHandle() {
+        return caseFile;
+    }
+
+    long courtRecordsHandle() {
+        return courtRecords;
+    }
+
+    long suingDefenceHandle() {
+        return suingDefence;
+    }
+
+    long suedDefenceHandle() {
+        return suedDefence;
+    }
+
     /**
      * Ends lawsuit with a decision of the judge.
      * @param judgeDecision Decision of the judge.
      * @return return judge desicion.
      */
     public LawsuitStatus concludeLawsuit(LawsuitStatus judgeDecision){
-        status = judgeDecision;
+        setStatus(judgeDecision);
         return judgeDecision;
     }
 
     /**
      * Adds case file to the lawsuit
      */
-    public void addCaseFile(String caseFile){
-        this.caseFile = caseFile;
+    public synchronized void addCaseFile(String caseFile){
+        this.caseFile = TEXTS.put(caseFile);
+        log(LogRecordTypes.LAWSUIT_CASE_FILE, out -> out.writeString(caseFile));
     }
 
     /**
      * Adds court records to the lawsuit
      */
-    public void addCourtRecord(String courtRecords){
-        this.courtRecords = courtRecords;
+    public synchronized void addCourtRecord(String courtRecords){
+        this.courtRecords = TEXTS.put(courtRecords);
+        log(LogRecordTypes.LAWSUIT_COURT_RECORDS, out -> out.writeString(courtRecords));
     }
 
     /**
@@ -97,8 +165,12 @@ public class Lawsuit extends AbstractSystemObject
      * 
      * @param date The date of the event
      */
-    public void setDate(Date date){
+    public synchronized void setDate(Date date){
+        Date oldDate = this.date;
         this.date = date;
+        if (systemClass != null)
+            systemClass.onLawsuitDateChanged(this, oldDate);
+        log(LogRecordTypes.LAWSUIT_DATE, out -> out.writeDate(date));
     }
 
     /**
@@ -115,8 +187,12 @@ public class Lawsuit extends AbstractSystemObject
      * 
      * @param judge The judge's score for the contestant.
      */
-    public void setJudge(int judge){
+    public synchronized void setJudge(int judge){
+        int oldJudge = this.judge;
         this.judge = judge;
+        if (systemClass != null)
+            systemClass.onLawsuitJudgeChanged(this, oldJudge);
+        log(LogRecordTypes.LAWSUIT_JUDGE, out -> out.writeInt(judge));
     }
 
     /**
@@ -133,8 +209,12 @@ public class Lawsuit extends AbstractSystemObject
      * 
      * @param citizen The citizen who is suing
      */
-    public void setSuingCitizen(int citizen){
+    public synchronized void setSuingCitizen(int citizen){
+        int oldCitizen = this.suingCitizen;
         this.suingCitizen = citizen;
+        if (systemClass != null)
+            systemClass.onLawsuitCitizenChanged(this, oldCitizen);
+        log(LogRecordTypes.LAWSUIT_SUING_CITIZEN, out -> out.writeInt(citizen));
     }
 
     /**
@@ -151,8 +231,12 @@ public class Lawsuit extends AbstractSystemObject
      * 
      * @param citizen The citizen that is suing the other citizen.
      */
-    public void setSuedCitizen(int citizen){
+    public synchronized void setSuedCitizen(int citizen){
+        int oldCitizen = this.suedCitizen;
         this.suedCitizen = citizen;
+        if (systemClass != null)
+            systemClass.onLawsuitCitizenChanged(this, oldCitizen);
+        log(LogRecordTypes.LAWSUIT_SUED_CITIZEN, out -> out.writeInt(citizen));
     }
 
     /**
@@ -169,8 +253,12 @@ public class Lawsuit extends AbstractSystemObject
      * 
      * @param lawyer The lawyer that is suing the defendant.
      */
-    public void setSuingLawyer(int lawyer){
+    public synchronized void setSuingLawyer(int lawyer){
+        int oldLawyer = this.suingLawyer;
         this.suingLawyer = lawyer;
+        if (systemClass != null)
+            systemClass.onLawsuitLawyerChanged(this, oldLawyer);
+        log(LogRecordTypes.LAWSUIT_SUING_LAWYER, out -> out.writeInt(lawyer));
     }
 
     /**
@@ -187,8 +275,12 @@ public class Lawsuit extends AbstractSystemObject
      * 
      * @param lawyer The lawyer that is suing the other lawyer
      */
-    public void setSuedLawyer(int lawyer){
+    public synchronized void setSuedLawyer(int lawyer){
+        int oldLawyer = this.suedLawyer;
         this.suedLawyer = lawyer;
+        if (systemClass != null)
+            systemClass.onLawsuitLawyerChanged(this, oldLawyer);
+        log(LogRecordTypes.LAWSUIT_SUED_LAWYER, out -> out.writeInt(lawyer));
     }
 
     /**
@@ -205,8 +297,9 @@ public class Lawsuit extends AbstractSystemObject
      * 
      * @param file The file to be read
      */
-    public void setCaseFile(String file){
-        this.caseFile = file;
+    public synchronized void setCaseFile(String file){
+        this.caseFile = TEXTS.put(file);
+        log(LogRecordTypes.LAWSUIT_CASE_FILE, out -> out.writeString(file));
     }
 
     /**
@@ -215,7 +308,7 @@ public class Lawsuit extends AbstractSystemObject
      * @return The caseFile variable is being returned.
      */
     public String getCaseFile(){
-        return this.caseFile;
+        return TEXTS.get(this.caseFile);
     }
 
     /**
@@ -223,8 +316,9 @@ public class Lawsuit extends AbstractSystemObject
      * 
      * @param records The court records of the case.
      */
-    public void setCourtRecords(String records){
-        this.courtRecords = records;
+    public synchronized void setCourtRecords(String records){
+        this.courtRecords = TEXTS.put(records);
+        log(LogRecordTypes.LAWSUIT_COURT_RECORDS, out -> out.writeString(records));
     }
 
     /**
@@ -233,7 +327,7 @@ public class Lawsuit extends AbstractSystemObject
      * @return The courtRecords variable is being returned.
      */
     public String getCourtRecords(){
-        return this.courtRecords;
+        return TEXTS.get(this.courtRecords);
     }
 
     /**
@@ -241,8 +335,12 @@ public class Lawsuit extends AbstractSystemObject
      * 
      * @param status The status of the lawsuit.
      */
-    public void setStatus(LawsuitStatus status){
+    public synchronized void setStatus(LawsuitStatus status){
+        LawsuitStatus oldStatus = this.status;
         this.status = status;
+        if (systemClass != null)
+            systemClass.onLawsuitStatusChanged(this, oldStatus);
+        log(LogRecordTypes.LAWSUIT_STATUS, out -> out.writeEnum(status));
     }
 
     /**
@@ -259,8 +357,12 @@ public class Lawsuit extends AbstractSystemObject
      * 
      * @param type The type of lawsuit.
      */
-    public void setLawsuitType(LawsuitTypes type){
+    public synchronized void setLawsuitType(LawsuitTypes type){
+        LawsuitTypes oldType = this.lawsuitType;
         this.lawsuitType = type;
+        if (systemClass != null)
+            systemClass.onLawsuitTypeChanged(this, oldType);
+        log(LogRecordTypes.LAWSUIT_TYPE, out -> out.writeEnum(type));
     }
 
     /**
@@ -278,7 +380,17 @@ public class Lawsuit extends AbstractSystemObject
      * @return suedDefence
      */
     public String getSuedDefence() {
-        return suedDefence;
+        return TEXTS.get(suedDefence);
+    }
+
+    /**
+     * This function returns whether the defendant's defence was added, without
+     * reading the text.
+     * 
+     * @return true if there is a sued defence
+     */
+    public boolean hasSuedDefence() {
+        return suedDefence != BlobStore.NULL_HANDLE;
     }
 
     /**
@@ -286,8 +398,9 @@ public class Lawsuit extends AbstractSystemObject
      * 
      * @param suedDefence The defendant's defence
      */
-    public void setSuedDefence(String suedDefence) {
-        this.suedDefence = suedDefence;
+    public synchronized void setSuedDefence(String suedDefence) {
+        this.suedDefence = TEXTS.put(suedDefence);
+        log(LogRecordTypes.LAWSUIT_SUED_DEFENCE, out -> out.writeString(suedDefence));
     }
 
     /**
@@ -296,7 +409,17 @@ public class Lawsuit extends AbstractSystemObject
      * @return suingDefence
      */
     public String getSuingDefence() {
-        return suingDefence;
+        return TEXTS.get(suingDefence);
+    }
+
+    /**
+     * This function returns whether the prosecutor's defence was added, without
+     * reading the text.
+     * 
+     * @return true if there is a suing defence
+     */
+    public boolean hasSuingDefence() {
+        return suingDefence != BlobStore.NULL_HANDLE;
     }
 
     /**
@@ -304,8 +427,9 @@ public class Lawsuit extends AbstractSystemObject
      * 
      * @param suingDefence The name of the defence that is suing the other defence.
      */
-    public void setSuingDefence(String suingDefence) {
-        this.suingDefence = suingDefence;
+    public synchronized void setSuingDefence(String suingDefence) {
+        this.suingDefence = TEXTS.put(suingDefence);
+        log(LogRecordTypes.LAWSUIT_SUING_DEFENCE, out -> out.writeString(suingDefence));
     }
 
     /**
@@ -317,19 +441,19 @@ public class Lawsuit extends AbstractSystemObject
     public String toString() {
         StringBuilder sb = new StringBuilder();
 
-        sb.append("Case ID: " + this.id + "\n");
-        sb.append("Date: " + this.date + "\n");
-        sb.append("Judge ID: " + this.judge + "\n");
-        sb.append("Suing Citizen ID: " + this.suingCitizen + "\n");
-        sb.append("Sued Citizen ID: " + this.suedCitizen + "\n");
-        sb.append("Suing Lawyer ID: " + this.suingLawyer + "\n");
-        sb.append("Sued Lawyer ID: " + this.suedLawyer + "\n");
-        sb.append("Suing Defence: " + this.suingDefence + "\n");
-        sb.append("Sued Defence: " + this.suedDefence + "\n");
-        sb.append("Lawsuit Type: " + this.lawsuitType + "\n");
-        sb.append("Case File: " + this.caseFile + "\n");
-        sb.append("Court Records: " + this.courtRecords + "\n");
-        sb.append("Status: " + this.status + "\n");
+        sb.append("Case ID: ").append(this.id).append("\n");
+        sb.append("Date: ").append(this.date).append("\n");
+        sb.append("Judge ID: ").append(this.judge).append("\n");
+        sb.append("Suing Citizen ID: ").append(this.suingCitizen).append("\n");
+        sb.append("Sued Citizen ID: ").append(this.suedCitizen).append("\n");
+        sb.append("Suing Lawyer ID: ").append(this.suingLawyer).append("\n");
+        sb.append("Sued Lawyer ID: ").append(this.suedLawyer).append("\n");
+        sb.append("Suing Defence: ").append(getSuingDefence()).append("\n");
+        sb.append("Sued Defence: ").append(getSuedDefence()).append("\n");
+        sb.append("Lawsuit Type: ").append(this.lawsuitType).append("\n");
+        sb.append("Case File: ").append(getCaseFile()).append("\n");
+        sb.append("Court Records: ").append(getCourtRecords()).append("\n");
+        sb.append("Status: ").append(this.status).append("\n");
 
         return sb.toString();
     }
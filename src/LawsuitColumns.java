@@ -0,0 +1,419 @@
+import java.util.Arrays;
+
+import enums.LawsuitStatus;
+import enums.LawsuitTypes;
+
+/**
+ * Copy of the structured fields of the lawsuits kept as one array per field,
+ * so a scan over every lawsuit reads a few dense arrays instead of following
+ * a reference to each lawsuit, its date and its enums.
+ * The row of a lawsuit is the sequence of its id. Enums are stored as their
+ * ordinal plus one, 0 for null, and dates as epoch days.
+ * The filters check a block of rows one field at a time in loops without
+ * branches, which the JIT can unroll and vectorize.
+ */
+public class LawsuitColumns
+{
+    private static final int INITIAL_CAPACITY = 1024;
+    // Rows checked at a time, the match flags of a block stay in the cache.
+    private static final int BLOCK_SIZE = 1024;
+
+    private int[] ids;
+    private long[] dateEpoch;
+    private int[] judge;
+    private int[] suingCitizen;
+    private int[] suedCitizen;
+    private int[] suingLawyer;
+    private int[] suedLawyer;
+    private byte[] type;
+    private byte[] status;
+    // One past the highest used row.
+    private int limit;
+
+    /**
+     * Conditions on the fields of a lawsuit. A new filter accepts every lawsuit.
+     */
+    public static class Filter
+    {
+        private static final int ANY_ID = 0;
+
+        private long startDay = Long.MIN_VALUE;
+        private long endDay = Long.MAX_VALUE;
+        private int judgeId = ANY_ID;
+        private int lawyerId = ANY_ID;
+        private int citizenId = ANY_ID;
+        // Bit (ordinal + 1) is set for every accepted enum constant.
+        private int typeMask = -1;
+        private int statusMask = -1;
+
+        /**
+         * It accepts the lawsuits between the given days, both inclusive.
+         *
+         * @param startDay The first day as epoch day.
+         * @param endDay The last day as epoch day.
+         * @return This filter.
+         */
+        public Filter between(long startDay, long endDay)
+        {
+            this.startDay = startDay;
+            this.endDay = endDay;
+            return this;
+        }
+
+        /**
+         * @param judgeId The id of the judge of the lawsuits.
+         * @return This filter.
+         */
+        public Filter judge(int judgeId)
+        {
+            this.judgeId = judgeId;
+            return this;
+        }
+
+        /**
+         * @param lawyerId The id of the suing or the sued lawyer.
+         * @return This filter.
+         */
+        public Filter lawyer(int lawyerId)
+        {
+            this.lawyerId = lawyerId;
+            return this;
+        }
+
+        /**
+         * @param citizenId The id of the suing or the sued citizen.
+         * @return This filter.
+         */
+        public Filter citizen(int citizenId)
+        {
+            this.citizenId = citizenId;
+            return this;
+        }
+
+        /**
+         * @param types The accepted lawsuit types.
+         * @return This filter.
+         */
+        public Filter types(LawsuitTypes... types)
+        {
+            typeMask = 0;
+            for (LawsuitTypes lawsuitType : types)
+                typeMask |= 1 << code(lawsuitType);
+            return this;
+        }
+
+        /**
+         * @param statuses The accepted lawsuit statuses.
+         * @return This filter.
+         */
+        public Filter statuses(LawsuitStatus... statuses)
+        {
+            statusMask = 0;
+            for (LawsuitStatus lawsuitStatus : statuses)
+                statusMask |= 1 << code(lawsuitStatus);
+            return this;
+        }
+
+        // ------- CONDITIONS FOR THE QUERY PLANNER -------
+        boolean hasJudge()
+        {
+            return judgeId != ANY_ID;
+        }
+
+        int getJudgeId()
+        {
+            return judgeId;
+        }
+
+        boolean hasLawyer()
+        {
+            return lawyerId != ANY_ID;
+        }
+
+        int getLawyerId()
+        {
+            return lawyerId;
+        }
+
+        boolean hasCitizen()
+        {
+            return citizenId != ANY_ID;
+        }
+
+        int getCitizenId()
+        {
+            return citizenId;
+        }
+
+        boolean hasDateRange()
+        {
+            return startDay != Long.MIN_VALUE || endDay != Long.MAX_VALUE;
+        }
+
+        long getStartDay()
+        {
+            return startDay;
+        }
+
+        long getEndDay()
+        {
+            return endDay;
+        }
+
+        boolean restrictsTypes()
+        {
+            return typeMask != -1;
+        }
+
+        boolean acceptsType(LawsuitTypes lawsuitType)
+        {
+            return ((typeMask >>> code(lawsuitType)) & 1) != 0;
+        }
+
+        boolean restrictsStatuses()
+        {
+            return statusMask != -1;
+        }
+
+        boolean acceptsStatus(LawsuitStatus lawsuitStatus)
+        {
+            return ((statusMask >>> code(lawsuitStatus)) & 1) != 0;
+        }
+    }
+
+    /**
+     * LawsuitColumns constructor.
+     */
+    public LawsuitColumns()
+    {
+        ids = new int[INITIAL_CAPACITY];
+        dateEpoch = new long[INITIAL_CAPACITY];
+        judge = new int[INITIAL_CAPACITY];
+        suingCitizen = new int[INITIAL_CAPACITY];
+        suedCitizen = new int[INITIAL_CAPACITY];
+        suingLawyer = new int[INITIAL_CAPACITY];
+        suedLawyer = new int[INITIAL_CAPACITY];
+        type = new byte[INITIAL_CAPACITY];
+        status = new byte[INITIAL_CAPACITY];
+    }
+
+    /**
+     * It copies the fields of a new or changed lawsuit into its row.
+     *
+     * @param lawsuit The lawsuit.
+     */
+    public void update(Lawsuit lawsuit)
+    {
+        int row = AbstractSystemObject.sequenceOf(lawsuit.getId());
+        ensureCapacity(row + 1);
+        ids[row] = lawsuit.getId();
+        dateEpoch[row] = lawsuit.getDate() == null ? Long.MIN_VALUE : LawsuitIndex.toEpochDay(lawsuit.getDate());
+        judge[row] = lawsuit.getJudge();
+        suingCitizen[row] = lawsuit.getSuingCitizen();
+        suedCitizen[row] = lawsuit.getSuedCitizen();
+        suingLawyer[row] = lawsuit.getSuingLawyer();
+        suedLawyer[row] = lawsuit.getSuedLawyer();
+        type[row] = (byte) code(lawsuit.getLawsuitType());
+        status[row] = (byte) code(lawsuit.getStatus());
+        limit = Math.max(limit, row + 1);
+    }
+
+    /**
+     * It returns the number of lawsuits the filter accepts.
+     *
+     * @param filter The filter.
+     * @return The number of lawsuits.
+     */
+    public int count(Filter filter)
+    {
+        boolean[] match = new boolean[BLOCK_SIZE];
+        int count = 0;
+        for (int start = 0; start < limit; start += BLOCK_SIZE)
+        {
+            int length = Math.min(BLOCK_SIZE, limit - start);
+            filterBlock(filter, start, length, match);
+            for (int i = 0; i < length; i++)
+                count += match[i] ? 1 : 0;
+        }
+        return count;
+    }
+
+    /**
+     * It returns the ids of the lawsuits the filter accepts.
+     *
+     * @param filter The filter.
+     * @return The lawsuit ids in increasing order.
+     */
+    public int[] select(Filter filter)
+    {
+        boolean[] match = new boolean[BLOCK_SIZE];
+        int[] selected = new int[16];
+        int size = 0;
+        for (int start = 0; start < limit; start += BLOCK_SIZE)
+        {
+            int length = Math.min(BLOCK_SIZE, limit - start);
+            filterBlock(filter, start, length, match);
+            if (selected.length < size + length)
+                selected = Arrays.copyOf(selected, Math.max(selected.length * 2, size + length));
+            // Every row is written, only matching rows move the end forward.
+            for (int i = 0; i < length; i++)
+            {
+                selected[size] = ids[start + i];
+                size += match[i] ? 1 : 0;
+            }
+        }
+        return Arrays.copyOf(selected, size);
+    }
+
+    /**
+     * It tells if the filter accepts a lawsuit, by reading only its row.
+     *
+     * @param filter The filter.
+     * @param lawsuitId The id of the lawsuit.
+     * @return True if the lawsuit is in the columns and meets every condition.
+     */
+    public boolean accepts(Filter filter, int lawsuitId)
+    {
+        int row = AbstractSystemObject.sequenceOf(lawsuitId);
+        if (row >= limit || ids[row] != lawsuitId)
+            return false;
+        long day = dateEpoch[row];
+        return day >= filter.startDay && day <= filter.endDay
+               && (filter.judgeId == Filter.ANY_ID || judge[row] == filter.judgeId)
+               && (filter.lawyerId == Filter.ANY_ID || suingLawyer[row] == filter.lawyerId
+                   || suedLawyer[row] == filter.lawyerId)
+               && (filter.citizenId == Filter.ANY_ID || suingCitizen[row] == filter.citizenId
+                   || suedCitizen[row] == filter.citizenId)
+               && ((filter.typeMask >>> type[row]) & 1) != 0
+               && ((filter.statusMask >>> status[row]) & 1) != 0;
+    }
+
+    /**
+     * It fills a page with the ids of the lawsuits the filter accepts that
+     * come after the given id, scanning only the rows after it.
+     *
+     * @param filter The filter.
+     * @param afterId The id to start after, 0 to start from the first lawsuit.
+     * @param page The array to fill.
+     * @return The number of ids, less than the page length only when no lawsuits are left.
+     */
+    public int select(Filter filter, int afterId, int[] page)
+    {
+        boolean[] match = new boolean[BLOCK_SIZE];
+        int size = 0;
+        int start = afterId <= 0 ? 0 : AbstractSystemObject.sequenceOf(afterId) + 1;
+        for (; start < limit && size < page.length; start += BLOCK_SIZE)
+        {
+            int length = Math.min(BLOCK_SIZE, limit - start);
+            filterBlock(filter, start, length, match);
+            for (int i = 0; i < length && size < page.length; i++)
+            {
+                page[size] = ids[start + i];
+                size += match[i] ? 1 : 0;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * It counts the lawsuits the filter accepts for every type and status.
+     *
+     * @param filter The filter.
+     * @return The counts indexed by [type ordinal + 1][status ordinal + 1],
+     *         index 0 counts the lawsuits without a type or status.
+     */
+    public int[][] countByTypeAndStatus(Filter filter)
+    {
+        int statusCount = LawsuitStatus.values().length + 1;
+        int[] counts = new int[(LawsuitTypes.values().length + 1) * statusCount];
+        boolean[] match = new boolean[BLOCK_SIZE];
+        for (int start = 0; start < limit; start += BLOCK_SIZE)
+        {
+            int length = Math.min(BLOCK_SIZE, limit - start);
+            filterBlock(filter, start, length, match);
+            for (int i = 0; i < length; i++)
+                counts[type[start + i] * statusCount + status[start + i]] += match[i] ? 1 : 0;
+        }
+
+        int[][] table = new int[LawsuitTypes.values().length + 1][];
+        for (int t = 0; t < table.length; t++)
+            table[t] = Arrays.copyOfRange(counts, t * statusCount, (t + 1) * statusCount);
+        return table;
+    }
+
+    /**
+     * @return The number of lawsuits in the columns.
+     */
+    public int size()
+    {
+        return count(new Filter());
+    }
+
+    // ------- HELPERS -------
+    /**
+     * It sets the match flags of a block of rows, one condition at a time.
+     * Conditions that accept everything are skipped.
+     */
+    private void filterBlock(Filter filter, int start, int length, boolean[] match)
+    {
+        long startDay = filter.startDay;
+        long endDay = filter.endDay;
+        for (int i = 0; i < length; i++)
+        {
+            long day = dateEpoch[start + i];
+            match[i] = (ids[start + i] != 0) & (day >= startDay) & (day <= endDay);
+        }
+
+        if (filter.judgeId != Filter.ANY_ID)
+        {
+            int judgeId = filter.judgeId;
+            for (int i = 0; i < length; i++)
+                match[i] &= judge[start + i] == judgeId;
+        }
+        if (filter.lawyerId != Filter.ANY_ID)
+        {
+            int lawyerId = filter.lawyerId;
+            for (int i = 0; i < length; i++)
+                match[i] &= (suingLawyer[start + i] == lawyerId) | (suedLawyer[start + i] == lawyerId);
+        }
+        if (filter.citizenId != Filter.ANY_ID)
+        {
+            int citizenId = filter.citizenId;
+            for (int i = 0; i < length; i++)
+                match[i] &= (suingCitizen[start + i] == citizenId) | (suedCitizen[start + i] == citizenId);
+        }
+        if (filter.typeMask != -1)
+        {
+            int typeMask = filter.typeMask;
+            for (int i = 0; i < length; i++)
+                match[i] &= ((typeMask >>> type[start + i]) & 1) != 0;
+        }
+        if (filter.statusMask != -1)
+        {
+            int statusMask = filter.statusMask;
+            for (int i = 0; i < length; i++)
+                match[i] &= ((statusMask >>> status[start + i]) & 1) != 0;
+        }
+    }
+
+    private static int code(Enum<?> value)
+    {
+        return value == null ? 0 : value.ordinal() + 1;
+    }
+
+    private void ensureCapacity(int capacity)
+    {
+        if (capacity <= ids.length)
+            return;
+        int newCapacity = Math.max(capacity, ids.length * 2);
+        ids = Arrays.copyOf(ids, newCapacity);
+        dateEpoch = Arrays.copyOf(dateEpoch, newCapacity);
+        judge = Arrays.copyOf(judge, newCapacity);
+        suingCitizen = Arrays.copyOf(suingCitizen, newCapacity);
+        suedCitizen = Arrays.copyOf(suedCitizen, newCapacity);
+        suingLawyer = Arrays.copyOf(suingLawyer, newCapacity);
+        suedLawyer = Arrays.copyOf(suedLawyer, newCapacity);
+        type = Arrays.copyOf(type, newCapacity);
+        status = Arrays.copyOf(status, newCapacity);
+    }
+}
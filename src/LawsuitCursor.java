@@ -0,0 +1,100 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Cursor over the lawsuits of a query in increasing id order.
+ * The ids are found a page at a time when the cursor reaches the end of the previous
+ * page, and the lawsuit lock is held only while a page is found. A lawsuit added or
+ * changed while the cursor is used can be missed or seen with its new fields.
+ */
+public class LawsuitCursor implements Iterator<Lawsuit>
+{
+    private static final int PAGE_SIZE = 256;
+
+    private final SystemClass systemClass;
+    private final LawsuitQueryPlan plan;
+    private final int[] page = new int[PAGE_SIZE];
+    private int size;
+    private int position;
+    private int lastId;
+    private boolean lastPage;
+
+    /**
+     * LawsuitCursor constructor.
+     *
+     * @param systemClass The system the lawsuits are read from.
+     * @param plan The plan of the query.
+     */
+    LawsuitCursor(SystemClass systemClass, LawsuitQueryPlan plan)
+    {
+        this.systemClass = systemClass;
+        this.plan = plan;
+    }
+
+    /**
+     * It tells if the query has more lawsuits, finding the next page if needed.
+     *
+     * @return True if next returns a lawsuit.
+     */
+    @Override
+    public boolean hasNext()
+    {
+        if (position < size)
+            return true;
+        if (lastPage)
+            return false;
+        size = systemClass.fillLawsuitPage(plan, lastId, page);
+        position = 0;
+        lastPage = size < page.length;
+        if (size > 0)
+            lastId = page[size - 1];
+        return size > 0;
+    }
+
+    /**
+     * It returns the next lawsuit of the query.
+     *
+     * @return The lawsuit.
+     * @throws NoSuchElementException If the query has no more lawsuits.
+     */
+    @Override
+    public Lawsuit next()
+    {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        return systemClass.getLawsuit(page[position++]);
+    }
+
+    /**
+     * It fills a page of the query after the given lawsuit, without moving the cursor.
+     *
+     * @param afterId The last id of the previous page, or 0 for the first page.
+     * @param ids The array to fill with the lawsuit ids in increasing order.
+     * @return The number of ids, less than the page length only on the last page.
+     */
+    public int fill(int afterId, int[] ids)
+    {
+        return systemClass.fillLawsuitPage(plan, afterId, ids);
+    }
+
+    /**
+     * It returns the description of the plan of the query.
+     *
+     * @return The access path and the checks of the query.
+     */
+    public String getPlan()
+    {
+        return plan.toString();
+    }
+
+    /**
+     * It returns the number of candidate lawsuits the plan reads, which is at least the
+     * number of lawsuits of the query.
+     *
+     * @return The estimate.
+     */
+    public int getEstimate()
+    {
+        return plan.getEstimate();
+    }
+}
@@ -0,0 +1,466 @@
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import DataStructures.DenseIdTable;
+import DataStructures.IntSortedSet;
+import DataStructures.LongTreeSet;
+import SortingAlgorithms.ParallelSort;
+import enums.LawsuitStatus;
+import enums.LawsuitTypes;
+import enums.SystemObjectTypes;
+
+/**
+ * Secondary indexes of the lawsuits, so the archive can find the lawsuits
+ * of a judge, lawyer, citizen, type or status without scanning every lawsuit.
+ * Every index keeps the lawsuit ids in increasing order, except the date
+ * index which keeps them ordered by day and then by id.
+ */
+public class LawsuitIndex
+{
+    // Returned for keys without lawsuits, never modified.
+    private static final IntSortedSet EMPTY = new IntSortedSet();
+
+    private final IdIndex byJudge;
+    private final IdIndex byLawyer;
+    private final IdIndex byCitizen;
+    // Type and status sets take an id in the middle on every change, so they are trees.
+    private final EnumMap<LawsuitTypes, LongTreeSet> byType;
+    private final EnumMap<LawsuitStatus, LongTreeSet> byStatus;
+    // Keys are (epochDay << 32) | id.
+    private final LongTreeSet byDate;
+
+    /**
+     * Sets of lawsuit ids keyed by the id of a system object.
+     * Keys are looked up in the table of their type, so no key is boxed.
+     */
+    private static class IdIndex
+    {
+        private final List<DenseIdTable<IntSortedSet>> tables;
+
+        IdIndex()
+        {
+            tables = new ArrayList<>();
+            for (SystemObjectTypes type : SystemObjectTypes.values())
+            {
+                tables.add(new DenseIdTable<>(SystemObjectCreator.createInitialId(type.getSystemObjectCode())));
+            }
+        }
+
+        /**
+         * It returns the table that keeps the keys of the type of the given id.
+         *
+         * @param id The key.
+         * @return The table, or null if the id has no valid type.
+         */
+        private DenseIdTable<IntSortedSet> table(int id)
+        {
+            int index = AbstractSystemObject.typeCodeOf(id) - 1;
+            if (index < 0 || index >= tables.size())
+                return null;
+            return tables.get(index);
+        }
+
+        IntSortedSet get(int id)
+        {
+            DenseIdTable<IntSortedSet> table = table(id);
+            IntSortedSet set = table == null ? null : table.get(id);
+            return set == null ? EMPTY : set;
+        }
+
+        void add(int id, int lawsuitId)
+        {
+            DenseIdTable<IntSortedSet> table = table(id);
+            if (table == null)
+                return;
+            IntSortedSet set = table.get(id);
+            if (set == null)
+            {
+                set = new IntSortedSet();
+                table.put(id, set);
+            }
+            set.add(lawsuitId);
+        }
+
+        void remove(int id, int lawsuitId)
+        {
+            DenseIdTable<IntSortedSet> table = table(id);
+            IntSortedSet set = table == null ? null : table.get(id);
+            if (set != null)
+                set.remove(lawsuitId);
+        }
+    }
+
+    /**
+     * LawsuitIndex constructor.
+     */
+    public LawsuitIndex()
+    {
+        byJudge = new IdIndex();
+        byLawyer = new IdIndex();
+        byCitizen = new IdIndex();
+        byType = new EnumMap<>(LawsuitTypes.class);
+        for (LawsuitTypes type : LawsuitTypes.values())
+            byType.put(type, new LongTreeSet());
+        byStatus = new EnumMap<>(LawsuitStatus.class);
+        for (LawsuitStatus status : LawsuitStatus.values())
+            byStatus.put(status, new LongTreeSet());
+        byDate = new LongTreeSet();
+    }
+
+    /**
+     * It adds a newly registered lawsuit to every index.
+     *
+     * @param lawsuit The lawsuit to add.
+     */
+    public void add(Lawsuit lawsuit)
+    {
+        int id = lawsuit.getId();
+        byJudge.add(lawsuit.getJudge(), id);
+        byLawyer.add(lawsuit.getSuingLawyer(), id);
+        byLawyer.add(lawsuit.getSuedLawyer(), id);
+        byCitizen.add(lawsuit.getSuingCitizen(), id);
+        byCitizen.add(lawsuit.getSuedCitizen(), id);
+        if (lawsuit.getLawsuitType() != null)
+            byType.get(lawsuit.getLawsuitType()).add(id);
+        if (lawsuit.getStatus() != null)
+            byStatus.get(lawsuit.getStatus()).add(id);
+        if (lawsuit.getDate() != null)
+            byDate.add(dateKey(toEpochDay(lawsuit.getDate()), id));
+    }
+
+    /**
+     * It adds many newly registered lawsuits to every index. Lawsuits in
+     * increasing id order are appended to the id sets, and the type, status
+     * and date trees are built from sorted keys instead of one insert per lawsuit.
+     *
+     * @param lawsuits The lawsuits to add, usually in increasing id order.
+     */
+    public void addAll(List<Lawsuit> lawsuits)
+    {
+        LawsuitTypes[] types = LawsuitTypes.values();
+        long[][] typeKeys = new long[types.length][];
+        int[] typeCounts = new int[types.length];
+        for (int i = 0; i < types.length; i++)
+            typeKeys[i] = new long[16];
+        LawsuitStatus[] statuses = LawsuitStatus.values();
+        long[][] statusKeys = new long[statuses.length][];
+        int[] statusCounts = new int[statuses.length];
+        for (int i = 0; i < statuses.length; i++)
+            statusKeys[i] = new long[16];
+        long[] dateKeys = new long[16];
+        int dateCount = 0;
+
+        for (Lawsuit lawsuit : lawsuits)
+        {
+            int id = lawsuit.getId();
+            byJudge.add(lawsuit.getJudge(), id);
+            byLawyer.add(lawsuit.getSuingLawyer(), id);
+            byLawyer.add(lawsuit.getSuedLawyer(), id);
+            byCitizen.add(lawsuit.getSuingCitizen(), id);
+            byCitizen.add(lawsuit.getSuedCitizen(), id);
+            if (lawsuit.getLawsuitType() != null)
+            {
+                int type = lawsuit.getLawsuitType().ordinal();
+                typeKeys[type] = append(typeKeys[type], typeCounts[type]++, id);
+            }
+            if (lawsuit.getStatus() != null)
+            {
+                int status = lawsuit.getStatus().ordinal();
+                statusKeys[status] = append(statusKeys[status], statusCounts[status]++, id);
+            }
+            if (lawsuit.getDate() != null)
+                dateKeys = append(dateKeys, dateCount++, dateKey(toEpochDay(lawsuit.getDate()), id));
+        }
+
+        for (LawsuitTypes type : types)
+            byType.get(type).addAll(sorted(typeKeys[type.ordinal()], typeCounts[type.ordinal()]));
+        for (LawsuitStatus status : statuses)
+            byStatus.get(status).addAll(sorted(statusKeys[status.ordinal()], statusCounts[status.ordinal()]));
+        byDate.addAll(sorted(dateKeys, dateCount));
+    }
+
+    /**
+     * It moves the lawsuit from the old judge to the current one.
+     *
+     * @param lawsuit The changed lawsuit.
+     * @param oldJudge The judge id before the change.
+     */
+    public void judgeChanged(Lawsuit lawsuit, int oldJudge)
+    {
+        byJudge.remove(oldJudge, lawsuit.getId());
+        byJudge.add(lawsuit.getJudge(), lawsuit.getId());
+    }
+
+    /**
+     * It updates the lawyer index after the suing or sued lawyer changed.
+     * The lawsuit stays under the old lawyer if he/she is still on the other side.
+     *
+     * @param lawsuit The changed lawsuit.
+     * @param oldLawyer The lawyer id before the change.
+     */
+    public void lawyerChanged(Lawsuit lawsuit, int oldLawyer)
+    {
+        if (oldLawyer != lawsuit.getSuingLawyer() && oldLawyer != lawsuit.getSuedLawyer())
+            byLawyer.remove(oldLawyer, lawsuit.getId());
+        byLawyer.add(lawsuit.getSuingLawyer(), lawsuit.getId());
+        byLawyer.add(lawsuit.getSuedLawyer(), lawsuit.getId());
+    }
+
+    /**
+     * It updates the citizen index after the suing or sued citizen changed.
+     *
+     * @param lawsuit The changed lawsuit.
+     * @param oldCitizen The citizen id before the change.
+     */
+    public void citizenChanged(Lawsuit lawsuit, int oldCitizen)
+    {
+        if (oldCitizen != lawsuit.getSuingCitizen() && oldCitizen != lawsuit.getSuedCitizen())
+            byCitizen.remove(oldCitizen, lawsuit.getId());
+        byCitizen.add(lawsuit.getSuingCitizen(), lawsuit.getId());
+        byCitizen.add(lawsuit.getSuedCitizen(), lawsuit.getId());
+    }
+
+    /**
+     * It moves the lawsuit from the old type to the current one.
+     *
+     * @param lawsuit The changed lawsuit.
+     * @param oldType The type before the change.
+     */
+    public void typeChanged(Lawsuit lawsuit, LawsuitTypes oldType)
+    {
+        if (oldType != null)
+            byType.get(oldType).remove(lawsuit.getId());
+        if (lawsuit.getLawsuitType() != null)
+            byType.get(lawsuit.getLawsuitType()).add(lawsuit.getId());
+    }
+
+    /**
+     * It moves the lawsuit from the old status to the current one.
+     *
+     * @param lawsuit The changed lawsuit.
+     * @param oldStatus The status before the change.
+     */
+    public void statusChanged(Lawsuit lawsuit, LawsuitStatus oldStatus)
+    {
+        if (oldStatus != null)
+            byStatus.get(oldStatus).remove(lawsuit.getId());
+        if (lawsuit.getStatus() != null)
+            byStatus.get(lawsuit.getStatus()).add(lawsuit.getId());
+    }
+
+    /**
+     * It moves the lawsuit from the old day to the current one.
+     *
+     * @param lawsuit The changed lawsuit.
+     * @param oldDate The date before the change.
+     */
+    public void dateChanged(Lawsuit lawsuit, Date oldDate)
+    {
+        if (oldDate != null)
+            byDate.remove(dateKey(toEpochDay(oldDate), lawsuit.getId()));
+        if (lawsuit.getDate() != null)
+            byDate.add(dateKey(toEpochDay(lawsuit.getDate()), lawsuit.getId()));
+    }
+
+    /**
+     * It tells if the judge, lawyer and citizen indexes can hold the id. Other values,
+     * like the -1 of a lawsuit without a judge, are kept only in the lawsuit columns.
+     *
+     * @param id The id of a system object.
+     * @return True if the id has the type code of a system object.
+     */
+    public boolean isIndexed(int id)
+    {
+        return byJudge.table(id) != null;
+    }
+
+    /**
+     * It returns the ids of the lawsuits assigned to the judge.
+     *
+     * @param judgeId The id of the judge.
+     * @return The lawsuit ids in increasing order. The set must not be modified.
+     */
+    public IntSortedSet getByJudge(int judgeId)
+    {
+        return byJudge.get(judgeId);
+    }
+
+    /**
+     * It returns the ids of the lawsuits where the lawyer is the suing or the sued lawyer.
+     *
+     * @param lawyerId The id of the lawyer.
+     * @return The lawsuit ids in increasing order. The set must not be modified.
+     */
+    public IntSortedSet getByLawyer(int lawyerId)
+    {
+        return byLawyer.get(lawyerId);
+    }
+
+    /**
+     * It returns the ids of the lawsuits where the citizen is the suing or the sued citizen.
+     *
+     * @param citizenId The id of the citizen.
+     * @return The lawsuit ids in increasing order. The set must not be modified.
+     */
+    public IntSortedSet getByCitizen(int citizenId)
+    {
+        return byCitizen.get(citizenId);
+    }
+
+    /**
+     * It returns the ids of the lawsuits of the given type.
+     * The set can find the position of an id and the id at a position in O(log n).
+     *
+     * @param type The lawsuit type.
+     * @return The lawsuit ids in increasing order. The set must not be modified.
+     */
+    public LongTreeSet getByType(LawsuitTypes type)
+    {
+        return byType.get(type);
+    }
+
+    /**
+     * It returns the ids of the lawsuits with the given status.
+     * The set can find the position of an id and the id at a position in O(log n).
+     *
+     * @param status The lawsuit status.
+     * @return The lawsuit ids in increasing order. The set must not be modified.
+     */
+    public LongTreeSet getByStatus(LawsuitStatus status)
+    {
+        return byStatus.get(status);
+    }
+
+    /**
+     * It calls the action for the ids of the lawsuits between the given days, both inclusive,
+     * ordered by date. Lawsuits outside the range are not visited.
+     *
+     * @param startDay The first day as epoch day.
+     * @param endDay The last day as epoch day.
+     * @param action The action to call with each lawsuit id.
+     */
+    public void forEachByDate(long startDay, long endDay, IntConsumer action)
+    {
+        if (startDay > endDay)
+            return;
+        byDate.forEachInRange(dateKey(startDay, 0), dateKey(endDay, -1), key -> action.accept((int) key));
+    }
+
+    /**
+     * It fills a page with the ids of the lawsuits between the given days, both inclusive,
+     * that come after the given lawsuit in date order. The page starts with a seek, so it
+     * costs the same wherever it is in the range.
+     *
+     * @param startDay The first day as epoch day.
+     * @param endDay The last day as epoch day.
+     * @param afterDay The day of the last lawsuit of the previous page, ignored on the first page.
+     * @param afterId The id of the last lawsuit of the previous page, or 0 for the first page.
+     * @param page The array to fill with the ids.
+     * @return The number of ids, less than the page length only on the last page.
+     */
+    public int pageByDate(long startDay, long endDay, long afterDay, int afterId, int[] page)
+    {
+        if (startDay > endDay)
+            return 0;
+        long lastKey = dateKey(endDay, -1);
+        int position = byDate.rank(dateKey(startDay, 0));
+        if (afterId != 0)
+            position = Math.max(position, byDate.rank(dateKey(afterDay, afterId) + 1));
+        int count = 0;
+        while (count < page.length && position < byDate.size())
+        {
+            long key = byDate.select(position++);
+            if (key > lastKey)
+                break;
+            page[count++] = (int) key;
+        }
+        return count;
+    }
+
+    /**
+     * It returns the number of lawsuits between the given days, both inclusive.
+     *
+     * @param startDay The first day as epoch day.
+     * @param endDay The last day as epoch day.
+     * @return The number of lawsuits.
+     */
+    public int countByDate(long startDay, long endDay)
+    {
+        return byDate.countRange(dateKey(startDay, 0), dateKey(endDay, -1));
+    }
+
+    /**
+     * It returns the earliest lawsuit between the given days, both inclusive.
+     *
+     * @param startDay The first day as epoch day.
+     * @param endDay The last day as epoch day.
+     * @return The id of the lawsuit, or -1 if there is none.
+     */
+    public int firstByDate(long startDay, long endDay)
+    {
+        if (countByDate(startDay, endDay) == 0)
+            return -1;
+        return (int) byDate.select(byDate.rank(dateKey(startDay, 0)));
+    }
+
+    /**
+     * It returns the latest lawsuit between the given days, both inclusive.
+     *
+     * @param startDay The first day as epoch day.
+     * @param endDay The last day as epoch day.
+     * @return The id of the lawsuit, or -1 if there is none.
+     */
+    public int lastByDate(long startDay, long endDay)
+    {
+        int count = countByDate(startDay, endDay);
+        if (count == 0)
+            return -1;
+        return (int) byDate.select(byDate.rank(dateKey(startDay, 0)) + count - 1);
+    }
+
+    // ------- HELPERS -------
+    /**
+     * It returns the day of the date in the default time zone as epoch day.
+     *
+     * @param date The date.
+     * @return The number of days since 1970-01-01.
+     */
+    public static long toEpochDay(Date date)
+    {
+        return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
+
+    private static long[] append(long[] keys, int count, long key)
+    {
+        if (count == keys.length)
+            keys = Arrays.copyOf(keys, count * 2);
+        keys[count] = key;
+        return keys;
+    }
+
+    // A rebuild sorts the keys of every lawsuit at once, so they are sorted on all cores.
+    private static long[] sorted(long[] keys, int count)
+    {
+        long[] result = Arrays.copyOf(keys, count);
+        ParallelSort.sort(result);
+        return result;
+    }
+
+    /**
+     * It builds the key of the date index: the day in the high bits, the lawsuit id in the low bits.
+     * An id of -1 gives the largest key of the day.
+     *
+     * @param epochDay The day.
+     * @param id The lawsuit id.
+     * @return The key.
+     */
+    private static long dateKey(long epochDay, int id)
+    {
+        return (epochDay << 32) | (id & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,347 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import DataStructures.IntSortedSet;
+import DataStructures.LongTreeSet;
+import SortingAlgorithms.ParallelSort;
+import enums.LawsuitStatus;
+import enums.LawsuitTypes;
+
+/**
+ * Plan of a lawsuit query. The plan reads the candidate lawsuits from the access path
+ * that gives the fewest of them, drops the candidates missing from the other id indexes
+ * of the filter and checks the remaining conditions on the lawsuit columns.
+ * The access paths are the judge, lawyer and citizen indexes, the type or status indexes
+ * of the accepted constants, the date index and a scan of the lawsuit columns. An index is
+ * used only when it gives fewer than 1/SCAN_RATIO of the lawsuits, because scanning the
+ * dense columns is faster than checking that many candidates one by one.
+ * The lawsuits come in increasing id order, so a page can continue after the last id of
+ * the previous page. The caller holds the lawsuit read lock while the plan is made and used.
+ */
+class LawsuitQueryPlan
+{
+    private static final int SCAN_RATIO = 8;
+
+    private final LawsuitColumns.Filter filter;
+    private final LawsuitColumns lawsuitColumns;
+    // Null when the plan scans the columns
+    private final SortedIds[] path;
+    private final IntSortedSet[] probes;
+    private final int estimate;
+    private final String description;
+
+    private LawsuitQueryPlan(LawsuitColumns.Filter filter, LawsuitColumns lawsuitColumns, SortedIds[] path,
+                             IntSortedSet[] probes, int estimate, String description)
+    {
+        this.filter = filter;
+        this.lawsuitColumns = lawsuitColumns;
+        this.path = path;
+        this.probes = probes;
+        this.estimate = estimate;
+        this.description = description;
+    }
+
+    /**
+     * It makes the plan of a query.
+     *
+     * @param filter The conditions of the query. It must not be changed while the plan is used.
+     * @param lawsuitIndex The lawsuit index.
+     * @param lawsuitColumns The lawsuit columns.
+     * @param lawsuitCount The number of lawsuits in the system.
+     * @return The plan.
+     */
+    static LawsuitQueryPlan plan(LawsuitColumns.Filter filter, LawsuitIndex lawsuitIndex,
+                                 LawsuitColumns lawsuitColumns, int lawsuitCount)
+    {
+        // Ids the indexes cannot hold are left to the column check
+        List<IntSortedSet> idSets = new ArrayList<>();
+        List<String> idSetNames = new ArrayList<>();
+        if (filter.hasJudge() && lawsuitIndex.isIndexed(filter.getJudgeId()))
+        {
+            idSets.add(lawsuitIndex.getByJudge(filter.getJudgeId()));
+            idSetNames.add("judge index");
+        }
+        if (filter.hasLawyer() && lawsuitIndex.isIndexed(filter.getLawyerId()))
+        {
+            idSets.add(lawsuitIndex.getByLawyer(filter.getLawyerId()));
+            idSetNames.add("lawyer index");
+        }
+        if (filter.hasCitizen() && lawsuitIndex.isIndexed(filter.getCitizenId()))
+        {
+            idSets.add(lawsuitIndex.getByCitizen(filter.getCitizenId()));
+            idSetNames.add("citizen index");
+        }
+
+        SortedIds[] best = null;
+        String bestName = null;
+        int bestEstimate = Integer.MAX_VALUE;
+        int bestIdSet = -1;
+        for (int i = 0; i < idSets.size(); i++)
+        {
+            IntSortedSet set = idSets.get(i);
+            if (set.size() < bestEstimate)
+            {
+                best = new SortedIds[] { new IntSetIds(set) };
+                bestName = idSetNames.get(i);
+                bestEstimate = set.size();
+                bestIdSet = i;
+            }
+        }
+
+        if (filter.restrictsTypes())
+        {
+            List<SortedIds> parts = new ArrayList<>();
+            int count = 0;
+            for (LawsuitTypes lawsuitType : LawsuitTypes.values())
+            {
+                if (filter.acceptsType(lawsuitType))
+                {
+                    LongTreeSet set = lawsuitIndex.getByType(lawsuitType);
+                    parts.add(new TreeIds(set));
+                    count += set.size();
+                }
+            }
+            if (count < bestEstimate)
+            {
+                best = parts.toArray(new SortedIds[0]);
+                bestName = "type index";
+                bestEstimate = count;
+                bestIdSet = -1;
+            }
+        }
+
+        if (filter.restrictsStatuses())
+        {
+            List<SortedIds> parts = new ArrayList<>();
+            int count = 0;
+            for (LawsuitStatus lawsuitStatus : LawsuitStatus.values())
+            {
+                if (filter.acceptsStatus(lawsuitStatus))
+                {
+                    LongTreeSet set = lawsuitIndex.getByStatus(lawsuitStatus);
+                    parts.add(new TreeIds(set));
+                    count += set.size();
+                }
+            }
+            if (count < bestEstimate)
+            {
+                best = parts.toArray(new SortedIds[0]);
+                bestName = "status index";
+                bestEstimate = count;
+                bestIdSet = -1;
+            }
+        }
+
+        // Lawsuits without a date are not in the date index, and only a range open at the start accepts them
+        boolean useDates = false;
+        long startDay = Math.max(filter.getStartDay(), Integer.MIN_VALUE);
+        long endDay = Math.min(filter.getEndDay(), Integer.MAX_VALUE);
+        if (filter.getStartDay() != Long.MIN_VALUE)
+        {
+            int count = lawsuitIndex.countByDate(startDay, endDay);
+            if (count < bestEstimate)
+            {
+                bestName = "date index";
+                bestEstimate = count;
+                bestIdSet = -1;
+                useDates = true;
+            }
+        }
+
+        if (bestName == null || (long) bestEstimate * SCAN_RATIO >= lawsuitCount)
+            return new LawsuitQueryPlan(filter, lawsuitColumns, null, new IntSortedSet[0], lawsuitCount,
+                                        "scan of " + lawsuitCount + " lawsuit rows");
+
+        if (useDates)
+        {
+            // The date index is ordered by date, so its ids are sorted once
+            int[] ids = new int[bestEstimate];
+            int[] size = new int[1];
+            lawsuitIndex.forEachByDate(startDay, endDay, id -> ids[size[0]++] = id);
+            ParallelSort.sort(ids);
+            best = new SortedIds[] { new ArrayIds(ids) };
+        }
+
+        List<IntSortedSet> probes = new ArrayList<>();
+        StringBuilder description = new StringBuilder(bestName).append(" (").append(bestEstimate).append(" lawsuits)");
+        for (int i = 0; i < idSets.size(); i++)
+        {
+            if (i != bestIdSet)
+            {
+                probes.add(idSets.get(i));
+                description.append(", intersected with the ").append(idSetNames.get(i));
+            }
+        }
+        description.append(", checked on the lawsuit columns");
+        return new LawsuitQueryPlan(filter, lawsuitColumns, best, probes.toArray(new IntSortedSet[0]),
+                                    bestEstimate, description.toString());
+    }
+
+    /**
+     * It fills a page with the ids of the next lawsuits of the query.
+     *
+     * @param afterId The last id of the previous page, or 0 for the first page.
+     * @param page The page to fill.
+     * @return The number of ids in the page. A page that is not full is the last one.
+     */
+    int fill(int afterId, int[] page)
+    {
+        if (path == null)
+            return lawsuitColumns.select(filter, afterId, page);
+        if (path.length == 0)
+            return 0;
+
+        // The next position and id of every part, with Integer.MAX_VALUE for a part that has ended
+        int[] positions = new int[path.length];
+        int[] heads = new int[path.length];
+        for (int i = 0; i < path.length; i++)
+        {
+            positions[i] = path[i].ceilingIndex(afterId + 1);
+            heads[i] = head(path[i], positions[i]);
+        }
+
+        int size = 0;
+        while (size < page.length)
+        {
+            // The parts of a path hold different lawsuits, so the smallest head is the next candidate
+            int next = 0;
+            for (int i = 1; i < path.length; i++)
+            {
+                if (heads[i] < heads[next])
+                    next = i;
+            }
+            int lawsuitId = heads[next];
+            if (lawsuitId == Integer.MAX_VALUE)
+                break;
+            heads[next] = head(path[next], ++positions[next]);
+            if (accepts(lawsuitId))
+                page[size++] = lawsuitId;
+        }
+        return size;
+    }
+
+    /**
+     * It returns the number of candidate lawsuits the access path gives.
+     *
+     * @return The estimate.
+     */
+    int getEstimate()
+    {
+        return estimate;
+    }
+
+    private static int head(SortedIds ids, int position)
+    {
+        return position < ids.size() ? ids.get(position) : Integer.MAX_VALUE;
+    }
+
+    private boolean accepts(int lawsuitId)
+    {
+        for (IntSortedSet probe : probes)
+        {
+            if (!probe.contains(lawsuitId))
+                return false;
+        }
+        return lawsuitColumns.accepts(filter, lawsuitId);
+    }
+
+    /**
+     * It returns the description of the plan.
+     *
+     * @return The access path and the checks of the plan.
+     */
+    @Override
+    public String toString()
+    {
+        return description;
+    }
+
+    /**
+     * Lawsuit ids in increasing order that can be read by position.
+     */
+    private interface SortedIds
+    {
+        int size();
+
+        int get(int index);
+
+        int ceilingIndex(int id);
+    }
+
+    private static final class IntSetIds implements SortedIds
+    {
+        private final IntSortedSet set;
+
+        IntSetIds(IntSortedSet set)
+        {
+            this.set = set;
+        }
+
+        public int size()
+        {
+            return set.size();
+        }
+
+        public int get(int index)
+        {
+            return set.get(index);
+        }
+
+        public int ceilingIndex(int id)
+        {
+            return set.ceilingIndex(id);
+        }
+    }
+
+    private static final class TreeIds implements SortedIds
+    {
+        private final LongTreeSet set;
+
+        TreeIds(LongTreeSet set)
+        {
+            this.set = set;
+        }
+
+        public int size()
+        {
+            return set.size();
+        }
+
+        public int get(int index)
+        {
+            return (int) set.select(index);
+        }
+
+        public int ceilingIndex(int id)
+        {
+            return set.rank(id);
+        }
+    }
+
+    private static final class ArrayIds implements SortedIds
+    {
+        private final int[] ids;
+
+        ArrayIds(int[] ids)
+        {
+            this.ids = ids;
+        }
+
+        public int size()
+        {
+            return ids.length;
+        }
+
+        public int get(int index)
+        {
+            return ids[index];
+        }
+
+        public int ceilingIndex(int id)
+        {
+            int index = Arrays.binarySearch(ids, id);
+            return index < 0 ? -index - 1 : index;
+        }
+    }
+}
@@ -1,6 +1,11 @@
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import DataStructures.CompactIntSet;
+import DataStructures.ConcurrentCompactIntSet;
 import enums.JobApplicationStatus;
+import enums.LogRecordTypes;
 
 public class Lawyer extends Citizen {
     
@@ -9,7 +14,7 @@ public class Lawyer extends Citizen {
         private int ownerId;
         private int applicantId;
         private String application;
-        private JobApplicationStatus status;
+        private volatile JobApplicationStatus status;
 
         public JobApplication(int ownerId, int applicantId, String application) {
             this.ownerId = ownerId;
@@ -18,6 +23,26 @@ public class Lawyer extends Citizen {
             status = JobApplicationStatus.PENDING;
         }
 
+        // Constructor that reads the job application from a snapshot.
+        JobApplication(SnapshotInput in) throws IOException {
+            ownerId = in.readInt();
+            applicantId = in.readInt();
+            application = in.readString();
+            status = in.readEnum(JobApplicationStatus.values());
+        }
+
+        /**
+         * It writes the job application to a snapshot.
+         * 
+         * @param out The snapshot.
+         */
+        void writeSnapshot(SnapshotOutput out) throws IOException {
+            out.writeInt(ownerId);
+            out.writeInt(applicantId);
+            out.writeString(application);
+            out.writeEnum(status);
+        }
+
         /**
          * This function sets the status of the job application
          * 
@@ -76,12 +101,13 @@ public class Lawyer extends Citizen {
         }
     }
     
-    protected boolean stateAttorney;
-    protected boolean acceptsLawsuits;
-    protected Integer employerId;
-    protected List<JobApplication> jobApplications = new LinkedList<>();
-    protected TreeSet<Integer> concludedLawsuits =new TreeSet<>();
-    protected TreeSet<Integer> continuingLawsuits =new TreeSet<>();
+    protected volatile boolean stateAttorney;
+    protected volatile boolean acceptsLawsuits;
+    protected volatile Integer employerId;
+    // Judges and other sessions change these while the lawyer is logged in.
+    protected List<JobApplication> jobApplications = new CopyOnWriteArrayList<>();
+    protected CompactIntSet concludedLawsuits = new ConcurrentCompactIntSet();
+    protected CompactIntSet continuingLawsuits = new ConcurrentCompactIntSet();
 
     // A constructor.
     public Lawyer(int id,String password,String name,String surname, String email,String phone){
@@ -98,6 +124,38 @@ public class Lawyer extends Citizen {
         this.acceptsLawsuits = acceptsLawsuits;
     }
 
+    // Constructor that reads the lawyer from a snapshot.
+    // Job applications are shared with the law offices, so they are read before the lawyers.
+    Lawyer(SnapshotInput in) throws IOException {
+        super(in);
+        stateAttorney = in.readBoolean();
+        acceptsLawsuits = in.readBoolean();
+        int employer = in.readInt();
+        employerId = employer == -1 ? null : employer;
+        int applications = in.readCount();
+        for (int i = 0; i < applications; i++) {
+            jobApplications.add(in.readShared(JobApplication.class));
+        }
+        in.readIds(concludedLawsuits);
+        in.readIds(continuingLawsuits);
+    }
+
+    @Override
+    void writeSnapshot(SnapshotOutput out) throws IOException {
+        super.writeSnapshot(out);
+        out.writeBoolean(stateAttorney);
+        out.writeBoolean(acceptsLawsuits);
+        Integer employer = employerId;
+        out.writeInt(employer == null ? -1 : employer);
+        List<JobApplication> applications = new ArrayList<>(jobApplications);
+        out.writeInt(applications.size());
+        for (JobApplication jobApplication : applications) {
+            out.writeShared(jobApplication);
+        }
+        out.writeIds(concludedLawsuits);
+        out.writeIds(continuingLawsuits);
+    }
+
     /**
      * This function takes the data structure where job postings are kept.
      * It displays these and allows the lawyer to apply to one of them.
@@ -108,7 +166,7 @@ public class Lawyer extends Citizen {
         System.out.print("\nEnter employer ID to apply for job (0 to exit): ");
         int ownerId;
         try {
-            ownerId = Utils.readIntegerInput();
+            ownerId = Utils.readIdInput();
         } catch (Exception e) {
             System.out.println(Utils.INVALID_INPUT);
             return;
@@ -125,10 +183,31 @@ public class Lawyer extends Citizen {
 
         System.out.print("Enter application text: ");
         String application = Utils.readStringInput();
+        applyForJob(systemClassRef, ownerId, application);
+        System.out.println("\nJob application completed.");
+    }
+
+    /**
+     * This function creates a job application and adds it to the lawyer and
+     * to the office of the employer, both keep the same application.
+     * 
+     * @param systemClassRef This is a reference to the system class.
+     * @param ownerId The id of the law office owner.
+     * @param application The application text.
+     */
+    void applyForJob(SystemClass systemClassRef, int ownerId, String application) {
         JobApplication jobApplication = createJobApplication(ownerId, id, application);
-        systemClassRef.addJobApplication(jobApplication);
+        systemClassRef.addJobApplication(jobApplication, this);
+    }
+
+    /**
+     * This function adds a job application to the job applications of the lawyer.
+     * The office of the employer calls it while it adds and logs the application.
+     * 
+     * @param jobApplication The job application of the lawyer.
+     */
+    void addJobApplication(JobApplication jobApplication) {
         jobApplications.add(jobApplication);
-        System.out.println("\nJob application completed.");
     }
 
     /**
@@ -163,7 +242,7 @@ public class Lawyer extends Citizen {
         }
         int lawsuitId;
         try {
-            lawsuitId = (int) continuingLawsuits.toArray()[choice - 1];
+            lawsuitId = continuingLawsuits.get(choice - 1);
         } catch (Exception e) {
             System.out.println(Utils.INVALID_INPUT);
             return;
@@ -218,10 +297,12 @@ public class Lawyer extends Citizen {
         }
         int i = 0;
         System.out.println("Job applications:");
+        ConsoleWriter out = Session.current().writer();
         for(JobApplication jobApplication : jobApplications){
-            System.out.println((i + 1) + ".\n" + jobApplication);
+            out.print(i + 1).print(".\n").jobApplication(jobApplication).println();
             i++;
         }
+        out.flush();
     }
     
     
@@ -251,10 +332,8 @@ public class Lawyer extends Citizen {
      */
     private void displayContinuingLawsuits(SystemClass systemClassRef) {
         System.out.println("Continuing Lawsuits");
-        Object[] lawsuits = continuingLawsuits.toArray();
-        for(int i = 0; i < lawsuits.length; i++){
-            System.out.println((i + 1) + ".\n" + systemClassRef.getLawsuit((int) lawsuits[i]));
-        }
+        ListingPager.display(continuingLawsuits::valuesAfter, systemClassRef.getListingPageSize(), ".\n",
+                             (out, lawsuitId) -> out.lawsuit(systemClassRef.getLawsuit(lawsuitId)), null);
     }   
 
     /**
@@ -264,13 +343,9 @@ public class Lawyer extends Citizen {
      */
     private void displayConcludedLawsuits(SystemClass systemClassRef) {
         System.out.println("Concluded Lawsuits");
-        int i = 0;
-        for(Integer lawsuitId : concludedLawsuits){
-            System.out.println((i + 1) + ".\n" + systemClassRef.getLawsuit(lawsuitId));
-            i++;
-        }
-        if (i == 0)
-            System.out.println("No lawsuits have been concluded.");
+        ListingPager.display(concludedLawsuits::valuesAfter, systemClassRef.getListingPageSize(), ".\n",
+                             (out, lawsuitId) -> out.lawsuit(systemClassRef.getLawsuit(lawsuitId)),
+                             "No lawsuits have been concluded.");
     }
 
     /**
@@ -278,8 +353,18 @@ public class Lawyer extends Citizen {
      * 
      * @param stateAttorney boolean
      */
-    public void setStateAttorney(boolean stateAttorney) {
+    public synchronized void setStateAttorney(boolean stateAttorney) {
         this.stateAttorney = stateAttorney;
+        log(LogRecordTypes.LAWYER_STATE_ATTORNEY, out -> out.writeBoolean(stateAttorney));
+    }
+
+    /**
+     * It returns the lawsuits the lawyer is working on or has concluded.
+     * 
+     * @return A new set of lawsuit ids.
+     */
+    public CompactIntSet getLawsuits() {
+        return continuingLawsuits.or(concludedLawsuits);
     }
 
     /**
@@ -297,8 +382,11 @@ public class Lawyer extends Citizen {
      * 
      * @param acceptsLawsuits true if the lawyer accepts lawsuits, false otherwise
      */
-    public void setAcceptsLawsuits(boolean acceptsLawsuits) {
+    public synchronized void setAcceptsLawsuits(boolean acceptsLawsuits) {
         this.acceptsLawsuits = acceptsLawsuits;
+        if (systemClass != null)
+            systemClass.onLawyerAcceptsLawsuitsChanged(this);
+        log(LogRecordTypes.LAWYER_ACCEPTS_LAWSUITS, out -> out.writeBoolean(acceptsLawsuits));
     }
 
     /**
@@ -306,8 +394,19 @@ public class Lawyer extends Citizen {
      * 
      * @param lawsuitId The id of the lawsuit
      */
-    public void addLawsuit(Integer lawsuitId) {
+    public synchronized void addLawsuit(int lawsuitId) {
         continuingLawsuits.add(lawsuitId);
+        log(LogRecordTypes.LAWYER_LAWSUIT_ADDED, out -> out.writeInt(lawsuitId));
+    }
+
+    /**
+     * This function removes a lawsuit from the list of continuing lawsuits
+     * 
+     * @param lawsuitId The id of the lawsuit
+     */
+    public synchronized void removeLawsuit(int lawsuitId) {
+        continuingLawsuits.remove(lawsuitId);
+        log(LogRecordTypes.LAWYER_LAWSUIT_REMOVED, out -> out.writeInt(lawsuitId));
     }
 
     /**
@@ -324,8 +423,9 @@ public class Lawyer extends Citizen {
      * 
      * @param employerId The employer id of the employer who is logged in.
      */
-    public void setEmployerId(Integer employerId) {
+    public synchronized void setEmployerId(Integer employerId) {
         this.employerId = employerId;
+        log(LogRecordTypes.LAWYER_EMPLOYER, out -> out.writeInt(employerId == null ? -1 : employerId));
     }
 
     /**
@@ -334,9 +434,10 @@ public class Lawyer extends Citizen {
      * 
      * @param lawsuitId The id of the lawsuit to conclude.
      */
-    public void concludeLawsuit(Integer lawsuitId) {
+    public synchronized void concludeLawsuit(int lawsuitId) {
         continuingLawsuits.remove(lawsuitId);
         concludedLawsuits.add(lawsuitId);
+        log(LogRecordTypes.LAWYER_LAWSUIT_CONCLUDED, out -> out.writeInt(lawsuitId));
     }
 
     /**
@@ -367,11 +468,11 @@ public class Lawyer extends Citizen {
         }
         switch (choice) {
             case 1:
-                acceptsLawsuits = true;
+                setAcceptsLawsuits(true);
                 System.out.println("You are now accepting lawsuits.");
                 break;
             case 2:
-                acceptsLawsuits = false;
+                setAcceptsLawsuits(false);
                 System.out.println("You are now not accepting lawsuits.");
                 break;
             case 0:
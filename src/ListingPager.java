@@ -0,0 +1,111 @@
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Console listing shown a page at a time.
+ * A page is found by a seek after the last key of the previous page, so it costs the same
+ * wherever it is in the listing, and the keys the shown pages started after are kept to go
+ * back. The items are numbered from 1 over the whole listing, so a number can be used to
+ * choose an item after the listing is closed. A page is formatted into the buffer of the
+ * session and written at once.
+ */
+final class ListingPager
+{
+    /**
+     * Keys of a listing in increasing order, usually ids.
+     */
+    interface PageSource
+    {
+        /**
+         * It fills a page with the keys that come after the given key.
+         *
+         * @param afterKey The last key of the previous page, or 0 for the first page.
+         * @param page The array to fill.
+         * @return The number of keys, less than the page length only on the last page.
+         */
+        int fill(int afterKey, int[] page);
+    }
+
+    /**
+     * Formatter of the item of a key.
+     */
+    interface ItemWriter
+    {
+        /**
+         * It writes the item of the key without ending the line.
+         *
+         * @param out The writer of the session.
+         * @param key The key of the item.
+         */
+        void write(ConsoleWriter out, int key);
+    }
+
+    private ListingPager()
+    {
+    }
+
+    /**
+     * It displays the listing from its first page, and moves to the next or previous page
+     * while the user asks for it.
+     *
+     * @param source The keys of the listing.
+     * @param pageSize The number of items of a page.
+     * @param separator The text between the number and the item.
+     * @param itemWriter The formatter of the items.
+     * @param emptyMessage The message if the listing is empty, or null to display nothing.
+     */
+    static void display(PageSource source, int pageSize, String separator, ItemWriter itemWriter,
+                        String emptyMessage)
+    {
+        ConsoleWriter out = Session.current().writer();
+        // One more key than shown tells if there is a next page
+        int[] page = new int[pageSize + 1];
+        Deque<Integer> previousKeys = new ArrayDeque<>();
+        int afterKey = 0;
+        int number = 1;
+        while (true)
+        {
+            int count = source.fill(afterKey, page);
+            if (count == 0 && previousKeys.isEmpty())
+            {
+                if (emptyMessage != null)
+                    System.out.println(emptyMessage);
+                return;
+            }
+
+            int shown = Math.min(count, pageSize);
+            for (int i = 0; i < shown; i++)
+            {
+                out.print(number + i).print(separator);
+                itemWriter.write(out, page[i]);
+                out.println();
+            }
+
+            boolean hasNext = count > pageSize;
+            boolean hasPrevious = !previousKeys.isEmpty();
+            if (!hasNext && !hasPrevious)
+            {
+                out.flush();
+                return;
+            }
+            out.print("Page ").print(previousKeys.size() + 1).print(hasNext ? "  n. Next page" : "")
+               .print(hasPrevious ? "  p. Previous page" : "").print("  Enter. Done").println();
+            String answer = Utils.readStringInput().trim();
+            if (hasNext && answer.equalsIgnoreCase("n"))
+            {
+                previousKeys.push(afterKey);
+                afterKey = page[shown - 1];
+                number += shown;
+            }
+            else if (hasPrevious && answer.equalsIgnoreCase("p"))
+            {
+                afterKey = previousKeys.pop();
+                number -= pageSize;
+            }
+            else
+            {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,229 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import enums.LogRecordTypes;
+import enums.SystemObjectTypes;
+
+/**
+ * Applies the records of a write-ahead log to a system on many threads.
+ *
+ * Most records change a single object and only depend on the earlier records
+ * of the same object. They are split into partitions by object type and id
+ * range, and the partitions are replayed at the same time on a fork-join
+ * pool, each one in log order.
+ * The other records are applied first, in log order, on the calling thread:
+ * new objects, the state attorney queues and the job applications and
+ * advertisements, which are shared by lawyers, offices and the system. None
+ * of them reads a field that a single-object record changes, so applying them
+ * first gives the same result, and every object exists before its partition
+ * is replayed. The change hooks are suspended during the replay and the
+ * indexes are rebuilt once at the end.
+ */
+public class LogReplay
+{
+    // Records that touch more than one object or an ordered list of the system.
+    private static final EnumSet<LogRecordTypes> ORDERED_RECORDS = EnumSet.of(
+        LogRecordTypes.OBJECT_CREATED,
+        LogRecordTypes.LAWYER_JOB_APPLIED,
+        LogRecordTypes.OFFICE_JOB_ADVERTISEMENT_PUBLISHED,
+        LogRecordTypes.OFFICE_JOB_ADVERTISEMENT_REMOVED,
+        LogRecordTypes.OFFICE_JOB_APPLICATION_STATUS,
+        LogRecordTypes.OFFICE_JOB_APPLICATION_REMOVED,
+        LogRecordTypes.STATE_ATTORNEY_ADDED,
+        LogRecordTypes.STATE_ATTORNEY_POLLED,
+        LogRecordTypes.STATE_ATTORNEY_APPLICANT_ADDED,
+        LogRecordTypes.STATE_ATTORNEY_APPLICANT_POLLED);
+
+    // Id ranges per object type, a few per thread so busy ranges even out.
+    private static final int PARTITIONS_PER_THREAD = 4;
+
+    private final SystemClass systemClassObject;
+    private final ForkJoinPool pool;
+
+    private long appliedRecords;
+    private int partitionCount;
+    private long elapsedNanos;
+
+    /**
+     * LogReplay constructor.
+     *
+     * @param systemClassObject The system loaded from the snapshot.
+     * @param pool The pool that replays the partitions.
+     */
+    public LogReplay(SystemClass systemClassObject, ForkJoinPool pool)
+    {
+        this.systemClassObject = systemClassObject;
+        this.pool = pool;
+    }
+
+    /**
+     * It applies the records that are newer than the snapshot.
+     *
+     * @param records The records of the log.
+     * @throws IOException if a record is not valid for the objects.
+     */
+    public void replay(WriteAheadLog.Records records) throws IOException
+    {
+        long start = System.nanoTime();
+        long snapshotSequence = systemClassObject.getLogSequence();
+        int partitionsPerType = Math.max(1, pool.getParallelism() * PARTITIONS_PER_THREAD);
+        SystemObjectTypes[] types = SystemObjectTypes.values();
+
+        // The highest sequence number of each type gives the size of its id ranges.
+        int[] maxSequence = new int[types.length];
+        int first = 0;
+        while (first < records.size() && records.sequence(first) <= snapshotSequence)
+            first++;
+        for (int i = first; i < records.size(); i++)
+        {
+            int typeIndex = typeIndexOf(records.id(i), types.length);
+            maxSequence[typeIndex] = Math.max(maxSequence[typeIndex], AbstractSystemObject.sequenceOf(records.id(i)));
+        }
+
+        IntList ordered = new IntList();
+        IntList[] partitions = new IntList[types.length * partitionsPerType];
+        for (int i = first; i < records.size(); i++)
+        {
+            if (ORDERED_RECORDS.contains(records.type(i)))
+            {
+                ordered.add(i);
+                continue;
+            }
+            int id = records.id(i);
+            int typeIndex = typeIndexOf(id, types.length);
+            long rangeSize = maxSequence[typeIndex] / partitionsPerType + 1;
+            int partition = typeIndex * partitionsPerType + (int) (AbstractSystemObject.sequenceOf(id) / rangeSize);
+            if (partitions[partition] == null)
+                partitions[partition] = new IntList();
+            partitions[partition].add(i);
+        }
+
+        systemClassObject.suspendIndexes();
+        try
+        {
+            for (int i = 0; i < ordered.size; i++)
+                apply(records, ordered.values[i]);
+
+            List<PartitionTask> tasks = new ArrayList<>();
+            for (IntList partition : partitions)
+                if (partition != null)
+                    tasks.add(new PartitionTask(records, partition));
+            partitionCount = tasks.size();
+            try
+            {
+                pool.invoke(new RecursiveAction()
+                {
+                    @Override
+                    protected void compute()
+                    {
+                        invokeAll(tasks);
+                    }
+                });
+            }
+            catch (UncheckedIOException e)
+            {
+                throw e.getCause();
+            }
+        }
+        finally
+        {
+            systemClassObject.rebuildIndexes();
+        }
+
+        appliedRecords = records.size() - first;
+        if (appliedRecords > 0)
+            systemClassObject.setLogSequence(records.sequence(records.size() - 1));
+        elapsedNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * @return The number of records applied by the last replay.
+     */
+    public long getAppliedRecords()
+    {
+        return appliedRecords;
+    }
+
+    /**
+     * @return The number of partitions replayed at the same time by the last replay.
+     */
+    public int getPartitionCount()
+    {
+        return partitionCount;
+    }
+
+    /**
+     * @return The time the last replay took, with the rebuilding of the indexes.
+     */
+    public long getElapsedNanos()
+    {
+        return elapsedNanos;
+    }
+
+    private void apply(WriteAheadLog.Records records, int index) throws IOException
+    {
+        systemClassObject.applyLogRecord(records.type(index), records.id(index), records.values(index));
+    }
+
+    /**
+     * It returns the index of the type of the object, objects without a type
+     * go with the first type.
+     */
+    private static int typeIndexOf(int id, int typeCount)
+    {
+        int code = AbstractSystemObject.typeCodeOf(id);
+        return code >= 1 && code <= typeCount ? code - 1 : 0;
+    }
+
+    /**
+     * Replays the records of one partition in log order.
+     */
+    @SuppressWarnings("serial")
+    private final class PartitionTask extends RecursiveAction
+    {
+        private final WriteAheadLog.Records records;
+        private final IntList indexes;
+
+        PartitionTask(WriteAheadLog.Records records, IntList indexes)
+        {
+            this.records = records;
+            this.indexes = indexes;
+        }
+
+        @Override
+        protected void compute()
+        {
+            try
+            {
+                for (int i = 0; i < indexes.size; i++)
+                    apply(records, indexes.values[i]);
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Growing array of record positions.
+     */
+    private static final class IntList
+    {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value)
+        {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+    }
+}
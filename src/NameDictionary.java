@@ -0,0 +1,96 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared dictionary of the strings that many users have in common, like
+ * names. Every distinct string is kept once and users keep
+ * its int code instead of a reference to their own copy.
+ * Codes are given in the order the strings are first seen and are never
+ * reused. Looking up a string or a code does not lock, only adding a new
+ * string does.
+ */
+public class NameDictionary
+{
+    /**
+     * The code of a null string.
+     */
+    public static final int NULL_CODE = -1;
+
+    private static final int INITIAL_CAPACITY = 1 << 11;
+    private static final NameDictionary SHARED = new NameDictionary();
+
+    private final ConcurrentHashMap<String, Integer> codes;
+    // Strings by code. A grown array is published after it is filled, so a
+    // reader that has a code always finds its string.
+    private volatile String[] strings;
+    private int size;
+
+    /**
+     * NameDictionary constructor.
+     */
+    public NameDictionary()
+    {
+        this.codes = new ConcurrentHashMap<>();
+        this.strings = new String[INITIAL_CAPACITY];
+    }
+
+    /**
+     * @return The dictionary of the users of the program.
+     */
+    public static NameDictionary shared()
+    {
+        return SHARED;
+    }
+
+    /**
+     * It returns the code of a string, adding the string if it is new.
+     *
+     * @param string The string, can be null.
+     * @return The code of the string.
+     */
+    public int encode(String string)
+    {
+        if (string == null)
+            return NULL_CODE;
+        Integer code = codes.get(string);
+        if (code != null)
+            return code;
+        return add(string);
+    }
+
+    /**
+     * It returns the string of a code.
+     *
+     * @param code A code from encode.
+     * @return The string, or null for the null code.
+     */
+    public String decode(int code)
+    {
+        if (code == NULL_CODE)
+            return null;
+        return strings[code];
+    }
+
+    /**
+     * @return The number of distinct strings.
+     */
+    public synchronized int size()
+    {
+        return size;
+    }
+
+    private synchronized int add(String string)
+    {
+        Integer existing = codes.get(string);
+        if (existing != null)
+            return existing;
+        String[] current = strings;
+        if (size == current.length)
+            current = Arrays.copyOf(current, size * 2);
+        current[size] = string;
+        // Writing the array again publishes the new slot to the readers.
+        strings = current;
+        codes.put(string, size);
+        return size++;
+    }
+}
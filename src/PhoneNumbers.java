@@ -0,0 +1,66 @@
+/**
+ * Compact codes of phone numbers.
+ * A phone of at most 16 characters of digits, spaces, '+', '-', '(' and ')'
+ * is packed into a non-negative long as a bijective base 15 number, one digit
+ * per character, so it takes no memory of its own. Any other phone is kept in
+ * the shared name dictionary and its code is stored as a negative long, so
+ * only the phones that can not be packed are shared.
+ */
+public final class PhoneNumbers
+{
+    private static final String SYMBOLS = "0123456789+- ()";
+    private static final int BASE = SYMBOLS.length();
+    // 15 * (15^16 - 1) / 14 is still below Long.MAX_VALUE.
+    private static final int MAX_PACKED_LENGTH = 16;
+
+    private static final NameDictionary NAMES = NameDictionary.shared();
+
+    private PhoneNumbers()
+    {
+    }
+
+    /**
+     * It returns the code of a phone.
+     *
+     * @param phone The phone, can be null.
+     * @return The code.
+     */
+    public static long encode(String phone)
+    {
+        if (phone != null && phone.length() <= MAX_PACKED_LENGTH)
+        {
+            long packed = 0;
+            int i = phone.length() - 1;
+            for (; i >= 0; i--)
+            {
+                int digit = SYMBOLS.indexOf(phone.charAt(i));
+                if (digit < 0)
+                    break;
+                packed = packed * BASE + digit + 1;
+            }
+            if (i < 0)
+                return packed;
+        }
+        return Long.MIN_VALUE + NAMES.encode(phone) + 1;
+    }
+
+    /**
+     * It returns the phone of a code.
+     *
+     * @param code The code given by encode.
+     * @return The phone, null if the phone was null.
+     */
+    public static String decode(long code)
+    {
+        if (code < 0)
+            return NAMES.decode((int) (code - Long.MIN_VALUE - 1));
+        StringBuilder phone = new StringBuilder(MAX_PACKED_LENGTH);
+        while (code > 0)
+        {
+            int digit = (int) ((code - 1) % BASE);
+            phone.append(SYMBOLS.charAt(digit));
+            code = (code - 1) / BASE;
+        }
+        return phone.toString();
+    }
+}
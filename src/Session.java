@@ -0,0 +1,353 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.Scanner;
+
+/**
+ * Input and output of one logged in terminal.
+ * Every thread works for one session, Utils reads from the session of the
+ * current thread and System.out writes to it. Threads without a session
+ * use the console.
+ */
+public class Session
+{
+    private static final ThreadLocal<Session> CURRENT = new ThreadLocal<>();
+    // Created before System.out is replaced, so it keeps the real console.
+    private static final Session CONSOLE = new Session(System.in, System.out);
+    // Changes a session made must be durable before the session answers the user.
+    private static volatile WriteAheadLog writeAheadLog;
+
+    private final Scanner scanner;
+    private final ConsoleWriter writer;
+    // System.out of the threads of the session once System.out is redirected.
+    private final PrintStream out;
+
+    /**
+     * Session constructor.
+     *
+     * @param input The stream the user types into.
+     * @param output The stream the menus are written to.
+     */
+    public Session(InputStream input, OutputStream output)
+    {
+        this.scanner = new Scanner(input);
+        this.writer = new ConsoleWriter(output);
+        this.out = new PrintStream(new OutputStream()
+        {
+            @Override
+            public void write(int b)
+            {
+                writer.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len)
+            {
+                writer.write(b, off, len);
+            }
+
+            @Override
+            public void flush()
+            {
+                writer.flush();
+            }
+        }, false);
+    }
+
+    /**
+     * It returns the session of the current thread.
+     *
+     * @return The session, or the console session if the thread has none.
+     */
+    public static Session current()
+    {
+        Session session = CURRENT.get();
+        return session == null ? CONSOLE : session;
+    }
+
+    /**
+     * It returns the buffered output of the session, which listings format records into.
+     * Output written to the console session without System.out being redirected must be
+     * flushed before System.out is used again.
+     *
+     * @return The writer of the session.
+     */
+    public ConsoleWriter writer()
+    {
+        return writer;
+    }
+
+    /**
+     * It makes the given session the session of the current thread.
+     *
+     * @param session The session, or null to go back to the console.
+     */
+    public static void bind(Session session)
+    {
+        if (session == null)
+            CURRENT.remove();
+        else
+            CURRENT.set(session);
+    }
+
+    /**
+     * It sets the log every session waits for before it reads the next line.
+     *
+     * @param log The log of the system, or null if changes are not logged.
+     */
+    public static void useLog(WriteAheadLog log)
+    {
+        writeAheadLog = log;
+    }
+
+    /**
+     * It replaces System.out with a stream that writes to the session of the
+     * calling thread, so the menus need no changes to serve many terminals.
+     * Every session has its own print stream that writes into the buffer of the
+     * session without flushing every line, the buffer is written when the session
+     * reads the next line. The replacement only picks the stream of the session,
+     * so a terminal that stops reading blocks its own session and no other.
+     */
+    public static void redirectSystemOut()
+    {
+        System.setOut(new SessionPrintStream());
+    }
+
+    /**
+     * It reads a line typed by the user. The output buffered since the last
+     * line is flushed first, so the user sees the prompt before the session waits.
+     * The changes made since the last line are made durable before that, so
+     * the user never sees a confirmation of a change that could be lost.
+     * Sessions that only read pay nothing.
+     *
+     * @return The line without the line separator.
+     * @throws java.util.NoSuchElementException if the user closed the session.
+     */
+    public String readLine()
+    {
+        WriteAheadLog log = writeAheadLog;
+        if (log != null)
+            log.awaitDurable();
+        // The read below fails as well if the terminal is gone.
+        writer.flush();
+        return scanner.nextLine();
+    }
+
+    /**
+     * System.out of a server. PrintStream methods lock the stream, so every method
+     * is passed to the print stream of the current session without locking this one.
+     */
+    private static final class SessionPrintStream extends PrintStream
+    {
+        SessionPrintStream()
+        {
+            super(OutputStream.nullOutputStream(), false);
+        }
+
+        private static PrintStream target()
+        {
+            return current().out;
+        }
+
+        @Override
+        public void write(int b)
+        {
+            target().write(b);
+        }
+
+        @Override
+        public void write(byte[] buf, int off, int len)
+        {
+            target().write(buf, off, len);
+        }
+
+        @Override
+        public void write(byte[] buf) throws IOException
+        {
+            target().write(buf);
+        }
+
+        @Override
+        public void flush()
+        {
+            target().flush();
+        }
+
+        // Sessions are closed with their terminal, not through System.out.
+        @Override
+        public void close()
+        {
+        }
+
+        @Override
+        public boolean checkError()
+        {
+            return target().checkError();
+        }
+
+        @Override
+        public void print(boolean b)
+        {
+            target().print(b);
+        }
+
+        @Override
+        public void print(char c)
+        {
+            target().print(c);
+        }
+
+        @Override
+        public void print(int i)
+        {
+            target().print(i);
+        }
+
+        @Override
+        public void print(long l)
+        {
+            target().print(l);
+        }
+
+        @Override
+        public void print(float f)
+        {
+            target().print(f);
+        }
+
+        @Override
+        public void print(double d)
+        {
+            target().print(d);
+        }
+
+        @Override
+        public void print(char[] s)
+        {
+            target().print(s);
+        }
+
+        @Override
+        public void print(String s)
+        {
+            target().print(s);
+        }
+
+        @Override
+        public void print(Object obj)
+        {
+            target().print(obj);
+        }
+
+        @Override
+        public void println()
+        {
+            target().println();
+        }
+
+        @Override
+        public void println(boolean x)
+        {
+            target().println(x);
+        }
+
+        @Override
+        public void println(char x)
+        {
+            target().println(x);
+        }
+
+        @Override
+        public void println(int x)
+        {
+            target().println(x);
+        }
+
+        @Override
+        public void println(long x)
+        {
+            target().println(x);
+        }
+
+        @Override
+        public void println(float x)
+        {
+            target().println(x);
+        }
+
+        @Override
+        public void println(double x)
+        {
+            target().println(x);
+        }
+
+        @Override
+        public void println(char[] x)
+        {
+            target().println(x);
+        }
+
+        @Override
+        public void println(String x)
+        {
+            target().println(x);
+        }
+
+        @Override
+        public void println(Object x)
+        {
+            target().println(x);
+        }
+
+        @Override
+        public PrintStream printf(String format, Object... args)
+        {
+            target().printf(format, args);
+            return this;
+        }
+
+        @Override
+        public PrintStream printf(Locale l, String format, Object... args)
+        {
+            target().printf(l, format, args);
+            return this;
+        }
+
+        @Override
+        public PrintStream format(String format, Object... args)
+        {
+            target().format(format, args);
+            return this;
+        }
+
+        @Override
+        public PrintStream format(Locale l, String format, Object... args)
+        {
+            target().format(l, format, args);
+            return this;
+        }
+
+        @Override
+        public PrintStream append(CharSequence csq)
+        {
+            target().append(csq);
+            return this;
+        }
+
+        @Override
+        public PrintStream append(CharSequence csq, int start, int end)
+        {
+            target().append(csq, start, end);
+            return this;
+        }
+
+        @Override
+        public PrintStream append(char c)
+        {
+            target().append(c);
+            return this;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the login menu to many terminals at once over a local TCP port.
+ * Every connection is a session with its own input and output and runs the
+ * same menus as the console, all against one shared SystemClass.
+ * Connect with a line based client, for example "nc localhost port".
+ */
+public class SessionServer
+{
+    private static final int BACKLOG = 256;
+
+    private final SystemClass systemClass;
+    private final int port;
+
+    /**
+     * SessionServer constructor.
+     *
+     * @param systemClass The system shared by every session.
+     * @param port The local port to listen on.
+     */
+    public SessionServer(SystemClass systemClass, int port)
+    {
+        this.systemClass = systemClass;
+        this.port = port;
+    }
+
+    /**
+     * It accepts connections until the process is stopped.
+     *
+     * @throws IOException if the port cannot be opened.
+     */
+    public void start() throws IOException
+    {
+        PrintStream console = System.out;
+        Session.redirectSystemOut();
+        ExecutorService executor = newSessionExecutor();
+        try (ServerSocket serverSocket = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress()))
+        {
+            console.println("Listening for sessions on port " + serverSocket.getLocalPort());
+            while (true)
+            {
+                Socket socket = serverSocket.accept();
+                executor.execute(() -> serve(socket));
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * It runs the login menu for one connection and closes it when the user exits
+     * or the terminal is closed.
+     *
+     * @param socket The connection of the session.
+     */
+    private void serve(Socket socket)
+    {
+        try (socket)
+        {
+            Session session = new Session(socket.getInputStream(), new BufferedOutputStream(socket.getOutputStream()));
+            Session.bind(session);
+            try
+            {
+                Driver.loginMenu(systemClass);
+                System.out.flush();
+            }
+            catch (NoSuchElementException e)
+            {
+                // The terminal was closed in the middle of a menu.
+            }
+            finally
+            {
+                Session.bind(null);
+            }
+        }
+        catch (IOException e)
+        {
+            // The connection is already gone, nothing left to clean up.
+        }
+    }
+
+    /**
+     * It returns an executor that runs every session on its own thread.
+     * Virtual threads are used when the runtime has them, so idle terminals
+     * waiting for input cost almost nothing. Older runtimes get a cached pool.
+     *
+     * @return The executor.
+     */
+    private static ExecutorService newSessionExecutor()
+    {
+        try
+        {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            return Executors.newCachedThreadPool();
+        }
+    }
+}
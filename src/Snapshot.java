@@ -0,0 +1,76 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Saves the whole system to a binary snapshot file and loads it back, so the
+ * system does not have to be generated again on every start.
+ * The file starts with a magic number, a format version and the sequence
+ * number of the last write-ahead log record in it, and ends with the magic
+ * number again, a file that was cut short is rejected.
+ */
+public class Snapshot
+{
+    private static final int MAGIC = 0x4A495353;
+    // Version 2 added the sequence number of the last logged change.
+    // Version 3 keeps the salted hash of the password of a citizen instead of the password.
+    private static final int VERSION = 3;
+
+    private Snapshot()
+    {
+    }
+
+    /**
+     * It writes the system to a temporary file next to the path and then moves
+     * it over the path, so a crash while saving leaves the old snapshot intact.
+     * 
+     * @param systemClassObject The system to save.
+     * @param path The snapshot file.
+     */
+    public static void save(SystemClass systemClassObject, Path path) throws IOException
+    {
+        Path temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             SnapshotOutput out = new SnapshotOutput(channel))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(systemClassObject.getLogSequence());
+            systemClassObject.writeSnapshot(out);
+            out.writeInt(MAGIC);
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * It reads a system from a snapshot file.
+     * 
+     * @param path The snapshot file.
+     * @return A new system with the saved objects.
+     * @throws IOException if the file cannot be read or is not a valid snapshot.
+     */
+    public static SystemClass load(Path path) throws IOException
+    {
+        try (SnapshotInput in = new SnapshotInput(FileChannel.open(path, StandardOpenOption.READ)))
+        {
+            if (in.readInt() != MAGIC)
+                throw new IOException(path + " is not a snapshot");
+            int version = in.readInt();
+            if (version < 1 || version > VERSION)
+                throw new IOException("Unsupported snapshot version " + version);
+            SystemClass systemClassObject = new SystemClass();
+            if (version >= 2)
+                systemClassObject.setLogSequence(in.readLong());
+            systemClassObject.readSnapshot(in, version);
+            if (in.readInt() != MAGIC)
+                throw new IOException(path + " is damaged");
+            return systemClassObject;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import DataStructures.CompactIntSet;
+import DataStructures.LongTreeSet;
+
+/**
+ * Reads the binary snapshot format written by SnapshotOutput from a channel
+ * through a direct buffer.
+ */
+public class SnapshotInput implements Closeable
+{
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+    // Shared objects in the order they were read.
+    private final List<Object> sharedObjects;
+
+    /**
+     * SnapshotInput constructor.
+     *
+     * @param channel The channel to read from, closed with the input.
+     */
+    public SnapshotInput(ReadableByteChannel channel)
+    {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.buffer.flip();
+        this.sharedObjects = new ArrayList<>();
+    }
+
+    /**
+     * SnapshotInput constructor that reads the remaining bytes of a buffer,
+     * like a single write-ahead log record.
+     *
+     * @param buffer The bytes to read.
+     */
+    public SnapshotInput(ByteBuffer buffer)
+    {
+        this.channel = null;
+        this.buffer = buffer;
+        this.sharedObjects = new ArrayList<>();
+    }
+
+    public byte readByte() throws IOException
+    {
+        require(Byte.BYTES);
+        return buffer.get();
+    }
+
+    public boolean readBoolean() throws IOException
+    {
+        return readByte() != 0;
+    }
+
+    public int readInt() throws IOException
+    {
+        require(Integer.BYTES);
+        return buffer.getInt();
+    }
+
+    public long readLong() throws IOException
+    {
+        require(Long.BYTES);
+        return buffer.getLong();
+    }
+
+    /**
+     * @return The string, or null if null was written.
+     */
+    public String readString() throws IOException
+    {
+        int length = readInt();
+        if (length < 0)
+            return null;
+        byte[] bytes = new byte[length];
+        readBytes(bytes, 0, length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * It reads exactly the given number of bytes.
+     *
+     * @param bytes The array to fill.
+     * @param offset The first position to fill.
+     * @param length The number of bytes.
+     */
+    public void readBytes(byte[] bytes, int offset, int length) throws IOException
+    {
+        while (length > 0)
+        {
+            require(1);
+            int chunk = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    /**
+     * @return The date, or null if null was written.
+     */
+    public Date readDate() throws IOException
+    {
+        long time = readLong();
+        return time == Long.MIN_VALUE ? null : new Date(time);
+    }
+
+    /**
+     * @param values The constants of the enum, from values().
+     * @return The constant, or null if null was written.
+     */
+    public <E extends Enum<E>> E readEnum(E[] values) throws IOException
+    {
+        int ordinal = readByte();
+        if (ordinal < -1 || ordinal >= values.length)
+            throw new IOException("Invalid enum ordinal " + ordinal);
+        return ordinal == -1 ? null : values[ordinal];
+    }
+
+    /**
+     * It reads ids written by writeIds into the given collection.
+     *
+     * @param ids The collection to add to.
+     */
+    public void readIds(Collection<Integer> ids) throws IOException
+    {
+        int count = readCount();
+        for (int i = 0; i < count; i++)
+            ids.add(readInt());
+    }
+
+    /**
+     * It reads ids written by writeIds into the given set.
+     *
+     * @param ids The set to add to.
+     */
+    public void readIds(CompactIntSet ids) throws IOException
+    {
+        int count = readCount();
+        for (int i = 0; i < count; i++)
+            ids.add(readInt());
+    }
+
+    /**
+     * It reads ids written by writeIds into the given set.
+     *
+     * @param ids The set to add to.
+     */
+    public void readIds(LongTreeSet ids) throws IOException
+    {
+        int count = readCount();
+        for (int i = 0; i < count; i++)
+            ids.add(readInt());
+    }
+
+    /**
+     * It reads ids written by writeIds.
+     *
+     * @return The ids in the written order.
+     */
+    public int[] readIds() throws IOException
+    {
+        int[] ids = new int[readCount()];
+        for (int i = 0; i < ids.length; i++)
+            ids[i] = readInt();
+        return ids;
+    }
+
+    /**
+     * It reads a count and checks that it is not negative.
+     *
+     * @return The count.
+     */
+    public int readCount() throws IOException
+    {
+        int count = readInt();
+        if (count < 0)
+            throw new IOException("Invalid count " + count);
+        return count;
+    }
+
+    /**
+     * It gives the next position to a shared object that was just read.
+     *
+     * @param object The object.
+     */
+    public void share(Object object)
+    {
+        sharedObjects.add(object);
+    }
+
+    /**
+     * It reads a reference to a shared object.
+     *
+     * @param type The class of the object.
+     * @return The object.
+     */
+    public <T> T readShared(Class<T> type) throws IOException
+    {
+        int position = readInt();
+        if (position < 0 || position >= sharedObjects.size())
+            throw new IOException("Invalid shared object position " + position);
+        return type.cast(sharedObjects.get(position));
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (channel != null)
+            channel.close();
+    }
+
+    /**
+     * It reads from the channel until the buffer has the given number of bytes.
+     *
+     * @param bytes The number of bytes, at most the buffer size.
+     * @throws EOFException if the channel ends first.
+     */
+    private void require(int bytes) throws IOException
+    {
+        if (buffer.remaining() >= bytes)
+            return;
+        if (channel == null)
+            throw new EOFException("Snapshot ended unexpectedly");
+        buffer.compact();
+        while (buffer.position() < bytes)
+        {
+            if (channel.read(buffer) < 0)
+            {
+                buffer.flip();
+                throw new EOFException("Snapshot ended unexpectedly");
+            }
+        }
+        buffer.flip();
+    }
+}
@@ -0,0 +1,227 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Date;
+import java.util.IdentityHashMap;
+
+import DataStructures.CompactIntSet;
+import DataStructures.LongTreeSet;
+
+/**
+ * Writes the binary snapshot format to a channel through a direct buffer.
+ * Numbers are big endian, strings are UTF-8 with an int length (-1 for null),
+ * dates are epoch milliseconds (Long.MIN_VALUE for null) and enums are their
+ * ordinal (-1 for null).
+ * Objects that are referenced from many places, like job applications, are
+ * written once and then referred to by their position.
+ */
+public class SnapshotOutput implements Closeable
+{
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    // Position of every shared object in the order they were written.
+    private final IdentityHashMap<Object, Integer> sharedObjects;
+
+    /**
+     * SnapshotOutput constructor.
+     *
+     * @param channel The channel to write to, closed with the output.
+     */
+    public SnapshotOutput(WritableByteChannel channel)
+    {
+        this(channel, BUFFER_SIZE);
+    }
+
+    /**
+     * SnapshotOutput constructor with a smaller buffer, for short writes like
+     * write-ahead log records.
+     *
+     * @param channel The channel to write to, closed with the output.
+     * @param bufferSize The size of the buffer in bytes.
+     */
+    public SnapshotOutput(WritableByteChannel channel, int bufferSize)
+    {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.sharedObjects = new IdentityHashMap<>();
+    }
+
+    public void writeByte(int value) throws IOException
+    {
+        ensureRoom(Byte.BYTES);
+        buffer.put((byte) value);
+    }
+
+    public void writeBoolean(boolean value) throws IOException
+    {
+        writeByte(value ? 1 : 0);
+    }
+
+    public void writeInt(int value) throws IOException
+    {
+        ensureRoom(Integer.BYTES);
+        buffer.putInt(value);
+    }
+
+    public void writeLong(long value) throws IOException
+    {
+        ensureRoom(Long.BYTES);
+        buffer.putLong(value);
+    }
+
+    /**
+     * It writes a string as UTF-8 bytes after their length.
+     *
+     * @param value The string, can be null.
+     */
+    public void writeString(String value) throws IOException
+    {
+        if (value == null)
+        {
+            writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeInt(bytes.length);
+        writeBytes(bytes, 0, bytes.length);
+    }
+
+    /**
+     * It writes raw bytes, the reader must know their length.
+     *
+     * @param bytes The bytes.
+     * @param offset The first byte to write.
+     * @param length The number of bytes.
+     */
+    public void writeBytes(byte[] bytes, int offset, int length) throws IOException
+    {
+        while (length > 0)
+        {
+            ensureRoom(1);
+            int chunk = Math.min(length, buffer.remaining());
+            buffer.put(bytes, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    /**
+     * @param value The date, can be null.
+     */
+    public void writeDate(Date value) throws IOException
+    {
+        writeLong(value == null ? Long.MIN_VALUE : value.getTime());
+    }
+
+    /**
+     * @param value The enum constant, can be null.
+     */
+    public void writeEnum(Enum<?> value) throws IOException
+    {
+        writeByte(value == null ? -1 : value.ordinal());
+    }
+
+    /**
+     * It writes the number of ids and then the ids in iteration order.
+     *
+     * @param ids The ids.
+     */
+    public void writeIds(Collection<Integer> ids) throws IOException
+    {
+        // Concurrent collections can change between size() and the loop.
+        Integer[] snapshot = ids.toArray(new Integer[0]);
+        writeInt(snapshot.length);
+        for (Integer id : snapshot)
+            writeInt(id);
+    }
+
+    /**
+     * It writes the number of ids and then the ids in increasing order.
+     *
+     * @param ids The ids.
+     */
+    public void writeIds(CompactIntSet ids) throws IOException
+    {
+        int[] values = ids.toArray();
+        writeInt(values.length);
+        for (int id : values)
+            writeInt(id);
+    }
+
+    /**
+     * It writes the number of ids and then the ids in increasing order.
+     *
+     * @param ids The ids.
+     */
+    public void writeIds(LongTreeSet ids) throws IOException
+    {
+        long[] values = ids.toArray();
+        writeInt(values.length);
+        for (long id : values)
+            writeInt((int) id);
+    }
+
+    /**
+     * It gives the next position to a shared object. The caller writes the
+     * object itself, later references use writeShared.
+     *
+     * @param object The object.
+     * @return false if the object already has a position.
+     */
+    public boolean share(Object object)
+    {
+        if (sharedObjects.containsKey(object))
+            return false;
+        sharedObjects.put(object, sharedObjects.size());
+        return true;
+    }
+
+    /**
+     * It writes a reference to a shared object.
+     *
+     * @param object The object, shared before.
+     * @throws IllegalStateException if the object was not shared.
+     */
+    public void writeShared(Object object) throws IOException
+    {
+        Integer position = sharedObjects.get(object);
+        if (position == null)
+            throw new IllegalStateException("Object was not written to the shared table: " + object);
+        writeInt(position);
+    }
+
+    /**
+     * It writes the buffered bytes to the channel.
+     */
+    public void flush() throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            flush();
+        }
+        finally
+        {
+            channel.close();
+        }
+    }
+
+    private void ensureRoom(int bytes) throws IOException
+    {
+        if (buffer.remaining() < bytes)
+            flush();
+    }
+}
@@ -0,0 +1,559 @@
+package SortingAlgorithms;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.function.ToLongFunction;
+
+/** Implements the introsort algorithm.
+ Quicksort with a median-of-three pivot does the work. If the recursion gets
+ deeper than 2 log n, which only happens on adversarial input, the range is
+ finished with heapsort, so every sort is O(n log n). Small ranges are
+ finished with insertion sort. Only the smaller half is sorted recursively,
+ so the stack depth stays O(log n) even on sorted input.
+ */
+public class IntroSort {
+    /** Ranges of at most this many elements are insertion sorted. */
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private IntroSort() {
+    }
+
+    // ------- int[] -------
+
+    /** Sort the table in increasing order.
+     @param table The array to be sorted
+     */
+    public static void sort(int[] table) {
+        sort(table, 0, table.length);
+    }
+
+    /** Sort a part of the table in increasing order.
+     @param table The array to be sorted
+     @param from The index of the first element, inclusive
+     @param to The index of the last element, exclusive
+     */
+    public static void sort(int[] table, int from, int to) {
+        checkRange(table.length, from, to);
+        introSort(table, from, to - 1, depthLimit(to - from));
+    }
+
+    private static void introSort(int[] table, int first, int last, int depth) {
+        while (last - first >= INSERTION_SORT_THRESHOLD) {
+            if (depth-- == 0) {
+                heapSort(table, first, last);
+                return;
+            }
+            int split = partition(table, first, last);
+            // Recurse into the smaller part, loop on the larger one.
+            if (split - first < last - split) {
+                introSort(table, first, split, depth);
+                first = split + 1;
+            } else {
+                introSort(table, split + 1, last, depth);
+                last = split;
+            }
+        }
+        insertionSort(table, first, last);
+    }
+
+    /** Partition the table around the median of the first, middle and last values.
+     Equal values stop both scans, so duplicate-heavy input is split evenly.
+     @param table The table to be partitioned
+     @param first The index of the low bound
+     @param last The index of the high bound
+     @return The index split such that table[first..split] <= table[split+1..last]
+     */
+    private static int partition(int[] table, int first, int last) {
+        int middle = (first + last) >>> 1;
+        if (table[middle] < table[first]) {
+            swap(table, first, middle);
+        }
+        if (table[last] < table[first]) {
+            swap(table, first, last);
+        }
+        if (table[last] < table[middle]) {
+            swap(table, middle, last);
+        }
+        int pivot = table[middle];
+        int up = first - 1;
+        int down = last + 1;
+        while (true) {
+            do {
+                up++;
+            } while (table[up] < pivot);
+            do {
+                down--;
+            } while (table[down] > pivot);
+            if (up >= down) {
+                return down;
+            }
+            swap(table, up, down);
+        }
+    }
+
+    private static void insertionSort(int[] table, int first, int last) {
+        for (int i = first + 1; i <= last; i++) {
+            int value = table[i];
+            int j = i - 1;
+            while (j >= first && table[j] > value) {
+                table[j + 1] = table[j];
+                j--;
+            }
+            table[j + 1] = value;
+        }
+    }
+
+    private static void heapSort(int[] table, int first, int last) {
+        int size = last - first + 1;
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(table, first, i, size);
+        }
+        for (int end = size - 1; end > 0; end--) {
+            swap(table, first, first + end);
+            siftDown(table, first, 0, end);
+        }
+    }
+
+    private static void siftDown(int[] table, int offset, int node, int size) {
+        int value = table[offset + node];
+        while (true) {
+            int child = 2 * node + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && table[offset + child + 1] > table[offset + child]) {
+                child++;
+            }
+            if (table[offset + child] <= value) {
+                break;
+            }
+            table[offset + node] = table[offset + child];
+            node = child;
+        }
+        table[offset + node] = value;
+    }
+
+    private static void swap(int[] table, int i, int j) {
+        int temp = table[i];
+        table[i] = table[j];
+        table[j] = temp;
+    }
+
+    // ------- long[] -------
+
+    /** Sort the table in increasing order.
+     @param table The array to be sorted
+     */
+    public static void sort(long[] table) {
+        sort(table, 0, table.length);
+    }
+
+    /** Sort a part of the table in increasing order.
+     @param table The array to be sorted
+     @param from The index of the first element, inclusive
+     @param to The index of the last element, exclusive
+     */
+    public static void sort(long[] table, int from, int to) {
+        checkRange(table.length, from, to);
+        introSort(table, from, to - 1, depthLimit(to - from));
+    }
+
+    private static void introSort(long[] table, int first, int last, int depth) {
+        while (last - first >= INSERTION_SORT_THRESHOLD) {
+            if (depth-- == 0) {
+                heapSort(table, first, last);
+                return;
+            }
+            int split = partition(table, first, last);
+            if (split - first < last - split) {
+                introSort(table, first, split, depth);
+                first = split + 1;
+            } else {
+                introSort(table, split + 1, last, depth);
+                last = split;
+            }
+        }
+        insertionSort(table, first, last);
+    }
+
+    private static int partition(long[] table, int first, int last) {
+        int middle = (first + last) >>> 1;
+        if (table[middle] < table[first]) {
+            swap(table, first, middle);
+        }
+        if (table[last] < table[first]) {
+            swap(table, first, last);
+        }
+        if (table[last] < table[middle]) {
+            swap(table, middle, last);
+        }
+        long pivot = table[middle];
+        int up = first - 1;
+        int down = last + 1;
+        while (true) {
+            do {
+                up++;
+            } while (table[up] < pivot);
+            do {
+                down--;
+            } while (table[down] > pivot);
+            if (up >= down) {
+                return down;
+            }
+            swap(table, up, down);
+        }
+    }
+
+    private static void insertionSort(long[] table, int first, int last) {
+        for (int i = first + 1; i <= last; i++) {
+            long value = table[i];
+            int j = i - 1;
+            while (j >= first && table[j] > value) {
+                table[j + 1] = table[j];
+                j--;
+            }
+            table[j + 1] = value;
+        }
+    }
+
+    private static void heapSort(long[] table, int first, int last) {
+        int size = last - first + 1;
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(table, first, i, size);
+        }
+        for (int end = size - 1; end > 0; end--) {
+            swap(table, first, first + end);
+            siftDown(table, first, 0, end);
+        }
+    }
+
+    private static void siftDown(long[] table, int offset, int node, int size) {
+        long value = table[offset + node];
+        while (true) {
+            int child = 2 * node + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && table[offset + child + 1] > table[offset + child]) {
+                child++;
+            }
+            if (table[offset + child] <= value) {
+                break;
+            }
+            table[offset + node] = table[offset + child];
+            node = child;
+        }
+        table[offset + node] = value;
+    }
+
+    private static void swap(long[] table, int i, int j) {
+        long temp = table[i];
+        table[i] = table[j];
+        table[j] = temp;
+    }
+
+    // ------- long keys with int values -------
+
+    /** Sort the keys in increasing order and move the values with their keys.
+     Equal keys are ordered by their values.
+     @param keys The keys to be sorted
+     @param values The values, same length as the keys
+     */
+    public static void sort(long[] keys, int[] values) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("Keys and values have different lengths");
+        }
+        introSort(keys, values, 0, keys.length - 1, depthLimit(keys.length));
+    }
+
+    private static void introSort(long[] keys, int[] values, int first, int last, int depth) {
+        while (last - first >= INSERTION_SORT_THRESHOLD) {
+            if (depth-- == 0) {
+                heapSort(keys, values, first, last);
+                return;
+            }
+            int split = partition(keys, values, first, last);
+            if (split - first < last - split) {
+                introSort(keys, values, first, split, depth);
+                first = split + 1;
+            } else {
+                introSort(keys, values, split + 1, last, depth);
+                last = split;
+            }
+        }
+        insertionSort(keys, values, first, last);
+    }
+
+    private static boolean less(long[] keys, int[] values, int i, int j) {
+        return keys[i] < keys[j] || (keys[i] == keys[j] && values[i] < values[j]);
+    }
+
+    private static int partition(long[] keys, int[] values, int first, int last) {
+        int middle = (first + last) >>> 1;
+        if (less(keys, values, middle, first)) {
+            swap(keys, values, first, middle);
+        }
+        if (less(keys, values, last, first)) {
+            swap(keys, values, first, last);
+        }
+        if (less(keys, values, last, middle)) {
+            swap(keys, values, middle, last);
+        }
+        long pivotKey = keys[middle];
+        int pivotValue = values[middle];
+        int up = first - 1;
+        int down = last + 1;
+        while (true) {
+            do {
+                up++;
+            } while (keys[up] < pivotKey || (keys[up] == pivotKey && values[up] < pivotValue));
+            do {
+                down--;
+            } while (keys[down] > pivotKey || (keys[down] == pivotKey && values[down] > pivotValue));
+            if (up >= down) {
+                return down;
+            }
+            swap(keys, values, up, down);
+        }
+    }
+
+    private static void insertionSort(long[] keys, int[] values, int first, int last) {
+        for (int i = first + 1; i <= last; i++) {
+            long key = keys[i];
+            int value = values[i];
+            int j = i - 1;
+            while (j >= first && (keys[j] > key || (keys[j] == key && values[j] > value))) {
+                keys[j + 1] = keys[j];
+                values[j + 1] = values[j];
+                j--;
+            }
+            keys[j + 1] = key;
+            values[j + 1] = value;
+        }
+    }
+
+    private static void heapSort(long[] keys, int[] values, int first, int last) {
+        int size = last - first + 1;
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(keys, values, first, i, size);
+        }
+        for (int end = size - 1; end > 0; end--) {
+            swap(keys, values, first, first + end);
+            siftDown(keys, values, first, 0, end);
+        }
+    }
+
+    private static void siftDown(long[] keys, int[] values, int offset, int node, int size) {
+        while (true) {
+            int child = 2 * node + 1;
+            if (child >= size) {
+                return;
+            }
+            if (child + 1 < size && less(keys, values, offset + child, offset + child + 1)) {
+                child++;
+            }
+            if (!less(keys, values, offset + node, offset + child)) {
+                return;
+            }
+            swap(keys, values, offset + node, offset + child);
+            node = child;
+        }
+    }
+
+    private static void swap(long[] keys, int[] values, int i, int j) {
+        long key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+        int value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+
+    // ------- objects -------
+
+    /** Sort the table with the given comparator.
+     @param table The array to be sorted
+     @param comparator The order of the elements
+     @param <T> type of array
+     */
+    public static <T> void sort(T[] table, Comparator<? super T> comparator) {
+        introSort(table, 0, table.length - 1, depthLimit(table.length), comparator);
+    }
+
+    /** Sort the list in the natural order of its elements.
+     The elements are copied to an array, sorted and written back.
+     @param table The list to be sorted
+     @param <T> type of list
+     */
+    public static <T extends Comparable<T>> void sort(List<T> table) {
+        sort(table, Comparator.naturalOrder());
+    }
+
+    /** Sort the list with the given comparator.
+     The elements are copied to an array, sorted and written back.
+     @param table The list to be sorted
+     @param comparator The order of the elements
+     @param <T> type of list
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> void sort(List<T> table, Comparator<? super T> comparator) {
+        T[] elements = (T[]) table.toArray();
+        sort(elements, comparator);
+        writeBack(table, elements);
+    }
+
+    /** Sort the table by a long key of each element, for example the time of
+     a date or the ordinal of a status. The key of every element is computed
+     once, then only primitive keys are compared. Elements with equal keys
+     keep their order.
+     @param table The array to be sorted
+     @param key Returns the key of an element
+     @param <T> type of array
+     */
+    public static <T> void sortByKey(T[] table, ToLongFunction<? super T> key) {
+        long[] keys = new long[table.length];
+        int[] order = new int[table.length];
+        for (int i = 0; i < table.length; i++) {
+            keys[i] = key.applyAsLong(table[i]);
+            order[i] = i;
+        }
+        sort(keys, order);
+        Object[] sorted = new Object[table.length];
+        for (int i = 0; i < order.length; i++) {
+            sorted[i] = table[order[i]];
+        }
+        System.arraycopy(sorted, 0, table, 0, table.length);
+    }
+
+    /** Sort the list by a long key of each element, see sortByKey(T[], ToLongFunction).
+     @param table The list to be sorted
+     @param key Returns the key of an element
+     @param <T> type of list
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> void sortByKey(List<T> table, ToLongFunction<? super T> key) {
+        T[] elements = (T[]) table.toArray();
+        sortByKey(elements, key);
+        writeBack(table, elements);
+    }
+
+    private static <T> void introSort(T[] table, int first, int last, int depth,
+                                      Comparator<? super T> comparator) {
+        while (last - first >= INSERTION_SORT_THRESHOLD) {
+            if (depth-- == 0) {
+                heapSort(table, first, last, comparator);
+                return;
+            }
+            int split = partition(table, first, last, comparator);
+            if (split - first < last - split) {
+                introSort(table, first, split, depth, comparator);
+                first = split + 1;
+            } else {
+                introSort(table, split + 1, last, depth, comparator);
+                last = split;
+            }
+        }
+        insertionSort(table, first, last, comparator);
+    }
+
+    private static <T> int partition(T[] table, int first, int last, Comparator<? super T> comparator) {
+        int middle = (first + last) >>> 1;
+        if (comparator.compare(table[middle], table[first]) < 0) {
+            swap(table, first, middle);
+        }
+        if (comparator.compare(table[last], table[first]) < 0) {
+            swap(table, first, last);
+        }
+        if (comparator.compare(table[last], table[middle]) < 0) {
+            swap(table, middle, last);
+        }
+        T pivot = table[middle];
+        int up = first - 1;
+        int down = last + 1;
+        while (true) {
+            do {
+                up++;
+            } while (comparator.compare(table[up], pivot) < 0);
+            do {
+                down--;
+            } while (comparator.compare(table[down], pivot) > 0);
+            if (up >= down) {
+                return down;
+            }
+            swap(table, up, down);
+        }
+    }
+
+    private static <T> void insertionSort(T[] table, int first, int last, Comparator<? super T> comparator) {
+        for (int i = first + 1; i <= last; i++) {
+            T value = table[i];
+            int j = i - 1;
+            while (j >= first && comparator.compare(table[j], value) > 0) {
+                table[j + 1] = table[j];
+                j--;
+            }
+            table[j + 1] = value;
+        }
+    }
+
+    private static <T> void heapSort(T[] table, int first, int last, Comparator<? super T> comparator) {
+        int size = last - first + 1;
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(table, first, i, size, comparator);
+        }
+        for (int end = size - 1; end > 0; end--) {
+            swap(table, first, first + end);
+            siftDown(table, first, 0, end, comparator);
+        }
+    }
+
+    private static <T> void siftDown(T[] table, int offset, int node, int size, Comparator<? super T> comparator) {
+        T value = table[offset + node];
+        while (true) {
+            int child = 2 * node + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && comparator.compare(table[offset + child + 1], table[offset + child]) > 0) {
+                child++;
+            }
+            if (comparator.compare(table[offset + child], value) <= 0) {
+                break;
+            }
+            table[offset + node] = table[offset + child];
+            node = child;
+        }
+        table[offset + node] = value;
+    }
+
+    private static <T> void swap(T[] table, int i, int j) {
+        T temp = table[i];
+        table[i] = table[j];
+        table[j] = temp;
+    }
+
+    private static <T> void writeBack(List<T> table, T[] elements) {
+        ListIterator<T> iterator = table.listIterator();
+        for (T element : elements) {
+            iterator.next();
+            iterator.set(element);
+        }
+    }
+
+    // ------- HELPERS -------
+
+    /** Returns the depth after which a range is heap sorted: 2 floor(log2 n).
+     @param size The number of elements
+     @return The depth limit
+     */
+    private static int depthLimit(int size) {
+        return size <= 1 ? 0 : 2 * (31 - Integer.numberOfLeadingZeros(size));
+    }
+
+    private static void checkRange(int length, int from, int to) {
+        if (from < 0 || to > length || from > to) {
+            throw new IndexOutOfBoundsException("from: " + from + ", to: " + to + ", length: " + length);
+        }
+    }
+}
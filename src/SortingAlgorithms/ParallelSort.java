@@ -0,0 +1,132 @@
+package SortingAlgorithms;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** Implements a fork-join parallel merge sort for primitive arrays.
+ The array is split in halves until the parts are small enough for IntroSort,
+ the halves are sorted in parallel and then merged through a buffer of the
+ same size as the array. Halves that are already in order are not merged.
+ */
+public class ParallelSort {
+    /** Parts of at most this many elements are sorted by IntroSort on one thread. */
+    private static final int SEQUENTIAL_THRESHOLD = 1 << 13;
+
+    private ParallelSort() {
+    }
+
+    /** Sort the table in increasing order on the common fork-join pool.
+     @param table The array to be sorted
+     */
+    public static void sort(int[] table) {
+        sort(table, ForkJoinPool.commonPool());
+    }
+
+    /** Sort the table in increasing order on the given pool.
+     @param table The array to be sorted
+     @param pool The pool that runs the tasks
+     */
+    public static void sort(int[] table, ForkJoinPool pool) {
+        if (table.length <= SEQUENTIAL_THRESHOLD) {
+            IntroSort.sort(table);
+            return;
+        }
+        pool.invoke(new IntSortTask(table, new int[table.length], 0, table.length));
+    }
+
+    /** Sort the table in increasing order on the common fork-join pool.
+     @param table The array to be sorted
+     */
+    public static void sort(long[] table) {
+        sort(table, ForkJoinPool.commonPool());
+    }
+
+    /** Sort the table in increasing order on the given pool.
+     @param table The array to be sorted
+     @param pool The pool that runs the tasks
+     */
+    public static void sort(long[] table, ForkJoinPool pool) {
+        if (table.length <= SEQUENTIAL_THRESHOLD) {
+            IntroSort.sort(table);
+            return;
+        }
+        pool.invoke(new LongSortTask(table, new long[table.length], 0, table.length));
+    }
+
+    /** Sorts table[from..to) using the same part of the buffer. */
+    @SuppressWarnings("serial")
+    private static final class IntSortTask extends RecursiveAction {
+        private final int[] table;
+        private final int[] buffer;
+        private final int from;
+        private final int to;
+
+        IntSortTask(int[] table, int[] buffer, int from, int to) {
+            this.table = table;
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                IntroSort.sort(table, from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new IntSortTask(table, buffer, from, middle),
+                      new IntSortTask(table, buffer, middle, to));
+            if (table[middle - 1] <= table[middle]) {
+                return;
+            }
+            // Move the left half out of the way, then merge into the table.
+            System.arraycopy(table, from, buffer, from, middle - from);
+            int left = from;
+            int right = middle;
+            int next = from;
+            while (left < middle && right < to) {
+                table[next++] = buffer[left] <= table[right] ? buffer[left++] : table[right++];
+            }
+            System.arraycopy(buffer, left, table, next, middle - left);
+        }
+    }
+
+    /** Sorts table[from..to) using the same part of the buffer. */
+    @SuppressWarnings("serial")
+    private static final class LongSortTask extends RecursiveAction {
+        private final long[] table;
+        private final long[] buffer;
+        private final int from;
+        private final int to;
+
+        LongSortTask(long[] table, long[] buffer, int from, int to) {
+            this.table = table;
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                IntroSort.sort(table, from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new LongSortTask(table, buffer, from, middle),
+                      new LongSortTask(table, buffer, middle, to));
+            if (table[middle - 1] <= table[middle]) {
+                return;
+            }
+            System.arraycopy(table, from, buffer, from, middle - from);
+            int left = from;
+            int right = middle;
+            int next = from;
+            while (left < middle && right < to) {
+                table[next++] = buffer[left] <= table[right] ? buffer[left++] : table[right++];
+            }
+            System.arraycopy(buffer, left, table, next, middle - left);
+        }
+    }
+}
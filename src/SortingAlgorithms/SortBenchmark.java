@@ -0,0 +1,103 @@
+package SortingAlgorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+
+/** Compares QuickSort, IntroSort, ParallelSort and Arrays.sort on random,
+ sorted and duplicate-heavy int arrays.
+ Every case is run a few times to warm up the JIT, then the median of the
+ measured runs is printed. QuickSort is only run on small inputs, on sorted
+ input it takes quadratic time and recurses once per element.
+ Usage: java SortingAlgorithms.SortBenchmark [size]
+ */
+public class SortBenchmark {
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 5;
+    private static final int QUICKSORT_MAX_SIZE = 5_000;
+    private static final int DEFAULT_SIZE = 1_000_000;
+
+    private SortBenchmark() {
+    }
+
+    /** Runs the benchmark.
+     @param args The size of the arrays, one million by default
+     */
+    public static void main(String[] args) {
+        int[] sizes = args.length > 0 ? new int[] {Integer.parseInt(args[0])}
+                                       : new int[] {QUICKSORT_MAX_SIZE, DEFAULT_SIZE};
+        System.out.printf("%-10s %-16s %-14s %12s%n", "size", "input", "sort", "median ms");
+        for (int size : sizes) {
+            for (String input : new String[] {"random", "sorted", "duplicates"}) {
+                int[] data = createInput(input, size);
+                run(size, input, "Arrays.sort", data, Arrays::sort);
+                run(size, input, "IntroSort", data, IntroSort::sort);
+                run(size, input, "ParallelSort", data, ParallelSort::sort);
+                if (size <= QUICKSORT_MAX_SIZE) {
+                    run(size, input, "QuickSort", data, SortBenchmark::quickSort);
+                }
+            }
+        }
+    }
+
+    /** Creates the input of a benchmark case.
+     @param input random, sorted or duplicates
+     @param size The number of elements
+     @return A new array
+     */
+    private static int[] createInput(String input, int size) {
+        SplittableRandom random = new SplittableRandom(42);
+        int[] data = new int[size];
+        for (int i = 0; i < size; i++) {
+            switch (input) {
+                case "sorted":
+                    data[i] = i;
+                    break;
+                case "duplicates":
+                    data[i] = random.nextInt(16);
+                    break;
+                default:
+                    data[i] = random.nextInt();
+                    break;
+            }
+        }
+        return data;
+    }
+
+    /** Sorts copies of the data and prints the median time.
+     The result of every run is checked against Arrays.sort.
+     */
+    private static void run(int size, String input, String name, int[] data, Consumer<int[]> sorter) {
+        int[] expected = data.clone();
+        Arrays.sort(expected);
+        long[] times = new long[MEASURED_RUNS];
+        for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+            int[] copy = data.clone();
+            long start = System.nanoTime();
+            sorter.accept(copy);
+            long elapsed = System.nanoTime() - start;
+            if (!Arrays.equals(copy, expected)) {
+                throw new IllegalStateException(name + " did not sort the " + input + " input");
+            }
+            if (run >= WARMUP_RUNS) {
+                times[run - WARMUP_RUNS] = elapsed;
+            }
+        }
+        Arrays.sort(times);
+        System.out.printf("%-10d %-16s %-14s %12.3f%n", size, input, name, times[MEASURED_RUNS / 2] / 1e6);
+    }
+
+    /** Runs QuickSort the way the rest of the system used it, on a list of boxed ids. */
+    private static void quickSort(int[] data) {
+        List<Integer> list = new ArrayList<>(data.length);
+        for (int value : data) {
+            list.add(value);
+        }
+        QuickSort.sort(list);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = list.get(i);
+        }
+    }
+}
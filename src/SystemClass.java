@@ -1,29 +1,84 @@
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.PriorityQueue;
 import java.util.Queue;
-import java.util.TreeMap;
 import java.util.Date;
-import java.text.SimpleDateFormat;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 
+import DataStructures.CompactIntSet;
+import DataStructures.DenseIdTable;
+import DataStructures.LongTreeSet;
+import DataStructures.MinHeapGroup;
+import enums.JobApplicationStatus;
 import enums.LawsuitTypes;
 import enums.LawsuitStatus;
+import enums.LogRecordTypes;
 import enums.SystemObjectTypes;
 
+/**
+ * Registry of the system objects, shared by every logged in session.
+ * 
+ * Every table has its own read/write lock, so sessions working on different
+ * object types never wait for each other. The lawsuit lock also guards the
+ * lawsuit index and the dockets, and the lawyer lock guards the state attorney
+ * queues and the lawsuit accepting lawyers. Locks are taken in this order:
+ * table locks, then the lawyer lock. Code holding the lawyer lock never takes
+ * a table lock.
+ */
 public class SystemClass 
 {
     // System Objects: Lawsuit, citizen, lawyer, lawoffice owner, judge, government official
-    private List<TreeMap<Integer, AbstractSystemObject>> systemObjects;
+    private List<DenseIdTable<AbstractSystemObject>> systemObjects;
+    // Citizens are kept out of the heap, their table in systemObjects stays empty.
+    private final CitizenTable citizens;
+    // Same order as systemObjects.
+    private final ReentrantReadWriteLock[] tableLocks;
+    private final ReentrantReadWriteLock lawsuitLock;
+    private final ReentrantReadWriteLock lawyerLock;
     private Queue<Integer> stateAttorneys;
     private Queue<Integer> stateAttorneyApplicants;
-    private List<PriorityQueue<Integer>> lawsuitsByDate;
-    private ArrayList<LawOffice.JobAdvertisement> jobAdvertisementsReferences;
+    // Docket of every judge: the lawsuits being tried, earliest date first.
+    private MinHeapGroup dockets;
+    private List<LawOffice.JobAdvertisement> jobAdvertisementsReferences;
+    private LawsuitIndex lawsuitIndex;
+    private LawsuitColumns lawsuitColumns;
+    // Lawyers and law office owners that accept lawsuits, in id order.
+    private LongTreeSet lawsuitAcceptingLawyers;
 
-    private int lawyerCounter;
-    private int lawsuitCounter;
+    // Highest sequence number given to a lawyer and a lawsuit.
+    private final AtomicInteger lawyerCounter;
+    private final AtomicInteger lawsuitCounter;
 
-    private static final int JUDGE_NUMBER = 10;
+    // Changes are appended here once the system is recovered, null before that.
+    private volatile WriteAheadLog writeAheadLog;
+    // Sequence number of the last logged change included in the objects.
+    private long logSequence;
+    // True while a log is replayed: the change hooks skip the indexes, which are rebuilt after.
+    private volatile boolean indexesSuspended;
+    // Items of a listing shown at a time on the console.
+    private volatile int listingPageSize = DEFAULT_LISTING_PAGE_SIZE;
+
+    // Objects of a snapshot registered at a time, citizens are only built for their batch.
+    private static final int BULK_LOAD_BATCH_SIZE = 1 << 16;
+    // Items of a listing shown at a time when none is set.
+    private static final int DEFAULT_LISTING_PAGE_SIZE = 20;
+
+    // Types whose objects are citizens and can be a side of a lawsuit.
+    private static final SystemObjectTypes[] CITIZEN_TYPES = {
+        SystemObjectTypes.CITIZEN, SystemObjectTypes.LAWYER, SystemObjectTypes.LAWOFFICE_OWNER,
+        SystemObjectTypes.JUDGE, SystemObjectTypes.GOVERNMENT_OFFICIAL
+    };
+
+    // Cached because values() returns a new array on every call.
+    private static final SystemObjectTypes[] SYSTEM_OBJECT_TYPES = SystemObjectTypes.values();
 
     /**
      * SystemClass constructor.
@@ -31,25 +86,42 @@ public class SystemClass
     public SystemClass() 
     {
         systemObjects = new ArrayList<>();
-        for (int i = 0; i < SystemObjectTypes.values().length; i++) {
-            systemObjects.add(new TreeMap<>());
+        tableLocks = new ReentrantReadWriteLock[SYSTEM_OBJECT_TYPES.length];
+        for (SystemObjectTypes type : SystemObjectTypes.values()) {
+            systemObjects.add(new DenseIdTable<>(SystemObjectCreator.createInitialId(type.getSystemObjectCode())));
+            tableLocks[type.getSystemObjectCode() - 1] = new ReentrantReadWriteLock();
         }
+        lawsuitLock = tableLock(SystemObjectTypes.LAWSUIT);
+        citizens = new CitizenTable(SystemObjectCreator.createInitialId(SystemObjectTypes.CITIZEN.getSystemObjectCode()));
+        lawyerLock = new ReentrantReadWriteLock();
+        lawyerCounter = new AtomicInteger();
+        lawsuitCounter = new AtomicInteger();
 
         stateAttorneys = new LinkedList<>();
-        jobAdvertisementsReferences = new ArrayList<>();
+        jobAdvertisementsReferences = new CopyOnWriteArrayList<>();
         stateAttorneyApplicants = new LinkedList<>();
-        
-        lawsuitsByDate = new ArrayList<>(JUDGE_NUMBER);
-        for (int i = 0; i < JUDGE_NUMBER; i++)
-        {
-            lawsuitsByDate.add(new PriorityQueue<>((lawsuit1, lawsuit2) -> 
-                                                    getLawsuit(lawsuit1).getDate().compareTo(getLawsuit(lawsuit2).getDate())));
-        }
+        lawsuitIndex = new LawsuitIndex();
+        lawsuitColumns = new LawsuitColumns();
+        lawsuitAcceptingLawyers = new LongTreeSet();
+        dockets = createDockets();
+    }
+
+    /**
+     * It creates empty dockets for the judges.
+     * 
+     * @return The dockets.
+     */
+    private static MinHeapGroup createDockets()
+    {
+        return new MinHeapGroup(SystemObjectCreator.createInitialId(SystemObjectTypes.JUDGE.getSystemObjectCode()),
+                                SystemObjectCreator.createInitialId(SystemObjectTypes.LAWSUIT.getSystemObjectCode()));
     }
     
     // ============ TEMEL SISTEM CLASSI METHODLARI ============
     /**
-     * It adds the given system object to the appropriate TreeMap
+     * It adds the given system object to the table of its type.
+     * The object, its indexes and its place in the state attorney queue appear
+     * at once: other sessions see either all of them or none of them.
      * 
      * @param systemObject The object to be registered.
      */
@@ -63,32 +135,284 @@ public class SystemClass
         }
         // Codes starts from 1.
         int index = systemObjectType.getSystemObjectCode() - 1;
+        int sequence = AbstractSystemObject.sequenceOf(systemObject.getId());
+
+        ReentrantReadWriteLock lock = tableLocks[index];
+        lock.writeLock().lock();
+        try
+        {
+            if (systemObjectType == SystemObjectTypes.LAWSUIT)
+            {
+                Lawsuit lawsuit = (Lawsuit) systemObject;
+                lawsuitCounter.accumulateAndGet(sequence, Math::max);
+                if (!indexesSuspended)
+                {
+                    updateDocket(lawsuit);
+                    lawsuitIndex.add(lawsuit);
+                    lawsuitColumns.update(lawsuit);
+                }
+            }
+            if (systemObjectType == SystemObjectTypes.LAWYER)
+            {
+                lawyerCounter.accumulateAndGet(sequence, Math::max);
+            }
+            if (systemObject instanceof Lawyer)
+            {
+                registerLawyer((Lawyer) systemObject, systemObjectType);
+            }
+            if (systemObjectType == SystemObjectTypes.CITIZEN)
+                citizens.put((Citizen) systemObject);
+            else
+                systemObjects.get(index).put(systemObject.getId(), systemObject);  
+            systemObject.setSystemClass(this);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * It adds a new lawyer or law office owner to the state attorney queue and
+     * the lawsuit accepting lawyers. The caller holds the write lock of the table.
+     * 
+     * @param lawyer The new lawyer.
+     * @param systemObjectType The type of the lawyer.
+     */
+    private void registerLawyer(Lawyer lawyer, SystemObjectTypes systemObjectType)
+    {
+        lawyerLock.writeLock().lock();
+        try
+        {
+            if (systemObjectType == SystemObjectTypes.LAWYER && lawyer.isStateAttorney())
+            {
+                stateAttorneys.offer(lawyer.getId());
+            }
+            if (lawyer.acceptsLawsuits() && !indexesSuspended)
+            {
+                lawsuitAcceptingLawyers.add(lawyer.getId());
+            }
+        }
+        finally
+        {
+            lawyerLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * It registers a batch of system objects of one type at once. The table
+     * and its position index are filled for the whole batch, the state
+     * attorneys are queued in id order, and the lawsuits are added to the
+     * indexes and heapified into the dockets in one pass. Between beginBulkLoad
+     * and finishBulkLoad the indexes are left for finishBulkLoad to build.
+     * 
+     * @param type The type of every object of the batch.
+     * @param batch The new objects in increasing id order.
+     * @throws IllegalArgumentException if an object has another type, is out
+     *         of order or is already registered.
+     */
+    public void registerSystemObjects(SystemObjectTypes type, List<? extends AbstractSystemObject> batch)
+    {
+        if (batch.isEmpty())
+            return;
+        int[] ids = new int[batch.size()];
+        for (int i = 0; i < ids.length; i++)
+        {
+            ids[i] = batch.get(i).getId();
+            if (findSystemObjectType(ids[i]) != type)
+                throw new IllegalArgumentException("Id " + ids[i] + " is not a " + type);
+            if (i > 0 && ids[i] <= ids[i - 1])
+                throw new IllegalArgumentException("Id " + ids[i] + " comes after " + ids[i - 1]);
+        }
+        int lastSequence = AbstractSystemObject.sequenceOf(ids[ids.length - 1]);
+
+        ReentrantReadWriteLock lock = tableLock(type);
+        lock.writeLock().lock();
+        try
+        {
+            for (int id : ids)
+                if (type == SystemObjectTypes.CITIZEN ? citizens.contains(id) : systemObjects.get(type.getSystemObjectCode() - 1).contains(id))
+                    throw new IllegalArgumentException("Id " + id + " is already registered");
+
+            if (type == SystemObjectTypes.CITIZEN)
+            {
+                for (AbstractSystemObject citizen : batch)
+                    citizens.put((Citizen) citizen);
+            }
+            else
+            {
+                systemObjects.get(type.getSystemObjectCode() - 1).putAll(ids, batch);
+            }
+
+            if (type == SystemObjectTypes.LAWSUIT)
+            {
+                lawsuitCounter.accumulateAndGet(lastSequence, Math::max);
+                if (!indexesSuspended)
+                    indexLawsuits(castAll(batch, Lawsuit.class));
+            }
+            if (type == SystemObjectTypes.LAWYER)
+                lawyerCounter.accumulateAndGet(lastSequence, Math::max);
+            if (type == SystemObjectTypes.LAWYER || type == SystemObjectTypes.LAWOFFICE_OWNER)
+                registerLawyers(castAll(batch, Lawyer.class), type);
+
+            for (AbstractSystemObject systemObject : batch)
+                systemObject.setSystemClass(this);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
 
-        if (systemObjectType == SystemObjectTypes.LAWSUIT)
+    /**
+     * It queues the state attorneys of a batch of new lawyers in id order and
+     * adds the ones that accept lawsuits. The caller holds the write lock of the table.
+     * 
+     * @param lawyers The new lawyers in increasing id order.
+     * @param systemObjectType The type of the lawyers.
+     */
+    private void registerLawyers(List<Lawyer> lawyers, SystemObjectTypes systemObjectType)
+    {
+        lawyerLock.writeLock().lock();
+        try
+        {
+            for (Lawyer lawyer : lawyers)
+            {
+                if (systemObjectType == SystemObjectTypes.LAWYER && lawyer.isStateAttorney())
+                    stateAttorneys.offer(lawyer.getId());
+                if (lawyer.acceptsLawsuits() && !indexesSuspended)
+                    lawsuitAcceptingLawyers.add(lawyer.getId());
+            }
+        }
+        finally
+        {
+            lawyerLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * It adds new lawsuits to the lawsuit index and columns and heapifies the
+     * ones being tried into the dockets of their judges. The caller holds the
+     * lawsuit write lock.
+     * 
+     * @param lawsuits The new lawsuits, usually in increasing id order.
+     */
+    private void indexLawsuits(List<Lawsuit> lawsuits)
+    {
+        lawsuitIndex.addAll(lawsuits);
+        int[] judgeIds = new int[lawsuits.size()];
+        int[] lawsuitIds = new int[lawsuits.size()];
+        long[] dates = new long[lawsuits.size()];
+        int count = 0;
+        for (Lawsuit lawsuit : lawsuits)
         {
-            Lawsuit lawsuit = (Lawsuit) systemObject;
-            if (lawsuit.getJudge() != -1)
+            lawsuitColumns.update(lawsuit);
+            if (isOnDocket(lawsuit))
             {
-                lawsuitsByDate.get((lawsuit.getJudge() - 1) % JUDGE_NUMBER).add(lawsuit.getId());
+                judgeIds[count] = lawsuit.getJudge();
+                lawsuitIds[count] = lawsuit.getId();
+                dates[count] = lawsuit.getDate().getTime();
+                count++;
             }
         }
-        if (systemObjectType == SystemObjectTypes.LAWYER && ((Lawyer) systemObject).isStateAttorney())
+        dockets.putAll(judgeIds, lawsuitIds, dates, count);
+    }
+
+    /**
+     * It turns off the indexes for a bulk load: registering objects and changing
+     * them fills only the tables until finishBulkLoad builds the indexes once.
+     */
+    public void beginBulkLoad()
+    {
+        suspendIndexes();
+    }
+
+    /**
+     * It builds the indexes and dockets of the objects registered since
+     * beginBulkLoad and checks that the loaded objects refer to each other
+     * correctly.
+     * 
+     * @throws IllegalStateException if a lawsuit or a state attorney queue
+     *         refers to a missing object or to an object of the wrong type.
+     */
+    public void finishBulkLoad()
+    {
+        rebuildIndexes();
+        validateSystemObjects();
+    }
+
+    /**
+     * It adds a loaded lawsuit to its citizens, lawyers and judge. A concluded
+     * lawsuit is also concluded for its lawyers and judge.
+     * 
+     * @param lawsuit The registered lawsuit, its users are registered.
+     */
+    void addLawsuitToUsers(Lawsuit lawsuit)
+    {
+        int lawsuitId = lawsuit.getId();
+        boolean concluded = lawsuit.getStatus() == LawsuitStatus.SUING_WON
+                            || lawsuit.getStatus() == LawsuitStatus.SUED_WON;
+        getCitizen(lawsuit.getSuingCitizen()).addSuingLawsuit(lawsuitId);
+        getCitizen(lawsuit.getSuedCitizen()).addSuedLawsuit(lawsuitId);
+
+        int[] lawyerIds = { lawsuit.getSuingLawyer(), lawsuit.getSuedLawyer() };
+        for (int lawyerId : lawyerIds)
         {
-            stateAttorneys.offer(systemObject.getId());
+            if (lawyerId == -1)
+                continue;
+            Lawyer lawyer = getLawyer(lawyerId);
+            lawyer.addLawsuit(lawsuitId);
+            if (concluded)
+                lawyer.concludeLawsuit(lawsuitId);
         }
-        if (systemObjectType == SystemObjectTypes.LAWYER)
+
+        if (lawsuit.getJudge() != -1)
         {
-            lawyerCounter++;
+            Judge judge = getJudge(lawsuit.getJudge());
+            judge.assignLawsuit(lawsuitId);
+            if (concluded)
+                judge.concludeLawsuit(lawsuitId);
         }
-        if (systemObjectType == SystemObjectTypes.LAWSUIT)
+    }
+
+    /**
+     * It tells if an object of one of the types is registered with the id,
+     * without building a citizen.
+     * 
+     * @param id The id of the object.
+     * @param types The types the object can have.
+     * @return True if such an object is registered.
+     */
+    public boolean containsSystemObject(int id, SystemObjectTypes... types)
+    {
+        for (SystemObjectTypes type : types)
         {
-            lawsuitCounter++;
+            if (findSystemObjectType(id) != type)
+                continue;
+            ReentrantReadWriteLock lock = tableLock(type);
+            lock.readLock().lock();
+            try
+            {
+                return isRegistered(id, type);
+            }
+            finally
+            {
+                lock.readLock().unlock();
+            }
         }
-        systemObjects.get(index).put(systemObject.getId(), systemObject);  
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> castAll(List<? extends AbstractSystemObject> systemObjects, Class<T> type)
+    {
+        for (AbstractSystemObject systemObject : systemObjects)
+            type.cast(systemObject);
+        return (List<T>) systemObjects;
     }
 
     /**
-     * Find the correct Binary Search Tree, then get the system object.
+     * Find the table of the object type, then get the system object.
      * 
      * @param id The id of the system object.
      * @return AbstractSystemObject
@@ -100,9 +424,212 @@ public class SystemClass
             return null;
         // Codes starts from 1.
         int index = systemObjectCode.getSystemObjectCode() - 1;
-        return systemObjects.get(index).get(id);
+        ReentrantReadWriteLock lock = tableLocks[index];
+        lock.readLock().lock();
+        try
+        {
+            if (systemObjectCode == SystemObjectTypes.CITIZEN)
+                return registeredCitizen(citizens.get(id));
+            return systemObjects.get(index).get(id);
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    // ============ LAWSUIT CHANGES ============
+    // Lawsuits registered in the system call these after a field changes,
+    // so the indexes never go stale. They take the lawsuit write lock, so a
+    // lawsuit must not be changed while the caller holds the lawsuit read lock.
+    // The setters call them holding the monitor of the lawsuit, which is always
+    // taken before the lawsuit lock.
+    // While a log is replayed they do nothing and the indexes are rebuilt after.
+
+    /**
+     * It updates the indexes after the judge of a lawsuit changed.
+     * 
+     * @param lawsuit The changed lawsuit.
+     * @param oldJudge The judge id before the change.
+     */
+    void onLawsuitJudgeChanged(Lawsuit lawsuit, int oldJudge)
+    {
+        if (indexesSuspended)
+            return;
+        lawsuitLock.writeLock().lock();
+        try
+        {
+            lawsuitIndex.judgeChanged(lawsuit, oldJudge);
+            lawsuitColumns.update(lawsuit);
+            updateDocket(lawsuit);
+        }
+        finally
+        {
+            lawsuitLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * It updates the indexes after the suing or sued citizen of a lawsuit changed.
+     * 
+     * @param lawsuit The changed lawsuit.
+     * @param oldCitizen The citizen id before the change.
+     */
+    void onLawsuitCitizenChanged(Lawsuit lawsuit, int oldCitizen)
+    {
+        if (indexesSuspended)
+            return;
+        lawsuitLock.writeLock().lock();
+        try
+        {
+            lawsuitIndex.citizenChanged(lawsuit, oldCitizen);
+            lawsuitColumns.update(lawsuit);
+        }
+        finally
+        {
+            lawsuitLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * It updates the indexes after the suing or sued lawyer of a lawsuit changed.
+     * 
+     * @param lawsuit The changed lawsuit.
+     * @param oldLawyer The lawyer id before the change.
+     */
+    void onLawsuitLawyerChanged(Lawsuit lawsuit, int oldLawyer)
+    {
+        if (indexesSuspended)
+            return;
+        lawsuitLock.writeLock().lock();
+        try
+        {
+            lawsuitIndex.lawyerChanged(lawsuit, oldLawyer);
+            lawsuitColumns.update(lawsuit);
+        }
+        finally
+        {
+            lawsuitLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * It updates the indexes after the status of a lawsuit changed.
+     * 
+     * @param lawsuit The changed lawsuit.
+     * @param oldStatus The status before the change.
+     */
+    void onLawsuitStatusChanged(Lawsuit lawsuit, LawsuitStatus oldStatus)
+    {
+        if (indexesSuspended)
+            return;
+        lawsuitLock.writeLock().lock();
+        try
+        {
+            lawsuitIndex.statusChanged(lawsuit, oldStatus);
+            lawsuitColumns.update(lawsuit);
+            updateDocket(lawsuit);
+        }
+        finally
+        {
+            lawsuitLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * It updates the indexes after the type of a lawsuit changed.
+     * 
+     * @param lawsuit The changed lawsuit.
+     * @param oldType The type before the change.
+     */
+    void onLawsuitTypeChanged(Lawsuit lawsuit, LawsuitTypes oldType)
+    {
+        if (indexesSuspended)
+            return;
+        lawsuitLock.writeLock().lock();
+        try
+        {
+            lawsuitIndex.typeChanged(lawsuit, oldType);
+            lawsuitColumns.update(lawsuit);
+        }
+        finally
+        {
+            lawsuitLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * It updates the indexes after the date of a lawsuit changed.
+     * 
+     * @param lawsuit The changed lawsuit.
+     * @param oldDate The date before the change.
+     */
+    void onLawsuitDateChanged(Lawsuit lawsuit, Date oldDate)
+    {
+        if (indexesSuspended)
+            return;
+        lawsuitLock.writeLock().lock();
+        try
+        {
+            lawsuitIndex.dateChanged(lawsuit, oldDate);
+            lawsuitColumns.update(lawsuit);
+            updateDocket(lawsuit);
+        }
+        finally
+        {
+            lawsuitLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * It puts the lawsuit into the docket of its judge while it is being tried, 
+     * ordered by its date, and takes it out when it is concluded or has no judge.
+     * The caller holds the lawsuit write lock.
+     * 
+     * @param lawsuit The new or changed lawsuit.
+     */
+    private void updateDocket(Lawsuit lawsuit)
+    {
+        if (isOnDocket(lawsuit))
+            dockets.put(lawsuit.getJudge(), lawsuit.getId(), lawsuit.getDate().getTime());
+        else
+            dockets.remove(lawsuit.getId());
+    }
+
+    /**
+     * @param lawsuit The lawsuit.
+     * @return true if the lawsuit has a judge and a date and is not concluded.
+     */
+    private static boolean isOnDocket(Lawsuit lawsuit)
+    {
+        LawsuitStatus status = lawsuit.getStatus();
+        boolean concluded = status == LawsuitStatus.SUING_WON || status == LawsuitStatus.SUED_WON;
+        return lawsuit.getJudge() != -1 && lawsuit.getDate() != null && !concluded;
     }
 
+    /**
+     * It updates the set of lawsuit accepting lawyers after a lawyer changed his/her choice.
+     * 
+     * @param lawyer The changed lawyer.
+     */
+    void onLawyerAcceptsLawsuitsChanged(Lawyer lawyer)
+    {
+        if (indexesSuspended)
+            return;
+        lawyerLock.writeLock().lock();
+        try
+        {
+            if (lawyer.acceptsLawsuits())
+                lawsuitAcceptingLawyers.add(lawyer.getId());
+            else
+                lawsuitAcceptingLawyers.remove(lawyer.getId());
+        }
+        finally
+        {
+            lawyerLock.writeLock().unlock();
+        }
+    }
 
     /**
      * This function adds a Lawyer object to the stateAttorneyReferences ArrayList.
@@ -111,7 +638,16 @@ public class SystemClass
      */
     public void addStateAttorney(int stateAttorneyId)
     {
-        stateAttorneys.offer(stateAttorneyId);
+        lawyerLock.writeLock().lock();
+        try
+        {
+            stateAttorneys.offer(stateAttorneyId);
+            log(LogRecordTypes.STATE_ATTORNEY_ADDED, stateAttorneyId, out -> {});
+        }
+        finally
+        {
+            lawyerLock.writeLock().unlock();
+        }
     }
 
     
@@ -124,11 +660,22 @@ public class SystemClass
      */
     public static SystemObjectTypes findSystemObjectType(int id)
     {
-        int code = id / (int) Math.pow(10, AbstractSystemObject.ID_LENGTH - 1);
+        int code = AbstractSystemObject.typeCodeOf(id);
         int index = code - 1;
-        if (index>SystemObjectTypes.values().length-1 || index<0)
+        if (index>SYSTEM_OBJECT_TYPES.length-1 || index<0)
             return null;
-        return SystemObjectTypes.values()[index];
+        return SYSTEM_OBJECT_TYPES[index];
+    }
+
+    /**
+     * It returns the lock of the table of the given type.
+     * 
+     * @param type The type of the table.
+     * @return The lock.
+     */
+    private ReentrantReadWriteLock tableLock(SystemObjectTypes type)
+    {
+        return tableLocks[type.getSystemObjectCode() - 1];
     }
 
     /**
@@ -144,6 +691,19 @@ public class SystemClass
      */
     public boolean checkPassword(int id, String password)
     {
+        if (findSystemObjectType(id) == SystemObjectTypes.CITIZEN)
+        {
+            ReentrantReadWriteLock lock = tableLock(SystemObjectTypes.CITIZEN);
+            lock.readLock().lock();
+            try
+            {
+                return citizens.checkPassword(id, password);
+            }
+            finally
+            {
+                lock.readLock().unlock();
+            }
+        }
         Citizen citizen = (Citizen) getSystemObject(id);
         if (citizen == null)
             return false;
@@ -160,20 +720,31 @@ public class SystemClass
      */
     public void addJobAdvertisement(LawOffice.JobAdvertisement jobAdvertisement)
     {
-        jobAdvertisementsReferences.add(jobAdvertisement);
+        // Logged with the list locked, so the replayed list has the same order and numbers.
+        synchronized (jobAdvertisementsReferences)
+        {
+            jobAdvertisementsReferences.add(jobAdvertisement);
+            // The owner adds it to the office first, the record replays both.
+            log(LogRecordTypes.OFFICE_JOB_ADVERTISEMENT_PUBLISHED, jobAdvertisement.getOwnerId(), out -> {
+                out.writeString(jobAdvertisement.title);
+                out.writeString(jobAdvertisement.description);
+            });
+        }
     }
 
 
     // ============ GOVERNMENT OFFICAL ============
     /**
      * > This function adds a lawyer to the system
+     * Every call takes a new id, even when sessions add lawyers at the same time.
      * 
      * @param lawyer The lawyer object to be added to the system.
      */
     public void addLawyer(Lawyer lawyer)
     {
-        int initialId = SystemObjectCreator.createInitialId(SystemObjectTypes.LAWYER.getSystemObjectCode());
-        lawyer.setId(initialId + lawyerCounter);
+        lawyer.setId(AbstractSystemObject.createId(SystemObjectTypes.LAWYER.getSystemObjectCode(), lawyerCounter.incrementAndGet()));
+        // Logged before it is registered, so no change to it can be logged before it.
+        log(LogRecordTypes.OBJECT_CREATED, lawyer.getId(), lawyer::writeSnapshot);
         registerSystemObject(lawyer);
     }
 
@@ -183,8 +754,13 @@ public class SystemClass
      * @return The first element in the queue.
      */
     public int peekStateAttorneyApplicant() {
-        Integer applicantId = stateAttorneyApplicants.peek();
-        return applicantId == null ? -1 : applicantId;
+        lawyerLock.readLock().lock();
+        try {
+            Integer applicantId = stateAttorneyApplicants.peek();
+            return applicantId == null ? -1 : applicantId;
+        } finally {
+            lawyerLock.readLock().unlock();
+        }
     }
 
     /**
@@ -193,32 +769,57 @@ public class SystemClass
      * @return The applicantId is being returned.
      */
     public int pollStateAttorneyApplicant() {
-        Integer applicantId = stateAttorneyApplicants.poll();
-        return applicantId == null ? -1 : applicantId;
+        lawyerLock.writeLock().lock();
+        try {
+            Integer applicantId = stateAttorneyApplicants.poll();
+            if (applicantId == null)
+                return -1;
+            log(LogRecordTypes.STATE_ATTORNEY_APPLICANT_POLLED, applicantId, out -> {});
+            return applicantId;
+        } finally {
+            lawyerLock.writeLock().unlock();
+        }
     }
 
     /**
      * If there are no state attorneys, return -1, otherwise return the first state attorney in the
      * queue and add it to the end of the queue.
+     * The rotation is atomic, so sessions polling at the same time get the
+     * state attorneys in turn and no one is lost from the queue.
      * 
      * @return The first element in the queue.
      */
     public int pollStateAttorney() {
-        Integer stateAttorney = stateAttorneys.poll();
-        if (stateAttorney == null)
-            return -1;
-    
-        stateAttorneys.offer(stateAttorney);
-        return stateAttorney;
+        lawyerLock.writeLock().lock();
+        try {
+            Integer stateAttorney = stateAttorneys.poll();
+            if (stateAttorney == null)
+                return -1;
+        
+            stateAttorneys.offer(stateAttorney);
+            log(LogRecordTypes.STATE_ATTORNEY_POLLED, stateAttorney, out -> {});
+            return stateAttorney;
+        } finally {
+            lawyerLock.writeLock().unlock();
+        }
     }
 
     // Print state attorney applicants
     public void printStateAttorneyApplicants() {
         int i = 1;
         System.out.println("State attorney applicants: ");
-        for (var applicantId : stateAttorneyApplicants) {
-            System.out.println(i + ". " + getLawyer(applicantId));
+        Integer[] applicantIds;
+        lawyerLock.readLock().lock();
+        try {
+            applicantIds = stateAttorneyApplicants.toArray(new Integer[0]);
+        } finally {
+            lawyerLock.readLock().unlock();
         }
+        ConsoleWriter out = Session.current().writer();
+        for (var applicantId : applicantIds) {
+            out.print(i).print(". ").user(getLawyer(applicantId)).println();
+        }
+        out.flush();
     }
     
     public void addLawsuitToLawyer(int lawyerId, int lawsuitId) {
@@ -230,12 +831,9 @@ public class SystemClass
      * This function displays all the judges in the system
      */
     public void displayJudges() {
-        int i = 1;
         System.out.println("Judges: ");
-        for (var judge : systemObjects.get(SystemObjectTypes.JUDGE.getSystemObjectCode() - 1).values()) {
-            System.out.println(i + ". " + judge);
-            i++;
-        }
+        ListingPager.display((afterId, page) -> selectSystemObjectIds(SystemObjectTypes.JUDGE, afterId, page),
+                             listingPageSize, ". ", (out, judgeId) -> out.user(getJudge(judgeId)), null);
     }
 
     /**
@@ -243,29 +841,50 @@ public class SystemClass
      */
     public void displayPendingLawsuits()
     {
-        int i = 1;
         System.out.println("\n\tPending lawsuits:");
-        for (var lawsuit : systemObjects.get(SystemObjectTypes.LAWSUIT.getSystemObjectCode() - 1).values()) {
-            if (((Lawsuit) lawsuit).getStatus() == LawsuitStatus.HOLD)
-            {
-                System.out.println(i + ". " + lawsuit);
-                i++;
-            }
-        }
+        displayLawsuits(queryLawsuits(new LawsuitColumns.Filter().statuses(LawsuitStatus.HOLD)), ". ", null);
     }
 
+    /**
+     * It returns the pending lawsuit at the given position in id order.
+     * 
+     * @param index The position of the lawsuit, starting from 0.
+     * @return The lawsuit, or null if the index is not valid.
+     */
     public Lawsuit getPendingLawsuitByIndex(int index)
     {
-        for (var lawsuit : systemObjects.get(SystemObjectTypes.LAWSUIT.getSystemObjectCode() - 1).values()) {
-            if (((Lawsuit) lawsuit).getStatus() == LawsuitStatus.HOLD)
-            {
-                if (index == 0)
-                    return (Lawsuit) lawsuit;
-                index--;
-            }
+        lawsuitLock.readLock().lock();
+        try
+        {
+            LongTreeSet pendingLawsuits = lawsuitIndex.getByStatus(LawsuitStatus.HOLD);
+            if (index < 0 || index >= pendingLawsuits.size())
+                return null;
+            return getLawsuit((int) pendingLawsuits.select(index));
+        }
+        finally
+        {
+            lawsuitLock.readLock().unlock();
+        }
+    }
 
+    /**
+     * It returns the position of the lawsuit among the pending lawsuits.
+     * 
+     * @param lawsuitId The id of the lawsuit.
+     * @return The position starting from 0, or -1 if the lawsuit is not pending.
+     */
+    public int getPendingLawsuitIndex(int lawsuitId)
+    {
+        lawsuitLock.readLock().lock();
+        try
+        {
+            LongTreeSet pendingLawsuits = lawsuitIndex.getByStatus(LawsuitStatus.HOLD);
+            return pendingLawsuits.contains(lawsuitId) ? pendingLawsuits.rank(lawsuitId) : -1;
+        }
+        finally
+        {
+            lawsuitLock.readLock().unlock();
         }
-        return null;
     }
 
     public Judge getJudge(int id) {
@@ -283,43 +902,72 @@ public class SystemClass
      */
     public Lawsuit peekHighestPriorityLawsuit(int judgeId)
     {
-        Integer lawsuit = lawsuitsByDate.get((judgeId - 1) % JUDGE_NUMBER).peek();
-        return lawsuit == null ? null : getLawsuit(lawsuit);
+        lawsuitLock.readLock().lock();
+        try
+        {
+            int lawsuitId = dockets.peek(judgeId);
+            return lawsuitId == -1 ? null : getLawsuit(lawsuitId);
+        }
+        finally
+        {
+            lawsuitLock.readLock().unlock();
+        }
     }
 
     /**
      * "Poll the highest priority lawsuit for a given judge."
+     * When sessions poll the same docket at the same time, each lawsuit is returned once.
+     * Concluded lawsuits leave the docket by themselves, there is no need to poll them.
      * 
      * @param judgeId The ID of the judge who is currently handling the case.
      * @return The highest priority lawsuit for a given judge.
      */
     public Lawsuit pollHighestPriorityLawsuit(int judgeId)
     {
-        Integer lawsuit = lawsuitsByDate.get((judgeId - 1) % JUDGE_NUMBER).poll();
-        return lawsuit == null ? null : getLawsuit(lawsuit);
+        lawsuitLock.writeLock().lock();
+        try
+        {
+            int lawsuitId = dockets.poll(judgeId);
+            return lawsuitId == -1 ? null : getLawsuit(lawsuitId);
+        }
+        finally
+        {
+            lawsuitLock.writeLock().unlock();
+        }
     }
     
 
     /**
      * This function adds a lawsuit to the list of lawsuits.
+     * Every call takes a new id, even when sessions add lawsuits at the same time.
      * 
      * @param lawsuit The lawsuit to add to the list of lawsuits.
      */
     public void addLawsuit(Lawsuit lawsuit)
     {
-        int initialId = SystemObjectCreator.createInitialId(SystemObjectTypes.LAWSUIT.getSystemObjectCode());
-        lawsuit.setId(initialId + lawsuitCounter);
+        lawsuit.setId(AbstractSystemObject.createId(SystemObjectTypes.LAWSUIT.getSystemObjectCode(), lawsuitCounter.incrementAndGet()));
+        // Logged before it is registered, so no change to it can be logged before it.
+        log(LogRecordTypes.OBJECT_CREATED, lawsuit.getId(), lawsuit::writeSnapshot);
         registerSystemObject(lawsuit);
     }
 
     /**
      * This method, set a lawsuit to the priority queue after assignation lawsuit to a judge.
+     * Dockets already follow the judge, date and status of registered lawsuits, 
+     * so calling it again for the same lawsuit changes nothing.
      * @param lawsuit
      */
     public void addLawsuitByDate(Lawsuit lawsuit)
     {
-        System.out.println("judge = " + lawsuit.getJudge());
-        lawsuitsByDate.get((lawsuit.getJudge() - 1) % JUDGE_NUMBER).add(lawsuit.getId());
+        lawsuitLock.writeLock().lock();
+        try
+        {
+            updateDocket(lawsuit);
+        }
+        finally
+        {
+            lawsuitLock.writeLock().unlock();
+        }
     }
 
     // ============ CITIZEN ============
@@ -331,27 +979,35 @@ public class SystemClass
      */
     public void displayLawsuitAcceptingLawyers()
     {
-        int index = SystemObjectTypes.LAWYER.getSystemObjectCode() - 1;
-        int i = 1;
-        for (AbstractSystemObject lawyer : systemObjects.get(index).values())
+        // Lawyer ids are smaller than law office owner ids, so lawyers come first.
+        ListingPager.display(this::selectLawsuitAcceptingLawyers, listingPageSize, ".\n",
+                             (out, lawyerId) -> out.user(getLawyer(lawyerId)).print("\n"),
+                             "No lawyers accept lawsuits.");
+    }
+
+    /**
+     * It returns a page of the ids of the lawyers and law office owners that accept lawsuits,
+     * after the last id of the previous page. The page starts with a seek in the sorted ids.
+     * 
+     * @param afterId The last id of the previous page, 0 for the first page.
+     * @param page The array to fill with the ids in increasing order.
+     * @return The number of ids, less than the page length only on the last page.
+     */
+    public int selectLawsuitAcceptingLawyers(int afterId, int[] page)
+    {
+        lawyerLock.readLock().lock();
+        try
         {
-            if (((Lawyer) lawyer).acceptsLawsuits())
-            {
-                System.out.println(i + ".\n" + lawyer + "\n");
-                i++;
-            }
+            int position = lawsuitAcceptingLawyers.rank(afterId + 1L);
+            int count = 0;
+            while (count < page.length && position < lawsuitAcceptingLawyers.size())
+                page[count++] = (int) lawsuitAcceptingLawyers.select(position++);
+            return count;
         }
-        index = SystemObjectTypes.LAWOFFICE_OWNER.getSystemObjectCode() - 1;
-        for (AbstractSystemObject lawyer : systemObjects.get(index).values())
+        finally
         {
-            if (((Lawyer) lawyer).acceptsLawsuits())
-            {
-                System.out.println(i + ".\n" + lawyer + "\n");
-                i++;
-            }
+            lawyerLock.readLock().unlock();
         }
-        if (i == 1)
-            System.out.println("No lawyers accept lawsuits.");
     }
     
     /**
@@ -361,8 +1017,13 @@ public class SystemClass
      * removing it.
      */
     public int peekStateAttorney() {
-        Integer stateAttorneyId = stateAttorneys.peek();
-        return stateAttorneyId == null ? -1 : stateAttorneyId;
+        lawyerLock.readLock().lock();
+        try {
+            Integer stateAttorneyId = stateAttorneys.peek();
+            return stateAttorneyId == null ? -1 : stateAttorneyId;
+        } finally {
+            lawyerLock.readLock().unlock();
+        }
     }
 
     /**
@@ -383,27 +1044,33 @@ public class SystemClass
      * @return The id of the lawyer that accepts lawsuits.
      */
     public int getLawsuitAcceptingLawyerByIndex(int index) {
-        for (var object : systemObjects.get(SystemObjectTypes.LAWYER.getSystemObjectCode() - 1).values())
-        {
-            if (((Lawyer) object).acceptsLawsuits())
-            {
-                if (index == 0)
-                    return object.getId();
-                index--;
-            }
-        }
-        for (var object : systemObjects.get(SystemObjectTypes.LAWOFFICE_OWNER.getSystemObjectCode() - 1).values())
-        {
-            if (((Lawyer) object).acceptsLawsuits())
-            {
-                if (index == 0)
-                    return object.getId();
-                index--;
-            }
+        lawyerLock.readLock().lock();
+        try {
+            if (index < 0 || index >= lawsuitAcceptingLawyers.size())
+                return -1;
+            return (int) lawsuitAcceptingLawyers.select(index);
+        } finally {
+            lawyerLock.readLock().unlock();
         }
-        return -1;
     } 
 
+    /**
+     * It returns the position of the lawyer among the lawyers that accept lawsuits.
+     * 
+     * @param lawyerId The id of the lawyer.
+     * @return The position starting from 0, or -1 if the lawyer does not accept lawsuits.
+     */
+    public int getLawsuitAcceptingLawyerIndex(int lawyerId) {
+        lawyerLock.readLock().lock();
+        try {
+            if (!lawsuitAcceptingLawyers.contains(lawyerId))
+                return -1;
+            return lawsuitAcceptingLawyers.rank(lawyerId);
+        } finally {
+            lawyerLock.readLock().unlock();
+        }
+    }
+
     /**
      * It returns the system object at the specified index of the specified type
      * 
@@ -412,12 +1079,54 @@ public class SystemClass
      * @return The object at the index.
      */
     public AbstractSystemObject getSystemObjectByIndex(int index, SystemObjectTypes type) {
-        for (var object : systemObjects.get(type.getSystemObjectCode() - 1).values()) {
-            if (index == 0)
-                return object;
-            index--;
+        ReentrantReadWriteLock lock = tableLock(type);
+        lock.readLock().lock();
+        try {
+            if (type == SystemObjectTypes.CITIZEN)
+                return registeredCitizen(citizens.getByIndex(index));
+            return systemObjects.get(type.getSystemObjectCode() - 1).getByIndex(index);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * It returns the position of the system object among the objects of its type.
+     * 
+     * @param id The id of the object.
+     * @return The position starting from 0, or -1 if there is no such object.
+     */
+    public int getSystemObjectIndex(int id) {
+        SystemObjectTypes type = findSystemObjectType(id);
+        if (type == null)
+            return -1;
+        ReentrantReadWriteLock lock = tableLock(type);
+        lock.readLock().lock();
+        try {
+            if (type == SystemObjectTypes.CITIZEN)
+                return citizens.indexOf(id);
+            return systemObjects.get(type.getSystemObjectCode() - 1).indexOf(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * It returns the number of registered objects of a type.
+     * 
+     * @param type The type of the objects.
+     * @return The number of objects.
+     */
+    public int getSystemObjectCount(SystemObjectTypes type) {
+        ReentrantReadWriteLock lock = tableLock(type);
+        lock.readLock().lock();
+        try {
+            if (type == SystemObjectTypes.CITIZEN)
+                return citizens.size();
+            return systemObjects.get(type.getSystemObjectCode() - 1).size();
+        } finally {
+            lock.readLock().unlock();
         }
-        return null;
     }
 
     // ============ LAWYER ============
@@ -428,7 +1137,30 @@ public class SystemClass
      */
     public void addStateAttorneyApplicant(Lawyer stateAttorney)
     {
-        stateAttorneyApplicants.offer(stateAttorney.getId());
+        lawyerLock.writeLock().lock();
+        try
+        {
+            stateAttorneyApplicants.offer(stateAttorney.getId());
+            log(LogRecordTypes.STATE_ATTORNEY_APPLICANT_ADDED, stateAttorney.getId(), out -> {});
+        }
+        finally
+        {
+            lawyerLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * It gives a citizen made from the citizen table the system, so its
+     * changes are logged.
+     * 
+     * @param citizen The citizen, can be null.
+     * @return The citizen.
+     */
+    private Citizen registeredCitizen(Citizen citizen)
+    {
+        if (citizen != null)
+            citizen.setSystemClass(this);
+        return citizen;
     }
 
     // get citizen
@@ -460,15 +1192,14 @@ public class SystemClass
      */
     public void displayJobAdvertisements()
     {
-        int i = 1;
-        for (LawOffice.JobAdvertisement jobAdvertisement : jobAdvertisementsReferences)
-        {
-            System.out.println(i + ".\n" + jobAdvertisement.toString());
-            i++;
-        }
-        
-        if (jobAdvertisementsReferences.isEmpty())
-            System.out.println("No job advertisements.");
+        // Advertisements are only appended, so the number of one is its key.
+        ListingPager.display((afterNumber, page) -> {
+            int count = Math.max(Math.min(page.length, jobAdvertisementsReferences.size() - afterNumber), 0);
+            for (int i = 0; i < count; i++)
+                page[i] = afterNumber + i + 1;
+            return count;
+        }, listingPageSize, ".\n", (out, number) -> out.jobAdvertisement(jobAdvertisementsReferences.get(number - 1)),
+           "No job advertisements.");
     }
     
     /**
@@ -489,15 +1220,16 @@ public class SystemClass
      * to explain what the code does
      * 
      * @param jobApplication The job application to add.
+     * @param applicant The lawyer who applied, who keeps the same application.
      */
-    public void addJobApplication(Lawyer.JobApplication jobApplication)
+    public void addJobApplication(Lawyer.JobApplication jobApplication, Lawyer applicant)
     {
         LawOfficeOwner owner = getLawOfficeOwner(jobApplication.getOwnerId());
-        owner.getOffice().addJobApplication(jobApplication);
+        owner.getOffice().addJobApplication(jobApplication, applicant);
     }
 
     /**
-     * This function returns a LawOfficeOwner object from the TreeMap of system objects.
+     * This function returns a LawOfficeOwner object from the table of system objects.
      * 
      * @param id The id of the object you want to get.
      * @return A LawOfficeOwner object.
@@ -507,6 +1239,120 @@ public class SystemClass
         return (LawOfficeOwner) getSystemObject(id);
     }
     
+    // ============ ARCHIVE ============
+    /**
+     * It returns the number of lawsuits between the given dates, both inclusive.
+     * 
+     * @param startDate The first day.
+     * @param endDate The last day.
+     * @return The number of lawsuits.
+     */
+    public int countLawsuitsBetween(LocalDate startDate, LocalDate endDate)
+    {
+        lawsuitLock.readLock().lock();
+        try
+        {
+            return lawsuitIndex.countByDate(startDate.toEpochDay(), endDate.toEpochDay());
+        }
+        finally
+        {
+            lawsuitLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * It calls the action for every lawsuit between the given dates, both inclusive,
+     * in date order. Lawsuits outside the interval are not visited.
+     * The action runs under the lawsuit read lock, so it must not change lawsuits.
+     * 
+     * @param startDate The first day.
+     * @param endDate The last day.
+     * @param action The action to call with each lawsuit.
+     */
+    public void forEachLawsuitBetween(LocalDate startDate, LocalDate endDate, Consumer<Lawsuit> action)
+    {
+        lawsuitLock.readLock().lock();
+        try
+        {
+            lawsuitIndex.forEachByDate(startDate.toEpochDay(), endDate.toEpochDay(), 
+                                       lawsuitId -> action.accept(getLawsuit(lawsuitId)));
+        }
+        finally
+        {
+            lawsuitLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * It returns a page of the ids of the lawsuits between the given dates, both inclusive,
+     * in date order after the last lawsuit of the previous page. The page starts with a seek
+     * in the date index.
+     * 
+     * @param startDate The first day.
+     * @param endDate The last day.
+     * @param afterId The last id of the previous page, 0 for the first page.
+     * @param page The array to fill with the ids.
+     * @return The number of ids, less than the page length only on the last page.
+     */
+    public int selectLawsuitsBetween(LocalDate startDate, LocalDate endDate, int afterId, int[] page)
+    {
+        lawsuitLock.readLock().lock();
+        try
+        {
+            Lawsuit after = afterId == 0 ? null : getLawsuit(afterId);
+            long afterDay = after == null || after.getDate() == null ? Long.MIN_VALUE : LawsuitIndex.toEpochDay(after.getDate());
+            if (afterDay == Long.MIN_VALUE)
+                afterId = 0;
+            return lawsuitIndex.pageByDate(startDate.toEpochDay(), endDate.toEpochDay(), afterDay, afterId, page);
+        }
+        finally
+        {
+            lawsuitLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * It returns the earliest lawsuit between the given dates, both inclusive.
+     * 
+     * @param startDate The first day.
+     * @param endDate The last day.
+     * @return The lawsuit, or null if there is none.
+     */
+    public Lawsuit getFirstLawsuitBetween(LocalDate startDate, LocalDate endDate)
+    {
+        lawsuitLock.readLock().lock();
+        try
+        {
+            int lawsuitId = lawsuitIndex.firstByDate(startDate.toEpochDay(), endDate.toEpochDay());
+            return lawsuitId == -1 ? null : getLawsuit(lawsuitId);
+        }
+        finally
+        {
+            lawsuitLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * It returns the latest lawsuit between the given dates, both inclusive.
+     * 
+     * @param startDate The first day.
+     * @param endDate The last day.
+     * @return The lawsuit, or null if there is none.
+     */
+    public Lawsuit getLastLawsuitBetween(LocalDate startDate, LocalDate endDate)
+    {
+        lawsuitLock.readLock().lock();
+        try
+        {
+            int lawsuitId = lawsuitIndex.lastByDate(startDate.toEpochDay(), endDate.toEpochDay());
+            return lawsuitId == -1 ? null : getLawsuit(lawsuitId);
+        }
+        finally
+        {
+            lawsuitLock.readLock().unlock();
+        }
+    }
+
     /**
      * It displays a menu and calls the appropriate function based on the user's choice
      */
@@ -521,6 +1367,8 @@ public class SystemClass
         System.out.println("6. Display lawsuits by lawyer");
         System.out.println("7. Display lawsuits by citizen");
         System.out.println("8. Display lawsuits filtered by lawsuit types");
+        System.out.println("9. Display lawsuit statistics");
+        System.out.println("10. Search lawsuits");
         System.out.println("0. Back");
         System.out.println("Enter your choice: ");
         int choice;
@@ -560,6 +1408,12 @@ public class SystemClass
             case 8:
                 displayLawsuitsFilteredByLawsuitTypes();
                 break;
+            case 9:
+                displayLawsuitStatistics();
+                break;
+            case 10:
+                searchLawsuits();
+                break;
             case 0:
                 return;
             default:
@@ -575,56 +1429,37 @@ public class SystemClass
     private void displayAllLawsuits()
     {
         System.out.println("\n\tAll lawsuits");
-        int i = 1;
-        for (var lawsuit : systemObjects.get(SystemObjectTypes.LAWSUIT.getSystemObjectCode() - 1).values())
-        {
-            System.out.println(i + ".\n" + lawsuit.toString());
-            i++;
-        }
-
-        if (i == 1)
-            System.out.println("No lawsuits.");
+        displayLawsuits(queryLawsuits(new LawsuitColumns.Filter()), ".\n", "No lawsuits.");
     }
 
     /**
      * This function displays lawsuits by date.
+     * Both dates are inclusive and the lawsuits are listed in date order.
      */
     private void displayLawsuitsByDate()
     {
         System.out.println("Enter initial date (yyyyMMdd): ");
-        String input = Utils.readStringInput();
-        Date startDate;
+        LocalDate startDate;
         try {
-            startDate = new SimpleDateFormat("yyyyMMdd").parse(input);
-        } catch (Exception e) {
+            startDate = Utils.readDateInput();
+        } catch (DateTimeParseException e) {
             System.out.println(Utils.INVALID_INPUT);
             return;
         }
 
         System.out.println("Enter final date (yyyyMMdd): ");
-        input = Utils.readStringInput();
-        Date endDate;
+        LocalDate endDate;
         try {
-            endDate = new SimpleDateFormat("yyyyMMdd").parse(input);
-        } catch (Exception e) {
+            endDate = Utils.readDateInput();
+        } catch (DateTimeParseException e) {
             System.out.println(Utils.INVALID_INPUT);
             return;
         }
 
         System.out.println("\n\tLawsuits by date");
-        int i = 1;
-        for (var obj : systemObjects.get(SystemObjectTypes.LAWSUIT.getSystemObjectCode() - 1).values())
-        {
-            Lawsuit lawsuit = (Lawsuit) obj;
-            if (lawsuit.getDate().after(startDate) && lawsuit.getDate().before(endDate))
-            {
-                System.out.println(i + ".\n" + lawsuit.toString());
-                i++;
-            }
-        }
-
-        if (i == 1)
-            System.out.println("No lawsuits found in given interval.");
+        ListingPager.display((afterId, page) -> selectLawsuitsBetween(startDate, endDate, afterId, page),
+                             listingPageSize, ".\n", (out, lawsuitId) -> out.lawsuit(getLawsuit(lawsuitId)),
+                             "No lawsuits found in given interval.");
     }
 
     /**
@@ -633,19 +1468,8 @@ public class SystemClass
     public void displayConcludedLawsuits()
     {
         System.out.println("\n\tConcluded lawsuits");
-        int i = 1;
-        for (var obj : systemObjects.get(SystemObjectTypes.LAWSUIT.getSystemObjectCode() - 1).values())
-        {
-            Lawsuit lawsuit = (Lawsuit) obj;
-            if (lawsuit.getStatus() == LawsuitStatus.SUED_WON || lawsuit.getStatus() == LawsuitStatus.SUING_WON)
-            {
-                System.out.println(i + ".\n" + lawsuit.toString());
-                i++;
-            }
-        }
-
-        if (i == 1)
-            System.out.println("No lawsuits found");
+        LawsuitColumns.Filter filter = new LawsuitColumns.Filter().statuses(LawsuitStatus.SUING_WON, LawsuitStatus.SUED_WON);
+        displayLawsuits(queryLawsuits(filter), ".\n", "No lawsuits found");
     }
    
     /**
@@ -657,7 +1481,7 @@ public class SystemClass
         int judgeId;
         try
         {
-            judgeId = Utils.readIntegerInput();
+            judgeId = Utils.readIdInput();
         }
         catch (NumberFormatException e)
         {
@@ -672,20 +1496,7 @@ public class SystemClass
         }
 
         System.out.println("\n\tLawsuits by judge");
-        int i = 1;
-        for (var obj : systemObjects.get(SystemObjectTypes.LAWSUIT.getSystemObjectCode() - 1).values())
-        {
-            Lawsuit lawsuit = (Lawsuit) obj;
-            if (lawsuit.getJudge() == judge.getId())
-            {
-                System.out.println(i + ".\n" + lawsuit.toString());
-                i++;
-            }
-        }
-
-        if (i == 1)
-            System.out.println("No lawsuits found");
-
+        displayLawsuits(queryLawsuits(new LawsuitColumns.Filter().judge(judge.getId())), ".\n", "No lawsuits found");
     }
 
     /**
@@ -697,7 +1508,7 @@ public class SystemClass
         int lawyerId;
         try
         {
-            lawyerId = Utils.readIntegerInput();
+            lawyerId = Utils.readIdInput();
         }
         catch (NumberFormatException e)
         {
@@ -712,19 +1523,7 @@ public class SystemClass
         }
 
         System.out.println("\n\tLawsuits by lawyer");
-        int i = 1;
-        for (var obj : systemObjects.get(SystemObjectTypes.LAWSUIT.getSystemObjectCode() - 1).values())
-        {
-            Lawsuit lawsuit = (Lawsuit) obj;
-            if (lawsuit.getSuedLawyer() == lawyer.getId() || lawsuit.getSuingLawyer() == lawyer.getId())
-            {
-                System.out.println(i + ".\n" + lawsuit.toString());
-                i++;
-            }
-        }
-
-        if (i == 1)
-            System.out.println("No lawsuits found");
+        displayLawsuits(queryLawsuits(new LawsuitColumns.Filter().lawyer(lawyer.getId())), ".\n", "No lawsuits found");
     }
 
     /**
@@ -736,7 +1535,7 @@ public class SystemClass
         int citizenId;
         try
         {
-            citizenId = Utils.readIntegerInput();
+            citizenId = Utils.readIdInput();
         }
         catch (NumberFormatException e)
         {
@@ -750,19 +1549,7 @@ public class SystemClass
             return;
         }
         System.out.println("\n\tLawsuits by citizen");
-        int i = 1;
-        for (var obj : systemObjects.get(SystemObjectTypes.LAWSUIT.getSystemObjectCode() - 1).values())
-        {
-            Lawsuit lawsuit = (Lawsuit) obj;
-            if (lawsuit.getSuingCitizen() == citizen.getId() || lawsuit.getSuedCitizen() == citizen.getId())
-            {
-                System.out.println(i + ".\n" + lawsuit.toString());
-                i++;
-            }
-        }
-
-        if (i == 1)
-            System.out.println("No lawsuits found");
+        displayLawsuits(queryLawsuits(new LawsuitColumns.Filter().citizen(citizen.getId())), ".\n", "No lawsuits found");
     }
 
     /**
@@ -794,19 +1581,882 @@ public class SystemClass
 
         LawsuitTypes lawsuitType = LawsuitTypes.values()[choice - 1];
         System.out.println("\n\tLawsuits by type " + lawsuitType.toString());
-        int i = 1;
-        for (var obj : systemObjects.get(SystemObjectTypes.LAWSUIT.getSystemObjectCode() - 1).values())
+        displayLawsuits(queryLawsuits(new LawsuitColumns.Filter().types(lawsuitType)), ". ", "No lawsuits found");
+    }
+
+    /**
+     * It asks for the conditions of a search and displays the lawsuits that meet all of them.
+     * An empty answer leaves the condition out.
+     */
+    private void searchLawsuits()
+    {
+        LawsuitColumns.Filter filter = new LawsuitColumns.Filter();
+        try
+        {
+            System.out.println("Enter the judge id (empty for any): ");
+            Integer judgeId = Utils.readOptionalIdInput();
+            if (judgeId != null)
+                filter.judge(judgeId);
+
+            System.out.println("Enter the lawyer id (empty for any): ");
+            Integer lawyerId = Utils.readOptionalIdInput();
+            if (lawyerId != null)
+                filter.lawyer(lawyerId);
+
+            System.out.println("Enter the citizen id (empty for any): ");
+            Integer citizenId = Utils.readOptionalIdInput();
+            if (citizenId != null)
+                filter.citizen(citizenId);
+
+            System.out.println("Enter the lawsuit type (empty for any)");
+            System.out.println("1. Personal Injury  2. Product Liability  3. Family Law Dispute  4. Criminal");
+            Integer type = Utils.readOptionalIntegerInput();
+            if (type != null)
+            {
+                if (type < 1 || type > LawsuitTypes.values().length)
+                {
+                    System.out.println(Utils.INVALID_CHOICE);
+                    return;
+                }
+                filter.types(LawsuitTypes.values()[type - 1]);
+            }
+
+            System.out.println("Enter the lawsuit status (empty for any)");
+            System.out.println("1. Hold  2. Still going  3. Suing won  4. Sued won");
+            Integer status = Utils.readOptionalIntegerInput();
+            if (status != null)
+            {
+                if (status < 1 || status > LawsuitStatus.values().length)
+                {
+                    System.out.println(Utils.INVALID_CHOICE);
+                    return;
+                }
+                filter.statuses(LawsuitStatus.values()[status - 1]);
+            }
+
+            System.out.println("Enter initial date (yyyyMMdd, empty for any): ");
+            LocalDate startDate = Utils.readOptionalDateInput();
+            System.out.println("Enter final date (yyyyMMdd, empty for any): ");
+            LocalDate endDate = Utils.readOptionalDateInput();
+            if (startDate != null || endDate != null)
+                filter.between(startDate == null ? Long.MIN_VALUE : startDate.toEpochDay(),
+                               endDate == null ? Long.MAX_VALUE : endDate.toEpochDay());
+        }
+        catch (NumberFormatException | DateTimeParseException e)
+        {
+            System.out.println(Utils.INVALID_INPUT);
+            return;
+        }
+
+        LawsuitCursor lawsuits = queryLawsuits(filter);
+        System.out.println("\n\tSearch results");
+        System.out.println("Plan: " + lawsuits.getPlan());
+        displayLawsuits(lawsuits, ".\n", "No lawsuits found");
+    }
+
+    /**
+     * It displays the lawsuits of a query a page at a time, numbered from 1.
+     * 
+     * @param lawsuits The cursor over the lawsuits.
+     * @param separator The text between the number and the lawsuit.
+     * @param noLawsuitsMessage The message if there are no lawsuits, or null to display nothing.
+     */
+    private void displayLawsuits(LawsuitCursor lawsuits, String separator, String noLawsuitsMessage)
+    {
+        ListingPager.display(lawsuits::fill, listingPageSize, separator, (out, lawsuitId) -> out.lawsuit(getLawsuit(lawsuitId)),
+                             noLawsuitsMessage);
+    }
+
+    /**
+     * It displays the number of lawsuits of every type and status between two dates.
+     */
+    public void displayLawsuitStatistics()
+    {
+        System.out.println("Enter initial date (yyyyMMdd): ");
+        LocalDate startDate;
+        try {
+            startDate = Utils.readDateInput();
+        } catch (DateTimeParseException e) {
+            System.out.println(Utils.INVALID_INPUT);
+            return;
+        }
+
+        System.out.println("Enter final date (yyyyMMdd): ");
+        LocalDate endDate;
+        try {
+            endDate = Utils.readDateInput();
+        } catch (DateTimeParseException e) {
+            System.out.println(Utils.INVALID_INPUT);
+            return;
+        }
+
+        int[][] counts = getLawsuitStatistics(new LawsuitColumns.Filter()
+            .between(startDate.toEpochDay(), endDate.toEpochDay()));
+
+        System.out.println("\n\tLawsuit statistics");
+        StringBuilder header = new StringBuilder(String.format("%-20s", "Type"));
+        for (LawsuitStatus status : LawsuitStatus.values())
+            header.append(String.format("%12s", status.getStatus()));
+        System.out.println(header.append(String.format("%12s", "Total")));
+
+        int[] statusTotals = new int[LawsuitStatus.values().length + 1];
+        for (LawsuitTypes type : LawsuitTypes.values())
         {
-            Lawsuit lawsuit = (Lawsuit) obj;
-            if (lawsuit.getLawsuitType() == lawsuitType)
+            int[] row = counts[type.ordinal() + 1];
+            StringBuilder line = new StringBuilder(String.format("%-20s", type));
+            int total = 0;
+            for (LawsuitStatus status : LawsuitStatus.values())
             {
-                System.out.println(i + ". " + lawsuit.toString());
-                i++;
+                int count = row[status.ordinal() + 1];
+                line.append(String.format("%12d", count));
+                statusTotals[status.ordinal()] += count;
+                total += count;
             }
+            statusTotals[statusTotals.length - 1] += total;
+            System.out.println(line.append(String.format("%12d", total)));
+        }
+
+        StringBuilder line = new StringBuilder(String.format("%-20s", "Total"));
+        for (int total : statusTotals)
+            line.append(String.format("%12d", total));
+        System.out.println(line);
+    }
+
+    /**
+     * It returns the number of lawsuits the filter accepts by scanning the
+     * lawsuit columns.
+     * 
+     * @param filter The conditions on the lawsuits.
+     * @return The number of lawsuits.
+     */
+    public int countLawsuits(LawsuitColumns.Filter filter)
+    {
+        lawsuitLock.readLock().lock();
+        try
+        {
+            return lawsuitColumns.count(filter);
+        }
+        finally
+        {
+            lawsuitLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * It returns the ids of the lawsuits the filter accepts by scanning the
+     * lawsuit columns.
+     * 
+     * @param filter The conditions on the lawsuits.
+     * @return The lawsuit ids in increasing order.
+     */
+    public int[] selectLawsuits(LawsuitColumns.Filter filter)
+    {
+        lawsuitLock.readLock().lock();
+        try
+        {
+            return lawsuitColumns.select(filter);
         }
+        finally
+        {
+            lawsuitLock.readLock().unlock();
+        }
+    }
 
-        if (i == 1)
-            System.out.println("No lawsuits found");
+    /**
+     * It returns a page of the ids of the lawsuits the filter accepts, after
+     * the last id of the previous page. Only the rows after that id are scanned,
+     * and the lawsuit lock is held for one page at a time.
+     * 
+     * @param filter The conditions on the lawsuits.
+     * @param afterId The last id of the previous page, 0 for the first page.
+     * @param page The array to fill with the ids in increasing order.
+     * @return The number of ids, less than the page length only on the last page.
+     */
+    public int selectLawsuits(LawsuitColumns.Filter filter, int afterId, int[] page)
+    {
+        lawsuitLock.readLock().lock();
+        try
+        {
+            return lawsuitColumns.select(filter, afterId, page);
+        }
+        finally
+        {
+            lawsuitLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * It returns the number of items a listing shows at a time on the console.
+     * 
+     * @return The page size.
+     */
+    public int getListingPageSize()
+    {
+        return listingPageSize;
+    }
+
+    /**
+     * It sets the number of items a listing shows at a time on the console.
+     * 
+     * @param listingPageSize The page size, at least 1.
+     */
+    public void setListingPageSize(int listingPageSize)
+    {
+        if (listingPageSize < 1)
+            throw new IllegalArgumentException("Invalid page size " + listingPageSize);
+        this.listingPageSize = listingPageSize;
+    }
+
+    /**
+     * It plans a query of the lawsuits the filter accepts and returns a cursor over them.
+     * The plan reads the most selective index of the filter and checks the other
+     * conditions on the found lawsuits only, so a query costs about its result when an
+     * index is selective and a scan of the lawsuit columns otherwise.
+     * 
+     * @param filter The conditions on the lawsuits. It must not be changed while the cursor is used.
+     * @return The cursor over the lawsuits in increasing id order.
+     */
+    public LawsuitCursor queryLawsuits(LawsuitColumns.Filter filter)
+    {
+        lawsuitLock.readLock().lock();
+        try
+        {
+            int lawsuitCount = systemObjects.get(SystemObjectTypes.LAWSUIT.getSystemObjectCode() - 1).size();
+            return new LawsuitCursor(this, LawsuitQueryPlan.plan(filter, lawsuitIndex, lawsuitColumns, lawsuitCount));
+        }
+        finally
+        {
+            lawsuitLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * It fills a page of a query with the lawsuit lock held.
+     * 
+     * @param plan The plan of the query.
+     * @param afterId The last id of the previous page, 0 for the first page.
+     * @param page The array to fill with the ids in increasing order.
+     * @return The number of ids, less than the page length only on the last page.
+     */
+    int fillLawsuitPage(LawsuitQueryPlan plan, int afterId, int[] page)
+    {
+        lawsuitLock.readLock().lock();
+        try
+        {
+            return plan.fill(afterId, page);
+        }
+        finally
+        {
+            lawsuitLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * It returns a page of the ids of the objects of a type, after the last id
+     * of the previous page, without building citizens.
+     * 
+     * @param type The type of the objects.
+     * @param afterId The last id of the previous page, 0 for the first page.
+     * @param page The array to fill with the ids in increasing order.
+     * @return The number of ids, less than the page length only on the last page.
+     */
+    public int selectSystemObjectIds(SystemObjectTypes type, int afterId, int[] page)
+    {
+        ReentrantReadWriteLock lock = tableLock(type);
+        lock.readLock().lock();
+        try
+        {
+            if (type == SystemObjectTypes.CITIZEN)
+                return citizens.ids(afterId, page);
+            return systemObjects.get(type.getSystemObjectCode() - 1).ids(afterId, page);
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * It returns the lawsuits a citizen is suing in while represented by a
+     * lawyer, by intersecting the lawsuit sets of the two users.
+     * 
+     * @param citizenId The id of the citizen.
+     * @param lawyerId The id of the lawyer.
+     * @return The lawsuit ids, empty if either user does not exist.
+     */
+    public CompactIntSet getSuingLawsuitsRepresentedBy(int citizenId, int lawyerId)
+    {
+        AbstractSystemObject citizen = getSystemObject(citizenId);
+        AbstractSystemObject lawyer = getSystemObject(lawyerId);
+        if (!(citizen instanceof Citizen) || !(lawyer instanceof Lawyer))
+            return new CompactIntSet();
+        return ((Citizen) citizen).getSuingLawsuits().and(((Lawyer) lawyer).getLawsuits());
+    }
+
+    /**
+     * It counts the lawsuits the filter accepts for every type and status.
+     * 
+     * @param filter The conditions on the lawsuits.
+     * @return The counts indexed by [type ordinal + 1][status ordinal + 1].
+     */
+    public int[][] getLawsuitStatistics(LawsuitColumns.Filter filter)
+    {
+        lawsuitLock.readLock().lock();
+        try
+        {
+            return lawsuitColumns.countByTypeAndStatus(filter);
+        }
+        finally
+        {
+            lawsuitLock.readLock().unlock();
+        }
+    }
+
+    // ============ WRITE-AHEAD LOG ============
+    /**
+     * It starts logging every change to the given log. Changes made before,
+     * like the generated objects and the replayed records, are not logged.
+     * 
+     * @param writeAheadLog The log, or null to stop logging.
+     */
+    void setWriteAheadLog(WriteAheadLog writeAheadLog)
+    {
+        this.writeAheadLog = writeAheadLog;
+    }
+
+    /**
+     * It returns the sequence number of the last logged change in the objects.
+     * 
+     * @return The sequence number, 0 if no change was logged.
+     */
+    long getLogSequence()
+    {
+        return logSequence;
+    }
+
+    /**
+     * It sets the sequence number of the last logged change in the objects.
+     * 
+     * @param logSequence The sequence number.
+     */
+    void setLogSequence(long logSequence)
+    {
+        this.logSequence = logSequence;
+    }
+
+    /**
+     * It appends a change to the write-ahead log if there is one.
+     * Callers append while they still hold the lock or monitor the change was made
+     * under, so the log has the changes of an object or list in the order they were made.
+     * 
+     * @param type The type of the change.
+     * @param id The id of the changed object.
+     * @param body Writes the values of the change.
+     */
+    void log(LogRecordTypes type, int id, WriteAheadLog.RecordBody body)
+    {
+        WriteAheadLog log = writeAheadLog;
+        if (log != null)
+            log.append(type, id, body);
+    }
+
+    /**
+     * It applies a change read from the write-ahead log. Changes are applied
+     * through the same methods that made them, so the indexes, dockets and 
+     * queues follow. No log is set while records are applied, so nothing is
+     * logged twice.
+     * 
+     * @param type The type of the change.
+     * @param id The id of the changed object.
+     * @param in The values of the change.
+     * @throws IOException if the record is not valid for the objects.
+     */
+    void applyLogRecord(LogRecordTypes type, int id, SnapshotInput in) throws IOException
+    {
+        switch (type)
+        {
+            case OBJECT_CREATED:
+                SystemObjectTypes objectType = findSystemObjectType(id);
+                if (objectType == null)
+                    throw new IOException("Created object " + id + " has no type");
+                registerSystemObject(readSystemObject(objectType, in));
+                break;
+            case LAWSUIT_DATE:
+                loggedObject(id, Lawsuit.class).setDate(in.readDate());
+                break;
+            case LAWSUIT_JUDGE:
+                loggedObject(id, Lawsuit.class).setJudge(in.readInt());
+                break;
+            case LAWSUIT_SUING_CITIZEN:
+                loggedObject(id, Lawsuit.class).setSuingCitizen(in.readInt());
+                break;
+            case LAWSUIT_SUED_CITIZEN:
+                loggedObject(id, Lawsuit.class).setSuedCitizen(in.readInt());
+                break;
+            case LAWSUIT_SUING_LAWYER:
+                loggedObject(id, Lawsuit.class).setSuingLawyer(in.readInt());
+                break;
+            case LAWSUIT_SUED_LAWYER:
+                loggedObject(id, Lawsuit.class).setSuedLawyer(in.readInt());
+                break;
+            case LAWSUIT_CASE_FILE:
+                loggedObject(id, Lawsuit.class).setCaseFile(in.readString());
+                break;
+            case LAWSUIT_COURT_RECORDS:
+                loggedObject(id, Lawsuit.class).setCourtRecords(in.readString());
+                break;
+            case LAWSUIT_STATUS:
+                loggedObject(id, Lawsuit.class).setStatus(in.readEnum(LawsuitStatus.values()));
+                break;
+            case LAWSUIT_TYPE:
+                loggedObject(id, Lawsuit.class).setLawsuitType(in.readEnum(LawsuitTypes.values()));
+                break;
+            case LAWSUIT_SUING_DEFENCE:
+                loggedObject(id, Lawsuit.class).setSuingDefence(in.readString());
+                break;
+            case LAWSUIT_SUED_DEFENCE:
+                loggedObject(id, Lawsuit.class).setSuedDefence(in.readString());
+                break;
+            case CITIZEN_SUING_LAWSUIT_ADDED:
+                loggedObject(id, Citizen.class).addSuingLawsuit(in.readInt());
+                break;
+            case CITIZEN_SUED_LAWSUIT_ADDED:
+                loggedObject(id, Citizen.class).addSuedLawsuit(in.readInt());
+                break;
+            case LAWYER_LAWSUIT_ADDED:
+                loggedObject(id, Lawyer.class).addLawsuit(in.readInt());
+                break;
+            case LAWYER_LAWSUIT_REMOVED:
+                loggedObject(id, Lawyer.class).removeLawsuit(in.readInt());
+                break;
+            case LAWYER_LAWSUIT_CONCLUDED:
+                loggedObject(id, Lawyer.class).concludeLawsuit(in.readInt());
+                break;
+            case LAWYER_STATE_ATTORNEY:
+                loggedObject(id, Lawyer.class).setStateAttorney(in.readBoolean());
+                break;
+            case LAWYER_ACCEPTS_LAWSUITS:
+                loggedObject(id, Lawyer.class).setAcceptsLawsuits(in.readBoolean());
+                break;
+            case LAWYER_EMPLOYER:
+                int employerId = in.readInt();
+                loggedObject(id, Lawyer.class).setEmployerId(employerId == -1 ? null : employerId);
+                break;
+            case LAWYER_JOB_APPLIED:
+                int ownerId = in.readInt();
+                loggedObject(ownerId, LawOfficeOwner.class);
+                loggedObject(id, Lawyer.class).applyForJob(this, ownerId, in.readString());
+                break;
+            case JUDGE_LAWSUIT_ASSIGNED:
+                loggedObject(id, Judge.class).assignLawsuit(in.readInt());
+                break;
+            case JUDGE_LAWSUIT_CONCLUDED:
+                loggedObject(id, Judge.class).concludeLawsuit(in.readInt());
+                break;
+            case OFFICE_EMPLOYEE_ADDED:
+                loggedObject(id, LawOfficeOwner.class).getOffice().addEmployee(in.readInt());
+                break;
+            case OFFICE_EMPLOYEE_REMOVED:
+                loggedObject(id, LawOfficeOwner.class).getOffice().removeEmployee(in.readInt());
+                break;
+            case OFFICE_JOB_ADVERTISEMENT_PUBLISHED:
+                LawOffice office = loggedObject(id, LawOfficeOwner.class).getOffice();
+                LawOffice.JobAdvertisement jobAdvertisement = office.createJobAdvertisement(id, in.readString(), in.readString());
+                office.addJobAdvertisement(jobAdvertisement);
+                addJobAdvertisement(jobAdvertisement);
+                break;
+            case OFFICE_JOB_ADVERTISEMENT_REMOVED:
+                loggedObject(id, LawOfficeOwner.class).getOffice().removeJobAdvertisement(in.readInt());
+                break;
+            case OFFICE_JOB_APPLICATION_STATUS:
+                int index = in.readInt();
+                loggedObject(id, LawOfficeOwner.class).getOffice()
+                    .setJobApplicationStatus(index, in.readEnum(JobApplicationStatus.values()));
+                break;
+            case OFFICE_JOB_APPLICATION_REMOVED:
+                loggedObject(id, LawOfficeOwner.class).getOffice().removeJobApplication(in.readInt());
+                break;
+            case STATE_ATTORNEY_ADDED:
+                addStateAttorney(id);
+                break;
+            case STATE_ATTORNEY_POLLED:
+                pollStateAttorney();
+                break;
+            case STATE_ATTORNEY_APPLICANT_ADDED:
+                addStateAttorneyApplicant(loggedObject(id, Lawyer.class));
+                break;
+            case STATE_ATTORNEY_APPLICANT_POLLED:
+                pollStateAttorneyApplicant();
+                break;
+            default:
+                throw new IOException("Unknown log record type " + type);
+        }
+    }
+
+    /**
+     * It stops the change hooks from updating the lawsuit index, the dockets 
+     * and the lawsuit accepting lawyers, so many threads can replay changes 
+     * without waiting for the locks of the indexes. rebuildIndexes must be 
+     * called when the replay is over.
+     */
+    void suspendIndexes()
+    {
+        indexesSuspended = true;
+    }
+
+    /**
+     * It builds the lawsuit index and columns, the dockets and the lawsuit accepting
+     * lawyers again from the objects and turns the change hooks back on.
+     */
+    void rebuildIndexes()
+    {
+        ReentrantReadWriteLock lawyerTableLock = tableLock(SystemObjectTypes.LAWYER);
+        ReentrantReadWriteLock ownerTableLock = tableLock(SystemObjectTypes.LAWOFFICE_OWNER);
+        lawsuitLock.writeLock().lock();
+        lawyerTableLock.readLock().lock();
+        ownerTableLock.readLock().lock();
+        lawyerLock.writeLock().lock();
+        try
+        {
+            lawsuitIndex = new LawsuitIndex();
+            lawsuitColumns = new LawsuitColumns();
+            dockets = createDockets();
+            DenseIdTable<AbstractSystemObject> lawsuitTable = systemObjects.get(SystemObjectTypes.LAWSUIT.getSystemObjectCode() - 1);
+            List<Lawsuit> lawsuits = new ArrayList<>(lawsuitTable.size());
+            for (AbstractSystemObject lawsuit : lawsuitTable)
+                lawsuits.add((Lawsuit) lawsuit);
+            indexLawsuits(lawsuits);
+
+            // Tables iterate in id order and lawyer ids are smaller than owner ids.
+            long[] acceptingLawyerIds = new long[16];
+            int acceptingLawyerCount = 0;
+            for (SystemObjectTypes type : new SystemObjectTypes[] {SystemObjectTypes.LAWYER, SystemObjectTypes.LAWOFFICE_OWNER})
+            {
+                for (AbstractSystemObject lawyer : systemObjects.get(type.getSystemObjectCode() - 1))
+                {
+                    if (!((Lawyer) lawyer).acceptsLawsuits())
+                        continue;
+                    if (acceptingLawyerCount == acceptingLawyerIds.length)
+                        acceptingLawyerIds = Arrays.copyOf(acceptingLawyerIds, acceptingLawyerCount * 2);
+                    acceptingLawyerIds[acceptingLawyerCount++] = lawyer.getId();
+                }
+            }
+            lawsuitAcceptingLawyers = new LongTreeSet();
+            lawsuitAcceptingLawyers.addAll(Arrays.copyOf(acceptingLawyerIds, acceptingLawyerCount));
+            indexesSuspended = false;
+        }
+        finally
+        {
+            lawyerLock.writeLock().unlock();
+            ownerTableLock.readLock().unlock();
+            lawyerTableLock.readLock().unlock();
+            lawsuitLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * It checks that every lawsuit refers to registered users of the right
+     * types and that the state attorney queues hold registered lawyers.
+     * 
+     * @throws IllegalStateException if a reference is not valid.
+     */
+    void validateSystemObjects()
+    {
+        for (ReentrantReadWriteLock lock : tableLocks)
+            lock.readLock().lock();
+        lawyerLock.readLock().lock();
+        try
+        {
+            for (AbstractSystemObject systemObject : systemObjects.get(SystemObjectTypes.LAWSUIT.getSystemObjectCode() - 1))
+            {
+                Lawsuit lawsuit = (Lawsuit) systemObject;
+                checkReference(lawsuit, "judge", lawsuit.getJudge(), SystemObjectTypes.JUDGE);
+                checkReference(lawsuit, "suing citizen", lawsuit.getSuingCitizen(), CITIZEN_TYPES);
+                checkReference(lawsuit, "sued citizen", lawsuit.getSuedCitizen(), CITIZEN_TYPES);
+                checkReference(lawsuit, "suing lawyer", lawsuit.getSuingLawyer(), SystemObjectTypes.LAWYER,
+                               SystemObjectTypes.LAWOFFICE_OWNER);
+                checkReference(lawsuit, "sued lawyer", lawsuit.getSuedLawyer(), SystemObjectTypes.LAWYER,
+                               SystemObjectTypes.LAWOFFICE_OWNER);
+            }
+            for (Queue<Integer> queue : List.of(stateAttorneys, stateAttorneyApplicants))
+                for (int lawyerId : queue)
+                    if (!isRegistered(lawyerId, SystemObjectTypes.LAWYER)
+                        && !isRegistered(lawyerId, SystemObjectTypes.LAWOFFICE_OWNER))
+                        throw new IllegalStateException("State attorney queue refers to " + lawyerId + ", which is not a lawyer");
+        }
+        finally
+        {
+            lawyerLock.readLock().unlock();
+            for (int i = tableLocks.length - 1; i >= 0; i--)
+                tableLocks[i].readLock().unlock();
+        }
+    }
+
+    /**
+     * It checks one reference of a lawsuit, -1 is no reference.
+     * The caller holds the table read locks.
+     */
+    private void checkReference(Lawsuit lawsuit, String role, int id, SystemObjectTypes... types)
+    {
+        if (id == -1)
+            return;
+        for (SystemObjectTypes type : types)
+            if (isRegistered(id, type))
+                return;
+        throw new IllegalStateException("Lawsuit " + lawsuit.getId() + " has " + id + " as " + role
+                                        + ", which is not a registered " + types[0]);
+    }
+
+    /**
+     * It tells if an object of the type is registered with the id, without
+     * building a citizen. The caller holds the read lock of the table.
+     */
+    private boolean isRegistered(int id, SystemObjectTypes type)
+    {
+        if (findSystemObjectType(id) != type)
+            return false;
+        if (type == SystemObjectTypes.CITIZEN)
+            return citizens.contains(id);
+        return systemObjects.get(type.getSystemObjectCode() - 1).contains(id);
+    }
+
+    /**
+     * It returns the object a log record changes.
+     * 
+     * @param id The id of the object.
+     * @param type The class the object must have.
+     * @return The object.
+     * @throws IOException if there is no such object.
+     */
+    private <T extends AbstractSystemObject> T loggedObject(int id, Class<T> type) throws IOException
+    {
+        AbstractSystemObject systemObject = getSystemObject(id);
+        if (!type.isInstance(systemObject))
+            throw new IOException("Log record refers to " + id + ", which is not a " + type.getSimpleName());
+        return type.cast(systemObject);
+    }
+
+    // ============ SNAPSHOT ============
+    /**
+     * It writes every system object, the job advertisements and applications 
+     * and the state attorney queues to the snapshot. Indexes and dockets are 
+     * not written, registering the objects rebuilds them. Every lock is held 
+     * for reading, so the snapshot is consistent with itself.
+     * 
+     * @param out The snapshot.
+     */
+    void writeSnapshot(SnapshotOutput out) throws IOException
+    {
+        for (ReentrantReadWriteLock lock : tableLocks)
+            lock.readLock().lock();
+        lawyerLock.readLock().lock();
+        try
+        {
+            writeSharedObjects(out);
+            for (SystemObjectTypes type : SYSTEM_OBJECT_TYPES)
+            {
+                if (type == SystemObjectTypes.CITIZEN)
+                {
+                    citizens.writeSnapshot(out);
+                    continue;
+                }
+                DenseIdTable<AbstractSystemObject> table = systemObjects.get(type.getSystemObjectCode() - 1);
+                out.writeInt(table.size());
+                for (AbstractSystemObject systemObject : table)
+                    systemObject.writeSnapshot(out);
+            }
+            out.writeIds(stateAttorneys);
+            out.writeIds(stateAttorneyApplicants);
+            List<LawOffice.JobAdvertisement> jobAdvertisements = new ArrayList<>(jobAdvertisementsReferences);
+            out.writeInt(jobAdvertisements.size());
+            for (LawOffice.JobAdvertisement jobAdvertisement : jobAdvertisements)
+                out.writeShared(jobAdvertisement);
+        }
+        finally
+        {
+            lawyerLock.readLock().unlock();
+            for (int i = tableLocks.length - 1; i >= 0; i--)
+                tableLocks[i].readLock().unlock();
+        }
+    }
+
+    /**
+     * It writes every job advertisement and then every job application once.
+     * Offices, lawyers and the system refer to them by position afterwards.
+     * 
+     * @param out The snapshot.
+     */
+    private void writeSharedObjects(SnapshotOutput out) throws IOException
+    {
+        List<LawOffice.JobAdvertisement> jobAdvertisements = new ArrayList<>();
+        for (LawOffice.JobAdvertisement jobAdvertisement : jobAdvertisementsReferences)
+            if (out.share(jobAdvertisement))
+                jobAdvertisements.add(jobAdvertisement);
+        for (AbstractSystemObject owner : systemObjects.get(SystemObjectTypes.LAWOFFICE_OWNER.getSystemObjectCode() - 1))
+        {
+            Iterator<LawOffice.JobAdvertisement> iterator = ((LawOfficeOwner) owner).getOffice().getJobAdvertisementIterator();
+            while (iterator.hasNext())
+            {
+                LawOffice.JobAdvertisement jobAdvertisement = iterator.next();
+                if (out.share(jobAdvertisement))
+                    jobAdvertisements.add(jobAdvertisement);
+            }
+        }
+
+        List<Lawyer.JobApplication> jobApplications = new ArrayList<>();
+        for (SystemObjectTypes type : new SystemObjectTypes[] {SystemObjectTypes.LAWYER, SystemObjectTypes.LAWOFFICE_OWNER})
+        {
+            for (AbstractSystemObject lawyer : systemObjects.get(type.getSystemObjectCode() - 1))
+            {
+                for (Lawyer.JobApplication jobApplication : ((Lawyer) lawyer).jobApplications)
+                    if (out.share(jobApplication))
+                        jobApplications.add(jobApplication);
+                if (lawyer instanceof LawOfficeOwner)
+                {
+                    Iterator<Lawyer.JobApplication> iterator = ((LawOfficeOwner) lawyer).getOffice().getJobApplicationIterator();
+                    while (iterator.hasNext())
+                    {
+                        Lawyer.JobApplication jobApplication = iterator.next();
+                        if (out.share(jobApplication))
+                            jobApplications.add(jobApplication);
+                    }
+                }
+            }
+        }
+
+        out.writeInt(jobAdvertisements.size());
+        for (LawOffice.JobAdvertisement jobAdvertisement : jobAdvertisements)
+            jobAdvertisement.writeSnapshot(out);
+        out.writeInt(jobApplications.size());
+        for (Lawyer.JobApplication jobApplication : jobApplications)
+            jobApplication.writeSnapshot(out);
+    }
+
+    /**
+     * It reads a snapshot written by writeSnapshot into this empty system.
+     * 
+     * @param in The snapshot.
+     * @param version The format version of the snapshot, citizens are kept
+     *                as records of the citizen table from version 3 on.
+     * @throws IOException if the snapshot cannot be read or is not valid.
+     */
+    void readSnapshot(SnapshotInput in, int version) throws IOException
+    {
+        int jobAdvertisementCount = in.readCount();
+        for (int i = 0; i < jobAdvertisementCount; i++)
+            in.share(new LawOffice.JobAdvertisement(in));
+        int jobApplicationCount = in.readCount();
+        for (int i = 0; i < jobApplicationCount; i++)
+            in.share(new Lawyer.JobApplication(in));
+
+        suspendIndexes();
+        for (SystemObjectTypes type : SYSTEM_OBJECT_TYPES)
+        {
+            int count = in.readCount();
+            if (type == SystemObjectTypes.CITIZEN && version >= 3)
+            {
+                readCitizens(in, count);
+                continue;
+            }
+            List<AbstractSystemObject> batch = new ArrayList<>(Math.min(count, BULK_LOAD_BATCH_SIZE));
+            for (int i = 0; i < count; i++)
+            {
+                batch.add(readSystemObject(type, in));
+                if (batch.size() == BULK_LOAD_BATCH_SIZE || i == count - 1)
+                {
+                    try
+                    {
+                        registerSystemObjects(type, batch);
+                    }
+                    catch (IllegalArgumentException e)
+                    {
+                        throw new IOException(e.getMessage(), e);
+                    }
+                    batch.clear();
+                }
+            }
+        }
+
+        // Registering lawyers queued the state attorneys in id order, restore the saved order.
+        int[] stateAttorneyIds = in.readIds();
+        int[] applicantIds = in.readIds();
+        lawyerLock.writeLock().lock();
+        try
+        {
+            stateAttorneys.clear();
+            for (int stateAttorneyId : stateAttorneyIds)
+                stateAttorneys.offer(stateAttorneyId);
+            stateAttorneyApplicants.clear();
+            for (int applicantId : applicantIds)
+                stateAttorneyApplicants.offer(applicantId);
+        }
+        finally
+        {
+            lawyerLock.writeLock().unlock();
+        }
+
+        int jobAdvertisementReferenceCount = in.readCount();
+        List<LawOffice.JobAdvertisement> jobAdvertisements = new ArrayList<>(jobAdvertisementReferenceCount);
+        for (int i = 0; i < jobAdvertisementReferenceCount; i++)
+            jobAdvertisements.add(in.readShared(LawOffice.JobAdvertisement.class));
+        jobAdvertisementsReferences.addAll(jobAdvertisements);
+
+        try
+        {
+            finishBulkLoad();
+        }
+        catch (IllegalStateException e)
+        {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * It reads the citizen records of a snapshot into the citizen table.
+     * 
+     * @param in The snapshot.
+     * @param count The number of citizens.
+     */
+    private void readCitizens(SnapshotInput in, int count) throws IOException
+    {
+        ReentrantReadWriteLock lock = tableLock(SystemObjectTypes.CITIZEN);
+        lock.writeLock().lock();
+        try
+        {
+            citizens.readSnapshot(in, count);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * It reads one system object of the given type.
+     * 
+     * @param type The type of the object.
+     * @param in The snapshot.
+     * @return The object.
+     */
+    private static AbstractSystemObject readSystemObject(SystemObjectTypes type, SnapshotInput in) throws IOException
+    {
+        switch (type)
+        {
+            case LAWSUIT:
+                return new Lawsuit(in);
+            case CITIZEN:
+                return new Citizen(in);
+            case LAWYER:
+                return new Lawyer(in);
+            case LAWOFFICE_OWNER:
+                return new LawOfficeOwner(in);
+            case JUDGE:
+                return new Judge(in);
+            case GOVERNMENT_OFFICIAL:
+                return new GovernmentOfficial(in);
+            default:
+                throw new IOException("Unknown system object type " + type);
+        }
     }
 
     // ============ LAW OFFICE OWNER ============
@@ -0,0 +1,932 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+
+import enums.SystemObjectTypes;
+
+/**
+ * Exporter of the lawsuits and users of the system to CSV, JSON lines and
+ * binary files. The format is chosen by the file name: .jsonl or .json for
+ * JSON lines, .bin for binary and CSV for any other name. The columns have the
+ * names SystemImporter reads. Passwords are never exported.
+ * <p>
+ * The ids of the objects are read a page at a time, holding the table locks
+ * only for the page, and every record is encoded straight into a direct buffer
+ * that is written to the file when it is full, so the memory of an export does
+ * not grow with the archive. Names come from the names dictionary, generated
+ * emails are written from their parts and the long texts of the lawsuits are
+ * copied from the blob store without being decoded, so no string is made for
+ * a record. An object that changes during the export is written as it is when
+ * its page is read.
+ * <p>
+ * CSV texts are always quoted, an empty field is a missing value, and texts
+ * can hold line breaks inside the quotes. JSON lines leave out the missing
+ * values. A binary file starts with the int number of columns and their names,
+ * every record starts with the byte 1 and the file ends with the byte 0. Ids
+ * are ints, -1 for no reference, booleans are bytes, dates are epoch
+ * milliseconds, enums are ordinals and texts are strings like in snapshots.
+ */
+public class SystemExporter
+{
+    // Ids read at once.
+    private static final int PAGE_SIZE = 1 << 12;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private static final String[] USER_COLUMNS = {
+        "id", "firstName", "lastName", "email", "phone", "stateAttorney", "acceptsLawsuits", "officeName"
+    };
+    private static final int USER_ID = 0;
+    private static final int FIRST_NAME = 1;
+    private static final int LAST_NAME = 2;
+    private static final int EMAIL = 3;
+    private static final int PHONE = 4;
+    private static final int STATE_ATTORNEY = 5;
+    private static final int ACCEPTS_LAWSUITS = 6;
+    private static final int OFFICE_NAME = 7;
+
+    private static final String[] LAWSUIT_COLUMNS = {
+        "id", "date", "type", "status", "judge", "suingCitizen", "suedCitizen", "suingLawyer", "suedLawyer",
+        "caseFile", "courtRecords", "suingDefence", "suedDefence"
+    };
+    private static final int LAWSUIT_ID = 0;
+    private static final int DATE = 1;
+    private static final int TYPE = 2;
+    private static final int STATUS = 3;
+    private static final int JUDGE = 4;
+    private static final int SUING_CITIZEN = 5;
+    private static final int SUED_CITIZEN = 6;
+    private static final int SUING_LAWYER = 7;
+    private static final int SUED_LAWYER = 8;
+    private static final int CASE_FILE = 9;
+    private static final int COURT_RECORDS = 10;
+    private static final int SUING_DEFENCE = 11;
+    private static final int SUED_DEFENCE = 12;
+
+    private static final SystemObjectTypes[] USER_TYPES = {
+        SystemObjectTypes.CITIZEN, SystemObjectTypes.LAWYER, SystemObjectTypes.LAWOFFICE_OWNER,
+        SystemObjectTypes.JUDGE, SystemObjectTypes.GOVERNMENT_OFFICIAL
+    };
+
+    private static final BlobStore TEXTS = BlobStore.shared();
+
+    private final SystemClass systemClass;
+
+    /**
+     * SystemExporter constructor.
+     *
+     * @param systemClass The system to export.
+     */
+    public SystemExporter(SystemClass systemClass)
+    {
+        this.systemClass = systemClass;
+    }
+
+    /**
+     * The numbers of an exported file.
+     */
+    public static final class Report
+    {
+        private final Path path;
+        private final long records;
+        private final long bytes;
+        private final long nanos;
+
+        private Report(Path path, long records, long bytes, long nanos)
+        {
+            this.path = path;
+            this.records = records;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+
+        /**
+         * @return The written file.
+         */
+        public Path getPath()
+        {
+            return path;
+        }
+
+        /**
+         * @return The number of written records.
+         */
+        public long getRecords()
+        {
+            return records;
+        }
+
+        /**
+         * @return The size of the file.
+         */
+        public long getBytes()
+        {
+            return bytes;
+        }
+
+        /**
+         * @return The records written in a second.
+         */
+        public double getRecordsPerSecond()
+        {
+            return nanos == 0 ? 0 : records * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("Exported %d records to %s (%.1f MB) in %.3f s (%.0f records/s)", records, path,
+                                 bytes / 1e6, nanos / 1e9, getRecordsPerSecond());
+        }
+    }
+
+    /**
+     * It exports the lawsuits the filter accepts in id order.
+     *
+     * @param path The file to write, replaced if it exists.
+     * @param filter The conditions on the lawsuits, a new filter exports every lawsuit.
+     * @return The report of the file.
+     * @throws IOException if the file can not be written.
+     */
+    public Report exportLawsuits(Path path, LawsuitColumns.Filter filter) throws IOException
+    {
+        long start = System.nanoTime();
+        long records = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            RecordEncoder encoder = encoderFor(path, channel, LAWSUIT_COLUMNS);
+            encoder.writeHeader();
+            int[] page = new int[PAGE_SIZE];
+            int afterId = 0;
+            int count;
+            do
+            {
+                count = systemClass.selectLawsuits(filter, afterId, page);
+                for (int i = 0; i < count; i++)
+                {
+                    Lawsuit lawsuit = systemClass.getLawsuit(page[i]);
+                    if (lawsuit == null)
+                        continue;
+                    writeLawsuit(encoder, lawsuit);
+                    records++;
+                }
+                if (count > 0)
+                    afterId = page[count - 1];
+            } while (count == page.length);
+            encoder.finish();
+            return new Report(path, records, encoder.getBytes(), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * It exports the users of the given types, every type in id order.
+     *
+     * @param path The file to write, replaced if it exists.
+     * @param types The user types to export, every user type if none is given.
+     * @return The report of the file.
+     * @throws IOException if the file can not be written.
+     * @throws IllegalArgumentException if a type is not a user type.
+     */
+    public Report exportUsers(Path path, SystemObjectTypes... types) throws IOException
+    {
+        if (types.length == 0)
+            types = USER_TYPES;
+        for (SystemObjectTypes type : types)
+            if (type == SystemObjectTypes.LAWSUIT)
+                throw new IllegalArgumentException("Lawsuits are not users");
+
+        long start = System.nanoTime();
+        long records = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            RecordEncoder encoder = encoderFor(path, channel, USER_COLUMNS);
+            encoder.writeHeader();
+            int[] page = new int[PAGE_SIZE];
+            for (SystemObjectTypes type : types)
+            {
+                int afterId = 0;
+                int count;
+                do
+                {
+                    count = systemClass.selectSystemObjectIds(type, afterId, page);
+                    for (int i = 0; i < count; i++)
+                    {
+                        AbstractSystemObject user = systemClass.getSystemObject(page[i]);
+                        if (user == null)
+                            continue;
+                        writeUser(encoder, (AbstractUser) user);
+                        records++;
+                    }
+                    if (count > 0)
+                        afterId = page[count - 1];
+                } while (count == page.length);
+            }
+            encoder.finish();
+            return new Report(path, records, encoder.getBytes(), System.nanoTime() - start);
+        }
+    }
+
+    private static RecordEncoder encoderFor(Path path, FileChannel channel, String[] columns)
+    {
+        String name = path.getFileName().toString().toLowerCase();
+        if (name.endsWith(".jsonl") || name.endsWith(".json"))
+            return new JsonLinesEncoder(channel, columns);
+        if (name.endsWith(".bin"))
+            return new BinaryEncoder(channel, columns);
+        return new CsvEncoder(channel, columns);
+    }
+
+    private static void writeLawsuit(RecordEncoder encoder, Lawsuit lawsuit) throws IOException
+    {
+        encoder.beginRecord();
+        encoder.writeInt(LAWSUIT_ID, lawsuit.getId());
+        encoder.writeDate(DATE, lawsuit.getDate());
+        encoder.writeEnum(TYPE, lawsuit.getLawsuitType());
+        encoder.writeEnum(STATUS, lawsuit.getStatus());
+        encoder.writeReference(JUDGE, lawsuit.getJudge());
+        encoder.writeReference(SUING_CITIZEN, lawsuit.getSuingCitizen());
+        encoder.writeReference(SUED_CITIZEN, lawsuit.getSuedCitizen());
+        encoder.writeReference(SUING_LAWYER, lawsuit.getSuingLawyer());
+        encoder.writeReference(SUED_LAWYER, lawsuit.getSuedLawyer());
+        encoder.writeText(CASE_FILE, TEXTS.getBuffer(lawsuit.caseFileHandle()));
+        encoder.writeText(COURT_RECORDS, TEXTS.getBuffer(lawsuit.courtRecordsHandle()));
+        encoder.writeText(SUING_DEFENCE, TEXTS.getBuffer(lawsuit.suingDefenceHandle()));
+        encoder.writeText(SUED_DEFENCE, TEXTS.getBuffer(lawsuit.suedDefenceHandle()));
+        encoder.endRecord();
+    }
+
+    private static void writeUser(RecordEncoder encoder, AbstractUser user) throws IOException
+    {
+        String firstName = user.getFirstName();
+        String lastName = user.getLastName();
+        String email = user.storedEmail();
+        Lawyer lawyer = user instanceof Lawyer ? (Lawyer) user : null;
+
+        encoder.beginRecord();
+        encoder.writeInt(USER_ID, user.getId());
+        encoder.writeText(FIRST_NAME, firstName);
+        encoder.writeText(LAST_NAME, lastName);
+        if (email == null)
+            encoder.writeGeneratedEmail(EMAIL, firstName, lastName, user.getId());
+        else
+            encoder.writeText(EMAIL, email);
+        encoder.writeText(PHONE, user.getPhone());
+        encoder.writeBoolean(STATE_ATTORNEY, lawyer != null && lawyer.isStateAttorney());
+        encoder.writeBoolean(ACCEPTS_LAWSUITS, lawyer != null && lawyer.acceptsLawsuits());
+        encoder.writeText(OFFICE_NAME, user instanceof LawOfficeOwner ? ((LawOfficeOwner) user).getOffice().getName()
+                                                                    : null);
+        encoder.endRecord();
+    }
+
+    /**
+     * Encoder of the records of a file into a direct buffer, which is written
+     * to the channel when it is full. The fields of a record are written in
+     * the order of the columns. The encoder and its buffer are reused for
+     * every record of the file.
+     */
+    private abstract static class RecordEncoder
+    {
+        protected final String[] columns;
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        // Digits of a number, written backwards.
+        private final byte[] digits = new byte[20];
+        private long written;
+
+        protected RecordEncoder(FileChannel channel, String[] columns)
+        {
+            this.channel = channel;
+            this.columns = columns;
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+
+        abstract void writeHeader() throws IOException;
+
+        abstract void beginRecord() throws IOException;
+
+        abstract void endRecord() throws IOException;
+
+        abstract void writeInt(int column, int value) throws IOException;
+
+        // It writes the id of another object, -1 is no object.
+        abstract void writeReference(int column, int id) throws IOException;
+
+        abstract void writeBoolean(int column, boolean value) throws IOException;
+
+        abstract void writeDate(int column, Date date) throws IOException;
+
+        abstract void writeEnum(int column, Enum<?> value) throws IOException;
+
+        abstract void writeText(int column, String text) throws IOException;
+
+        // It writes UTF-8 bytes from the position to the limit, the position does not move.
+        abstract void writeText(int column, ByteBuffer text) throws IOException;
+
+        // It writes the email AbstractUser.generatedEmail makes, without making it.
+        abstract void writeGeneratedEmail(int column, String firstName, String lastName, int id) throws IOException;
+
+        // It writes an ASCII byte of a text, escaped as the format needs.
+        abstract void putTextByte(int value) throws IOException;
+
+        /**
+         * It writes what ends the file and the rest of the buffer.
+         */
+        void finish() throws IOException
+        {
+            flush();
+        }
+
+        /**
+         * @return The number of bytes written to the channel.
+         */
+        long getBytes()
+        {
+            return written;
+        }
+
+        protected void ensure(int bytes) throws IOException
+        {
+            if (buffer.remaining() < bytes)
+                flush();
+        }
+
+        protected void flush() throws IOException
+        {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                written += channel.write(buffer);
+            buffer.clear();
+        }
+
+        protected void put(int value) throws IOException
+        {
+            ensure(1);
+            buffer.put((byte) value);
+        }
+
+        protected void putInt(int value) throws IOException
+        {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        protected void putLong(long value) throws IOException
+        {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        protected void putAscii(String text) throws IOException
+        {
+            ensure(text.length());
+            for (int i = 0; i < text.length(); i++)
+                buffer.put((byte) text.charAt(i));
+        }
+
+        protected void putDecimal(long value) throws IOException
+        {
+            ensure(digits.length);
+            if (value < 0)
+            {
+                buffer.put((byte) '-');
+                value = -value;
+            }
+            int count = 0;
+            do
+            {
+                digits[count++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value != 0);
+            while (count > 0)
+                buffer.put(digits[--count]);
+        }
+
+        // It writes a number that is not negative with at least the given number of digits.
+        protected void putPadded(long value, int width) throws IOException
+        {
+            for (int length = decimalLength(value); length < width; length++)
+                put('0');
+            putDecimal(value);
+        }
+
+        // The number of digits of a number that is not negative.
+        protected static int decimalLength(long value)
+        {
+            int length = 1;
+            for (long rest = value / 10; rest != 0; rest /= 10)
+                length++;
+            return length;
+        }
+
+        // It writes the day as yyyy-MM-dd without making a LocalDate.
+        protected void putDay(long epochDay) throws IOException
+        {
+            long days = epochDay + 719468;
+            long era = Math.floorDiv(days, 146097);
+            long dayOfEra = days - era * 146097;
+            long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+            long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+            long shiftedMonth = (5 * dayOfYear + 2) / 153;
+            long day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+            long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+            long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+            putPadded(year, 4);
+            put('-');
+            putPadded(month, 2);
+            put('-');
+            putPadded(day, 2);
+        }
+
+        // It writes a text as UTF-8, the ASCII characters through putTextByte.
+        protected void putText(CharSequence text) throws IOException
+        {
+            for (int i = 0; i < text.length(); i++)
+            {
+                char c = text.charAt(i);
+                if (c < 0x80)
+                {
+                    putTextByte(c);
+                }
+                else if (c < 0x800)
+                {
+                    ensure(2);
+                    buffer.put((byte) (0xC0 | c >> 6));
+                    buffer.put((byte) (0x80 | c & 0x3F));
+                }
+                else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                         && Character.isLowSurrogate(text.charAt(i + 1)))
+                {
+                    int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                    ensure(4);
+                    buffer.put((byte) (0xF0 | codePoint >> 18));
+                    buffer.put((byte) (0x80 | codePoint >> 12 & 0x3F));
+                    buffer.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+                    buffer.put((byte) (0x80 | codePoint & 0x3F));
+                }
+                else if (Character.isSurrogate(c))
+                {
+                    putTextByte('?');
+                }
+                else
+                {
+                    ensure(3);
+                    buffer.put((byte) (0xE0 | c >> 12));
+                    buffer.put((byte) (0x80 | c >> 6 & 0x3F));
+                    buffer.put((byte) (0x80 | c & 0x3F));
+                }
+            }
+        }
+
+        // It writes UTF-8 bytes, the ASCII ones through putTextByte.
+        protected void putText(ByteBuffer text) throws IOException
+        {
+            for (int i = text.position(); i < text.limit(); i++)
+            {
+                byte value = text.get(i);
+                if (value >= 0)
+                    putTextByte(value);
+                else
+                    put(value);
+            }
+        }
+
+        // It copies bytes from the position to the limit, the position does not move.
+        protected void putBytes(ByteBuffer bytes) throws IOException
+        {
+            ByteBuffer source = bytes.duplicate();
+            while (source.hasRemaining())
+            {
+                if (!buffer.hasRemaining())
+                    flush();
+                int length = Math.min(source.remaining(), buffer.remaining());
+                int limit = source.limit();
+                source.limit(source.position() + length);
+                buffer.put(source);
+                source.limit(limit);
+            }
+        }
+
+        // It writes a byte of a text without escaping it.
+        protected void putRaw(int value)
+        {
+            buffer.put((byte) value);
+        }
+    }
+
+    /**
+     * CSV with a header line, texts in quotes with doubled quotes.
+     */
+    private static final class CsvEncoder extends RecordEncoder
+    {
+        private boolean firstField;
+
+        private CsvEncoder(FileChannel channel, String[] columns)
+        {
+            super(channel, columns);
+        }
+
+        @Override
+        void writeHeader() throws IOException
+        {
+            putAscii(String.join(",", columns));
+            put('\n');
+        }
+
+        @Override
+        void beginRecord()
+        {
+            firstField = true;
+        }
+
+        @Override
+        void endRecord() throws IOException
+        {
+            put('\n');
+        }
+
+        private void separate() throws IOException
+        {
+            if (!firstField)
+                put(',');
+            firstField = false;
+        }
+
+        @Override
+        void writeInt(int column, int value) throws IOException
+        {
+            separate();
+            putDecimal(value);
+        }
+
+        @Override
+        void writeReference(int column, int id) throws IOException
+        {
+            separate();
+            if (id != -1)
+                putDecimal(id);
+        }
+
+        @Override
+        void writeBoolean(int column, boolean value) throws IOException
+        {
+            separate();
+            putAscii(value ? "true" : "false");
+        }
+
+        @Override
+        void writeDate(int column, Date date) throws IOException
+        {
+            separate();
+            if (date != null)
+                putDay(LawsuitIndex.toEpochDay(date));
+        }
+
+        @Override
+        void writeEnum(int column, Enum<?> value) throws IOException
+        {
+            separate();
+            if (value != null)
+                putAscii(value.name());
+        }
+
+        @Override
+        void writeText(int column, String text) throws IOException
+        {
+            separate();
+            if (text == null)
+                return;
+            put('"');
+            putText(text);
+            put('"');
+        }
+
+        @Override
+        void writeText(int column, ByteBuffer text) throws IOException
+        {
+            separate();
+            if (text == null)
+                return;
+            put('"');
+            putText(text);
+            put('"');
+        }
+
+        @Override
+        void writeGeneratedEmail(int column, String firstName, String lastName, int id) throws IOException
+        {
+            separate();
+            put('"');
+            putText(firstName);
+            putText(lastName);
+            putDecimal(id);
+            putText(AbstractUser.GENERATED_EMAIL_DOMAIN);
+            put('"');
+        }
+
+        @Override
+        void putTextByte(int value) throws IOException
+        {
+            ensure(2);
+            if (value == '"')
+                putRaw('"');
+            putRaw(value);
+        }
+    }
+
+    /**
+     * One JSON object on every line, without the missing values.
+     */
+    private static final class JsonLinesEncoder extends RecordEncoder
+    {
+        private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+        // The quoted name and the colon of every column.
+        private final String[] names;
+        private boolean firstField;
+
+        private JsonLinesEncoder(FileChannel channel, String[] columns)
+        {
+            super(channel, columns);
+            names = new String[columns.length];
+            for (int i = 0; i < columns.length; i++)
+                names[i] = "\"" + columns[i] + "\": ";
+        }
+
+        @Override
+        void writeHeader()
+        {
+        }
+
+        @Override
+        void beginRecord() throws IOException
+        {
+            put('{');
+            firstField = true;
+        }
+
+        @Override
+        void endRecord() throws IOException
+        {
+            put('}');
+            put('\n');
+        }
+
+        private void name(int column) throws IOException
+        {
+            if (!firstField)
+                putAscii(", ");
+            firstField = false;
+            putAscii(names[column]);
+        }
+
+        @Override
+        void writeInt(int column, int value) throws IOException
+        {
+            name(column);
+            putDecimal(value);
+        }
+
+        @Override
+        void writeReference(int column, int id) throws IOException
+        {
+            if (id == -1)
+                return;
+            name(column);
+            putDecimal(id);
+        }
+
+        @Override
+        void writeBoolean(int column, boolean value) throws IOException
+        {
+            name(column);
+            putAscii(value ? "true" : "false");
+        }
+
+        @Override
+        void writeDate(int column, Date date) throws IOException
+        {
+            if (date == null)
+                return;
+            name(column);
+            put('"');
+            putDay(LawsuitIndex.toEpochDay(date));
+            put('"');
+        }
+
+        @Override
+        void writeEnum(int column, Enum<?> value) throws IOException
+        {
+            if (value == null)
+                return;
+            name(column);
+            put('"');
+            putAscii(value.name());
+            put('"');
+        }
+
+        @Override
+        void writeText(int column, String text) throws IOException
+        {
+            if (text == null)
+                return;
+            name(column);
+            put('"');
+            putText(text);
+            put('"');
+        }
+
+        @Override
+        void writeText(int column, ByteBuffer text) throws IOException
+        {
+            if (text == null)
+                return;
+            name(column);
+            put('"');
+            putText(text);
+            put('"');
+        }
+
+        @Override
+        void writeGeneratedEmail(int column, String firstName, String lastName, int id) throws IOException
+        {
+            name(column);
+            put('"');
+            putText(firstName);
+            putText(lastName);
+            putDecimal(id);
+            putText(AbstractUser.GENERATED_EMAIL_DOMAIN);
+            put('"');
+        }
+
+        @Override
+        void putTextByte(int value) throws IOException
+        {
+            ensure(6);
+            switch (value)
+            {
+                case '"': putRaw('\\'); putRaw('"'); return;
+                case '\\': putRaw('\\'); putRaw('\\'); return;
+                case '\n': putRaw('\\'); putRaw('n'); return;
+                case '\r': putRaw('\\'); putRaw('r'); return;
+                case '\t': putRaw('\\'); putRaw('t'); return;
+                default:
+                    if (value >= 0x20)
+                    {
+                        putRaw(value);
+                        return;
+                    }
+                    putRaw('\\');
+                    putRaw('u');
+                    putRaw('0');
+                    putRaw('0');
+                    putRaw(HEX[value >> 4]);
+                    putRaw(HEX[value & 0xF]);
+            }
+        }
+    }
+
+    /**
+     * Binary records in the number formats of the snapshots.
+     */
+    private static final class BinaryEncoder extends RecordEncoder
+    {
+        private BinaryEncoder(FileChannel channel, String[] columns)
+        {
+            super(channel, columns);
+        }
+
+        @Override
+        void writeHeader() throws IOException
+        {
+            putInt(columns.length);
+            for (String column : columns)
+            {
+                putInt(column.length());
+                putAscii(column);
+            }
+        }
+
+        @Override
+        void beginRecord() throws IOException
+        {
+            put(1);
+        }
+
+        @Override
+        void endRecord()
+        {
+        }
+
+        @Override
+        void finish() throws IOException
+        {
+            put(0);
+            super.finish();
+        }
+
+        @Override
+        void writeInt(int column, int value) throws IOException
+        {
+            putInt(value);
+        }
+
+        @Override
+        void writeReference(int column, int id) throws IOException
+        {
+            putInt(id);
+        }
+
+        @Override
+        void writeBoolean(int column, boolean value) throws IOException
+        {
+            put(value ? 1 : 0);
+        }
+
+        @Override
+        void writeDate(int column, Date date) throws IOException
+        {
+            putLong(date == null ? Long.MIN_VALUE : date.getTime());
+        }
+
+        @Override
+        void writeEnum(int column, Enum<?> value) throws IOException
+        {
+            putInt(value == null ? -1 : value.ordinal());
+        }
+
+        @Override
+        void writeText(int column, String text) throws IOException
+        {
+            if (text == null)
+            {
+                putInt(-1);
+                return;
+            }
+            putInt(utf8Length(text));
+            putText(text);
+        }
+
+        @Override
+        void writeText(int column, ByteBuffer text) throws IOException
+        {
+            if (text == null)
+            {
+                putInt(-1);
+                return;
+            }
+            putInt(text.remaining());
+            putBytes(text);
+        }
+
+        @Override
+        void writeGeneratedEmail(int column, String firstName, String lastName, int id) throws IOException
+        {
+            putInt(utf8Length(firstName) + utf8Length(lastName) + decimalLength(id)
+                   + AbstractUser.GENERATED_EMAIL_DOMAIN.length());
+            putText(firstName);
+            putText(lastName);
+            putDecimal(id);
+            putText(AbstractUser.GENERATED_EMAIL_DOMAIN);
+        }
+
+        @Override
+        void putTextByte(int value) throws IOException
+        {
+            put(value);
+        }
+
+        // The number of bytes putText writes for the text.
+        private static int utf8Length(CharSequence text)
+        {
+            int length = 0;
+            for (int i = 0; i < text.length(); i++)
+            {
+                char c = text.charAt(i);
+                if (c < 0x80)
+                {
+                    length++;
+                }
+                else if (c < 0x800)
+                {
+                    length += 2;
+                }
+                else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                         && Character.isLowSurrogate(text.charAt(i + 1)))
+                {
+                    length += 4;
+                    i++;
+                }
+                else
+                {
+                    length += Character.isSurrogate(c) ? 1 : 3;
+                }
+            }
+            return length;
+        }
+    }
+}
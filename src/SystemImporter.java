@@ -0,0 +1,1026 @@
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import enums.LawsuitStatus;
+import enums.LawsuitTypes;
+import enums.SystemObjectTypes;
+
+/**
+ * Importer of users and lawsuits from CSV and JSON lines files.
+ * A file whose name ends with .jsonl or .json has one flat JSON object on every
+ * line, any other file is CSV with a header line of column names. The columns
+ * are id, password, firstName, lastName, email, phone, stateAttorney,
+ * acceptsLawsuits, officeName, date (yyyy-MM-dd), type, status, judge,
+ * suingCitizen, suedCitizen, suingLawyer, suedLawyer and caseFile. The type of
+ * a row is the type of its id, so one file can hold users of many types and
+ * lawsuits. Quoted CSV fields can not hold line breaks.
+ * <p>
+ * The file is read in memory mapped chunks of whole lines. The chunks are parsed
+ * on the common fork-join pool while the next ones are read, and registered in
+ * the order of the file by the importing thread, so a lawsuit can follow its
+ * users in the same file or in an earlier one. Numbers, booleans, dates and enums
+ * are parsed from the bytes, only the text fields become strings.
+ * A row that can not be parsed, has an id that is already registered or refers
+ * to a missing user is not imported. Neither is a row whose id is so far above
+ * the objects of its type that the file could not hold the rows up to it, as the
+ * tables keep a slot for every id up to the highest one. A row that is not
+ * imported is written with its line number and the reason to a side file, named
+ * like the file with ".rejected" added.
+ */
+public class SystemImporter
+{
+    // Bytes read at once, a chunk is cut at its last line break.
+    private static final int CHUNK_BYTES = 1 << 22;
+    // The shortest row, "1,a,b,c" and a line break. A file can not hold more new
+    // objects than its size over this.
+    private static final int MIN_ROW_BYTES = 8;
+
+    // Columns of the rows, as they are named in the headers and in the objects.
+    private static final String[] COLUMNS = {
+        "id", "password", "firstName", "lastName", "email", "phone", "stateAttorney", "acceptsLawsuits",
+        "officeName", "date", "type", "status", "judge", "suingCitizen", "suedCitizen", "suingLawyer",
+        "suedLawyer", "caseFile"
+    };
+    private static final int ID = 0;
+    private static final int PASSWORD = 1;
+    private static final int FIRST_NAME = 2;
+    private static final int LAST_NAME = 3;
+    private static final int EMAIL = 4;
+    private static final int PHONE = 5;
+    private static final int STATE_ATTORNEY = 6;
+    private static final int ACCEPTS_LAWSUITS = 7;
+    private static final int OFFICE_NAME = 8;
+    private static final int DATE = 9;
+    private static final int TYPE = 10;
+    private static final int STATUS = 11;
+    private static final int JUDGE = 12;
+    private static final int SUING_CITIZEN = 13;
+    private static final int SUED_CITIZEN = 14;
+    private static final int SUING_LAWYER = 15;
+    private static final int SUED_LAWYER = 16;
+    private static final int CASE_FILE = 17;
+
+    private static final byte[][] COLUMN_BYTES = new byte[COLUMNS.length][];
+    static
+    {
+        for (int i = 0; i < COLUMNS.length; i++)
+            COLUMN_BYTES[i] = COLUMNS[i].getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static final SystemObjectTypes[] CITIZEN_TYPES = {
+        SystemObjectTypes.CITIZEN, SystemObjectTypes.LAWYER, SystemObjectTypes.LAWOFFICE_OWNER,
+        SystemObjectTypes.JUDGE, SystemObjectTypes.GOVERNMENT_OFFICIAL
+    };
+    private static final SystemObjectTypes[] LAWYER_TYPES = {
+        SystemObjectTypes.LAWYER, SystemObjectTypes.LAWOFFICE_OWNER
+    };
+
+    // Cached because values() returns a new array on every call.
+    private static final LawsuitTypes[] LAWSUIT_TYPES = LawsuitTypes.values();
+    private static final LawsuitStatus[] LAWSUIT_STATUSES = LawsuitStatus.values();
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private final SystemClass systemClass;
+    private final ForkJoinPool pool;
+
+    /**
+     * SystemImporter constructor.
+     *
+     * @param systemClass The system to register the imported objects in.
+     */
+    public SystemImporter(SystemClass systemClass)
+    {
+        this.systemClass = systemClass;
+        this.pool = ForkJoinPool.commonPool();
+    }
+
+    /**
+     * The numbers of rows of an imported file.
+     */
+    public static final class Report
+    {
+        private final Path path;
+        private final Path rejectPath;
+        private int rows;
+        private int imported;
+        private int rejected;
+        private long nanos;
+
+        private Report(Path path, Path rejectPath)
+        {
+            this.path = path;
+            this.rejectPath = rejectPath;
+        }
+
+        /**
+         * @return The imported file.
+         */
+        public Path getPath()
+        {
+            return path;
+        }
+
+        /**
+         * @return The file of the rejected rows, it exists only if a row is rejected.
+         */
+        public Path getRejectPath()
+        {
+            return rejectPath;
+        }
+
+        /**
+         * @return The number of rows of the file, without the header and blank lines.
+         */
+        public int getRows()
+        {
+            return rows;
+        }
+
+        /**
+         * @return The number of registered rows.
+         */
+        public int getImported()
+        {
+            return imported;
+        }
+
+        /**
+         * @return The number of rejected rows.
+         */
+        public int getRejected()
+        {
+            return rejected;
+        }
+
+        /**
+         * @return The rows read in a second.
+         */
+        public double getRowsPerSecond()
+        {
+            return nanos == 0 ? 0 : rows * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString()
+        {
+            String text = String.format("Imported %d of %d rows from %s in %.3f s (%.0f rows/s)", imported, rows,
+                                        path, nanos / 1e9, getRowsPerSecond());
+            if (rejected > 0)
+                text += String.format(", rejected %d rows into %s", rejected, rejectPath);
+            return text;
+        }
+    }
+
+    /**
+     * It imports the files in the given order as one bulk load of the system,
+     * so the indexes are built once after the last file.
+     *
+     * @param paths The files, the files of the users before the files of their lawsuits.
+     * @return The report of every file.
+     * @throws IOException if a file can not be read, or its header is not valid.
+     */
+    public List<Report> importFiles(List<Path> paths) throws IOException
+    {
+        List<Report> reports = new ArrayList<>();
+        systemClass.beginBulkLoad();
+        try
+        {
+            for (Path path : paths)
+                reports.add(importFile(path));
+        }
+        finally
+        {
+            systemClass.finishBulkLoad();
+        }
+        return reports;
+    }
+
+    /**
+     * It imports the rows of a file and writes the rejected ones to the side file.
+     *
+     * @param path The CSV or JSON lines file.
+     * @return The report of the file.
+     * @throws IOException if the file can not be read, or its header is not valid.
+     */
+    public Report importFile(Path path) throws IOException
+    {
+        long start = System.nanoTime();
+        boolean jsonLines = isJsonLines(path);
+        Report report = new Report(path, path.resolveSibling(path.getFileName() + ".rejected"));
+        Files.deleteIfExists(report.rejectPath);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+             RejectWriter rejects = new RejectWriter(report.rejectPath))
+        {
+            long position = 0;
+            int line = 1;
+            int[] header = null;
+            if (!jsonLines)
+            {
+                ByteBuffer lines = mapLines(channel, 0);
+                int end = 0;
+                while (end < lines.limit() && lines.get(end) != '\n')
+                    end++;
+                byte[] bytes = new byte[end];
+                lines.get(0, bytes);
+                header = parseHeader(new String(bytes, StandardCharsets.UTF_8));
+                position = Math.min(end + 1L, channel.size());
+                line = 2;
+            }
+
+            BlockingQueue<Future<ParsedChunk>> chunks = new ArrayBlockingQueue<>(2 * pool.getParallelism());
+            long maxNewObjects = channel.size() / MIN_ROW_BYTES;
+            long firstChunk = position;
+            int[] columns = header;
+            Thread reader = new Thread(() -> readChunks(channel, firstChunk, jsonLines, columns, chunks),
+                                       "importer-reader");
+            reader.setDaemon(true);
+            reader.start();
+            try
+            {
+                while (true)
+                {
+                    ParsedChunk chunk = chunks.take().get();
+                    if (chunk == null)
+                        break;
+                    register(chunk, line, maxNewObjects, rejects, report);
+                    line += chunk.lineCount;
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Import of " + path + " was interrupted");
+            }
+            catch (ExecutionException e)
+            {
+                if (e.getCause() instanceof IOException)
+                    throw (IOException) e.getCause();
+                throw new IOException("Could not import " + path, e.getCause());
+            }
+            finally
+            {
+                // Stops the reader if the import failed, it has already ended otherwise.
+                reader.interrupt();
+            }
+        }
+        report.nanos = System.nanoTime() - start;
+        return report;
+    }
+
+    private static boolean isJsonLines(Path path)
+    {
+        String name = path.getFileName().toString().toLowerCase();
+        return name.endsWith(".jsonl") || name.endsWith(".json");
+    }
+
+    /**
+     * It returns the column of every field of the header, -1 for the unknown ones.
+     */
+    private static int[] parseHeader(String line) throws IOException
+    {
+        if (line.startsWith("\uFEFF"))
+            line = line.substring(1);
+        String[] names = line.strip().split(",", -1);
+        int[] header = new int[names.length];
+        boolean[] seen = new boolean[COLUMNS.length];
+        for (int i = 0; i < names.length; i++)
+        {
+            String name = names[i].strip();
+            if (name.length() >= 2 && name.startsWith("\"") && name.endsWith("\""))
+                name = name.substring(1, name.length() - 1);
+            header[i] = Arrays.asList(COLUMNS).indexOf(name);
+            if (header[i] < 0)
+                continue;
+            if (seen[header[i]])
+                throw new IOException("Header has the column " + name + " twice");
+            seen[header[i]] = true;
+        }
+        if (!seen[ID])
+            throw new IOException("Header has no id column");
+        return header;
+    }
+
+    /**
+     * It maps the whole lines that start at the position, at least CHUNK_BYTES
+     * of them unless the file ends before.
+     */
+    private static ByteBuffer mapLines(FileChannel channel, long position) throws IOException
+    {
+        long remaining = channel.size() - position;
+        long length = Math.min(CHUNK_BYTES, remaining);
+        while (true)
+        {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            if (length == remaining)
+                return buffer;
+            for (int i = (int) length - 1; i >= 0; i--)
+                if (buffer.get(i) == '\n')
+                    return buffer.slice(0, i + 1);
+            if (length > Integer.MAX_VALUE / 2)
+                throw new IOException("Line at byte " + position + " is too long");
+            length = Math.min(length * 2, remaining);
+        }
+    }
+
+    /**
+     * It maps the chunks of the file and queues their parsing on the pool in the
+     * order of the file. The last future of the queue returns null, or fails if
+     * the file can not be read.
+     */
+    private void readChunks(FileChannel channel, long position, boolean jsonLines, int[] header,
+                            BlockingQueue<Future<ParsedChunk>> chunks)
+    {
+        try
+        {
+            try
+            {
+                long size = channel.size();
+                while (position < size)
+                {
+                    ByteBuffer lines = mapLines(channel, position);
+                    position += lines.limit();
+                    chunks.put(CompletableFuture.supplyAsync(() -> parse(lines, jsonLines, header), pool));
+                }
+                chunks.put(CompletableFuture.completedFuture(null));
+            }
+            catch (IOException e)
+            {
+                chunks.put(CompletableFuture.failedFuture(e));
+            }
+        }
+        catch (InterruptedException e)
+        {
+            // The importing thread does not take chunks anymore.
+        }
+    }
+
+    /**
+     * It parses the rows of a chunk into system objects, the rows that can not
+     * be parsed are rejected.
+     */
+    private static ParsedChunk parse(ByteBuffer lines, boolean jsonLines, int[] header)
+    {
+        byte[] bytes = new byte[lines.limit()];
+        lines.get(0, bytes);
+        ParsedChunk chunk = new ParsedChunk(bytes);
+        Row row = new Row(bytes, jsonLines);
+        int start = 0;
+        int line = 0;
+        while (start < bytes.length)
+        {
+            int next = start;
+            while (next < bytes.length && bytes[next] != '\n')
+                next++;
+            int end = next > start && bytes[next - 1] == '\r' ? next - 1 : next;
+            if (!isBlank(bytes, start, end))
+            {
+                chunk.rows++;
+                try
+                {
+                    if (jsonLines)
+                        row.parseJson(start, end);
+                    else
+                        row.parseCsv(start, end, header);
+                    chunk.add(createObject(row), line, start, end);
+                }
+                catch (RowException e)
+                {
+                    chunk.reject(line, e.getMessage(), start, end);
+                }
+            }
+            line++;
+            start = next + 1;
+        }
+        chunk.lineCount = line;
+        return chunk;
+    }
+
+    private static boolean isBlank(byte[] bytes, int start, int end)
+    {
+        for (int i = start; i < end; i++)
+            if (bytes[i] != ' ' && bytes[i] != '\t')
+                return false;
+        return true;
+    }
+
+    /**
+     * It creates the system object of a parsed row, of the type of its id.
+     */
+    private static AbstractSystemObject createObject(Row row) throws RowException
+    {
+        int id = row.integer(ID);
+        SystemObjectTypes type = SystemClass.findSystemObjectType(id);
+        if (type == null || AbstractSystemObject.sequenceOf(id) == 0)
+            throw new RowException("Id " + id + " is not the id of a system object");
+        if (type == SystemObjectTypes.LAWSUIT)
+            return createLawsuit(row, id);
+
+        String password = row.requiredText(PASSWORD);
+        String firstName = row.requiredText(FIRST_NAME);
+        String lastName = row.requiredText(LAST_NAME);
+        String email = row.text(EMAIL);
+        String phone = row.text(PHONE);
+        switch (type)
+        {
+            case LAWYER:
+                return new Lawyer(id, password, firstName, lastName, email, phone,
+                                  row.bool(STATE_ATTORNEY), row.bool(ACCEPTS_LAWSUITS));
+            case LAWOFFICE_OWNER:
+                return new LawOfficeOwner(id, password, firstName, lastName, email, phone,
+                                          row.requiredText(OFFICE_NAME));
+            case JUDGE:
+                return new Judge(id, password, firstName, lastName, email, phone);
+            case GOVERNMENT_OFFICIAL:
+                return new GovernmentOfficial(id, password, firstName, lastName, email, phone);
+            default:
+                return new Citizen(id, password, firstName, lastName, email, phone);
+        }
+    }
+
+    private static Lawsuit createLawsuit(Row row, int id) throws RowException
+    {
+        String caseFile = row.text(CASE_FILE);
+        Lawsuit lawsuit = new Lawsuit(id, row.date(DATE), row.constant(TYPE, LAWSUIT_TYPES, null),
+                                      caseFile == null ? "" : caseFile);
+        lawsuit.setStatus(row.constant(STATUS, LAWSUIT_STATUSES, LawsuitStatus.HOLD));
+        lawsuit.setSuingCitizen(row.integer(SUING_CITIZEN));
+        lawsuit.setSuedCitizen(row.integer(SUED_CITIZEN));
+        lawsuit.setJudge(row.integer(JUDGE, -1));
+        lawsuit.setSuingLawyer(row.integer(SUING_LAWYER, -1));
+        lawsuit.setSuedLawyer(row.integer(SUED_LAWYER, -1));
+        return lawsuit;
+    }
+
+    /**
+     * It registers the objects of a chunk, the users before the lawsuits so
+     * lawsuits can refer to users of the same chunk, and writes the rejected
+     * rows of the chunk in line order.
+     *
+     * @param maxNewObjects The number of objects the file can add to a table at most.
+     */
+    private void register(ParsedChunk chunk, int firstLine, long maxNewObjects, RejectWriter rejects,
+                          Report report) throws IOException
+    {
+        // Ids are positive, so sorting the id above the position sorts by type and then by id.
+        long[] keys = new long[chunk.objects.size()];
+        for (int i = 0; i < keys.length; i++)
+            keys[i] = (long) chunk.objects.get(i).getId() << 32 | i;
+        Arrays.sort(keys);
+
+        int lawsuitsEnd = 0;
+        while (lawsuitsEnd < keys.length
+               && SystemClass.findSystemObjectType((int) (keys[lawsuitsEnd] >>> 32)) == SystemObjectTypes.LAWSUIT)
+            lawsuitsEnd++;
+        int start = lawsuitsEnd;
+        while (start < keys.length)
+        {
+            SystemObjectTypes type = SystemClass.findSystemObjectType((int) (keys[start] >>> 32));
+            int end = start;
+            while (end < keys.length && SystemClass.findSystemObjectType((int) (keys[end] >>> 32)) == type)
+                end++;
+            report.imported += registerRun(chunk, keys, start, end, type, maxNewObjects);
+            start = end;
+        }
+        report.imported += registerRun(chunk, keys, 0, lawsuitsEnd, SystemObjectTypes.LAWSUIT, maxNewObjects);
+
+        chunk.rejections.sort(Comparator.comparingInt(rejection -> rejection.line));
+        for (Rejection rejection : chunk.rejections)
+            rejects.write(firstLine + rejection.line, rejection.reason, chunk.bytes, rejection.start, rejection.end);
+        report.rows += chunk.rows;
+        report.rejected += chunk.rejections.size();
+    }
+
+    /**
+     * It registers the objects of one type of a chunk as a batch, without the
+     * repeated ids, the ids above the bound of the table, the registered ids
+     * and the lawsuits with missing users.
+     *
+     * @return The number of registered objects.
+     */
+    private int registerRun(ParsedChunk chunk, long[] keys, int start, int end, SystemObjectTypes type,
+                            long maxNewObjects)
+    {
+        long maxSequence = systemClass.getSystemObjectCount(type) + maxNewObjects;
+        List<AbstractSystemObject> batch = new ArrayList<>(end - start);
+        int previousId = -1;
+        for (int i = start; i < end; i++)
+        {
+            int index = (int) keys[i];
+            AbstractSystemObject systemObject = chunk.objects.get(index);
+            int id = systemObject.getId();
+            String reason = null;
+            if (id == previousId)
+                reason = "Id " + id + " is repeated";
+            else if (AbstractSystemObject.sequenceOf(id) > maxSequence)
+                reason = "Id " + id + " is too far above the registered ids of its type";
+            else if (systemClass.containsSystemObject(id, type))
+                reason = "Id " + id + " is already registered";
+            else if (type == SystemObjectTypes.LAWSUIT)
+                reason = checkReferences((Lawsuit) systemObject);
+            previousId = id;
+            if (reason == null)
+                batch.add(systemObject);
+            else
+                chunk.reject(chunk.lines[index], reason, chunk.starts[index], chunk.ends[index]);
+        }
+        systemClass.registerSystemObjects(type, batch);
+        if (type == SystemObjectTypes.LAWSUIT)
+            for (AbstractSystemObject lawsuit : batch)
+                systemClass.addLawsuitToUsers((Lawsuit) lawsuit);
+        return batch.size();
+    }
+
+    /**
+     * It returns why a lawsuit refers to a missing user, or null if its users are registered.
+     */
+    private String checkReferences(Lawsuit lawsuit)
+    {
+        if (!systemClass.containsSystemObject(lawsuit.getSuingCitizen(), CITIZEN_TYPES))
+            return "Suing citizen " + lawsuit.getSuingCitizen() + " is not registered";
+        if (!systemClass.containsSystemObject(lawsuit.getSuedCitizen(), CITIZEN_TYPES))
+            return "Sued citizen " + lawsuit.getSuedCitizen() + " is not registered";
+        if (lawsuit.getJudge() != -1 && !systemClass.containsSystemObject(lawsuit.getJudge(), SystemObjectTypes.JUDGE))
+            return "Judge " + lawsuit.getJudge() + " is not registered";
+        if (lawsuit.getSuingLawyer() != -1 && !systemClass.containsSystemObject(lawsuit.getSuingLawyer(), LAWYER_TYPES))
+            return "Suing lawyer " + lawsuit.getSuingLawyer() + " is not registered";
+        if (lawsuit.getSuedLawyer() != -1 && !systemClass.containsSystemObject(lawsuit.getSuedLawyer(), LAWYER_TYPES))
+            return "Sued lawyer " + lawsuit.getSuedLawyer() + " is not registered";
+        return null;
+    }
+
+    /**
+     * The objects and the rejected rows of a chunk, with the lines of the chunk
+     * counted from 0.
+     */
+    private static final class ParsedChunk
+    {
+        private final byte[] bytes;
+        private final List<AbstractSystemObject> objects = new ArrayList<>();
+        // Line, first byte and end byte of the row of every object.
+        private int[] lines = new int[16];
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private final List<Rejection> rejections = new ArrayList<>();
+        private int rows;
+        private int lineCount;
+
+        private ParsedChunk(byte[] bytes)
+        {
+            this.bytes = bytes;
+        }
+
+        private void add(AbstractSystemObject systemObject, int line, int start, int end)
+        {
+            int index = objects.size();
+            if (index == lines.length)
+            {
+                lines = Arrays.copyOf(lines, index * 2);
+                starts = Arrays.copyOf(starts, index * 2);
+                ends = Arrays.copyOf(ends, index * 2);
+            }
+            objects.add(systemObject);
+            lines[index] = line;
+            starts[index] = start;
+            ends[index] = end;
+        }
+
+        private void reject(int line, String reason, int start, int end)
+        {
+            rejections.add(new Rejection(line, reason, start, end));
+        }
+    }
+
+    private static final class Rejection
+    {
+        private final int line;
+        private final String reason;
+        private final int start;
+        private final int end;
+
+        private Rejection(int line, String reason, int start, int end)
+        {
+            this.line = line;
+            this.reason = reason;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /**
+     * Why a row can not be imported. It has no stack trace, as it is expected
+     * for every bad row.
+     */
+    @SuppressWarnings("serial")
+    private static final class RowException extends Exception
+    {
+        private RowException(String message)
+        {
+            super(message, null, false, false);
+        }
+    }
+
+    /**
+     * The fields of the row being parsed, as positions in the bytes of the
+     * chunk by column. The same row is reused for every line of a chunk.
+     */
+    private static final class Row
+    {
+        private final byte[] bytes;
+        private final boolean jsonLines;
+        // A field is missing if its start is -1.
+        private final int[] starts = new int[COLUMNS.length];
+        private final int[] ends = new int[COLUMNS.length];
+        // Fields with escapes or doubled quotes are decoded when their text is needed.
+        private final boolean[] escaped = new boolean[COLUMNS.length];
+
+        private Row(byte[] bytes, boolean jsonLines)
+        {
+            this.bytes = bytes;
+            this.jsonLines = jsonLines;
+        }
+
+        private void set(int column, int start, int end, boolean escaped)
+        {
+            if (column < 0)
+                return;
+            starts[column] = start;
+            ends[column] = end;
+            this.escaped[column] = escaped;
+        }
+
+        /**
+         * It finds the fields of a CSV line, an empty field that is not quoted is missing.
+         */
+        private void parseCsv(int start, int end, int[] header) throws RowException
+        {
+            Arrays.fill(starts, -1);
+            int field = 0;
+            int i = start;
+            while (true)
+            {
+                int column = field < header.length ? header[field] : -1;
+                if (i < end && bytes[i] == '"')
+                {
+                    int fieldStart = ++i;
+                    boolean doubled = false;
+                    while (true)
+                    {
+                        if (i >= end)
+                            throw new RowException("Quote of field " + (field + 1) + " is not closed");
+                        if (bytes[i] == '"')
+                        {
+                            if (i + 1 < end && bytes[i + 1] == '"')
+                            {
+                                doubled = true;
+                                i += 2;
+                                continue;
+                            }
+                            break;
+                        }
+                        i++;
+                    }
+                    set(column, fieldStart, i, doubled);
+                    i++;
+                    if (i < end && bytes[i] != ',')
+                        throw new RowException("Field " + (field + 1) + " has text after its closing quote");
+                }
+                else
+                {
+                    int fieldStart = i;
+                    while (i < end && bytes[i] != ',')
+                        i++;
+                    if (i > fieldStart)
+                        set(column, fieldStart, i, false);
+                }
+                field++;
+                if (i >= end)
+                    break;
+                i++;
+            }
+            if (field != header.length)
+                throw new RowException("Row has " + field + " fields, the header has " + header.length);
+        }
+
+        /**
+         * It finds the fields of a line with a flat JSON object, a null value is missing.
+         */
+        private void parseJson(int start, int end) throws RowException
+        {
+            Arrays.fill(starts, -1);
+            int i = skipSpaces(start, end);
+            if (i >= end || bytes[i] != '{')
+                throw new RowException("Row is not a JSON object");
+            i = skipSpaces(i + 1, end);
+            if (i < end && bytes[i] == '}')
+            {
+                i++;
+            }
+            else
+            {
+                while (true)
+                {
+                    if (i >= end || bytes[i] != '"')
+                        throw new RowException("Expected a name at column " + (i - start + 1));
+                    int keyEnd = stringEnd(i, end);
+                    int column = columnOf(i + 1, keyEnd);
+                    i = skipSpaces(keyEnd + 1, end);
+                    if (i >= end || bytes[i] != ':')
+                        throw new RowException("Expected : at column " + (i - start + 1));
+                    i = skipSpaces(i + 1, end);
+                    if (i < end && bytes[i] == '"')
+                    {
+                        int valueEnd = stringEnd(i, end);
+                        set(column, i + 1, valueEnd, hasEscape(i + 1, valueEnd));
+                        i = valueEnd + 1;
+                    }
+                    else if (i < end && (bytes[i] == '{' || bytes[i] == '['))
+                    {
+                        throw new RowException("Value of a name is an object or an array");
+                    }
+                    else
+                    {
+                        int valueStart = i;
+                        while (i < end && bytes[i] != ',' && bytes[i] != '}' && bytes[i] != ' ' && bytes[i] != '\t')
+                            i++;
+                        if (i == valueStart)
+                            throw new RowException("Expected a value at column " + (i - start + 1));
+                        if (!equals(valueStart, i, "null"))
+                            set(column, valueStart, i, false);
+                    }
+                    i = skipSpaces(i, end);
+                    if (i < end && bytes[i] == ',')
+                    {
+                        i = skipSpaces(i + 1, end);
+                        continue;
+                    }
+                    if (i < end && bytes[i] == '}')
+                    {
+                        i++;
+                        break;
+                    }
+                    throw new RowException("Expected , or } at column " + (i - start + 1));
+                }
+            }
+            if (skipSpaces(i, end) != end)
+                throw new RowException("Row has text after the JSON object");
+        }
+
+        private int skipSpaces(int i, int end)
+        {
+            while (i < end && (bytes[i] == ' ' || bytes[i] == '\t'))
+                i++;
+            return i;
+        }
+
+        // It returns the position of the closing quote of the JSON string that starts at the position.
+        private int stringEnd(int quote, int end) throws RowException
+        {
+            int i = quote + 1;
+            while (i < end && bytes[i] != '"')
+                i += bytes[i] == '\\' ? 2 : 1;
+            if (i >= end)
+                throw new RowException("String at column " + (quote + 1) + " is not closed");
+            return i;
+        }
+
+        private boolean hasEscape(int start, int end)
+        {
+            for (int i = start; i < end; i++)
+                if (bytes[i] == '\\')
+                    return true;
+            return false;
+        }
+
+        private int columnOf(int start, int end)
+        {
+            for (int column = 0; column < COLUMN_BYTES.length; column++)
+                if (Arrays.equals(bytes, start, end, COLUMN_BYTES[column], 0, COLUMN_BYTES[column].length))
+                    return column;
+            return -1;
+        }
+
+        private boolean equals(int start, int end, String ascii)
+        {
+            if (end - start != ascii.length())
+                return false;
+            for (int i = 0; i < ascii.length(); i++)
+                if (bytes[start + i] != ascii.charAt(i))
+                    return false;
+            return true;
+        }
+
+        private String text(int column) throws RowException
+        {
+            int start = starts[column];
+            if (start < 0)
+                return null;
+            if (!escaped[column])
+                return new String(bytes, start, ends[column] - start, StandardCharsets.UTF_8);
+            if (!jsonLines)
+                return new String(bytes, start, ends[column] - start, StandardCharsets.UTF_8).replace("\"\"", "\"");
+            return unescape(column, start, ends[column]);
+        }
+
+        private String requiredText(int column) throws RowException
+        {
+            String text = text(column);
+            if (text == null)
+                throw new RowException(COLUMNS[column] + " is missing");
+            return text;
+        }
+
+        private String unescape(int column, int start, int end) throws RowException
+        {
+            StringBuilder text = new StringBuilder(end - start);
+            int plain = start;
+            int i = start;
+            while (i < end)
+            {
+                if (bytes[i] != '\\')
+                {
+                    i++;
+                    continue;
+                }
+                text.append(new String(bytes, plain, i - plain, StandardCharsets.UTF_8));
+                char escape = (char) bytes[i + 1];
+                switch (escape)
+                {
+                    case '"': case '\\': case '/': text.append(escape); break;
+                    case 'b': text.append('\b'); break;
+                    case 'f': text.append('\f'); break;
+                    case 'n': text.append('\n'); break;
+                    case 'r': text.append('\r'); break;
+                    case 't': text.append('\t'); break;
+                    case 'u':
+                        if (i + 6 > end)
+                            throw new RowException(COLUMNS[column] + " has a short \\u escape");
+                        int code = 0;
+                        for (int j = i + 2; j < i + 6; j++)
+                        {
+                            int digit = Character.digit(bytes[j], 16);
+                            if (digit < 0)
+                                throw new RowException(COLUMNS[column] + " has a bad \\u escape");
+                            code = code * 16 + digit;
+                        }
+                        text.append((char) code);
+                        i += 4;
+                        break;
+                    default:
+                        throw new RowException(COLUMNS[column] + " has the unknown escape \\" + escape);
+                }
+                i += 2;
+                plain = i;
+            }
+            text.append(new String(bytes, plain, end - plain, StandardCharsets.UTF_8));
+            return text.toString();
+        }
+
+        private int integer(int column) throws RowException
+        {
+            if (starts[column] < 0)
+                throw new RowException(COLUMNS[column] + " is missing");
+            return integer(column, 0);
+        }
+
+        private int integer(int column, int missing) throws RowException
+        {
+            int start = starts[column];
+            int end = ends[column];
+            if (start < 0)
+                return missing;
+            boolean negative = start < end && bytes[start] == '-';
+            int i = negative ? start + 1 : start;
+            if (i == end || i - start + 10 < end - start)
+                throw new RowException(COLUMNS[column] + " is not a number");
+            long value = 0;
+            for (; i < end; i++)
+            {
+                int digit = bytes[i] - '0';
+                if (digit < 0 || digit > 9)
+                    throw new RowException(COLUMNS[column] + " is not a number");
+                value = value * 10 + digit;
+            }
+            value = negative ? -value : value;
+            if (value != (int) value)
+                throw new RowException(COLUMNS[column] + " is out of range");
+            return (int) value;
+        }
+
+        private boolean bool(int column) throws RowException
+        {
+            int start = starts[column];
+            if (start < 0)
+                return false;
+            if (equals(start, ends[column], "true") || equals(start, ends[column], "1"))
+                return true;
+            if (equals(start, ends[column], "false") || equals(start, ends[column], "0"))
+                return false;
+            throw new RowException(COLUMNS[column] + " is not true or false");
+        }
+
+        private Date date(int column) throws RowException
+        {
+            int start = starts[column];
+            if (start < 0)
+                throw new RowException(COLUMNS[column] + " is missing");
+            if (ends[column] - start != 10 || bytes[start + 4] != '-' || bytes[start + 7] != '-')
+                throw new RowException(COLUMNS[column] + " is not a yyyy-MM-dd date");
+            try
+            {
+                LocalDate date = LocalDate.of(digits(column, start, 4), digits(column, start + 5, 2),
+                                              digits(column, start + 8, 2));
+                return Date.from(date.atStartOfDay(ZONE).toInstant());
+            }
+            catch (DateTimeException e)
+            {
+                throw new RowException(COLUMNS[column] + " is not a valid date");
+            }
+        }
+
+        private int digits(int column, int start, int count) throws RowException
+        {
+            int value = 0;
+            for (int i = start; i < start + count; i++)
+            {
+                int digit = bytes[i] - '0';
+                if (digit < 0 || digit > 9)
+                    throw new RowException(COLUMNS[column] + " is not a yyyy-MM-dd date");
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+
+        // It returns the constant whose name the field has, the missing value can be null if the field is required.
+        private <E extends Enum<E>> E constant(int column, E[] constants, E missing) throws RowException
+        {
+            int start = starts[column];
+            if (start < 0)
+            {
+                if (missing == null)
+                    throw new RowException(COLUMNS[column] + " is missing");
+                return missing;
+            }
+            for (E constant : constants)
+                if (equals(start, ends[column], constant.name()))
+                    return constant;
+            throw new RowException(COLUMNS[column] + " is not one of " + Arrays.toString(constants));
+        }
+    }
+
+    /**
+     * Writer of the rejected rows, one line with the line number, the reason and
+     * the row separated by tabs for every row. The file is created with the
+     * first rejected row.
+     */
+    private static final class RejectWriter implements Closeable
+    {
+        private final Path path;
+        private OutputStream out;
+
+        private RejectWriter(Path path)
+        {
+            this.path = path;
+        }
+
+        private void write(int line, String reason, byte[] bytes, int start, int end) throws IOException
+        {
+            if (out == null)
+                out = new BufferedOutputStream(Files.newOutputStream(path));
+            out.write((line + "\t" + reason + "\t").getBytes(StandardCharsets.UTF_8));
+            out.write(bytes, start, end - start);
+            out.write('\n');
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            if (out != null)
+                out.close();
+        }
+    }
+}
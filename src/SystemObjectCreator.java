@@ -1,17 +1,28 @@
 
 import java.io.File;
-import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Scanner;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
 
+import enums.LawsuitStatus;
 import enums.LawsuitTypes;
 import enums.SystemObjectTypes;
 
 /**
  * To generate random SystemObjects
+ *
+ * The same population and seed always give the same objects. Every type is
+ * created in chunks of ids on a fork-join pool, each chunk with its own
+ * random generator split from the seed in chunk order, so the objects do not
+ * depend on the number of threads or on which thread creates them.
  */
 public final class SystemObjectCreator {
 
@@ -24,11 +35,29 @@ public final class SystemObjectCreator {
     private static final int NUMBER_OF_GOVERNMENT_OFFICIAL = 10;
     private static final int NUMBER_OF_LAWSUITS = 50;
 
+    // Shares of the generated relations, in percent.
+    private static final int ACCEPTS_LAWSUITS_PERCENT = 50;
+    private static final int STATE_ATTORNEY_PERCENT = 10;
+    private static final int EMPLOYED_PERCENT = 30;
+    private static final int APPLYING_PERCENT = 10;
+    private static final int SUED_LAWYER_PERCENT = 80;
+    private static final int ASSIGNED_PERCENT = 70;
+    private static final int CONCLUDED_PERCENT = 30;
+
+    // Objects created by one task.
+    private static final int CHUNK_SIZE = 1 << 14;
+
     private static final String PASSWORD = "1234";
     private static final String PHONE = "+90-262-123-4567";
-    private static final String EMAIL_DOMAIN = "@dummy.com";
     private static final String LAWOFFICE_NAME = "Dummy Law Office";
     private static final String caseFile = "Dummy Case File";
+    private static final String JOB_TITLE = "Lawyer";
+    private static final String JOB_DESCRIPTION = "Dummy Job Advertisement";
+    private static final String JOB_APPLICATION = "Dummy Job Application";
+
+    // Random dates are between these times.
+    private static final long START_MILLIS = toMillis(LocalDate.of(2022, 1, 1));
+    private static final long END_MILLIS = toMillis(LocalDate.of(2030, 12, 31));
 
     private static final String firstNamesFile = Utils.getPath("TestData", "text-first-names.txt");
     private static final String lastNamesFile = Utils.getPath("TestData", "text-last-names.txt");
@@ -37,177 +66,358 @@ public final class SystemObjectCreator {
     private static ArrayList<String> lastNames;
 
     /**
-     * It creates a random number citizens, and registers them in the system
-     * 
-     * @param systemClassRef The SystemClass object that will be used to register the new Citizen
-     * objects.
+     * Number of system objects of each type to create. A new population has
+     * the sizes of the default system.
      */
-    public static void createCitizens(SystemClass systemClassRef)
+    public static final class Population
     {
-        int userCode = SystemObjectTypes.CITIZEN.getSystemObjectCode();
-        int id = createInitialId(userCode);
-        readFirstNamesAndLastNames();
-        
-        for (int i = 0; i < NUMBER_OF_CITIZENS; i++)
+        private int citizens = NUMBER_OF_CITIZENS;
+        private int lawyers = NUMBER_OF_LAWYER;
+        private int lawOfficeOwners = NUMBER_OF_LAWOFFICE_OWNER;
+        private int judges = NUMBER_OF_JUDGE;
+        private int governmentOfficials = NUMBER_OF_GOVERNMENT_OFFICIAL;
+        private int lawsuits = NUMBER_OF_LAWSUITS;
+
+        /**
+         * @param citizens The number of citizens.
+         * @return This population.
+         */
+        public Population citizens(int citizens)
+        {
+            this.citizens = checkSize(citizens);
+            return this;
+        }
+
+        /**
+         * @param lawyers The number of lawyers.
+         * @return This population.
+         */
+        public Population lawyers(int lawyers)
+        {
+            this.lawyers = checkSize(lawyers);
+            return this;
+        }
+
+        /**
+         * @param lawOfficeOwners The number of law office owners.
+         * @return This population.
+         */
+        public Population lawOfficeOwners(int lawOfficeOwners)
+        {
+            this.lawOfficeOwners = checkSize(lawOfficeOwners);
+            return this;
+        }
+
+        /**
+         * @param judges The number of judges.
+         * @return This population.
+         */
+        public Population judges(int judges)
         {
-            String firstName = firstNames.get(getRandomNumber() % firstNames.size());
-            String lastName = lastNames.get(getRandomNumber() % lastNames.size());
-            String email = firstName + lastName + id + EMAIL_DOMAIN;
-
-            systemClassRef.registerSystemObject(new Citizen(
-                id, PASSWORD, firstName, lastName, email, PHONE
-            ));
-            id++;
+            this.judges = checkSize(judges);
+            return this;
+        }
+
+        /**
+         * @param governmentOfficials The number of government officials.
+         * @return This population.
+         */
+        public Population governmentOfficials(int governmentOfficials)
+        {
+            this.governmentOfficials = checkSize(governmentOfficials);
+            return this;
+        }
+
+        /**
+         * @param lawsuits The number of lawsuits.
+         * @return This population.
+         */
+        public Population lawsuits(int lawsuits)
+        {
+            this.lawsuits = checkSize(lawsuits);
+            return this;
+        }
+
+        /**
+         * @return The number of system objects of every type together.
+         */
+        public long size()
+        {
+            return (long) citizens + lawyers + lawOfficeOwners + judges + governmentOfficials + lawsuits;
+        }
+
+        private static int checkSize(int size)
+        {
+            if (size < 0 || size > AbstractSystemObject.MAX_SEQUENCE)
+                throw new IllegalArgumentException("Invalid number of system objects: " + size);
+            return size;
         }
     }
 
     /**
-     * It creates a bunch of Government Officials
-     * 
-     * @param systemClassRef The system class object that will be used to register the system
-     * objects.
+     * Creates the object of one id.
      */
-    public static void createGovernmentOfficials(SystemClass systemClassRef)
+    private interface ObjectFactory
     {
-        int userCode = SystemObjectTypes.GOVERNMENT_OFFICIAL.getSystemObjectCode();
-        int id = createInitialId(userCode);
-        for (int i = 0; i < NUMBER_OF_GOVERNMENT_OFFICIAL; i++)
-        {
-            String firstName = firstNames.get(getRandomNumber() % firstNames.size());
-            String lastName = lastNames.get(getRandomNumber() % lastNames.size());
-            String email = firstName + lastName + id + EMAIL_DOMAIN;
-
-            systemClassRef.registerSystemObject(new GovernmentOfficial(
-                id, PASSWORD, firstName, lastName, email, PHONE
-            ));
-            id++;
-        }
+        AbstractSystemObject create(int id, SplittableRandom random);
+    }
+
+    /**
+     * It creates the users and the lawsuits of the population with their
+     * relations and registers them in the system. Lawyers take lawsuits, judges
+     * get dockets and offices get employees, advertisements and applications.
+     *
+     * @param systemClassRef The system to register the objects in.
+     * @param population The number of objects of each type.
+     * @param seed The seed of the random generator.
+     */
+    public static void createSystemObjects(SystemClass systemClassRef, Population population, long seed)
+    {
+        readFirstNamesAndLastNames();
+        SplittableRandom random = new SplittableRandom(seed);
+        systemClassRef.beginBulkLoad();
+
+        createUsers(systemClassRef, SystemObjectTypes.CITIZEN, population.citizens, random.split());
+        createUsers(systemClassRef, SystemObjectTypes.LAWYER, population.lawyers, random.split());
+        createUsers(systemClassRef, SystemObjectTypes.LAWOFFICE_OWNER, population.lawOfficeOwners, random.split());
+        createUsers(systemClassRef, SystemObjectTypes.GOVERNMENT_OFFICIAL, population.governmentOfficials, random.split());
+        createUsers(systemClassRef, SystemObjectTypes.JUDGE, population.judges, random.split());
+        createOffices(systemClassRef, population, random.split());
+        createLawsuits(systemClassRef, population, random.split());
+        systemClassRef.finishBulkLoad();
     }
 
     /**
-     * It creates a bunch of lawyers.
-     * 
-     * @param systemClassRef The system class object that we created in the main method.
+     * It creates the given number of users of a type and registers them in the system.
+     *
+     * @param systemClassRef The system to register the users in.
+     * @param type The type of the users.
+     * @param count The number of users.
+     * @param random The random generator of the type.
      */
-    public static void createLawyers(SystemClass systemClassRef)
+    private static void createUsers(SystemClass systemClassRef, SystemObjectTypes type, int count,
+                                    SplittableRandom random)
     {
-        int userCode = SystemObjectTypes.LAWYER.getSystemObjectCode();
-        int id = createInitialId(userCode);
-        for (int i = 0; i < NUMBER_OF_LAWYER; i++)
+        createInParallel(systemClassRef, type, count, random, (id, chunkRandom) -> {
+            String firstName = firstNames.get(chunkRandom.nextInt(firstNames.size()));
+            String lastName = lastNames.get(chunkRandom.nextInt(lastNames.size()));
+            String email = AbstractUser.generatedEmail(firstName, lastName, id);
+            return createUser(type, id, firstName, lastName, email, chunkRandom);
+        }, null);
+    }
+
+    /**
+     * It creates a user of the given type.
+     *
+     * @return The new user.
+     */
+    private static AbstractUser createUser(SystemObjectTypes type, int id, String firstName, String lastName,
+                                           String email, SplittableRandom random)
+    {
+        switch (type)
         {
-            String firstName = firstNames.get(getRandomNumber()  % firstNames.size());
-            String lastName = lastNames.get(getRandomNumber() % lastNames.size());
-            String email = firstName + lastName + id + EMAIL_DOMAIN;
-            boolean stateAttorney = false;
-            boolean acceptsLawsuits = false;
-
-            systemClassRef.registerSystemObject(new Lawyer(id, PASSWORD, firstName, lastName, 
-                                                              email, PHONE, stateAttorney, acceptsLawsuits));
-            id++;
+            case CITIZEN:
+                return new Citizen(id, PASSWORD, firstName, lastName, email, PHONE);
+            case LAWYER:
+                // State attorneys are queued in id order when the offices are created.
+                boolean acceptsLawsuits = random.nextInt(100) < ACCEPTS_LAWSUITS_PERCENT;
+                return new Lawyer(id, PASSWORD, firstName, lastName, email, PHONE, false, acceptsLawsuits);
+            case LAWOFFICE_OWNER:
+                return new LawOfficeOwner(id, PASSWORD, firstName, lastName, email, PHONE, LAWOFFICE_NAME);
+            case JUDGE:
+                return new Judge(id, PASSWORD, firstName, lastName, email, PHONE);
+            case GOVERNMENT_OFFICIAL:
+                return new GovernmentOfficial(id, PASSWORD, firstName, lastName, email, PHONE);
+            default:
+                throw new IllegalArgumentException("Not a user type: " + type);
         }
     }
 
     /**
-     * It creates a bunch of judges and adds them to the system
-     * 
-     * @param systemClassRef The system class object that is used to register the system objects.
+     * It makes some lawyers state attorneys, gives every office an
+     * advertisement and hires lawyers or lets them apply to the offices.
+     * Queues and lists keep the order things are added in, so this runs on
+     * one thread in id order.
+     *
+     * @param systemClassRef The system of the lawyers and owners.
+     * @param population The number of objects of each type.
+     * @param random The random generator of the offices.
      */
-    public static void createJudges(SystemClass systemClassRef)
+    private static void createOffices(SystemClass systemClassRef, Population population, SplittableRandom random)
     {
-        int userCode = SystemObjectTypes.JUDGE.getSystemObjectCode();
-        int id = createInitialId(userCode);
-        for (int i = 0; i < NUMBER_OF_JUDGE; i++)
+        int lawyerCode = SystemObjectTypes.LAWYER.getSystemObjectCode();
+        int ownerCode = SystemObjectTypes.LAWOFFICE_OWNER.getSystemObjectCode();
+
+        for (int sequence = 1; sequence <= population.lawOfficeOwners; sequence++)
+        {
+            LawOfficeOwner owner = systemClassRef.getLawOfficeOwner(AbstractSystemObject.createId(ownerCode, sequence));
+            LawOffice.JobAdvertisement jobAdvertisement =
+                owner.getOffice().createJobAdvertisement(owner.getId(), JOB_TITLE, JOB_DESCRIPTION);
+            owner.getOffice().addJobAdvertisement(jobAdvertisement);
+            systemClassRef.addJobAdvertisement(jobAdvertisement);
+        }
+
+        for (int sequence = 1; sequence <= population.lawyers; sequence++)
         {
-            String firstName = firstNames.get(getRandomNumber() % firstNames.size());
-            String lastName = lastNames.get(getRandomNumber() % lastNames.size());
-            String email = firstName + lastName + id + EMAIL_DOMAIN;
-
-            systemClassRef.registerSystemObject(new Judge(
-                id, PASSWORD, firstName, lastName, email, PHONE
-            ));
-            id++;
+            Lawyer lawyer = systemClassRef.getLawyer(AbstractSystemObject.createId(lawyerCode, sequence));
+            if (random.nextInt(100) < STATE_ATTORNEY_PERCENT)
+            {
+                lawyer.setStateAttorney(true);
+                systemClassRef.addStateAttorney(lawyer.getId());
+            }
+            if (population.lawOfficeOwners == 0)
+                continue;
+
+            int choice = random.nextInt(100);
+            int ownerId = AbstractSystemObject.createId(ownerCode, 1 + random.nextInt(population.lawOfficeOwners));
+            if (choice < EMPLOYED_PERCENT)
+            {
+                lawyer.setEmployerId(ownerId);
+                systemClassRef.getLawOfficeOwner(ownerId).getOffice().addEmployee(lawyer.getId());
+            }
+            else if (choice < EMPLOYED_PERCENT + APPLYING_PERCENT)
+            {
+                lawyer.applyForJob(systemClassRef, ownerId, JOB_APPLICATION);
+            }
         }
     }
 
     /**
-     * It creates a bunch of LawOfficeOwner objects and registers them with the system.
-     * 
-     * @param systemClassRef The system class object that is used to register the system objects.
+     * It creates lawsuits between random citizens with random lawyers. Most of
+     * them are assigned to a judge and some of those are concluded. The
+     * citizens, lawyers and judges get the lawsuits too.
+     *
+     * @param systemClassRef The system to register the lawsuits in.
+     * @param population The number of objects of each type.
+     * @param random The random generator of the lawsuits.
      */
-    public static void createLawOfficeOwners(SystemClass systemClassRef)
+    private static void createLawsuits(SystemClass systemClassRef, Population population, SplittableRandom random)
     {
-        int userCode = SystemObjectTypes.LAWOFFICE_OWNER.getSystemObjectCode();
-        int id = createInitialId(userCode);
-        for (int i = 0; i < NUMBER_OF_LAWOFFICE_OWNER; i++)
+        if (population.citizens < 2 || population.lawyers == 0)
         {
-            String firstName = firstNames.get(getRandomNumber() % firstNames.size());
-            String lastName = lastNames.get(getRandomNumber() % lastNames.size());
-            String email = firstName + lastName + id + EMAIL_DOMAIN;
-            
-            systemClassRef.registerSystemObject(new LawOfficeOwner(
-                id, PASSWORD, firstName, lastName, email, PHONE, LAWOFFICE_NAME));
-            id++;
+            createInParallel(systemClassRef, SystemObjectTypes.LAWSUIT, population.lawsuits, random, (id, chunkRandom) ->
+                new Lawsuit(id, randomDate(chunkRandom), randomType(chunkRandom), caseFile), null);
+            return;
         }
+
+        int citizenCode = SystemObjectTypes.CITIZEN.getSystemObjectCode();
+        int lawyerCode = SystemObjectTypes.LAWYER.getSystemObjectCode();
+        int judgeCode = SystemObjectTypes.JUDGE.getSystemObjectCode();
+        createInParallel(systemClassRef, SystemObjectTypes.LAWSUIT, population.lawsuits, random, (id, chunkRandom) -> {
+            Lawsuit lawsuit = new Lawsuit(id, randomDate(chunkRandom), randomType(chunkRandom), caseFile);
+
+            int suingCitizen = 1 + chunkRandom.nextInt(population.citizens);
+            // Any other citizen, the sequences after the suing one are shifted by one.
+            int suedCitizen = 1 + chunkRandom.nextInt(population.citizens - 1);
+            if (suedCitizen >= suingCitizen)
+                suedCitizen++;
+            lawsuit.setSuingCitizen(AbstractSystemObject.createId(citizenCode, suingCitizen));
+            lawsuit.setSuedCitizen(AbstractSystemObject.createId(citizenCode, suedCitizen));
+            lawsuit.setSuingLawyer(AbstractSystemObject.createId(lawyerCode, 1 + chunkRandom.nextInt(population.lawyers)));
+            if (chunkRandom.nextInt(100) < SUED_LAWYER_PERCENT)
+                lawsuit.setSuedLawyer(AbstractSystemObject.createId(lawyerCode, 1 + chunkRandom.nextInt(population.lawyers)));
+
+            if (population.judges > 0 && chunkRandom.nextInt(100) < ASSIGNED_PERCENT)
+            {
+                lawsuit.setJudge(AbstractSystemObject.createId(judgeCode, 1 + chunkRandom.nextInt(population.judges)));
+                if (chunkRandom.nextInt(100) >= CONCLUDED_PERCENT)
+                    lawsuit.setStatus(LawsuitStatus.STILL_GOING);
+                else
+                    lawsuit.setStatus(chunkRandom.nextBoolean() ? LawsuitStatus.SUING_WON : LawsuitStatus.SUED_WON);
+            }
+            return lawsuit;
+        }, lawsuit -> systemClassRef.addLawsuitToUsers((Lawsuit) lawsuit));
     }
 
     /**
-     * It creates a random number of lawsuits, with random dates, and random lawsuit types
-     * 
-     * @param systemClassRef The SystemClass object that is used to register the created objects.
+     * It creates the objects of the ids 1 to count of a type on the common
+     * fork-join pool, in chunks of ids. Every chunk is registered as a batch.
+     *
+     * @param systemClassRef The system to register the objects in.
+     * @param type The type of the objects.
+     * @param count The number of objects.
+     * @param random The random generator the chunk generators are split from.
+     * @param factory The factory that creates an object.
+     * @param registered Called with every object of a chunk after the chunk is registered, can be null.
      */
-    public static void createLawsuits(SystemClass systemClassRef)
+    private static void createInParallel(SystemClass systemClassRef, SystemObjectTypes type, int count,
+                                         SplittableRandom random, ObjectFactory factory,
+                                         Consumer<AbstractSystemObject> registered)
     {
-        int lawsuitCode = SystemObjectTypes.LAWSUIT.getSystemObjectCode();
-        int id = createInitialId(lawsuitCode);
-        for (int i = 0; i < NUMBER_OF_LAWSUITS; i++)
+        int typeCode = type.getSystemObjectCode();
+        List<RecursiveAction> tasks = new ArrayList<>();
+        for (int start = 1; start <= count; start += CHUNK_SIZE)
         {
-            Date date = randomDate();
-            // Create random LawsuitTypes
-            LawsuitTypes lawsuitType = LawsuitTypes.values()[getRandomNumber() % LawsuitTypes.values().length];
-            systemClassRef.registerSystemObject(new Lawsuit(id, date, lawsuitType, caseFile)); 
-            id++;
-        }        
+            int first = start;
+            int last = Math.min(count, start + CHUNK_SIZE - 1);
+            // Split here, in chunk order, not in the tasks.
+            SplittableRandom chunkRandom = random.split();
+            tasks.add(new RecursiveAction()
+            {
+                @Override
+                protected void compute()
+                {
+                    List<AbstractSystemObject> batch = new ArrayList<>(last - first + 1);
+                    for (int sequence = first; sequence <= last; sequence++)
+                        batch.add(factory.create(AbstractSystemObject.createId(typeCode, sequence), chunkRandom));
+                    systemClassRef.registerSystemObjects(type, batch);
+                    if (registered != null)
+                        batch.forEach(registered);
+                }
+            });
+        }
+        ForkJoinPool.commonPool().invoke(new RecursiveAction()
+        {
+            @Override
+            protected void compute()
+            {
+                invokeAll(tasks);
+            }
+        });
     }
-        
+
     // ------- HELPERS -------
     /**
      * It takes a user code and returns the first ID that can be assigned to a system object
-     * 
+     *
      * @param userCode The user code is a unique number that identifies the user.
-     * @return The return value is the userCode multiplied by 10 to the power of the ID_LENGTH minus 1,
-     * plus 1.
+     * @return The id with the user code as type and 1 as sequence number.
      */
     public static int createInitialId(int userCode) {
-        return (int) (userCode * Math.pow(10, AbstractSystemObject.ID_LENGTH - 1)) + 1;
+        return AbstractSystemObject.createId(userCode, 1);
     }
 
     /**
      * Reads the first and last names from the text files into the ArrayLists
      */
-    private static void readFirstNamesAndLastNames()
+    private static synchronized void readFirstNamesAndLastNames()
     {
-        firstNames = new ArrayList<>();
-        lastNames = new ArrayList<>();
-        
-        readFileIntoAList(firstNames, firstNamesFile);
-        readFileIntoAList(lastNames, lastNamesFile);
+        if (firstNames != null)
+            return;
+        ArrayList<String> first = new ArrayList<>();
+        ArrayList<String> last = new ArrayList<>();
+
+        readFileIntoAList(first, firstNamesFile);
+        readFileIntoAList(last, lastNamesFile);
+        firstNames = first;
+        lastNames = last;
     }
 
     /**
      * Reads the contents of a file into a list
-     * 
+     *
      * @param theList the list that you want to add the words to
      * @param filePath The path to the file you want to read.
      */
     private static void readFileIntoAList(List<String> theList, String filePath) {
-        
+
         try {
             Scanner s = new Scanner(new File(filePath));
             while (s.hasNext()){
                 theList.add(s.next());
             }
             s.close();
-        } 
+        }
         catch (Exception e) {
             System.out.println("An error occurred.");
             e.printStackTrace();
@@ -215,38 +425,38 @@ public final class SystemObjectCreator {
     }
 
     /**
-     * It returns a random number between 0 and 1000
-     * 
-     * @return A random number between 0 and 1000.
+     * It returns a random lawsuit type.
+     *
+     * @param random The random generator.
+     * @return A lawsuit type.
      */
-    private static int getRandomNumber() {
-        return (int) (Math.random() * (1000 + 1));
+    private static LawsuitTypes randomType(SplittableRandom random) {
+        LawsuitTypes[] types = LawsuitTypes.values();
+        return types[random.nextInt(types.length)];
     }
 
     /**
-     * It generates a random date between 2021-01-01 and 2030-12-31
-     * 
-     * @return A random date between 2021-01-01 and 2030-12-31
+     * It generates a random date between 2022-01-01 and 2030-12-31
+     *
+     * @return A random date between 2022-01-01 and 2030-12-31
      */
-    public static Date randomDate() 
+    public static Date randomDate()
     {
-        try {
-           
-            Date startInclusive = new SimpleDateFormat("yyyyMMdd").parse("20220101");
-            Date endExclusive = new SimpleDateFormat("yyyyMMdd").parse("20301231");
-
-            long startMillis = startInclusive.getTime();
-            long endMillis = endExclusive.getTime();
-            long randomMillisSinceEpoch = ThreadLocalRandom
-            .current()
-            .nextLong(startMillis, endMillis);
-        
-            return new Date(randomMillisSinceEpoch);
-         
-        } catch (Exception e) {
-            System.out.println("An error occurred.");
-            e.printStackTrace();
-        }
-        return null;
+        return new Date(ThreadLocalRandom.current().nextLong(START_MILLIS, END_MILLIS));
+    }
+
+    /**
+     * It generates a random date between 2022-01-01 and 2030-12-31
+     *
+     * @param random The random generator.
+     * @return A random date between 2022-01-01 and 2030-12-31
+     */
+    public static Date randomDate(SplittableRandom random)
+    {
+        return new Date(random.nextLong(START_MILLIS, END_MILLIS));
+    }
+
+    private static long toMillis(LocalDate date) {
+        return date.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
     }
 }
@@ -0,0 +1,119 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the system on the disk as a snapshot of every object and a
+ * write-ahead log of the changes made after the snapshot.
+ *
+ * On start the snapshot is loaded and the logged changes that are not in it
+ * are applied, then a new snapshot is written so the log starts empty. On
+ * stop the log is closed and a final snapshot is written. Every snapshot
+ * keeps the sequence number of the last change in it, so a crash between
+ * writing a snapshot and emptying the log never applies a change twice.
+ */
+public class SystemStorage implements Closeable
+{
+    private final SystemClass systemClassObject;
+    private final Path snapshotPath;
+    private final Path logPath;
+    private final WriteAheadLog writeAheadLog;
+    private boolean closed;
+
+    private SystemStorage(SystemClass systemClassObject, Path snapshotPath, Path logPath, WriteAheadLog writeAheadLog)
+    {
+        this.systemClassObject = systemClassObject;
+        this.snapshotPath = snapshotPath;
+        this.logPath = logPath;
+        this.writeAheadLog = writeAheadLog;
+    }
+
+    /**
+     * It recovers the system from the snapshot and the log next to it, or
+     * creates a new system if there is no snapshot, and starts logging.
+     *
+     * @param snapshotPath The snapshot file, the log is the same path with ".log" at the end.
+     * @param commitDelayNanos How long the log waits to write changes of many sessions together.
+     * @param generator Creates the system when there is no snapshot.
+     * @return The storage of the system.
+     */
+    public static SystemStorage open(Path snapshotPath, long commitDelayNanos, Supplier<SystemClass> generator)
+        throws IOException
+    {
+        Path logPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".log");
+        SystemClass systemClassObject;
+        if (Files.exists(snapshotPath))
+        {
+            systemClassObject = Snapshot.load(snapshotPath);
+            long records = recover(systemClassObject, logPath);
+            if (records > 0)
+                Snapshot.save(systemClassObject, snapshotPath);
+        }
+        else
+        {
+            // A log without its snapshot describes objects that do not exist any more.
+            systemClassObject = generator.get();
+            Snapshot.save(systemClassObject, snapshotPath);
+        }
+
+        WriteAheadLog writeAheadLog = new WriteAheadLog(logPath, systemClassObject.getLogSequence(), commitDelayNanos);
+        systemClassObject.setWriteAheadLog(writeAheadLog);
+        Session.useLog(writeAheadLog);
+        return new SystemStorage(systemClassObject, snapshotPath, logPath, writeAheadLog);
+    }
+
+    /**
+     * It applies the records of the log that are newer than the snapshot and
+     * prints how long it took.
+     *
+     * @param systemClassObject The system loaded from the snapshot.
+     * @param logPath The log file.
+     * @return The number of applied records.
+     */
+    private static long recover(SystemClass systemClassObject, Path logPath) throws IOException
+    {
+        long start = System.nanoTime();
+        WriteAheadLog.Records records = WriteAheadLog.readRecords(logPath);
+        LogReplay replay = new LogReplay(systemClassObject, ForkJoinPool.commonPool());
+        replay.replay(records);
+        long applied = replay.getAppliedRecords();
+        if (applied > 0)
+        {
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("Recovered %d changes from %s in %.3f s (%.0f records/s, %d partitions on %d threads, "
+                              + "%.3f s replaying)%n", applied, logPath, seconds, applied / seconds,
+                              replay.getPartitionCount(), ForkJoinPool.commonPool().getParallelism(),
+                              replay.getElapsedNanos() / 1e9);
+        }
+        return applied;
+    }
+
+    /**
+     * It returns the recovered system.
+     *
+     * @return The system.
+     */
+    public SystemClass getSystemClass()
+    {
+        return systemClassObject;
+    }
+
+    /**
+     * It stops logging, writes a snapshot with every logged change and empties the log.
+     */
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if (closed)
+            return;
+        closed = true;
+        writeAheadLog.close();
+        systemClassObject.setWriteAheadLog(null);
+        systemClassObject.setLogSequence(writeAheadLog.getLastSequence());
+        Snapshot.save(systemClassObject, snapshotPath);
+        Files.deleteIfExists(logPath);
+    }
+}
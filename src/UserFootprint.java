@@ -0,0 +1,109 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Compares the heap taken by users whose names and phones are kept as strings with
+ * the heap taken by users that keep them as codes of the name dictionary. Both kinds
+ * of users have the fields of AbstractUser only.
+ * The users are made like a snapshot load makes them: every user reads its own copy of
+ * its names, phone and email. The names are picked from a thousand first and last names
+ * and every user has a phone of its own, as in an imported registry. The heap is
+ * measured after collecting garbage, so the numbers are approximate.
+ * Usage: java UserFootprint [users]
+ */
+public class UserFootprint
+{
+    private static final int DEFAULT_USERS = 1_000_000;
+    private static final int DISTINCT_NAMES = 1000;
+    private static final int GC_RUNS = 5;
+
+    private UserFootprint()
+    {
+    }
+
+    /**
+     * User with the fields of AbstractUser before the name dictionary.
+     */
+    private static final class StringUser extends AbstractSystemObject
+    {
+        final String password;
+        final String firstName;
+        final String lastName;
+        final String email;
+        final String phone;
+
+        StringUser(int id, String password, String firstName, String lastName, String email, String phone)
+        {
+            super(id);
+            this.password = password;
+            this.firstName = firstName;
+            this.lastName = lastName;
+            this.email = email;
+            this.phone = phone;
+        }
+    }
+
+    /**
+     * User with the fields of AbstractUser only, without the lawsuit lists of a citizen.
+     */
+    private static final class DictionaryUser extends AbstractUser
+    {
+        DictionaryUser(int id, String password, String firstName, String lastName, String email, String phone)
+        {
+            super(id, password, firstName, lastName, email, phone);
+        }
+
+        @Override
+        protected void menu(SystemClass systemObjectRef)
+        {
+        }
+    }
+
+    /**
+     * It prints the bytes of heap every user takes in both layouts.
+     *
+     * @param args The number of users, one million by default.
+     */
+    public static void main(String[] args)
+    {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_USERS;
+        List<String> firstNames = new ArrayList<>();
+        List<String> lastNames = new ArrayList<>();
+        for (int i = 0; i < DISTINCT_NAMES; i++)
+        {
+            firstNames.add("First" + i);
+            lastNames.add("Last" + i);
+        }
+
+        System.out.printf("%-12s %10s %16s%n", "layout", "users", "heap bytes/user");
+        for (boolean dictionary : new boolean[] { false, true })
+        {
+            SplittableRandom random = new SplittableRandom(1);
+            Object[] kept = new Object[users];
+            long before = usedHeap();
+            for (int i = 0; i < users; i++)
+            {
+                int id = AbstractSystemObject.createId(1, i + 1);
+                // New strings, as every user read from a snapshot has its own copies
+                String firstName = new String(firstNames.get(random.nextInt(DISTINCT_NAMES)));
+                String lastName = new String(lastNames.get(random.nextInt(DISTINCT_NAMES)));
+                String email = AbstractUser.generatedEmail(firstName, lastName, id);
+                String password = new String("1234");
+                String phone = "+90-262-" + (100 + random.nextInt(900)) + "-" + (1000 + random.nextInt(9000));
+                kept[i] = dictionary ? new DictionaryUser(id, password, firstName, lastName, email, phone)
+                                     : new StringUser(id, password, firstName, lastName, email, phone);
+            }
+            long used = usedHeap() - before;
+            System.out.printf("%-12s %10d %16d%n", dictionary ? "dictionary" : "strings", kept.length, used / users);
+        }
+    }
+
+    private static long usedHeap()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < GC_RUNS; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
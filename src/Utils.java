@@ -1,18 +1,22 @@
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Scanner;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 
 /**
  * Static utility class
+ * The console is the terminal of the current session, see Session.
  */
 public final class Utils {
     private Utils(){}
 
     public static final String ROOT_DIR = getRootDirectoryPath();
 
-    private static final Scanner scanner = new Scanner(System.in);
     public static final String INVALID_INPUT = "Invalid input!";
     public static final String INVALID_CHOICE = "Invalid choice!";
+    // yyyyMMdd, unlike SimpleDateFormat it can be shared.
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
 
     /**
      * It reads a line from the console, converts it to an integer, and returns the integer
@@ -20,17 +24,65 @@ public final class Utils {
      * @return The integer value of the string that was entered.
      */
     public static int readIntegerInput() throws NumberFormatException {
-        String line = scanner.nextLine();
+        String line = Session.current().readLine();
         return Integer.parseInt(line);
     }
 
+    /**
+     * It reads an id from the console. Old 5 digit ids are converted to the current id format.
+     * 
+     * @return The id that was entered.
+     */
+    public static int readIdInput() throws NumberFormatException {
+        return AbstractSystemObject.fromLegacyId(readIntegerInput());
+    }
+
+    /**
+     * It reads a date in yyyyMMdd format from the console.
+     * 
+     * @return The date that was entered.
+     */
+    public static LocalDate readDateInput() throws DateTimeParseException {
+        return LocalDate.parse(Session.current().readLine().trim(), DATE_FORMAT);
+    }
+
+    /**
+     * It reads an integer from the console, where an empty line means no value.
+     * 
+     * @return The integer that was entered, or null if the line is empty.
+     */
+    public static Integer readOptionalIntegerInput() throws NumberFormatException {
+        String line = Session.current().readLine().trim();
+        return line.isEmpty() ? null : Integer.valueOf(line);
+    }
+
+    /**
+     * It reads an id from the console, where an empty line means no id.
+     * 
+     * @return The id that was entered, or null if the line is empty.
+     */
+    public static Integer readOptionalIdInput() throws NumberFormatException {
+        Integer id = readOptionalIntegerInput();
+        return id == null ? null : AbstractSystemObject.fromLegacyId(id);
+    }
+
+    /**
+     * It reads a date in yyyyMMdd format from the console, where an empty line means no date.
+     * 
+     * @return The date that was entered, or null if the line is empty.
+     */
+    public static LocalDate readOptionalDateInput() throws DateTimeParseException {
+        String line = Session.current().readLine().trim();
+        return line.isEmpty() ? null : LocalDate.parse(line, DATE_FORMAT);
+    }
+
     /**
      * It reads a line of input from the user and returns it as a string
      * 
      * @return The next line of input from the user.
      */
     public static String readStringInput() {
-        return scanner.nextLine();
+        return Session.current().readLine();
     }
 
     /**
@@ -39,7 +91,7 @@ public final class Utils {
      * @return A boolean value.
      */
     public static boolean readBooleanInput() {
-        String line = scanner.nextLine();
+        String line = Session.current().readLine();
         return Boolean.parseBoolean(line);
     }
 
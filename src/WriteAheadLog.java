@@ -0,0 +1,508 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import enums.LogRecordTypes;
+
+/**
+ * Append-only log of the changes made since the last snapshot.
+ *
+ * Every change is a small binary record: its length, a CRC32 of the rest,
+ * the log sequence number, the record type, the id of the changed object and
+ * the values of the change in the snapshot encoding. Appending only copies the
+ * record into memory. A background thread writes the records and calls fsync
+ * once for every batch, waiting up to the commit delay after the first record
+ * of a batch so changes from many sessions share one fsync. A session calls
+ * awaitDurable before it answers the user, so nothing it confirmed is lost.
+ */
+public class WriteAheadLog implements Closeable
+{
+    private static final int MAGIC = 0x4A57414C;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    // Length and CRC before every record.
+    private static final int FRAME_SIZE = 2 * Integer.BYTES;
+    // Sequence number, type and id at the start of every record.
+    private static final int RECORD_HEADER_SIZE = Long.BYTES + Byte.BYTES + Integer.BYTES;
+    // A batch is written at once when it grows past this size.
+    private static final int MAX_BATCH_SIZE = 1 << 20;
+
+    /**
+     * Writes the values of one change.
+     */
+    @FunctionalInterface
+    public interface RecordBody
+    {
+        void write(SnapshotOutput out) throws IOException;
+    }
+
+    /**
+     * The records of a log file, in log order. The file is kept in one buffer
+     * and only the position of every record is kept, so records can be read
+     * from many threads.
+     */
+    public static final class Records
+    {
+        private static final Records EMPTY = new Records(ByteBuffer.allocate(0), 0, new long[0], new byte[0],
+                                                         new int[0], new int[0], new int[0]);
+
+        private final ByteBuffer file;
+        private final int size;
+        private final long[] sequences;
+        private final byte[] types;
+        private final int[] ids;
+        private final int[] valueStarts;
+        private final int[] valueEnds;
+
+        private Records(ByteBuffer file, int size, long[] sequences, byte[] types, int[] ids,
+                        int[] valueStarts, int[] valueEnds)
+        {
+            this.file = file;
+            this.size = size;
+            this.sequences = sequences;
+            this.types = types;
+            this.ids = ids;
+            this.valueStarts = valueStarts;
+            this.valueEnds = valueEnds;
+        }
+
+        public int size()
+        {
+            return size;
+        }
+
+        public long sequence(int index)
+        {
+            return sequences[index];
+        }
+
+        public LogRecordTypes type(int index)
+        {
+            return LogRecordTypes.fromCode(types[index]);
+        }
+
+        public int id(int index)
+        {
+            return ids[index];
+        }
+
+        /**
+         * @param index The position of the record in the log.
+         * @return A new input over the values of the record.
+         */
+        public SnapshotInput values(int index)
+        {
+            ByteBuffer values = file.duplicate();
+            values.limit(valueEnds[index]).position(valueStarts[index]);
+            return new SnapshotInput(values.slice());
+        }
+    }
+
+    private final FileChannel channel;
+    private final long commitDelayNanos;
+    private final Thread writer;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Signalled when records are appended or the log is closed.
+    private final Condition appended = lock.newCondition();
+    // Signalled when a batch is on the disk.
+    private final Condition durable = lock.newCondition();
+    // Records waiting for the writer, swapped with the spare buffer for every batch.
+    private ByteBuffer pending = ByteBuffer.allocate(1 << 16);
+    private ByteBuffer spare = ByteBuffer.allocate(1 << 16);
+    private final CRC32 crc = new CRC32();
+    private long lastSequence;
+    private long durableSequence;
+    private boolean closed;
+    // Set by the writer thread when it has written the last batch.
+    private boolean stopped;
+    private IOException failure;
+
+    // The record being built by each thread, and the last record it appended.
+    private final ThreadLocal<RecordBuilder> builders = ThreadLocal.withInitial(RecordBuilder::new);
+    private final ThreadLocal<long[]> lastAppended = ThreadLocal.withInitial(() -> new long[1]);
+
+    /**
+     * It creates a new empty log, replacing the file if it exists.
+     *
+     * @param path The log file.
+     * @param lastSequence The sequence number of the last change already in
+     *                     the snapshot, the first record gets the next one.
+     * @param commitDelayNanos How long a batch waits for more records before
+     *                         it is written, 0 to write at once.
+     */
+    public WriteAheadLog(Path path, long lastSequence, long commitDelayNanos) throws IOException
+    {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                                        StandardOpenOption.WRITE);
+        this.commitDelayNanos = commitDelayNanos;
+        this.lastSequence = lastSequence;
+        this.durableSequence = lastSequence;
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        while (header.hasRemaining())
+            channel.write(header);
+        channel.force(true);
+
+        writer = new Thread(this::writeBatches, "write-ahead-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * It appends a record to the log. The record is in memory when this
+     * returns, awaitDurable waits until it is on the disk.
+     *
+     * @param type The type of the change.
+     * @param id The id of the changed object.
+     * @param body Writes the values of the change.
+     * @throws UncheckedIOException if the log is closed or could not be written.
+     */
+    public void append(LogRecordTypes type, int id, RecordBody body)
+    {
+        RecordBuilder builder = builders.get();
+        builder.reset();
+        try
+        {
+            body.write(builder.out);
+            builder.out.flush();
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        int recordSize = RECORD_HEADER_SIZE + builder.size;
+
+        long sequence;
+        lock.lock();
+        try
+        {
+            checkOpen();
+            sequence = ++lastSequence;
+            ensurePendingRoom(FRAME_SIZE + recordSize);
+            int frameStart = pending.position();
+            pending.putInt(recordSize);
+            pending.putInt(0);
+            int recordStart = pending.position();
+            pending.putLong(sequence);
+            pending.put((byte) type.getLogRecordCode());
+            pending.putInt(id);
+            pending.put(builder.bytes, 0, builder.size);
+
+            crc.reset();
+            crc.update(pending.array(), pending.arrayOffset() + recordStart, recordSize);
+            pending.putInt(frameStart + Integer.BYTES, (int) crc.getValue());
+            appended.signal();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+        lastAppended.get()[0] = sequence;
+    }
+
+    /**
+     * It waits until every record appended by the calling thread is on the disk.
+     * It returns at once if the thread appended nothing since the last call.
+     *
+     * @throws UncheckedIOException if the log could not be written.
+     */
+    public void awaitDurable()
+    {
+        long sequence = lastAppended.get()[0];
+        if (sequence == 0)
+            return;
+        lock.lock();
+        try
+        {
+            while (durableSequence < sequence)
+            {
+                if (failure != null)
+                    throw new UncheckedIOException("Changes could not be saved", failure);
+                if (stopped)
+                    throw new UncheckedIOException(new IOException("The log was closed before the change was saved"));
+                durable.awaitUninterruptibly();
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+        lastAppended.get()[0] = 0;
+    }
+
+    /**
+     * It returns the sequence number of the last appended record.
+     *
+     * @return The sequence number.
+     */
+    public long getLastSequence()
+    {
+        lock.lock();
+        try
+        {
+            return lastSequence;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * It writes the pending records, stops accepting new ones and closes the
+     * file. getLastSequence returns the last record in the file afterwards.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        lock.lock();
+        try
+        {
+            if (closed)
+                return;
+            closed = true;
+            appended.signal();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+        try
+        {
+            writer.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (failure != null)
+            throw failure;
+    }
+
+    /**
+     * It finds the records of a log. A record that was cut short or damaged
+     * by a crash ends the log, since it was never confirmed to a user.
+     *
+     * @param path The log file.
+     * @return The records, none if there is no log.
+     * @throws IOException if the file is not a log.
+     */
+    public static Records readRecords(Path path) throws IOException
+    {
+        if (!Files.exists(path))
+            return Records.EMPTY;
+        // The log starts empty after every checkpoint, so it is read at once. It is not
+        // mapped: a mapped file cannot be truncated on every system while the mapping lives.
+        ByteBuffer file = ByteBuffer.wrap(Files.readAllBytes(path));
+        // The log was created but its header never reached the disk.
+        if (file.remaining() < HEADER_SIZE)
+            return Records.EMPTY;
+        if (file.getInt() != MAGIC)
+            throw new IOException(path + " is not a write-ahead log");
+        int version = file.getInt();
+        if (version != VERSION)
+            throw new IOException("Unsupported write-ahead log version " + version);
+
+        int capacity = 1024;
+        long[] sequences = new long[capacity];
+        byte[] types = new byte[capacity];
+        int[] ids = new int[capacity];
+        int[] valueStarts = new int[capacity];
+        int[] valueEnds = new int[capacity];
+        int size = 0;
+        CRC32 recordCrc = new CRC32();
+        while (file.remaining() >= FRAME_SIZE)
+        {
+            int recordSize = file.getInt();
+            int expectedCrc = file.getInt();
+            if (recordSize < RECORD_HEADER_SIZE || recordSize > file.remaining())
+                break;
+            int recordStart = file.position();
+            ByteBuffer record = file.duplicate();
+            record.limit(recordStart + recordSize);
+            recordCrc.reset();
+            recordCrc.update(record);
+            if ((int) recordCrc.getValue() != expectedCrc)
+                break;
+
+            if (size == capacity)
+            {
+                capacity *= 2;
+                sequences = Arrays.copyOf(sequences, capacity);
+                types = Arrays.copyOf(types, capacity);
+                ids = Arrays.copyOf(ids, capacity);
+                valueStarts = Arrays.copyOf(valueStarts, capacity);
+                valueEnds = Arrays.copyOf(valueEnds, capacity);
+            }
+            sequences[size] = file.getLong();
+            types[size] = file.get();
+            ids[size] = file.getInt();
+            if (LogRecordTypes.fromCode(types[size]) == null)
+                throw new IOException("Unknown record type in record " + sequences[size]);
+            valueStarts[size] = file.position();
+            valueEnds[size] = recordStart + recordSize;
+            file.position(valueEnds[size]);
+            size++;
+        }
+        return new Records(file, size, sequences, types, ids, valueStarts, valueEnds);
+    }
+
+    /**
+     * The loop of the writer thread: it takes the pending records as one
+     * batch, writes them and makes them durable with one fsync.
+     */
+    private void writeBatches()
+    {
+        while (true)
+        {
+            ByteBuffer batch;
+            long batchSequence;
+            lock.lock();
+            try
+            {
+                while (pending.position() == 0 && !closed)
+                    appended.awaitUninterruptibly();
+                if (pending.position() == 0)
+                {
+                    stopped = true;
+                    durable.signalAll();
+                    return;
+                }
+                // Give other sessions the commit delay to join the batch.
+                long remaining = commitDelayNanos;
+                while (remaining > 0 && !closed && pending.position() < MAX_BATCH_SIZE)
+                {
+                    try
+                    {
+                        remaining = appended.awaitNanos(remaining);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        break;
+                    }
+                }
+                batch = pending;
+                pending = spare;
+                spare = batch;
+                batchSequence = lastSequence;
+            }
+            finally
+            {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            try
+            {
+                batch.flip();
+                while (batch.hasRemaining())
+                    channel.write(batch);
+                channel.force(false);
+            }
+            catch (IOException e)
+            {
+                error = e;
+            }
+            batch.clear();
+
+            lock.lock();
+            try
+            {
+                if (error != null)
+                {
+                    failure = error;
+                    stopped = true;
+                    durable.signalAll();
+                    return;
+                }
+                durableSequence = batchSequence;
+                durable.signalAll();
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * It makes sure the pending buffer has room for the given number of bytes.
+     * The caller holds the lock.
+     */
+    private void ensurePendingRoom(int bytes)
+    {
+        if (pending.remaining() >= bytes)
+            return;
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+        pending.flip();
+        larger.put(pending);
+        pending = larger;
+    }
+
+    /**
+     * The caller holds the lock.
+     *
+     * @throws UncheckedIOException if the log is closed or failed.
+     */
+    private void checkOpen()
+    {
+        if (failure != null)
+            throw new UncheckedIOException("Changes could not be saved", failure);
+        if (closed)
+            throw new UncheckedIOException(new IOException("The write-ahead log is closed"));
+    }
+
+    /**
+     * Collects the values of a record in a growing array.
+     */
+    private static final class RecordBuilder implements WritableByteChannel
+    {
+        private byte[] bytes = new byte[256];
+        private int size;
+        private final SnapshotOutput out = new SnapshotOutput(this, 4096);
+
+        void reset()
+        {
+            size = 0;
+        }
+
+        @Override
+        public int write(ByteBuffer source)
+        {
+            int length = source.remaining();
+            if (size + length > bytes.length)
+            {
+                byte[] larger = new byte[Math.max(bytes.length * 2, size + length)];
+                System.arraycopy(bytes, 0, larger, 0, size);
+                bytes = larger;
+            }
+            source.get(bytes, size, length);
+            size += length;
+            return length;
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return true;
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
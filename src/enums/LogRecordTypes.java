@@ -0,0 +1,46 @@
+package enums;
+
+/**
+ * Kinds of write-ahead log records. The code is written to the log, so codes
+ * must never be changed or reused.
+ */
+public enum LogRecordTypes
+{
+    OBJECT_CREATED(1),
+    LAWSUIT_DATE(2), LAWSUIT_JUDGE(3), LAWSUIT_SUING_CITIZEN(4), LAWSUIT_SUED_CITIZEN(5),
+    LAWSUIT_SUING_LAWYER(6), LAWSUIT_SUED_LAWYER(7), LAWSUIT_CASE_FILE(8), LAWSUIT_COURT_RECORDS(9),
+    LAWSUIT_STATUS(10), LAWSUIT_TYPE(11), LAWSUIT_SUING_DEFENCE(12), LAWSUIT_SUED_DEFENCE(13),
+    CITIZEN_SUING_LAWSUIT_ADDED(14), CITIZEN_SUED_LAWSUIT_ADDED(15),
+    LAWYER_LAWSUIT_ADDED(16), LAWYER_LAWSUIT_REMOVED(17), LAWYER_LAWSUIT_CONCLUDED(18),
+    LAWYER_STATE_ATTORNEY(19), LAWYER_ACCEPTS_LAWSUITS(20), LAWYER_EMPLOYER(21), LAWYER_JOB_APPLIED(22),
+    JUDGE_LAWSUIT_ASSIGNED(23), JUDGE_LAWSUIT_CONCLUDED(24),
+    OFFICE_EMPLOYEE_ADDED(25), OFFICE_EMPLOYEE_REMOVED(26), OFFICE_JOB_ADVERTISEMENT_PUBLISHED(27),
+    OFFICE_JOB_ADVERTISEMENT_REMOVED(28), OFFICE_JOB_APPLICATION_STATUS(29), OFFICE_JOB_APPLICATION_REMOVED(30),
+    STATE_ATTORNEY_ADDED(31), STATE_ATTORNEY_POLLED(32),
+    STATE_ATTORNEY_APPLICANT_ADDED(33), STATE_ATTORNEY_APPLICANT_POLLED(34);
+
+    private static final LogRecordTypes[] BY_CODE = new LogRecordTypes[64];
+
+    static {
+        for (LogRecordTypes type : values())
+            BY_CODE[type.code] = type;
+    }
+
+    private int code;
+
+    LogRecordTypes(int code) {
+        this.code = code;
+    }
+
+    public int getLogRecordCode() {
+        return code;
+    }
+
+    /**
+     * @param code The code read from the log.
+     * @return The record type, or null if the code is unknown.
+     */
+    public static LogRecordTypes fromCode(int code) {
+        return code > 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+}